@@ -9,8 +9,8 @@ import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.io.CsvWriter;
 import plugins.davhelle.cellgraph.misc.PolygonalCellTile;
-import plugins.davhelle.cellgraph.misc.PolygonalCellTileGenerator;
 import plugins.davhelle.cellgraph.misc.T1Transition;
+import plugins.davhelle.cellgraph.misc.T1TransitionDetector;
 import plugins.davhelle.cellgraph.nodes.Edge;
 import plugins.davhelle.cellgraph.nodes.Node;
 import plugins.davhelle.cellgraph.tracking.EdgeTracking;
@@ -42,7 +42,16 @@ public class DetectT1Transition {
 			stGraph = LoadNeoWktFiles.loadNeo(0);
 		assert stGraph != null: "Spatio temporal graph creation failed!";
 		
-		HashMap<Node, PolygonalCellTile> cell_tiles = PolygonalCellTileGenerator.createPolygonalTiles(stGraph);
+		//edge length as weight, see saveStableEdgesToCSV
+		for(int i=0; i < stGraph.size(); i++){
+			FrameGraph frame_i = stGraph.getFrame(i);
+			for(Edge e: frame_i.edgeSet())
+				if(!e.hasGeometry()){
+					e.computeGeometry(frame_i);
+					if(e.hasGeometry())
+						frame_i.setEdgeWeight(e, e.getGeometry().getLength());
+				}
+		}
 		
 		System.out.println("\nAnalyzing the cell edges..");
 		EdgeTracking edgeTracking = new EdgeTracking(stGraph, 0);
@@ -51,7 +60,8 @@ public class DetectT1Transition {
 		//saveStableEdgesToCSV(stGraph, tracked_edges);
 		
 		System.out.println("\nFinding T1 transitions..");
-		int transition_no = findTransitions(stGraph, cell_tiles, tracked_edges,5,5,0).size();
+		T1TransitionDetector detector = new T1TransitionDetector(stGraph, tracked_edges, 5, 5, 0);
+		int transition_no = detector.findTransitions(Runtime.getRuntime().availableProcessors()).size();
 		System.out.printf("Found %d stable transition/s\n",transition_no);
 	
 	}
@@ -71,7 +81,7 @@ public class DetectT1Transition {
 			Long[] edge_track = tracked_edges.get(track_code);
 			
 			if(hasStableTrack(edge_track)){
-				int[] cell_ids = Edge.getCodePair(track_code);
+				int[] cell_ids = Edge.getCodePair(track_code, stGraph.getEdgeKeyScheme());
 				
 				for(int i=0; i<stGraph.size(); i++){
 					FrameGraph frame_i = stGraph.getFrame(i);
@@ -116,7 +126,7 @@ public class DetectT1Transition {
 	
 
 	/**
-	 * Identifies T1 transitions in the input graph. Currently dividing cells are excluded from
+	 * Identifies T1 transitions in the input graph (serial version of {@link T1TransitionDetector}). Currently dividing cells are excluded from
 	 * transition detection.
 	 * 
 	 * @param stGraph the input graph
@@ -146,7 +156,7 @@ public class DetectT1Transition {
 			
 			if(!hasStableTrack(edge_track)){
 				//determine whether a persistent Edge Change occurred
-				int[] pair = Edge.getCodePair(track_code);
+				int[] pair = Edge.getCodePair(track_code, stGraph.getEdgeKeyScheme());
 				
 				T1Transition transition = new T1Transition(stGraph, pair, edge_track, starting_frame);
 				
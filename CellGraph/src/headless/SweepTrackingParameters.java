@@ -0,0 +1,61 @@
+package headless;
+
+import java.io.File;
+import java.util.List;
+
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.misc.SmallCellRemover;
+import plugins.davhelle.cellgraph.tracking.TrackingEnum;
+import plugins.davhelle.cellgraph.tracking.TrackingParameterSweep;
+import plugins.davhelle.cellgraph.tracking.TrackingParameters;
+import plugins.davhelle.cellgraph.tracking.TrackingSweepResult;
+
+/**
+ * Headless tracking parameter sweep on a neo sample saved in the
+ * well known text format (WKT). The sample is loaded once and all
+ * parameter combinations are tracked concurrently.
+ *
+ * @author Davide Heller
+ *
+ */
+public class SweepTrackingParameters {
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+
+		long startTime = System.currentTimeMillis();
+
+		int neo_no = 0;
+
+		int time_points = 10;
+
+		SpatioTemporalGraph stGraph = LoadNeoWktFiles.loadStGraph(neo_no, time_points);
+		new SmallCellRemover(stGraph).removeCellsBelow(10.0);
+
+		long loadTime = System.currentTimeMillis() - startTime;
+
+		List<TrackingParameters> parameters = TrackingParameterSweep.grid(
+				TrackingEnum.HUNGARIAN,
+				new int[]{3, 5},
+				new double[]{1.0, 5.0},
+				new double[]{1.0},
+				new double[]{10.0, 30.0, 50.0});
+
+		List<TrackingSweepResult> results = new TrackingParameterSweep(stGraph, parameters)
+				.run(Runtime.getRuntime().availableProcessors());
+
+		long sweepTime = System.currentTimeMillis() - startTime - loadTime;
+
+		for(TrackingSweepResult result: results)
+			System.out.println(result);
+
+		TrackingParameterSweep.writeCsv(results,
+				new File(String.format("/Users/davide/data/neo/%d/tracking_sweep.csv",neo_no)));
+
+		System.out.printf("Loading Neo%d in wkt took:\t%d ms\n",neo_no,loadTime);
+		System.out.printf("Sweeping %d parameter sets took:\t%d ms\n",parameters.size(),sweepTime);
+	}
+
+}
@@ -26,10 +26,13 @@ import plugins.davhelle.cellgraph.export.GraphExporter;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.io.CsvTrackWriter;
+import plugins.davhelle.cellgraph.io.DeltaPolygonExporter;
+import plugins.davhelle.cellgraph.io.IndexedTrackWriter;
 import plugins.davhelle.cellgraph.io.PdfPrinter;
 import plugins.davhelle.cellgraph.io.SaveFolderDialog;
 import plugins.davhelle.cellgraph.io.SkeletonWriter;
 import plugins.davhelle.cellgraph.io.SummaryWriter;
+import plugins.davhelle.cellgraph.io.WkbPolygonExporter;
 import plugins.davhelle.cellgraph.io.WktPolygonExporter;
 import plugins.davhelle.cellgraph.overlays.CellColorTagOverlay;
 
@@ -41,8 +44,8 @@ import plugins.davhelle.cellgraph.overlays.CellColorTagOverlay;
  * - Spreadsheets<br>
  * - GraphML files<br>
  * - PDF vector graphics of the overlays<br>
- * - Skeleton files in WKT or TIFF format<br>
- * - CSV tracking files
+ * - Skeleton files in WKT, WKB, temporal delta or TIFF format<br>
+ * - CSV or indexed tracking files
  * 
  * @author Davide Heller
  *
@@ -167,9 +170,21 @@ public class CellExport extends EzPlug {
 						saveWktSkeletons(stGraph);
 						break;
 						
+					case WKB_SKELETONS:
+						saveWkbSkeletons(stGraph);
+						break;
+						
+					case DELTA_SKELETONS:
+						saveDeltaSkeletons(stGraph);
+						break;
+						
 					case CSV_TRACKING:
 						saveCsvTracking(stGraph);
 						break;
+						
+					case INDEXED_TRACKING:
+						saveIndexedTracking(stGraph);
+						break;
 					case PRESET:
 						savePreset(sequence, stGraph);
 						break;
@@ -306,6 +321,46 @@ public class CellExport extends EzPlug {
 		System.out.println("Successfully saved Wkt Files to: "+export_folder);
 	}
 	
+	/**
+	 * Export the skeletons as well known binary (WKB) files
+	 * 
+	 * @param stGraph Spatiotemporal graph to export as WKB files
+	 */
+	private void saveWkbSkeletons(SpatioTemporalGraph stGraph) {
+		
+		String export_folder = SaveFolderDialog.chooseFolder("WKB skeleton files");
+		if(export_folder == null)
+			return;
+		
+		WkbPolygonExporter wkb_exporter = new WkbPolygonExporter();
+		
+		for(int i=0; i < stGraph.size(); i++){
+			FrameGraph frame_i = stGraph.getFrame(i);
+			if(frame_i.hasBoundary())
+				wkb_exporter.export(frame_i.getBoundary(), String.format("%s/border_%03d.wkb",export_folder,i));
+			
+			wkb_exporter.exportFrame(frame_i, String.format("%s/skeleton_%03d.wkb",export_folder,i));
+		}
+		
+		System.out.println("Successfully saved Wkb Files to: "+export_folder);
+	}
+	
+	/**
+	 * Export the skeletons as temporal delta files
+	 * 
+	 * @param stGraph Spatiotemporal graph to export as delta files
+	 */
+	private void saveDeltaSkeletons(SpatioTemporalGraph stGraph) {
+		
+		String export_folder = SaveFolderDialog.chooseFolder("Delta skeleton files");
+		if(export_folder == null)
+			return;
+		
+		new DeltaPolygonExporter().exportGraph(stGraph, export_folder);
+		
+		System.out.println("Successfully saved Delta Files to: "+export_folder);
+	}
+	
 	/**
 	 * Export the tracking of the graph structure as CSV format
 	 * 
@@ -333,4 +388,21 @@ public class CellExport extends EzPlug {
 		System.out.println("Successfully saved tracking to: "+export_folder);
 	}
 	
+	/**
+	 * Export the tracking of the graph structure as single indexed file
+	 * 
+	 * @param stGraph Spatiotemporal graph to export
+	 */
+	private void saveIndexedTracking(SpatioTemporalGraph stGraph) {
+		
+		String export_folder = SaveFolderDialog.chooseFolder("Indexed tracking file");
+		if(export_folder == null)
+			return;
+		
+		if(new IndexedTrackWriter(stGraph,export_folder).write())
+			System.out.println("Successfully saved tracking to: "+export_folder);
+		else
+			System.out.println("Failed to save tracking to: "+export_folder);
+	}
+	
 }
@@ -10,6 +10,7 @@ import icy.swimmingPool.SwimmingPool;
 import java.awt.Color;
 import java.io.File;
 import java.util.List;
+import java.util.Locale;
 
 import plugins.adufour.ezplug.EzGroup;
 import plugins.adufour.ezplug.EzPlug;
@@ -22,23 +23,36 @@ import plugins.adufour.ezplug.EzVarFloat;
 import plugins.adufour.ezplug.EzVarFolder;
 import plugins.adufour.ezplug.EzVarInteger;
 import plugins.adufour.ezplug.EzVarSequence;
+import plugins.adufour.ezplug.EzVarText;
+import plugins.davhelle.cellgraph.graphs.GraphLocks;
 import plugins.davhelle.cellgraph.graphs.GraphType;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraphGenerator;
 import plugins.davhelle.cellgraph.io.CsvTrackReader;
+import plugins.davhelle.cellgraph.io.DeltaPolygonExporter;
 import plugins.davhelle.cellgraph.io.FileNameGenerator;
+import plugins.davhelle.cellgraph.io.IndexedTrackReader;
+import plugins.davhelle.cellgraph.io.IndexedTrackWriter;
 import plugins.davhelle.cellgraph.io.InputType;
 import plugins.davhelle.cellgraph.io.SegmentationProgram;
 import plugins.davhelle.cellgraph.misc.BorderCells;
+import plugins.davhelle.cellgraph.misc.EdgeKeyScheme;
 import plugins.davhelle.cellgraph.misc.SmallCellRemover;
 import plugins.davhelle.cellgraph.overlays.DisplacementOverlay;
 import plugins.davhelle.cellgraph.overlays.PolygonOverlay;
 import plugins.davhelle.cellgraph.overlays.TrackIdOverlay;
 import plugins.davhelle.cellgraph.overlays.TrackingOverlay;
+import plugins.davhelle.cellgraph.tracking.CentroidTracking;
+import plugins.davhelle.cellgraph.tracking.GraphTracking;
 import plugins.davhelle.cellgraph.tracking.HungarianTracking;
 import plugins.davhelle.cellgraph.tracking.StableMarriageTracking;
+import plugins.davhelle.cellgraph.tracking.TileTracking;
 import plugins.davhelle.cellgraph.tracking.TrackingAlgorithm;
 import plugins.davhelle.cellgraph.tracking.TrackingEnum;
+import plugins.davhelle.cellgraph.tracking.TrackingMetricsRecorder;
+import plugins.davhelle.cellgraph.tracking.TrackingParameterSweep;
+import plugins.davhelle.cellgraph.tracking.TrackingParameters;
+import plugins.davhelle.cellgraph.tracking.TrackingSweepResult;
 
 /**
  * <b>CellGraph</b> is a plugin for the bioimage analysis tool 
@@ -93,11 +107,26 @@ public class CellGraph extends EzPlug implements EzStoppable
 	EzVarDouble					varLambda1;
 	EzVarDouble					varLambda2;
 	EzVarBoolean				varBooleanCellIDs;
+	EzVarBoolean				varSaveTrackingMetrics;
+	EzVarBoolean				varDriftCompensation;
+	EzVarBoolean				varOverlapRefinement;
+	EzVarBoolean				varTileTracking;
+	EzVarInteger				varTileSize;
+	
+	//Parameter sweep
+	EzVarText					varSweepLinkrange;
+	EzVarText					varSweepLambda1;
+	EzVarText					varSweepLambda2;
+	EzVarText					varSweepDummyWeight;
+	EzVarInteger				varSweepThreads;
 	
 	//Remove cells
 	EzVarBoolean				varRemoveSmallCells;
 	EzVarDouble					varAreaThreshold;
 	
+	//Edge tracking codes
+	EzVarEnum<EdgeKeyScheme>	varEdgeKeyScheme;
+	
 	//Load structure into Swimming Pool
 	EzVarBoolean				varUseSwimmingPool;
 	
@@ -184,13 +213,19 @@ public class CellGraph extends EzPlug implements EzStoppable
 		varAreaThreshold.setToolTipText("Area below which cells will be removed");
 		varRemoveSmallCells.addVisibilityTriggerTo(varAreaThreshold, true);
 		
+		//edge code pairing
+		varEdgeKeyScheme = new EzVarEnum<EdgeKeyScheme>(
+				"Edge id pairing",EdgeKeyScheme.values(), EdgeKeyScheme.CANTOR);
+		varEdgeKeyScheme.setToolTipText("Packed pairing decodes faster and supports large cell ids, Cantor matches previous exports");
+		
 		EzGroup inputTypeGroup = new EzGroup("Optional input parameters",
 				//varDirectInput,
 				//varTool,
 				varUsePackingAnalyzer,
 				varCutBorder,
 				varRemoveSmallCells,
-				varAreaThreshold
+				varAreaThreshold,
+				varEdgeKeyScheme
 				);
 		
 		EzGroup groupInputPrameters = new EzGroup("1. SELECT INPUT FILES",
@@ -238,15 +273,51 @@ public class CellGraph extends EzPlug implements EzStoppable
 		varLambda1 = new EzVarDouble("Min. Distance weight", 1, 0, 10, 0.1);
 		varLambda2 = new EzVarDouble("Overlap Ratio weight", 1, 0, 10, 0.1);
 		
-		varLoadFile = new EzVarFolder("Select csv location", "");
-		varLoadFile.setToolTipText("Choose the folder where the CSV tracking files have been saved");
+		varDriftCompensation = new EzVarBoolean("Compensate tissue drift", false);
+		varDriftCompensation.setToolTipText("Shifts the candidate search by the motion estimated from the previous frames");
+		
+		varOverlapRefinement = new EzVarBoolean("Refine ambiguous links by overlap", true);
+		varOverlapRefinement.setToolTipText("Re-evaluates cells whose best candidates are within 20% with the polygon overlap");
+		
+		varTileTracking = new EzVarBoolean("Track in parallel tiles", false);
+		varTileTracking.setToolTipText("Splits large fields of view in overlapping tiles which are tracked in parallel");
+		varTileSize = new EzVarInteger("\tTile size [px]", 1024, 128, 16384, 64);
+		varTileTracking.addVisibilityTriggerTo(varTileSize, true);
+		
+		varSaveTrackingMetrics = new EzVarBoolean("Save tracking metrics", false);
+		varSaveTrackingMetrics.setToolTipText("Writes stage timings and candidate counts next to the input files");
+		
+		varLoadFile = new EzVarFolder("Select tracking location", "");
+		varLoadFile.setToolTipText("Choose the folder where the CSV or indexed tracking files have been saved");
+		
+		varSweepLinkrange = new EzVarText("Propagation limits", "3, 5");
+		varSweepLambda1 = new EzVarText("Min. Distance weights", "1, 5");
+		varSweepLambda2 = new EzVarText("Overlap Ratio weights", "1");
+		varSweepDummyWeight = new EzVarText("Unlinked node costs", "30");
+		varSweepThreads = new EzVarInteger("Parallel runs",
+				Runtime.getRuntime().availableProcessors(),1,64,1);
+		varSweepThreads.setToolTipText(
+				"All value combinations are tracked with the Hungarian algorithm, results are saved next to the input files");
+		
+		EzGroup groupSweepParameters = new EzGroup("Sweep values (comma separated)",
+				varSweepLinkrange,
+				varSweepLambda1,
+				varSweepLambda2,
+				varSweepDummyWeight,
+				varSweepThreads
+				);
 
 		EzGroup groupTrackingParameters = new EzGroup("Algorithm parameters",
 				varLinkrange,
 				//varDisplacement,
 				//varLambda1,
 				//varLambda2,
-				varBorderEliminationNo
+				varBorderEliminationNo,
+				varDriftCompensation,
+				varOverlapRefinement,
+				varTileTracking,
+				varTileSize,
+				varSaveTrackingMetrics
 				//varBooleanCellIDs,
 				//varBooleanHighlightMistakesBoolean,
 				//varBooleanDrawDisplacement
@@ -255,14 +326,19 @@ public class CellGraph extends EzPlug implements EzStoppable
 		EzGroup groupTracking = new EzGroup("SELECT TRACKING ALGORITHM",
 				varTrackingAlgorithm,
 				groupTrackingParameters,
+				groupSweepParameters,
 				varLoadFile
 				);
 		
-		varTrackingAlgorithm.addVisibilityTriggerTo(varLoadFile, TrackingEnum.LOAD_CSV_FILE);
+		varTrackingAlgorithm.addVisibilityTriggerTo(varLoadFile, TrackingEnum.LOAD_CSV_FILE,TrackingEnum.LOAD_INDEXED_FILE);
 		varTrackingAlgorithm.addVisibilityTriggerTo(groupTrackingParameters, 
-				TrackingEnum.STABLE_MARRIAGE,TrackingEnum.HUNGARIAN);
+				TrackingEnum.STABLE_MARRIAGE,TrackingEnum.HUNGARIAN,TrackingEnum.CENTROID_KD_TREE);
+		varTrackingAlgorithm.addVisibilityTriggerTo(varOverlapRefinement, TrackingEnum.CENTROID_KD_TREE);
+		
+		varTrackingAlgorithm.addVisibilityTriggerTo(groupSweepParameters, TrackingEnum.PARAMETER_SWEEP);
 		
 		groupTrackingParameters.setVisible(false);
+		groupSweepParameters.setVisible(false);
 		
 		return groupTracking;
 	}
@@ -416,6 +492,12 @@ public class CellGraph extends EzPlug implements EzStoppable
 		if(input_file_paths[0].endsWith(".wkt"))
 			varInput.setValue(InputType.WKT);
 		
+		if(input_file_paths[0].endsWith(".wkb"))
+			varInput.setValue(InputType.WKB);
+		
+		if(input_file_paths[0].endsWith(DeltaPolygonExporter.EXTENSION))
+			varInput.setValue(InputType.DELTA);
+		
 		for(int i=0; i< input_file_paths.length; i++ ){
 			
 			String abs_path = input_file_paths[i];
@@ -430,6 +512,14 @@ public class CellGraph extends EzPlug implements EzStoppable
 					return true;
 			}
 			
+			if(varInput.getValue() == InputType.WKB ||
+					varInput.getValue() == InputType.DELTA){
+				String export_folder = varFile.getValue().getParent();
+				File expected_wkb_file = new File(String.format("%s/border_%03d.wkb",export_folder,i));
+				if(icyAssert(expected_wkb_file.exists(),"Missing border file: " + expected_wkb_file))
+					return true;
+			}
+			
 		}
 		
 		//Check tracking files if selected
@@ -464,6 +554,35 @@ public class CellGraph extends EzPlug implements EzStoppable
 				if(icyAssert(elimination_file.exists(), "Missing elimination file: "+elimination_file.getAbsolutePath()))
 					return true;
 			}
+			
+			if(varTrackingAlgorithm.getValue() == TrackingEnum.LOAD_INDEXED_FILE){
+				if(icyAssert(varLoadFile.getValue() != null,
+						"Load indexed tracking feature requires an input directory: please review!"))
+					return true;
+				
+				File tracking_file = new File(varLoadFile.getValue(), IndexedTrackWriter.FILE_NAME);
+				if(icyAssert(tracking_file.exists(), "Missing tracking file: "+tracking_file.getAbsolutePath()))
+					return true;
+				
+				int frame_no = IndexedTrackReader.readFrameNo(tracking_file);
+				if(icyAssert(frame_no >= varMaxT.getValue(),
+						"Tracking file is not valid or contains less than "+varMaxT.getValue()+" frames: "+tracking_file.getAbsolutePath()))
+					return true;
+			}
+			
+			if(varTrackingAlgorithm.getValue() == TrackingEnum.PARAMETER_SWEEP){
+				try{
+					createSweepParameters();
+				}
+				catch(NumberFormatException e){
+					icyAssert(false, "Sweep values must be comma separated numbers: please review!");
+					return true;
+				}
+				catch(IllegalArgumentException e){
+					icyAssert(false, "Invalid sweep values: "+e.getMessage());
+					return true;
+				}
+			}
 		}
 
 		return false;
@@ -513,6 +632,7 @@ public class CellGraph extends EzPlug implements EzStoppable
 		
 		SpatioTemporalGraphGenerator stGraphGenerator = 
 				new SpatioTemporalGraphGenerator(graph_type,input_type);
+		stGraphGenerator.getStGraph().setEdgeKeyScheme(varEdgeKeyScheme.getValue());
 		
 		this.getUI().setProgressBarMessage("Creating Spatial Graphs...");
 		for(int i = 0; i< input_file_paths.length; i++){
@@ -546,6 +666,12 @@ public class CellGraph extends EzPlug implements EzStoppable
 			String export_folder = varFile.getValue().getParent();
 			border.markBorderCellsWKT(export_folder);
 		}
+		else if(varInput.getValue() == InputType.WKB ||
+				varInput.getValue() == InputType.DELTA){
+			//assumes the border files are in the same directory of the wkb/delta skeletons
+			String export_folder = varFile.getValue().getParent();
+			border.markBorderCellsWKB(export_folder);
+		}
 		else{
 			if(varCutBorder.getValue())
 				border.removeOneBoundaryLayerFromAllFrames();
@@ -554,7 +680,8 @@ public class CellGraph extends EzPlug implements EzStoppable
 
 			//removing outer layers of first frame to ensure more accurate tracking
 			if(varDoTracking.getValue() && 
-					varTrackingAlgorithm.getValue() != TrackingEnum.LOAD_CSV_FILE)
+					varTrackingAlgorithm.getValue() != TrackingEnum.LOAD_CSV_FILE &&
+					varTrackingAlgorithm.getValue() != TrackingEnum.LOAD_INDEXED_FILE)
 				for(int i=0; i < varBorderEliminationNo.getValue();i++)
 					border.removeOneBoundaryLayerFromFrame(0);
 		}
@@ -572,35 +699,147 @@ public class CellGraph extends EzPlug implements EzStoppable
 
 		TrackingAlgorithm tracker = null;
 
-		switch(varTrackingAlgorithm.getValue()){
-		case STABLE_MARRIAGE:
-			tracker = new StableMarriageTracking(
-					stGraph, 
-					varLinkrange.getValue(),
-					varLambda1.getValue(),
-					varLambda2.getValue());
-			break;
-		case HUNGARIAN:
-			tracker = new HungarianTracking(
+		TrackingEnum algorithm = varTrackingAlgorithm.getValue();
+		boolean graph_based = algorithm != TrackingEnum.LOAD_CSV_FILE && 
+				algorithm != TrackingEnum.LOAD_INDEXED_FILE &&
+				algorithm != TrackingEnum.PARAMETER_SWEEP;
+		
+		if(varTileTracking.getValue() && graph_based){
+			TileTracking tile_tracker = new TileTracking(
 					stGraph, 
-					varLinkrange.getValue(),
-					varLambda1.getValue(),
-					varLambda2.getValue());
-			break;
-		case LOAD_CSV_FILE:
-			String output_folder = varLoadFile.getValue().getAbsolutePath();
-			tracker = new CsvTrackReader(stGraph, output_folder);
-			break;
+					new TrackingParameters(algorithm, 
+							varLinkrange.getValue(),
+							varLambda1.getValue(),
+							varLambda2.getValue(),
+							30.0),
+					varTileSize.getValue(),
+					varTileSize.getValue() / 8.0,
+					Runtime.getRuntime().availableProcessors());
+			if(varDriftCompensation.getValue())
+				tile_tracker.setDriftCompensation(100.0);
+			if(algorithm == TrackingEnum.CENTROID_KD_TREE && varOverlapRefinement.getValue())
+				tile_tracker.setOverlapRefinement(1.2);
+			tracker = tile_tracker;
+		}
+		else{
+			switch(algorithm){
+			case STABLE_MARRIAGE:
+				tracker = new StableMarriageTracking(
+						stGraph, 
+						varLinkrange.getValue(),
+						varLambda1.getValue(),
+						varLambda2.getValue());
+				break;
+			case HUNGARIAN:
+				tracker = new HungarianTracking(
+						stGraph, 
+						varLinkrange.getValue(),
+						varLambda1.getValue(),
+						varLambda2.getValue());
+				break;
+			case CENTROID_KD_TREE:
+				CentroidTracking centroid_tracker = new CentroidTracking(
+						stGraph, 
+						varLinkrange.getValue(),
+						varLambda1.getValue(),
+						varLambda2.getValue());
+				if(varOverlapRefinement.getValue())
+					centroid_tracker.setOverlapRefinement(1.2);
+				tracker = centroid_tracker;
+				break;
+			case LOAD_CSV_FILE:
+				String output_folder = varLoadFile.getValue().getAbsolutePath();
+				tracker = new CsvTrackReader(stGraph, output_folder);
+				break;
+			case LOAD_INDEXED_FILE:
+				tracker = new IndexedTrackReader(stGraph, varLoadFile.getValue().getAbsolutePath());
+				break;
+			case PARAMETER_SWEEP:
+				applyParameterSweep(stGraph);
+				return;
+			}
+		}
+
+		//displacement field with 100px bins, i.e. a few cells per bin
+		if(varDriftCompensation.getValue() && tracker instanceof GraphTracking)
+			((GraphTracking)tracker).setDriftCompensation(100.0);
+		
+		TrackingMetricsRecorder metrics = null;
+		if(varSaveTrackingMetrics.getValue()){
+			metrics = new TrackingMetricsRecorder();
+			tracker.setMetrics(metrics);
 		}
 
 		// TODO try&catch
-		tracker.track();
+		GraphLocks.lockFrames(stGraph);
+		try{
+			tracker.track();
+		}
+		finally{
+			GraphLocks.unlockFrames(stGraph);
+		}
 		stGraph.setTracking(true);
+		
+		if(metrics != null){
+			String export_folder = varFile.getValue().getParent();
+			metrics.writeCsv(new File(export_folder, "tracking_metrics.csv"));
+			metrics.writeJson(new File(export_folder, "tracking_metrics.json"));
+		}
 
 		paintTrackingResult(stGraph);
 
 	}
 
+	/**
+	 * @return all combinations of the sweep values
+	 * @throws NumberFormatException if a sweep value list cannot be parsed
+	 * @throws IllegalArgumentException if a sweep value is out of range
+	 */
+	private List<TrackingParameters> createSweepParameters() throws IllegalArgumentException{
+		double[] linkrange_values = TrackingParameterSweep.parseValues(varSweepLinkrange.getValue());
+		int[] linkranges = new int[linkrange_values.length];
+		for(int i=0; i < linkranges.length; i++)
+			linkranges[i] = Math.max(1, (int)linkrange_values[i]);
+		
+		return TrackingParameterSweep.grid(
+				TrackingEnum.HUNGARIAN,
+				linkranges,
+				TrackingParameterSweep.parseValues(varSweepLambda1.getValue()),
+				TrackingParameterSweep.parseValues(varSweepLambda2.getValue()),
+				TrackingParameterSweep.parseValues(varSweepDummyWeight.getValue()));
+	}
+	
+	/**
+	 * Tracks copies of the graph with all sweep parameter combinations 
+	 * and saves the outcome next to the input files. The input graph
+	 * itself stays untracked.
+	 * 
+	 * @param stGraph the graph to evaluate the parameters on
+	 */
+	private void applyParameterSweep(SpatioTemporalGraph stGraph){
+		
+		List<TrackingParameters> parameters = createSweepParameters();
+		this.getUI().setProgressBarMessage(
+				String.format("Tracking %d parameter sets...", parameters.size()));
+		
+		long start = System.currentTimeMillis();
+		List<TrackingSweepResult> results = 
+				new TrackingParameterSweep(stGraph, parameters).run(varSweepThreads.getValue());
+		long runtime = System.currentTimeMillis() - start;
+		
+		for(TrackingSweepResult result: results)
+			System.out.println(result);
+		
+		File sweep_file = new File(varFile.getValue().getParent(), "tracking_sweep.csv");
+		TrackingParameterSweep.writeCsv(results, sweep_file);
+		
+		new AnnounceFrame(String.format(Locale.US, 
+				"Evaluated %d parameter sets in %.1f s, results saved to %s",
+				results.size(), runtime / 1000.0, sweep_file.getAbsolutePath()), 10);
+		
+		sequence.addOverlay(new PolygonOverlay(stGraph,Color.red));
+	}
+
 	/**
 	 * Add an overlay to the sequence displaying the tracking results
 	 * 
@@ -112,6 +112,7 @@ public class CellOverlay extends EzPlug implements EzVarListener<OverlayEnum>{
 	EzVarEnum<IntensitySummaryType> varIntensityMeasure_ECT;
 	EzVarDouble 					varTopPercent;
 	EzVarBoolean 				varAddRoi;
+	EzVarBoolean 				varSinglePass_ECT;
 
 	//T1 Transition
 	public EzVarInteger 		varMinimalTransitionLength;
@@ -125,6 +126,7 @@ public class CellOverlay extends EzPlug implements EzVarListener<OverlayEnum>{
 	EzVarInteger 				varIntegerChannel;
 	EzVarEnum<IntensitySummaryType>	varIntensityMeasure_EI;
 	private EzVarBoolean varBooleanMeasureAll;
+	EzVarBoolean 				varSinglePass_EI;
 	
 	//Graph Export
 	EzVarEnum<ExportFieldType>  varExportType;
@@ -284,10 +286,13 @@ public class CellOverlay extends EzPlug implements EzVarListener<OverlayEnum>{
 		varEdgeChannel = new EzVarInteger("Color Channel",0,0,10,1);
 		varIntensityMeasure_ECT = new EzVarEnum<IntensitySummaryType>(
 				"Intensity Measurement", IntensitySummaryType.values(), IntensitySummaryType.Mean);
+		varSinglePass_ECT = new EzVarBoolean("Single pass measurement", true);
+		varSinglePass_ECT.setToolTipText("measure all tagged edges of a frame from one label image");
 		
 		EzGroup groupEdgeMeasure = new EzGroup("Measurement parameters",
 				varEdgeChannel,
-				varIntensityMeasure_ECT);
+				varIntensityMeasure_ECT,
+				varSinglePass_ECT);
 		
 		EzGroup groupEdgeMarker = new EzGroup("Overlay elements",
 				varEdgeColor,
@@ -314,10 +319,12 @@ public class CellOverlay extends EzPlug implements EzVarListener<OverlayEnum>{
 		varBooleanMeasureAll = new EzVarBoolean("Measure all frames",false);
 		varBooleanNormalize = new EzVarBoolean("Measure relative intensity",false);
 		varFillingCheckbox = new EzVarBoolean("Fill edge masks", true);
+		varSinglePass_EI = new EzVarBoolean("Single pass measurement", true);
 		EzGroup groupEdgeIntensity = new EzGroup("Edge Intensity elements",
 				varEnvelopeBuffer2,
 				varIntegerChannel,
 				varIntensityMeasure_EI,
+				varSinglePass_EI,
 				varBooleanMeasureAll,
 				varBooleanNormalize,
 				varFillingCheckbox
@@ -551,15 +558,20 @@ public class CellOverlay extends EzPlug implements EzVarListener<OverlayEnum>{
 					true);
 			break;
 		case EDGE_INTENSITY:
-			sequence.addOverlay(
-					new EdgeIntensityOverlay(
-							stGraph, sequence, this.getUI(),
-							varFillingCheckbox,
-							varEnvelopeBuffer2,
-							varIntensityMeasure_EI,
-							varBooleanMeasureAll.getValue(),
-							varBooleanNormalize.getValue(),
-							varIntegerChannel.getValue()));
+			EdgeIntensityOverlay edgeIntensityOverlay = new EdgeIntensityOverlay(
+					stGraph, sequence, this.getUI(),
+					varFillingCheckbox,
+					varEnvelopeBuffer2,
+					varIntensityMeasure_EI,
+					varBooleanMeasureAll.getValue(),
+					varBooleanNormalize.getValue(),
+					varIntegerChannel.getValue(),
+					varSinglePass_EI.getValue());
+			sequence.addOverlay(edgeIntensityOverlay);
+			
+			//frames are displayed as soon as they are measured
+			edgeIntensityOverlay.measureFrames(
+					Runtime.getRuntime().availableProcessors());
 			break;
 
 		case CELL_GRAPH_VIEW:	
@@ -589,7 +601,8 @@ public class CellOverlay extends EzPlug implements EzVarListener<OverlayEnum>{
 							sequence,varIntensityMeasure_ECT,
 							varEdgeChannel,
 							varTopPercent,
-							varAddRoi));
+							varAddRoi,
+							varSinglePass_ECT));
 			break;
 
 		case TRACKING_CORRECTION_HINTS:
@@ -669,16 +682,15 @@ public class CellOverlay extends EzPlug implements EzVarListener<OverlayEnum>{
 	 * @param sequence to add the overlay on
 	 */
 	private void voronoiMode(SpatioTemporalGraph stGraph, Sequence sequence){
-		VoronoiGenerator voronoiDiagram = new VoronoiGenerator(stGraph,sequence);
-	
 		if(varBooleanVoronoiDiagram.getValue()){
 			Overlay voronoiCells = new VoronoiOverlay(
 					stGraph, 
-					voronoiDiagram.getNodeVoroniMapping());
+					sequence);
 			sequence.addOverlay(voronoiCells);
 		}
 	
 		if(varBooleanAreaDifference.getValue()){
+			VoronoiGenerator voronoiDiagram = new VoronoiGenerator(stGraph,sequence);
 			Overlay voronoiDifference = new VoronoiAreaDifferenceOverlay(
 					stGraph, 
 					voronoiDiagram.getAreaDifference());
@@ -1,10 +1,13 @@
 package plugins.davhelle.cellgraph.export;
 
 import plugins.davhelle.cellgraph.io.CsvTrackWriter;
+import plugins.davhelle.cellgraph.io.DeltaPolygonExporter;
+import plugins.davhelle.cellgraph.io.IndexedTrackWriter;
 import plugins.davhelle.cellgraph.io.PdfPrinter;
 import plugins.davhelle.cellgraph.io.PresetWriter;
 import plugins.davhelle.cellgraph.io.SkeletonWriter;
 import plugins.davhelle.cellgraph.io.SummaryWriter;
+import plugins.davhelle.cellgraph.io.WkbPolygonExporter;
 import plugins.davhelle.cellgraph.io.WktPolygonExporter;
 
 /**
@@ -39,11 +42,26 @@ public enum ExportEnum {
 	 */
 	WKT_SKELETONS(WktPolygonExporter.DESCRIPTION),
 	
+	/**
+	 * Well Known Binary (WKB) skeleton exporter using {@link WkbPolygonExporter}
+	 */
+	WKB_SKELETONS(WkbPolygonExporter.DESCRIPTION),
+	
+	/**
+	 * Temporal delta skeleton exporter using {@link DeltaPolygonExporter}
+	 */
+	DELTA_SKELETONS(DeltaPolygonExporter.DESCRIPTION),
+	
 	/**
 	 * CSV based Tracking file export using {@link CsvTrackWriter}
 	 */
 	CSV_TRACKING(CsvTrackWriter.DESCRIPTION),
 	
+	/**
+	 * Single file tracking export using {@link IndexedTrackWriter}
+	 */
+	INDEXED_TRACKING(IndexedTrackWriter.DESCRIPTION),
+	
 	/**
 	 * Preset exporter using {@link PresetWriter}
 	 */
@@ -0,0 +1,200 @@
+package plugins.davhelle.cellgraph.graphs;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import plugins.davhelle.cellgraph.nodes.Edge;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+/**
+ * Immutable adjacency snapshot of a {@link FrameGraph} in compressed
+ * sparse row (CSR) form for read-only analysis passes.<br><br>
+ *
+ * Every node receives a dense id (0..n-1) following the vertex order of
+ * the frame, every edge a dense id following the edge order. The
+ * neighbors of node i are found at positions
+ * {@link #start(int)} (inclusive) to {@link #end(int)} (exclusive):
+ *
+ * <pre>
+ * for(int k = adjacency.start(i); k &lt; adjacency.end(i); k++){
+ * 	Node neighbor = adjacency.getNode(adjacency.target(k));
+ * 	Edge edge = adjacency.getEdge(adjacency.edge(k));
+ * }
+ * </pre>
+ *
+ * The iteration does not allocate any object. The snapshot is obtained
+ * with {@link FrameGraph#getAdjacency()} and replaced automatically
+ * after a change of the frame's vertices or edges.
+ *
+ * @author Davide Heller
+ *
+ */
+public class FrameAdjacency {
+
+	private final Node[] nodes;
+	private final Edge[] edges;
+	private final Map<Node, Integer> node_ids;
+
+	/**
+	 * Position of the first neighbor of every node, length n+1
+	 */
+	private final int[] offsets;
+
+	/**
+	 * Neighbor node id at every position
+	 */
+	private final int[] targets;
+
+	/**
+	 * Connecting edge id at every position
+	 */
+	private final int[] edge_ids;
+
+	/**
+	 * Builds the snapshot of the current frame state
+	 *
+	 * @param frame frame to freeze
+	 */
+	FrameAdjacency(FrameGraph frame) {
+
+		int node_no = frame.vertexSet().size();
+		int edge_no = frame.edgeSet().size();
+
+		this.nodes = new Node[node_no];
+		this.edges = new Edge[edge_no];
+		this.node_ids = new HashMap<Node, Integer>(2 * node_no);
+
+		int i = 0;
+		for(Node n: frame.vertexSet()){
+			nodes[i] = n;
+			node_ids.put(n, i);
+			i++;
+		}
+
+		//count the degrees
+		int[] sources = new int[edge_no];
+		int[] sinks = new int[edge_no];
+		this.offsets = new int[node_no + 1];
+
+		int j = 0;
+		for(Edge e: frame.edgeSet()){
+			edges[j] = e;
+			sources[j] = node_ids.get(frame.getEdgeSource(e));
+			sinks[j] = node_ids.get(frame.getEdgeTarget(e));
+			offsets[sources[j] + 1]++;
+			offsets[sinks[j] + 1]++;
+			j++;
+		}
+
+		for(i = 0; i < node_no; i++)
+			offsets[i + 1] += offsets[i];
+
+		//fill both directions of every edge
+		this.targets = new int[2 * edge_no];
+		this.edge_ids = new int[2 * edge_no];
+		int[] next = new int[node_no];
+		System.arraycopy(offsets, 0, next, 0, node_no);
+
+		for(j = 0; j < edge_no; j++){
+			int a = next[sources[j]]++;
+			targets[a] = sinks[j];
+			edge_ids[a] = j;
+
+			int b = next[sinks[j]]++;
+			targets[b] = sources[j];
+			edge_ids[b] = j;
+		}
+	}
+
+	/**
+	 * @return no. of nodes
+	 */
+	public int getNodeNo(){
+		return nodes.length;
+	}
+
+	/**
+	 * @return no. of edges
+	 */
+	public int getEdgeNo(){
+		return edges.length;
+	}
+
+	/**
+	 * @param node_id dense node id
+	 * @return node with the id
+	 */
+	public Node getNode(int node_id){
+		return nodes[node_id];
+	}
+
+	/**
+	 * @param edge_id dense edge id
+	 * @return edge with the id
+	 */
+	public Edge getEdge(int edge_id){
+		return edges[edge_id];
+	}
+
+	/**
+	 * @param node node of the frame
+	 * @return dense id of the node or -1 if the node is not part of the snapshot
+	 */
+	public int getId(Node node){
+		Integer id = node_ids.get(node);
+		return id == null ? -1 : id.intValue();
+	}
+
+	/**
+	 * @param node_id dense node id
+	 * @return no. of neighbors
+	 */
+	public int getDegree(int node_id){
+		return offsets[node_id + 1] - offsets[node_id];
+	}
+
+	/**
+	 * @param node_id dense node id
+	 * @return position of the first neighbor
+	 */
+	public int start(int node_id){
+		return offsets[node_id];
+	}
+
+	/**
+	 * @param node_id dense node id
+	 * @return position after the last neighbor
+	 */
+	public int end(int node_id){
+		return offsets[node_id + 1];
+	}
+
+	/**
+	 * @param position neighbor position, see {@link #start(int)}
+	 * @return dense id of the neighbor node
+	 */
+	public int target(int position){
+		return targets[position];
+	}
+
+	/**
+	 * @param position neighbor position, see {@link #start(int)}
+	 * @return dense id of the connecting edge
+	 */
+	public int edge(int position){
+		return edge_ids[position];
+	}
+
+	/**
+	 * @param a dense id of the first node
+	 * @param b dense id of the second node
+	 * @return true if the nodes are neighbors
+	 */
+	public boolean areNeighbors(int a, int b){
+		for(int k = offsets[a]; k < offsets[a + 1]; k++)
+			if(targets[k] == b)
+				return true;
+		return false;
+	}
+
+}
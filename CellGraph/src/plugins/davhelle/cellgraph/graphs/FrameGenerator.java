@@ -5,10 +5,12 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 
+import plugins.davhelle.cellgraph.io.DeltaPolygonImporter;
 import plugins.davhelle.cellgraph.io.InputType;
-import plugins.davhelle.cellgraph.io.VtkPolygonReader;
+import plugins.davhelle.cellgraph.io.VtkLegacyPolygonReader;
 import plugins.davhelle.cellgraph.io.PolygonReader;
 import plugins.davhelle.cellgraph.io.SkeletonReader;
+import plugins.davhelle.cellgraph.io.WkbPolygonImporter;
 import plugins.davhelle.cellgraph.io.WktPolygonImporter;
 import plugins.davhelle.cellgraph.nodes.Cell;
 import plugins.davhelle.cellgraph.nodes.ComparablePolygon;
@@ -35,6 +37,11 @@ public class FrameGenerator {
 	PolygonReader polygonReader;
 	PreparedGeometryFactory cached_factory;
 	
+	/**
+	 * Flag to derive neighbors and edge geometries from the shared linework
+	 */
+	boolean use_planar_topology;
+	
 	/**
 	 * Initializes the parameters
 	 * 
@@ -51,21 +58,41 @@ public class FrameGenerator {
 			break;
 		case VTK_MESH:
 			
-			this.polygonReader = new VtkPolygonReader();
+			this.polygonReader = new VtkLegacyPolygonReader();
 			break;
 		
 		case WKT:
 			
 			this.polygonReader = new WktPolygonImporter();
 			break;
+			
+		case WKB:
+			
+			this.polygonReader = new WkbPolygonImporter();
+			break;
+			
+		case DELTA:
+			
+			this.polygonReader = new DeltaPolygonImporter();
+			break;
 		default:
 			break;		
 		}
 		
 		cached_factory = new PreparedGeometryFactory();
+		use_planar_topology = true;
 		
 	}
 	
+	/**
+	 * Choose how the neighborhood is computed, see {@link #populateFrame(FrameGraph, ArrayList)}
+	 * 
+	 * @param use_planar_topology true to use the shared linework, false for geometrical intersections
+	 */
+	public void setPlanarTopology(boolean use_planar_topology){
+		this.use_planar_topology = use_planar_topology;
+	}
+	
 	/**
 	 * Generates a single FrameGraph for the specified time point 
 	 * and absolute file name.
@@ -81,6 +108,10 @@ public class FrameGenerator {
 		frame.setFileSource(file_name);
 		
 		ArrayList<Polygon> polygonMesh = polygonReader.extractPolygons(file_name);
+		if(polygonMesh == null){
+			System.out.println("No polygons could be read from: "+file_name);
+			polygonMesh = new ArrayList<Polygon>();
+		}
 		
 		populateFrame(frame, polygonMesh);
 
@@ -89,16 +120,33 @@ public class FrameGenerator {
 
 	/**
 	 * Fills the frame with the geometries/cells found in the input polygonMesh
-	 * list. It uses the intersection method to determine the connectivity between
-	 * nodes of the CellGraph. An STR tree is used to improve efficiency. 
+	 * list. By default the connectivity, edge geometries and edge lengths (weights)
+	 * are derived from the linework shared by the polygons with a 
+	 * {@link PlanarTopologyBuilder}. If the polygons share no linework
+	 * or the planar topology is disabled the intersection method is used.
 	 * 
 	 * @param frame
 	 * @param polygonMesh
 	 */
 	public void populateFrame(FrameGraph frame, ArrayList<Polygon> polygonMesh) {
 		
-		//insert all polygons into graph as CellPolygons
-		ArrayList<Cell> cell_list = new ArrayList<Cell>();
+		//neighbor index is rebuilt once after all insertions
+		frame.beginBatch();
+		try{
+			fillFrame(frame, polygonMesh);
+		}
+		finally{
+			frame.commitBatch();
+		}
+	}
+	
+	/**
+	 * Inserts the cells and edges, see {@link #populateFrame(FrameGraph, ArrayList)}
+	 * 
+	 * @param frame frame to fill
+	 * @param polygonMesh polygons to insert
+	 */
+	private void fillFrame(FrameGraph frame, ArrayList<Polygon> polygonMesh) {
 		
 		//order polygons according to cell center position
 		//in order to insert them into the graph in geometric order (x,y) 
@@ -109,6 +157,61 @@ public class FrameGenerator {
 		//order polygons according to comparator class
 		Arrays.sort(poly_array);
 		
+		if(use_planar_topology){
+			
+			ArrayList<Polygon> ordered_polygons = new ArrayList<Polygon>(poly_array.length);
+			for(ComparablePolygon polygon: poly_array)
+				ordered_polygons.add(polygon.getPolygon());
+			
+			PlanarTopologyBuilder topology = new PlanarTopologyBuilder(ordered_polygons);
+			
+			if(topology.getSharedSegmentNo() > 0 || ordered_polygons.size() < 2){
+				populateFrame(frame, ordered_polygons, topology);
+				return;
+			}
+			
+			System.out.println("No shared linework found, computing neighbors by intersection");
+		}
+		
+		populateFrameByIntersection(frame, poly_array);
+	}
+	
+	/**
+	 * Fills the frame with the cells and the edges found by the topology
+	 * builder. Edges receive their shared geometry and its length as weight.
+	 * 
+	 * @param frame frame to fill
+	 * @param polygons polygons in insertion order
+	 * @param topology topology of the polygons
+	 */
+	private void populateFrame(FrameGraph frame, ArrayList<Polygon> polygons, PlanarTopologyBuilder topology){
+		
+		Cell[] cells = new Cell[polygons.size()];
+		for(int i=0; i < cells.length; i++){
+			cells[i] = new Cell(polygons.get(i),frame);
+			frame.addVertex(cells[i]);
+		}
+		
+		for(int[] pair: topology.getAdjacentPairs()){
+			Edge newEdge = frame.addEdge(cells[pair[0]], cells[pair[1]]);
+			newEdge.setFrame(frame);
+			newEdge.setGeometry(topology.getSharedEdge(pair[0], pair[1]));
+			frame.setEdgeWeight(newEdge, topology.getSharedLength(pair[0], pair[1]));
+		}
+	}
+	
+	/**
+	 * Fills the frame using the intersection method to determine the connectivity 
+	 * between nodes of the CellGraph. An STR tree is used to improve efficiency. 
+	 * 
+	 * @param frame frame to fill
+	 * @param poly_array polygons in insertion order
+	 */
+	private void populateFrameByIntersection(FrameGraph frame, ComparablePolygon[] poly_array) {
+		
+		//insert all polygons into graph as CellPolygons
+		ArrayList<Cell> cell_list = new ArrayList<Cell>();
+		
 		//obtain the polygons back and create cells & index
 		STRtree index = new STRtree();
 		HashMap<Polygon, Cell> index_to_cell = new HashMap<Polygon, Cell>();
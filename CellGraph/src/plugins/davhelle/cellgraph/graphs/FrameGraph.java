@@ -1,17 +1,28 @@
 package plugins.davhelle.cellgraph.graphs;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.jgrapht.Graphs;
 import org.jgrapht.alg.NeighborIndex;
+import org.jgrapht.event.GraphEdgeChangeEvent;
+import org.jgrapht.event.GraphListener;
+import org.jgrapht.event.GraphVertexChangeEvent;
 import org.jgrapht.graph.ListenableUndirectedWeightedGraph;
 
+import plugins.davhelle.cellgraph.misc.EdgeKeyScheme;
+import plugins.davhelle.cellgraph.nodes.Cell;
 import plugins.davhelle.cellgraph.nodes.Division;
 import plugins.davhelle.cellgraph.nodes.Edge;
 import plugins.davhelle.cellgraph.nodes.Elimination;
 import plugins.davhelle.cellgraph.nodes.Node;
 
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Polygon;
 
 /**
  * Frame Graph represents the polygonal network abstraction of a 
@@ -33,6 +44,24 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 	 */
 	private NeighborIndex<Node, Edge> neighborList;
 	
+	/**
+	 * Nesting depth of {@link #beginBatch()} calls, the 
+	 * neighborList is detached while greater than 0
+	 */
+	private int batch_depth;
+	
+	/**
+	 * Guards the graph against modifications while it is read
+	 * from other threads (e.g. overlays painting on the EDT or
+	 * computing and rasterizing frames in the background)
+	 */
+	private final ReentrantReadWriteLock rw_lock;
+	
+	/**
+	 * Frozen adjacency for read-only analyses, null after a modification
+	 */
+	private volatile FrameAdjacency adjacency;
+	
 	/**
 	 * List of dividing vertices in this frame (tracking required)
 	 */
@@ -53,6 +82,10 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 	 * Linear Ring describing the boundary of the vertex geometries
 	 */
 	private Geometry boundary; 
+	/**
+	 * Pairing used to compute the edge tracking codes
+	 */
+	private EdgeKeyScheme edge_key_scheme;
 	
 	/**
 	 * Constructor builds an empty ListenableUndirectedGraph at first
@@ -68,6 +101,29 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 		//create the neighborIndexList
 		this.neighborList = new NeighborIndex<Node, Edge>(this);
 		this.addGraphListener(neighborList);
+		this.batch_depth = 0;
+		this.rw_lock = new ReentrantReadWriteLock();
+		
+		//discard the adjacency snapshot at every modification
+		this.adjacency = null;
+		this.addGraphListener(new GraphListener<Node, Edge>() {
+			@Override
+			public void vertexAdded(GraphVertexChangeEvent<Node> e) {
+				adjacency = null;
+			}
+			@Override
+			public void vertexRemoved(GraphVertexChangeEvent<Node> e) {
+				adjacency = null;
+			}
+			@Override
+			public void edgeAdded(GraphEdgeChangeEvent<Node, Edge> e) {
+				adjacency = null;
+			}
+			@Override
+			public void edgeRemoved(GraphEdgeChangeEvent<Node, Edge> e) {
+				adjacency = null;
+			}
+		});
 		
 		//initialize division list
 		this.divisions = new ArrayList<Division>();
@@ -75,6 +131,8 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 		
 		//initialize empty boundary
 		this.boundary = null;
+		
+		this.edge_key_scheme = EdgeKeyScheme.CANTOR;
 	}
 	
 	/**
@@ -123,9 +181,101 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 	 * @return List of neighboring vertices
 	 */
 	public java.util.List<Node> getNeighborsOf(Node vertex){
+		if(batch_depth > 0)
+			return Graphs.neighborListOf(this, vertex);
+		
 		return neighborList.neighborListOf(vertex);
 	}
 	
+	/**
+	 * Starts a bulk modification of the graph (e.g. frame construction or
+	 * removal of many cells). The neighbor index is not updated for every
+	 * single vertex and edge change but rebuilt once by {@link #commitBatch()}.
+	 * In the meantime {@link #getNeighborsOf(Node)} reads the neighbors
+	 * directly from the graph. Batches can be nested, every call must be 
+	 * matched by a call to {@link #commitBatch()}, e.g. in a finally block.
+	 * The write lock of the frame is held until the batch is committed.
+	 */
+	public void beginBatch(){
+		rw_lock.writeLock().lock();
+		
+		if(batch_depth == 0)
+			this.removeGraphListener(neighborList);
+		
+		batch_depth++;
+	}
+	
+	/**
+	 * Ends the bulk modification started with {@link #beginBatch()} and 
+	 * rebuilds the neighbor index once the outermost batch is committed
+	 */
+	public void commitBatch(){
+		assert batch_depth > 0: "commitBatch without beginBatch";
+		if(batch_depth == 0)
+			return;
+		
+		batch_depth--;
+		
+		if(batch_depth == 0){
+			//new index is filled lazily at the first neighbor query
+			this.neighborList = new NeighborIndex<Node, Edge>(this);
+			this.addGraphListener(neighborList);
+		}
+		
+		rw_lock.writeLock().unlock();
+	}
+	
+	/**
+	 * Lock to hold while reading the frame from a thread that might run
+	 * concurrently to a modification. Painting code should use 
+	 * {@code tryLock()} and skip the frame while it is modified.
+	 * 
+	 * @return read lock of the frame
+	 */
+	public ReentrantReadWriteLock.ReadLock readLock(){
+		return rw_lock.readLock();
+	}
+	
+	/**
+	 * Lock to hold while modifying the frame (vertices, edges, 
+	 * geometries, tracking links or tags), also on the event dispatch
+	 * thread as overlays read frames in background threads.
+	 * See also {@link GraphLocks} for the whole graph.
+	 * 
+	 * @return write lock of the frame
+	 */
+	public ReentrantReadWriteLock.WriteLock writeLock(){
+		return rw_lock.writeLock();
+	}
+	
+	/**
+	 * Immutable compressed sparse row view of the frame for read-only
+	 * analyses. The snapshot is built at the first request and reused 
+	 * until the vertices or edges of the frame change.
+	 * 
+	 * @return adjacency snapshot of the current frame
+	 */
+	public FrameAdjacency getAdjacency(){
+		FrameAdjacency current = adjacency;
+		if(current == null){
+			synchronized (this) {
+				current = adjacency;
+				if(current == null){
+					current = new FrameAdjacency(this);
+					adjacency = current;
+				}
+			}
+		}
+		return current;
+	}
+	
+	/**
+	 * @return true if a bulk modification is in progress
+	 */
+	public boolean isInBatch(){
+		return batch_depth > 0;
+	}
+	
 	/**
 	 * Methods to obtain the number of nodes in the graph. E.g. Number
 	 * of cells in the tissue represented.
@@ -236,7 +386,7 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 	 * @return true if an edge with the id has been found
 	 */
 	public boolean hasEdgeTrackId(long track_id){
-		int[] node_ids = Edge.getCodePair(track_id);
+		int[] node_ids = Edge.getCodePair(track_id, edge_key_scheme);
 		Node[] nodes = new Node[2];
 		for(int i=0; i<2; i++){
 			if(hasTrackID(node_ids[i]))
@@ -255,7 +405,7 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 	 * @return edge with the specified tracking id, otherwise null (not found)
 	 */
 	public Edge getEdgeWithTrackId(long track_id){
-		int[] node_ids = Edge.getCodePair(track_id);
+		int[] node_ids = Edge.getCodePair(track_id, edge_key_scheme);
 		Node[] nodes = new Node[2];
 		for(int i=0; i<2; i++)
 			nodes[i] = getNode(node_ids[i]);
@@ -263,6 +413,23 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 		return this.getEdge(nodes[0], nodes[1]);
 	}
 
+	/**
+	 * @return pairing used to compute the edge tracking codes
+	 */
+	public EdgeKeyScheme getEdgeKeyScheme() {
+		return edge_key_scheme;
+	}
+	
+	/**
+	 * Changes the pairing of the edge tracking codes. Codes 
+	 * computed with the previous scheme are not converted.
+	 * 
+	 * @param edge_key_scheme pairing to use
+	 */
+	public void setEdgeKeyScheme(EdgeKeyScheme edge_key_scheme) {
+		this.edge_key_scheme = edge_key_scheme;
+	}
+
 	/**
 	 * Specify the geometrical boundary of the frame
 	 * 
@@ -286,6 +453,75 @@ public class FrameGraph extends ListenableUndirectedWeightedGraph<Node, Edge> {
 		return boundary != null;
 	}
 
+	/**
+	 * Creates an untracked copy of the spatial graph. Cell geometries
+	 * are cloned, vertices are inserted in the same order as in this
+	 * frame and the boundary flags and edge weights are kept.
+	 * No temporal information is copied.
+	 * 
+	 * @return independent copy of the spatial graph
+	 */
+	public FrameGraph copySpatialGraph(){
+		return copySpatialGraph(this.vertexSet(), new HashMap<Node, Node>());
+	}
+	
+	/**
+	 * Creates an untracked copy of a part of the spatial graph, 
+	 * see {@link #copySpatialGraph()}. Only edges between
+	 * selected vertices are copied.
+	 * 
+	 * @param selection vertices of this frame to be copied
+	 * @param copies filled with the mapping from original to copied vertex
+	 * @return independent copy of the selected subgraph
+	 */
+	public FrameGraph copySpatialGraph(Collection<Node> selection, Map<Node, Node> copies){
+		
+		FrameGraph copy = new FrameGraph(frame_no);
+		copy.file_source = this.file_source;
+		copy.edge_key_scheme = this.edge_key_scheme;
+		if(hasBoundary())
+			copy.boundary = (Geometry)boundary.clone();
+		
+		copy.beginBatch();
+		try{
+			copyInto(copy, selection, copies);
+		}
+		finally{
+			copy.commitBatch();
+		}
+		
+		return copy;
+	}
+	
+	/**
+	 * Copies the selected vertices and their edges
+	 * 
+	 * @param copy frame to fill
+	 * @param selection vertices of this frame to be copied
+	 * @param copies filled with the mapping from original to copied vertex
+	 */
+	private void copyInto(FrameGraph copy, Collection<Node> selection, Map<Node, Node> copies){
+		
+		for(Node n: selection){
+			Cell c = new Cell((Polygon)n.getGeometry().clone(), copy);
+			c.setBoundary(n.onBoundary());
+			copy.addVertex(c);
+			copies.put(n, c);
+		}
+		
+		for(Edge e: this.edgeSet()){
+			Node source = copies.get(getEdgeSource(e));
+			Node target = copies.get(getEdgeTarget(e));
+			if(source == null || target == null)
+				continue;
+			
+			Edge copied_edge = copy.addEdge(source, target);
+			copy.setEdgeWeight(copied_edge, getEdgeWeight(e));
+			copied_edge.setGeometry(e.getGeometry());
+			copied_edge.setFrame(copy);
+		}
+	}
+
 	public void removeDivision(Division division) {
 		//TODO try & catch
 		assert(divisions.contains(division));
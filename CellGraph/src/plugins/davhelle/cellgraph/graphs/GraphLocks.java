@@ -0,0 +1,41 @@
+package plugins.davhelle.cellgraph.graphs;
+
+/**
+ * Helper to lock all frames of a spatio-temporal graph for operations
+ * that modify several frames at once, e.g. tracking. Overlays skip
+ * the painting of locked frames instead of reading a graph that is
+ * being modified, see {@link FrameGraph#readLock()}.<br><br>
+ *
+ * Frames are always locked in ascending order to avoid deadlocks
+ * between concurrent writers.
+ *
+ * @author Davide Heller
+ *
+ */
+public class GraphLocks {
+
+	/**
+	 * Acquires the write lock of every frame. Must be followed by
+	 * {@link #unlockFrames(SpatioTemporalGraph)}, e.g. in a finally block.
+	 *
+	 * @param stGraph graph to lock
+	 */
+	public static void lockFrames(SpatioTemporalGraph stGraph){
+		for(int i=0; i < stGraph.size(); i++)
+			stGraph.getFrame(i).writeLock().lock();
+	}
+
+	/**
+	 * Releases the write locks acquired by {@link #lockFrames(SpatioTemporalGraph)}
+	 *
+	 * @param stGraph graph to unlock
+	 */
+	public static void unlockFrames(SpatioTemporalGraph stGraph){
+		for(int i=stGraph.size() - 1; i >= 0; i--){
+			FrameGraph frame = stGraph.getFrame(i);
+			if(frame.writeLock().isHeldByCurrentThread())
+				frame.writeLock().unlock();
+		}
+	}
+
+}
@@ -0,0 +1,310 @@
+package plugins.davhelle.cellgraph.graphs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import plugins.davhelle.cellgraph.misc.PackedPairing;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.operation.linemerge.LineMerger;
+
+/**
+ * PlanarTopologyBuilder derives the neighborhood of a polygonal
+ * cell mesh directly from its linework. Polygons generated by
+ * polygonizing a skeleton (or exported from one) share their
+ * boundaries segment by segment, so a single pass over all ring
+ * segments yields:<br>
+ *
+ * <ul>
+ * <li> the adjacent polygon pairs (shared segment or shared vertex)
+ * <li> the shared edge geometry of every pair
+ * <li> the shared edge length of every pair
+ * <li> the junctions, i.e. vertices shared by three or more polygons
+ * </ul>
+ *
+ * This replaces the STRtree query with a geometrical intersects test
+ * per candidate pair and the later intersection of the two polygons
+ * to obtain the edge geometry. Polygons that do not share exact
+ * coordinates (e.g. non noded linework) are not recognized as neighbors.
+ *
+ * @author Davide Heller
+ *
+ */
+public class PlanarTopologyBuilder {
+
+	/**
+	 * Adjacency record of two polygons
+	 */
+	private static class SharedBoundary{
+
+		final int a;
+		final int b;
+		final ArrayList<LineString> segments;
+		final ArrayList<Coordinate> contacts;
+		double length;
+		Geometry geometry;
+
+		SharedBoundary(int a, int b){
+			this.a = a;
+			this.b = b;
+			this.segments = new ArrayList<LineString>();
+			this.contacts = new ArrayList<Coordinate>();
+			this.length = 0;
+			this.geometry = null;
+		}
+	}
+
+	/**
+	 * Undirected segment key with ordered end points
+	 */
+	private static class SegmentKey{
+
+		final Coordinate p0;
+		final Coordinate p1;
+
+		SegmentKey(Coordinate a, Coordinate b){
+			if(a.compareTo(b) <= 0){
+				p0 = a;
+				p1 = b;
+			}
+			else{
+				p0 = b;
+				p1 = a;
+			}
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if(!(o instanceof SegmentKey))
+				return false;
+			SegmentKey other = (SegmentKey)o;
+			return p0.equals2D(other.p0) && p1.equals2D(other.p1);
+		}
+
+		@Override
+		public int hashCode(){
+			return 31 * p0.hashCode() + p1.hashCode();
+		}
+	}
+
+	private final List<? extends Polygon> polygons;
+	private final GeometryFactory factory;
+
+	/**
+	 * Adjacent pairs in order of discovery, keyed by the packed ordered indices
+	 */
+	private final LinkedHashMap<Long, SharedBoundary> boundaries;
+
+	/**
+	 * Vertices shared by at least three polygons
+	 */
+	private final LinkedHashMap<Coordinate, int[]> junctions;
+
+	private int shared_segment_no;
+
+	/**
+	 * Builds the topology of the polygon list
+	 *
+	 * @param polygons cell polygons, indices refer to this list
+	 */
+	public PlanarTopologyBuilder(List<? extends Polygon> polygons){
+		this.polygons = polygons;
+		this.factory = new GeometryFactory();
+		this.boundaries = new LinkedHashMap<Long, SharedBoundary>();
+		this.junctions = new LinkedHashMap<Coordinate, int[]>();
+		this.shared_segment_no = 0;
+
+		build();
+	}
+
+	/**
+	 * Single pass over all ring segments and vertices
+	 */
+	private void build(){
+
+		HashMap<SegmentKey, Integer> segment_owner = new HashMap<SegmentKey, Integer>();
+		LinkedHashMap<Coordinate, ArrayList<Integer>> vertex_owners =
+				new LinkedHashMap<Coordinate, ArrayList<Integer>>();
+
+		for(int i=0; i < polygons.size(); i++){
+			Polygon polygon = polygons.get(i);
+
+			addRing(i, polygon.getExteriorRing(), segment_owner, vertex_owners);
+			for(int h=0; h < polygon.getNumInteriorRing(); h++)
+				addRing(i, polygon.getInteriorRingN(h), segment_owner, vertex_owners);
+		}
+
+		//vertices shared by more than one polygon
+		for(Map.Entry<Coordinate, ArrayList<Integer>> entry: vertex_owners.entrySet()){
+			ArrayList<Integer> owners = entry.getValue();
+			if(owners.size() < 2)
+				continue;
+
+			for(int j=0; j < owners.size(); j++)
+				for(int k=j+1; k < owners.size(); k++){
+					SharedBoundary boundary = getOrCreate(owners.get(j), owners.get(k));
+					if(boundary.segments.isEmpty())
+						boundary.contacts.add(entry.getKey());
+				}
+
+			if(owners.size() > 2){
+				int[] junction_polygons = new int[owners.size()];
+				for(int j=0; j < junction_polygons.length; j++)
+					junction_polygons[j] = owners.get(j);
+				junctions.put(entry.getKey(), junction_polygons);
+			}
+		}
+	}
+
+	/**
+	 * Registers the segments and vertices of a ring
+	 */
+	private void addRing(int polygon_id, LineString ring,
+			HashMap<SegmentKey, Integer> segment_owner,
+			LinkedHashMap<Coordinate, ArrayList<Integer>> vertex_owners){
+
+		Coordinate[] coordinates = ring.getCoordinates();
+
+		for(int j=0; j < coordinates.length; j++){
+
+			//vertices (the closing coordinate repeats the first)
+			ArrayList<Integer> owners = vertex_owners.get(coordinates[j]);
+			if(owners == null){
+				owners = new ArrayList<Integer>(3);
+				vertex_owners.put(coordinates[j], owners);
+			}
+			if(owners.isEmpty() || owners.get(owners.size() - 1) != polygon_id)
+				owners.add(polygon_id);
+
+			//segments
+			if(j == 0 || coordinates[j-1].equals2D(coordinates[j]))
+				continue;
+
+			SegmentKey key = new SegmentKey(coordinates[j-1], coordinates[j]);
+			Integer owner = segment_owner.get(key);
+			if(owner == null)
+				segment_owner.put(key, polygon_id);
+			else if(owner != polygon_id){
+				SharedBoundary boundary = getOrCreate(owner, polygon_id);
+				boundary.segments.add(factory.createLineString(
+						new Coordinate[]{key.p0, key.p1}));
+				boundary.length += key.p0.distance(key.p1);
+				shared_segment_no++;
+			}
+		}
+	}
+
+	private SharedBoundary getOrCreate(int a, int b){
+		int min = Math.min(a, b);
+		int max = Math.max(a, b);
+		long key = PackedPairing.compute(min, max);
+
+		SharedBoundary boundary = boundaries.get(key);
+		if(boundary == null){
+			boundary = new SharedBoundary(min, max);
+			boundaries.put(key, boundary);
+		}
+		return boundary;
+	}
+
+	private SharedBoundary get(int a, int b){
+		return boundaries.get(PackedPairing.compute(Math.min(a, b), Math.max(a, b)));
+	}
+
+	/**
+	 * @return no. of segments shared by two polygons, 0 suggests non noded input
+	 */
+	public int getSharedSegmentNo(){
+		return shared_segment_no;
+	}
+
+	/**
+	 * @return pairs of adjacent polygon indices (smaller index first) in order of discovery
+	 */
+	public List<int[]> getAdjacentPairs(){
+		List<int[]> pairs = new ArrayList<int[]>(boundaries.size());
+		for(SharedBoundary boundary: boundaries.values())
+			pairs.add(new int[]{boundary.a, boundary.b});
+		return pairs;
+	}
+
+	/**
+	 * @param a polygon index
+	 * @param b polygon index
+	 * @return true if the polygons share a segment or a vertex
+	 */
+	public boolean areAdjacent(int a, int b){
+		return get(a, b) != null;
+	}
+
+	/**
+	 * @param a polygon index
+	 * @param b polygon index
+	 * @return length of the shared boundary, 0 for point contacts or non adjacent polygons
+	 */
+	public double getSharedLength(int a, int b){
+		SharedBoundary boundary = get(a, b);
+		return boundary == null ? 0 : boundary.length;
+	}
+
+	/**
+	 * Merged shared linework of two polygons, equivalent to the line
+	 * part of their geometrical intersection. Point contacts are
+	 * returned as (multi)point.
+	 *
+	 * @param a polygon index
+	 * @param b polygon index
+	 * @return shared boundary geometry or null if not adjacent
+	 */
+	public Geometry getSharedEdge(int a, int b){
+		SharedBoundary boundary = get(a, b);
+		if(boundary == null)
+			return null;
+
+		if(boundary.geometry == null){
+			if(!boundary.segments.isEmpty()){
+				LineMerger merger = new LineMerger();
+				merger.add(boundary.segments);
+
+				@SuppressWarnings("unchecked")
+				Collection<LineString> merged = merger.getMergedLineStrings();
+				if(merged.size() == 1)
+					boundary.geometry = merged.iterator().next();
+				else
+					boundary.geometry = factory.createMultiLineString(
+							merged.toArray(new LineString[merged.size()]));
+			}
+			else if(boundary.contacts.size() == 1)
+				boundary.geometry = factory.createPoint(boundary.contacts.get(0));
+			else
+				boundary.geometry = factory.createMultiPoint(
+						boundary.contacts.toArray(new Coordinate[boundary.contacts.size()]));
+		}
+
+		return boundary.geometry;
+	}
+
+	/**
+	 * @return coordinates of the vertices shared by at least three polygons
+	 */
+	public Collection<Coordinate> getJunctions(){
+		return junctions.keySet();
+	}
+
+	/**
+	 * @param junction junction coordinate
+	 * @return indices of the polygons meeting at the junction or null
+	 */
+	public int[] getJunctionPolygons(Coordinate junction){
+		return junctions.get(junction);
+	}
+
+}
@@ -1,5 +1,7 @@
 package plugins.davhelle.cellgraph.graphs;
 
+import plugins.davhelle.cellgraph.misc.EdgeKeyScheme;
+
 /**
  * Parent class of {@link FrameGraph} containing all frames belonging 
  * to one series. With the frames being tracked, a temporal connectivity is
@@ -88,5 +90,18 @@ public interface SpatioTemporalGraph {
 	 * @param new_state
 	 */
 	public void setEllipseFitting(boolean new_state);
+	
+	/**
+	 * @return pairing used to compute the edge tracking codes
+	 */
+	public EdgeKeyScheme getEdgeKeyScheme();
+	
+	/**
+	 * Set the pairing used to compute the edge tracking codes
+	 * for all present and future frames
+	 * 
+	 * @param scheme pairing to use
+	 */
+	public void setEdgeKeyScheme(EdgeKeyScheme scheme);
 
 }
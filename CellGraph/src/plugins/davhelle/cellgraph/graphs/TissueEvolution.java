@@ -2,6 +2,8 @@ package plugins.davhelle.cellgraph.graphs;
 
 import java.util.ArrayList;
 
+import plugins.davhelle.cellgraph.misc.EdgeKeyScheme;
+
 /**
  * Standard implementation of StGraph for representing developing tissues
  * like the imaginal wing disk of Drosophila melanogaster.
@@ -33,6 +35,11 @@ public class TissueEvolution implements SpatioTemporalGraph {
 	 */
 	private int newTrackingID;
 	
+	/**
+	 * Pairing used for the edge tracking codes of all frames
+	 */
+	private EdgeKeyScheme edge_key_scheme;
+	
 	/**
 	 * Initialization with number of time points
 	 */
@@ -41,6 +48,7 @@ public class TissueEvolution implements SpatioTemporalGraph {
 		this.has_voronoi = false;
 		this.has_ellipse_fitting = false;
 		this.newTrackingID = 0;
+		this.edge_key_scheme = EdgeKeyScheme.CANTOR;
 		this.frames = new ArrayList<FrameGraph>(time_points);
 	}
 	
@@ -64,6 +72,7 @@ public class TissueEvolution implements SpatioTemporalGraph {
 	 */
 	@Override
 	public void setFrame(FrameGraph graph, int frame_no) {
+		graph.setEdgeKeyScheme(edge_key_scheme);
 		if(frames.size() > frame_no)
 			frames.set(frame_no, graph);
 		else
@@ -71,6 +80,7 @@ public class TissueEvolution implements SpatioTemporalGraph {
 	}
 	
 	public void addFrame(FrameGraph graph){
+		graph.setEdgeKeyScheme(edge_key_scheme);
 		frames.add(graph);
 	}
 
@@ -124,4 +134,16 @@ public class TissueEvolution implements SpatioTemporalGraph {
 		newTrackingID = trackingId + 1;
 	}
 
+	@Override
+	public EdgeKeyScheme getEdgeKeyScheme() {
+		return edge_key_scheme;
+	}
+
+	@Override
+	public void setEdgeKeyScheme(EdgeKeyScheme scheme) {
+		this.edge_key_scheme = scheme;
+		for(FrameGraph frame: frames)
+			frame.setEdgeKeyScheme(scheme);
+	}
+
 }
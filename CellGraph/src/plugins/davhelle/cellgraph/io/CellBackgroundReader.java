@@ -0,0 +1,163 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.util.Arrays;
+
+/**
+ * Raster replacement of the per cell ROI algebra used for the relative
+ * edge intensity (Fernandez-Gonzalez et al. Dev.Cell 2009). Given a label
+ * image of the cells and one of the edge envelopes, a single scan of
+ * the channel plane yields for every cell:<br>
+ *
+ * <ul>
+ * <li> the edge band: union of the envelopes of the cell's own edges
+ * <li> the interior: cell pixels outside of its edge band
+ * </ul>
+ *
+ * Every pixel contributes at most once to the band of a cell, even if
+ * covered by several of its edge envelopes.
+ *
+ * @author Davide Heller
+ *
+ */
+public class CellBackgroundReader {
+
+	private final LabelImageIntensityReader cell_image;
+	private final LabelImageIntensityReader edge_image;
+
+	/**
+	 * Cell labels flanking every edge label, 0 if unknown
+	 */
+	private int[] edge_cells;
+
+	private LabelStatistics interior;
+	private LabelStatistics band;
+
+	/**
+	 * @param cell_image label image of the cell shapes
+	 * @param edge_image label image of the edge envelopes, same size
+	 */
+	public CellBackgroundReader(
+			LabelImageIntensityReader cell_image,
+			LabelImageIntensityReader edge_image) {
+
+		assert cell_image.getLabelImage().length == edge_image.getLabelImage().length:
+			"Label images of different size";
+
+		this.cell_image = cell_image;
+		this.edge_image = edge_image;
+		this.edge_cells = new int[2 * (edge_image.getLabelNo() + 1)];
+	}
+
+	/**
+	 * Links an edge envelope to its two cells
+	 *
+	 * @param edge_label label of the edge in the edge image
+	 * @param cell_a label of the first cell in the cell image
+	 * @param cell_b label of the second cell in the cell image
+	 */
+	public void setEdgeCells(int edge_label, int cell_a, int cell_b){
+		if(2 * edge_label + 1 >= edge_cells.length)
+			edge_cells = Arrays.copyOf(edge_cells, 2 * (edge_image.getLabelNo() + 1));
+		edge_cells[2 * edge_label] = cell_a;
+		edge_cells[2 * edge_label + 1] = cell_b;
+	}
+
+	/**
+	 * Accumulates interior and band statistics of all cells
+	 *
+	 * @param data channel plane in row major order
+	 */
+	public void measure(double[] data){
+
+		int[] cells = cell_image.getLabelImage();
+		int[] edges = edge_image.getLabelImage();
+		long[] cell_overlaps = cell_image.getSortedOverlaps();
+		long[] edge_overlaps = edge_image.getSortedOverlaps();
+
+		int cell_no = cell_image.getLabelNo();
+		interior = new LabelStatistics(cell_no);
+		band = new LabelStatistics(cell_no);
+
+		//last pixel added to the band of each cell
+		int[] band_stamp = new int[cell_no + 1];
+		Arrays.fill(band_stamp, -1);
+
+		int next_edge_overlap = 0;
+		int next_cell_overlap = 0;
+
+		for(int p=0; p < data.length; p++){
+
+			double value = data[p];
+
+			if(edges[p] != LabelImageIntensityReader.BACKGROUND){
+				addToBands(edges[p], p, value, band_stamp);
+				while(next_edge_overlap < edge_overlaps.length &&
+						(int)(edge_overlaps[next_edge_overlap] >>> 32) == p){
+					addToBands((int)edge_overlaps[next_edge_overlap], p, value, band_stamp);
+					next_edge_overlap++;
+				}
+			}
+
+			if(cells[p] != LabelImageIntensityReader.BACKGROUND){
+				addToInterior(cells[p], p, value, band_stamp);
+				while(next_cell_overlap < cell_overlaps.length &&
+						(int)(cell_overlaps[next_cell_overlap] >>> 32) == p){
+					addToInterior((int)cell_overlaps[next_cell_overlap], p, value, band_stamp);
+					next_cell_overlap++;
+				}
+			}
+		}
+	}
+
+	private void addToBands(int edge_label, int p, double value, int[] band_stamp){
+		for(int i=0; i < 2; i++){
+			int cell = edge_label < edge_cells.length / 2 ? edge_cells[2 * edge_label + i] : 0;
+			if(cell != 0 && band_stamp[cell] != p){
+				band_stamp[cell] = p;
+				band.accumulate(cell, value);
+			}
+		}
+	}
+
+	private void addToInterior(int cell, int p, double value, int[] band_stamp){
+		if(band_stamp[cell] != p)
+			interior.accumulate(cell, value);
+	}
+
+	/**
+	 * @param cell_label label of the cell
+	 * @param summaryType statistic to return
+	 * @return intensity of the cell without its edge band, -1.0 if empty
+	 */
+	public double getInteriorIntensity(int cell_label, IntensitySummaryType summaryType){
+		assert interior != null: "Call measure first";
+		return interior.getIntensity(cell_label, summaryType);
+	}
+
+	/**
+	 * @param cell_label label of the cell
+	 * @param summaryType statistic to return
+	 * @return intensity of the union of the cell's edge envelopes, -1.0 if empty
+	 */
+	public double getBandIntensity(int cell_label, IntensitySummaryType summaryType){
+		assert band != null: "Call measure first";
+		return band.getIntensity(cell_label, summaryType);
+	}
+
+	/**
+	 * @param cell_label label of the cell
+	 * @return no. of interior pixels
+	 */
+	public int getInteriorPixelNo(int cell_label){
+		return interior.getCount(cell_label);
+	}
+
+	/**
+	 * @param cell_label label of the cell
+	 * @return no. of edge band pixels
+	 */
+	public int getBandPixelNo(int cell_label){
+		return band.getCount(cell_label);
+	}
+
+}
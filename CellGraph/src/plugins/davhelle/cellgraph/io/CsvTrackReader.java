@@ -5,6 +5,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import plugins.davhelle.cellgraph.export.ExportFieldType;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
@@ -22,6 +29,10 @@ import com.vividsolutions.jts.geom.Point;
  * Simple Reader Class for saved tracking files written by CsvTrackWriter.
  * Extend TrackingAlgorithm such that it can be substituted to a normal tracking algorithm.
  * 
+ * The per frame tracking files are parsed concurrently into primitive
+ * columns (see {@link TrackingColumns}) and then matched to the cells
+ * frame by frame.
+ * 
  * @author Davide Heller
  *
  */
@@ -89,11 +100,53 @@ public class CsvTrackReader extends TrackingAlgorithm{
 	 * Reads coordinates of tracked cells
 	 */
 	public void readTrackingIds(){
-		for(int i=0; i < stGraph.size(); i++){
-			FrameGraph frame = stGraph.getFrame(i);
-			String file_name = input_directory + String.format(tracking_file_pattern,i);
-			File input_file = new File(file_name);
-			read(frame,input_file,ExportFieldType.TRACKING_POSITION);
+		
+		int thread_no = Math.max(1, Math.min(
+				Runtime.getRuntime().availableProcessors(), stGraph.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(thread_no);
+		
+		try{
+			//parse all files concurrently
+			List<Future<TrackingColumns>> parsed_files = new ArrayList<Future<TrackingColumns>>();
+			for(int i=0; i < stGraph.size(); i++){
+				final File input_file = new File(input_directory + String.format(tracking_file_pattern,i));
+				parsed_files.add(executor.submit(new Callable<TrackingColumns>() {
+					@Override
+					public TrackingColumns call() throws IOException {
+						return TrackingColumns.parse(input_file);
+					}
+				}));
+			}
+			
+			//match in temporal order, as every frame links to the previous ones
+			GeometryFactory gf = new GeometryFactory();
+			for(int i=0; i < stGraph.size(); i++){
+				FrameGraph frame = stGraph.getFrame(i);
+				
+				TrackingColumns columns;
+				try{
+					columns = parsed_files.get(i).get();
+				}catch(ExecutionException e){
+					e.getCause().printStackTrace();
+					System.out.printf("Skipping tracking of frame %d, could not read: %s\n",
+							i, input_directory + String.format(tracking_file_pattern,i));
+					continue;
+				}
+				
+				for(int row=0; row < columns.size; row++)
+					applyTrackingPosition(frame, gf,
+							columns.track_ids[row],
+							columns.x[row],
+							columns.y[row],
+							columns.on_border[row]);
+			}
+		
+		}catch(InterruptedException e){
+			System.out.println("Tracking import interrupted: "+input_directory);
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}finally{
+			executor.shutdown();
 		}
 	}
 	
@@ -121,6 +174,143 @@ public class CsvTrackReader extends TrackingAlgorithm{
 		}
 	}
 	
+	/**
+	 * Applies a single tracking position to the cell containing it
+	 * and links the cell to its last occurrence in the previous frames
+	 * 
+	 * @param frame frameGraph to apply the tracking to
+	 * @param gf factory for the position point
+	 * @param cell_id tracking id
+	 * @param cell_x x coordinate of the cell centroid
+	 * @param cell_y y coordinate of the cell centroid
+	 * @param cell_on_border border flag
+	 */
+	protected void applyTrackingPosition(FrameGraph frame, GeometryFactory gf,
+			int cell_id, double cell_x, double cell_y, boolean cell_on_border){
+		
+		Node matching_cell = null;
+		
+		Point point = gf.createPoint(
+				new Coordinate( cell_x, cell_y ));
+		for(Node cell: frame.vertexSet())
+			if(cell.getGeometry().contains(point)){
+				matching_cell = cell;
+				break;
+			}
+		
+		if(matching_cell == null){
+			System.out.printf("Could not find matching cell for:%d [%d,%.2f,%.2f]\n",
+					cell_id,
+					frame.getFrameNo(),
+					cell_x,
+					cell_y);
+			return;
+		}
+		
+		matching_cell.setTrackID(cell_id);
+		matching_cell.setBoundary(cell_on_border);
+		
+		if(frame.getFrameNo() == 0)
+			matching_cell.setFirst(matching_cell);
+		else{
+			Node previous_cell = null;
+			boolean found_ancestor = false;
+			int previous_frame_no = frame.getFrameNo() - 1;
+			
+			while(!found_ancestor && 
+					previous_frame_no >= 0 &&
+					frame.getFrameNo() - previous_frame_no < linkage_threshold){
+				
+				FrameGraph previous_frame = stGraph.getFrame(previous_frame_no);
+				
+				for(Node cell: previous_frame.vertexSet())
+					if(cell.getTrackID() == cell_id){
+						previous_cell = cell;
+						found_ancestor = true;
+						break;
+					}
+				previous_frame_no = previous_frame_no - 1;
+			}
+			
+			if(found_ancestor)
+				updateCorrespondence(matching_cell, previous_cell);
+			else
+				//problem of dividing cells
+				//how to make the daughter cells fall in
+				//in the first if clause
+				//maybe a special clause if you are the *first*
+				matching_cell.setFirst(matching_cell);
+		}			    					    		
+		
+		if(cell_id > highestTrackingId)
+			highestTrackingId = cell_id;
+	}
+	
+	/**
+	 * Links the mother cell to its daughter cells
+	 * 
+	 * @param frame frame in which the mother cell is searched
+	 * @param cell_id tracking id of the mother cell
+	 * @param division_time_point frame of the division
+	 * @param child1_id tracking id of the first daughter cell
+	 * @param child2_id tracking id of the second daughter cell
+	 */
+	protected void applyDivision(FrameGraph frame, int cell_id,
+			int division_time_point, int child1_id, int child2_id){
+		
+		//safety check, skip division if corresponding frame is missing
+		if(division_time_point >= stGraph.size())
+			return;
+		
+		Node mother = null;
+		Node child1 = null;
+		Node child2 = null;
+		
+		for(Node cell:frame.vertexSet())
+			if(cell.getTrackID() == cell_id){
+				mother = cell;
+				break;
+			}
+		
+		FrameGraph division_frame = stGraph.getFrame(division_time_point);
+		
+		for(Node cell:division_frame.vertexSet()){
+			if(cell.getTrackID() == child1_id)
+				child1 = cell;
+			else if(cell.getTrackID() == child2_id)
+				child2 = cell;
+			else if(child1 != null && child2 != null)
+				break;
+		}
+		
+		Node future_mother = getMostRecentCorrespondence(division_time_point, mother);
+		new Division(future_mother,child1,child2);
+	}
+	
+	/**
+	 * Marks the cell as eliminated
+	 * 
+	 * @param cell_id tracking id of the eliminated cell
+	 * @param elimination_frame_no frame of the last occurrence
+	 */
+	protected void applyElimination(int cell_id, int elimination_frame_no){
+		
+		//safety check, skip elimination if corresponding frame is missing
+		if(elimination_frame_no > stGraph.size())
+			return;
+		
+		FrameGraph elimination_frame = stGraph.getFrame(elimination_frame_no);
+		Node eliminated_cell = null;
+		
+		for(Node cell:elimination_frame.vertexSet())
+			if(cell.getTrackID() == cell_id){
+				eliminated_cell = cell;
+				break;
+			}
+		
+		new Elimination(eliminated_cell);
+	}
+	
 	/**
 	 * Reader function to populate individual frames (frameGraphs) of the spatiotemporal graph.
 	 * 
@@ -143,120 +333,20 @@ public class CsvTrackReader extends TrackingAlgorithm{
 			    switch(export_field){
 			    	case TRACKING_POSITION:
 			    		
-			    		double cell_x = Double.parseDouble(content[1]);
-			    		double cell_y = Double.parseDouble(content[2]);
-			    		boolean cell_on_border = Boolean.parseBoolean(content[3]);
-
-			    		Node matching_cell = null;
-			    		
-			    		Point point = gf.createPoint(
-			    				new Coordinate( cell_x, cell_y ));
-			    		for(Node cell: frame.vertexSet())
-			    			if(cell.getGeometry().contains(point)){
-			    				matching_cell = cell;
-			    				break;
-			    			}
-			    		
-			    		if(matching_cell == null){
-			    			System.out.printf("Could not find matching cell for:%d [%d,%.2f,%.2f]\n",
-			    					cell_id,
-			    					frame.getFrameNo(),
-			    					cell_x,
-			    					cell_y);
-			    			continue;
-			    		}
-			    		
-			    		matching_cell.setTrackID(cell_id);
-			    		matching_cell.setBoundary(cell_on_border);
-			    		
-			    		if(frame.getFrameNo() == 0)
-			    			matching_cell.setFirst(matching_cell);
-			    		else{
-			    			Node previous_cell = null;
-			    			boolean found_ancestor = false;
-			    			int previous_frame_no = frame.getFrameNo() - 1;
-			    			
-			    			while(!found_ancestor && 
-			    					previous_frame_no >= 0 &&
-			    					frame.getFrameNo() - previous_frame_no < linkage_threshold){
-
-			    				FrameGraph previous_frame = stGraph.getFrame(previous_frame_no);
-
-			    				for(Node cell: previous_frame.vertexSet())
-			    					if(cell.getTrackID() == cell_id){
-			    						previous_cell = cell;
-			    						found_ancestor = true;
-			    						break;
-			    					}
-			    				previous_frame_no = previous_frame_no - 1;
-			    			}
-			    			
-			    			if(found_ancestor)
-			    				updateCorrespondence(matching_cell, previous_cell);
-			    			else
-			    				//problem of dividing cells
-			    				//how to make the daughter cells fall in
-			    				//in the first if clause
-			    				//maybe a special clause if you are the *first*
-			    				matching_cell.setFirst(matching_cell);
-			    		}			    					    		
-			    		
-			    		if(cell_id > highestTrackingId)
-			    			highestTrackingId = cell_id;
-			    		
+			    		applyTrackingPosition(frame, gf, cell_id,
+			    				Double.parseDouble(content[1]),
+			    				Double.parseDouble(content[2]),
+			    				Boolean.parseBoolean(content[3]));
 			    		break;
 			    	case DIVISION:
-			    		int division_time_point = Integer.parseInt(content[1]);
-			    		
-			    		//safety check, skip division if corresponding frame is missing
-			    		if(division_time_point >= stGraph.size())
-			    			continue;
-			    		
-			    		int child1_id = Integer.parseInt(content[2]);
-			    		int child2_id = Integer.parseInt(content[3]);
-			    		
-			    		Node mother = null;
-			    		Node child1 = null;
-			    		Node child2 = null;
-			    		
-			    		for(Node cell:frame.vertexSet())
-			    			if(cell.getTrackID() == cell_id){
-			    				mother = cell;
-			    				break;
-			    			}
-			    		
-			    		FrameGraph division_frame = stGraph.getFrame(division_time_point);
-			    		
-			    		for(Node cell:division_frame.vertexSet()){
-			    			if(cell.getTrackID() == child1_id)
-			    				child1 = cell;
-			    			else if(cell.getTrackID() == child2_id)
-			    				child2 = cell;
-			    			else if(child1 != null && child2 != null)
-			    				break;
-			    		}
-			    		
-			    		Node future_mother = getMostRecentCorrespondence(division_time_point, mother);
-			    		new Division(future_mother,child1,child2);
+			    		applyDivision(frame, cell_id,
+			    				Integer.parseInt(content[1]),
+			    				Integer.parseInt(content[2]),
+			    				Integer.parseInt(content[3]));
 						break;
 						
 					case ELIMINATION:
-						int elimination_frame_no = Integer.parseInt(content[1]);
-						
-						//safety check, skip elimination if corresponding frame is missing
-			    		if(elimination_frame_no > stGraph.size())
-			    			continue;
-						
-						FrameGraph elimination_frame = stGraph.getFrame(elimination_frame_no);
-						Node eliminated_cell = null;
-						
-						for(Node cell:elimination_frame.vertexSet())
-			    			if(cell.getTrackID() == cell_id){
-			    				eliminated_cell = cell;
-			    				break;
-			    			}
-						
-						new Elimination(eliminated_cell);
+						applyElimination(cell_id, Integer.parseInt(content[1]));
 						break;
 					default:
 						System.out.print("Export field is currenlty not available for read");
@@ -0,0 +1,290 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Class to save the polygons of consecutive frames as temporal deltas.
+ * The vertices are quantized to integers and the outline of every tracked
+ * cell is stored as the difference to its outline in the previously
+ * exported frame. New or untracked cells fall back to a full encoding.
+ * The small integer deltas are written as variable length integers and
+ * deflated, see {@link DeltaPolygonImporter} for the reload.<br><br>
+ *
+ * File layout (deflated):<br>
+ * header: magic, version, scale, name of the reference frame file
+ * (empty for a key frame), no. of polygons<br>
+ * polygon: track id, encoding mode, shell vertices, holes<br><br>
+ *
+ * Coordinates are rounded to 1/scale pixels. Identical vertices stay
+ * identical after the rounding, so neighboring cells keep sharing their
+ * junctions.
+ *
+ * @author Davide Heller
+ *
+ */
+public class DeltaPolygonExporter {
+
+	/**
+	 * Description for Exporter Plugin
+	 */
+	public static final String DESCRIPTION =
+			"Export the loaded polygon geometries as temporal deltas.<br/>" +
+			" Every tracked cell is stored relative to its polygon<br/>" +
+			" in the previous frame. Much smaller than WKT/WKB for long<br/>" +
+			" tracked movies, choose DELTA as file type in CellGraph.<br/>" +
+			" Vertex coordinates are rounded to 1/100 pixel.<br/>" +
+			" Borders are saved as WKB files.";
+
+	/**
+	 * File extension of the delta frames
+	 */
+	public static final String EXTENSION = ".dpoly";
+
+	static final int MAGIC = 0x43474450;
+	static final int VERSION = 1;
+
+	static final int MODE_FULL = 0;
+	static final int MODE_DELTA = 1;
+
+	/**
+	 * Default quantization: 1/100 pixel
+	 */
+	public static final double DEFAULT_SCALE = 100.0;
+
+	private final double scale;
+
+	/**
+	 * Name of the last exported frame file
+	 */
+	private String reference_name;
+
+	/**
+	 * Quantized shells of the last exported frame by track id
+	 */
+	private Map<Integer, int[]> reference_shells;
+
+	public DeltaPolygonExporter() {
+		this(DEFAULT_SCALE);
+	}
+
+	/**
+	 * @param scale quantization factor, coordinates are rounded to 1/scale
+	 */
+	public DeltaPolygonExporter(double scale) {
+		this.scale = scale;
+		this.reference_name = null;
+		this.reference_shells = null;
+	}
+
+	/**
+	 * Exports all frames of the stGraph to the folder as
+	 * skeleton_000.dpoly, skeleton_001.dpoly.. and the frame
+	 * boundaries as WKB files (border_000.wkb..)
+	 *
+	 * @param stGraph graph to export
+	 * @param export_folder output folder
+	 */
+	public void exportGraph(SpatioTemporalGraph stGraph, String export_folder){
+		
+		WkbPolygonExporter border_exporter = new WkbPolygonExporter();
+		
+		reference_name = null;
+		reference_shells = null;
+		for(int i=0; i < stGraph.size(); i++){
+			FrameGraph frame = stGraph.getFrame(i);
+			if(frame.hasBoundary())
+				border_exporter.export(frame.getBoundary(), String.format("%s/border_%03d.wkb",export_folder,i));
+			
+			exportFrame(frame, String.format("%s/skeleton_%03d%s",export_folder,i,EXTENSION));
+		}
+	}
+
+	/**
+	 * Writes the frame relative to the frame previously exported
+	 * by this exporter. The first frame is written as key frame.
+	 * Both files need to be in the same folder.
+	 *
+	 * @param frame frame to be written out
+	 * @param frame_file_name output path
+	 */
+	public void exportFrame(FrameGraph frame, String frame_file_name) {
+		
+		File frame_file = new File(frame_file_name);
+		Map<Integer, int[]> frame_shells = new HashMap<Integer, int[]>();
+		
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new DeflaterOutputStream(
+							new BufferedOutputStream(
+									new FileOutputStream(frame_file))));
+			try{
+				out.writeInt(MAGIC);
+				out.writeByte(VERSION);
+				out.writeDouble(scale);
+				out.writeUTF(reference_name == null ? "" : reference_name);
+				
+				int polygon_no = 0;
+				for(Node cell: frame.vertexSet())
+					if(cell.getGeometry() instanceof Polygon)
+						polygon_no++;
+				writeVarInt(out, polygon_no);
+				
+				for(Node cell: frame.vertexSet()){
+					Geometry geometry = cell.getGeometry();
+					if(!(geometry instanceof Polygon))
+						continue;
+					
+					Polygon polygon = (Polygon)geometry;
+					int track_id = cell.getTrackID();
+					
+					int[] reference = null;
+					if(track_id >= 0 && reference_shells != null)
+						reference = reference_shells.get(track_id);
+					
+					int[] shell = quantize(polygon.getExteriorRing());
+					
+					writeVarInt(out, zigzag(track_id));
+					if(reference != null){
+						shell = alignTo(shell, reference);
+						out.writeByte(MODE_DELTA);
+					}
+					else
+						out.writeByte(MODE_FULL);
+					
+					writeRing(out, shell, reference);
+					
+					writeVarInt(out, polygon.getNumInteriorRing());
+					for(int h=0; h < polygon.getNumInteriorRing(); h++)
+						writeRing(out, quantize(polygon.getInteriorRingN(h)), null);
+					
+					if(track_id >= 0)
+						frame_shells.put(track_id, shell);
+				}
+			}
+			finally{
+				out.close();
+			}
+			
+			reference_name = frame_file.getName();
+			reference_shells = frame_shells;
+		
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("Something went wrong while attempting to write: "+frame_file_name);
+			
+			//next frame must not refer to a broken file
+			reference_name = null;
+			reference_shells = null;
+		}
+	}
+
+	/**
+	 * Rounds the ring vertices to integers, the closing vertex is dropped
+	 *
+	 * @param ring ring to quantize
+	 * @return interleaved x,y coordinates
+	 */
+	private int[] quantize(LineString ring){
+		Coordinate[] coordinates = ring.getCoordinates();
+		int n = Math.max(coordinates.length - 1, 0);
+		int[] xy = new int[2 * n];
+		for(int i=0; i < n; i++){
+			xy[2*i] = (int)Math.round(coordinates[i].x * scale);
+			xy[2*i + 1] = (int)Math.round(coordinates[i].y * scale);
+		}
+		return xy;
+	}
+
+	/**
+	 * Rotates the ring to start at the vertex closest to the
+	 * first reference vertex, keeping the deltas small
+	 *
+	 * @param xy ring to rotate
+	 * @param reference reference ring
+	 * @return rotated ring
+	 */
+	private static int[] alignTo(int[] xy, int[] reference){
+		int n = xy.length / 2;
+		if(n == 0 || reference.length == 0)
+			return xy;
+		
+		int best = 0;
+		long best_distance = Long.MAX_VALUE;
+		for(int i=0; i < n; i++){
+			long dx = xy[2*i] - reference[0];
+			long dy = xy[2*i + 1] - reference[1];
+			long distance = dx*dx + dy*dy;
+			if(distance < best_distance){
+				best_distance = distance;
+				best = i;
+			}
+		}
+		
+		if(best == 0)
+			return xy;
+		
+		int[] rotated = new int[xy.length];
+		System.arraycopy(xy, 2*best, rotated, 0, xy.length - 2*best);
+		System.arraycopy(xy, 0, rotated, xy.length - 2*best, 2*best);
+		return rotated;
+	}
+
+	/**
+	 * Writes the ring either against the reference ring or, if missing,
+	 * against the preceding vertex of the same ring
+	 */
+	private static void writeRing(DataOutputStream out, int[] xy, int[] reference) throws IOException{
+		int n = xy.length / 2;
+		writeVarInt(out, n);
+		for(int i=0; i < 2*n; i++)
+			writeVarInt(out, zigzag(xy[i] - predict(xy, reference, i)));
+	}
+
+	/**
+	 * Predicted value at position i of the interleaved ring, shared with the importer
+	 *
+	 * @param xy ring decoded up to position i-1
+	 * @param reference reference ring or null
+	 * @param i position to predict
+	 * @return predicted value
+	 */
+	static int predict(int[] xy, int[] reference, int i){
+		if(reference != null && reference.length > 0){
+			int ref_i = Math.min(i, reference.length - 2 + (i % 2));
+			return reference[ref_i];
+		}
+		else if(i >= 2)
+			return xy[i - 2];
+		else
+			return 0;
+	}
+
+	static int zigzag(int value){
+		return (value << 1) ^ (value >> 31);
+	}
+
+	static void writeVarInt(DataOutputStream out, int value) throws IOException{
+		while((value & ~0x7F) != 0){
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+}
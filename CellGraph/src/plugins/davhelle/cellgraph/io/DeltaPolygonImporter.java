@@ -0,0 +1,236 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.zip.InflaterInputStream;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * This class reads the temporal delta files written by the
+ * {@link DeltaPolygonExporter}. Every file refers to the file of
+ * the previous frame, which therefore has to be decoded first.<br><br>
+ *
+ * The decoded state of the last frame is kept, so that reading the
+ * frames in temporal order decodes every file exactly once. If a frame
+ * is requested out of order the chain of reference files is decoded
+ * starting from the last key frame.
+ *
+ * @author Davide Heller
+ *
+ */
+public class DeltaPolygonImporter implements PolygonReader{
+
+	private GeometryFactory factory;
+
+	/**
+	 * Last decoded file
+	 */
+	private File last_file;
+
+	/**
+	 * Quantized shells of the last decoded file by track id
+	 */
+	private Map<Integer, int[]> last_shells;
+
+	public DeltaPolygonImporter() {
+		factory = new GeometryFactory();
+		last_file = null;
+		last_shells = null;
+	}
+
+	@Override
+	public ArrayList<Polygon> extractPolygons(String file_name) {
+		
+		File frame_file = new File(file_name).getAbsoluteFile();
+		
+		try {
+			//collect the frames to decode, latest first
+			ArrayList<File> chain = new ArrayList<File>();
+			HashSet<File> visited = new HashSet<File>();
+			Map<Integer, int[]> reference_shells = null;
+			
+			File current = frame_file;
+			while(current != null){
+				if(!visited.add(current))
+					throw new IOException("Cyclic reference in delta file: "+current);
+				chain.add(current);
+				
+				String reference_name = readReferenceName(current);
+				if(reference_name.length() == 0)
+					break;
+				
+				File reference = new File(current.getParentFile(), reference_name);
+				if(reference.equals(last_file)){
+					reference_shells = last_shells;
+					break;
+				}
+				
+				if(!reference.exists())
+					throw new IOException("Missing reference delta file: "+reference);
+				
+				current = reference;
+			}
+			
+			ArrayList<Polygon> polygons = null;
+			for(int i=chain.size() - 1; i >= 0; i--){
+				Map<Integer, int[]> frame_shells = new HashMap<Integer, int[]>();
+				polygons = decodeFrame(chain.get(i), reference_shells, frame_shells);
+				
+				reference_shells = frame_shells;
+				last_file = chain.get(i);
+				last_shells = frame_shells;
+			}
+			
+			return polygons;
+		
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("Something went wrong with the delta file reading: "+file_name);
+			
+			last_file = null;
+			last_shells = null;
+			return new ArrayList<Polygon>();
+		}
+	}
+
+	private DataInputStream open(File file) throws IOException{
+		return new DataInputStream(
+				new BufferedInputStream(
+						new InflaterInputStream(
+								new FileInputStream(file))));
+	}
+
+	/**
+	 * Reads the header of the file and returns the reference file name
+	 */
+	private String readReferenceName(File file) throws IOException{
+		DataInputStream in = open(file);
+		try{
+			readHeaderScale(in, file);
+			return in.readUTF();
+		}
+		finally{
+			in.close();
+		}
+	}
+
+	private double readHeaderScale(DataInputStream in, File file) throws IOException{
+		if(in.readInt() != DeltaPolygonExporter.MAGIC)
+			throw new IOException("Not a delta polygon file: "+file);
+		
+		int version = in.readUnsignedByte();
+		if(version != DeltaPolygonExporter.VERSION)
+			throw new IOException("Unsupported delta polygon version "+version+": "+file);
+		
+		return in.readDouble();
+	}
+
+	/**
+	 * Decodes all polygons of a single frame
+	 *
+	 * @param file file to decode
+	 * @param reference_shells decoded shells of the reference frame, null for key frames
+	 * @param frame_shells map to fill with the decoded shells of the frame
+	 * @return polygons of the frame
+	 */
+	private ArrayList<Polygon> decodeFrame(
+			File file,
+			Map<Integer, int[]> reference_shells,
+			Map<Integer, int[]> frame_shells) throws IOException{
+		
+		DataInputStream in = open(file);
+		try{
+			double scale = readHeaderScale(in, file);
+			String reference_name = in.readUTF();
+			if(reference_name.length() == 0)
+				//key frame, no delta records expected
+				reference_shells = null;
+			else if(reference_shells == null)
+				throw new IOException("Reference frame not decoded: "+reference_name);
+			
+			int polygon_no = readVarInt(in);
+			ArrayList<Polygon> polygons = new ArrayList<Polygon>(polygon_no);
+			
+			for(int p=0; p < polygon_no; p++){
+				int track_id = unzigzag(readVarInt(in));
+				int mode = in.readUnsignedByte();
+				
+				int[] reference = null;
+				if(mode == DeltaPolygonExporter.MODE_DELTA){
+					if(reference_shells == null)
+						throw new IOException("Delta polygon without reference frame in: "+file.getName());
+					reference = reference_shells.get(track_id);
+					if(reference == null)
+						throw new IOException("Missing reference polygon for track "+track_id);
+				}
+				
+				int[] shell = readRing(in, reference);
+				
+				int hole_no = readVarInt(in);
+				LinearRing[] holes = new LinearRing[hole_no];
+				for(int h=0; h < hole_no; h++)
+					holes[h] = toRing(readRing(in, null), scale);
+				
+				polygons.add(factory.createPolygon(toRing(shell, scale), holes));
+				
+				if(track_id >= 0)
+					frame_shells.put(track_id, shell);
+			}
+			
+			return polygons;
+		}
+		finally{
+			in.close();
+		}
+	}
+
+	private static int[] readRing(DataInputStream in, int[] reference) throws IOException{
+		int n = readVarInt(in);
+		int[] xy = new int[2 * n];
+		for(int i=0; i < 2*n; i++)
+			xy[i] = DeltaPolygonExporter.predict(xy, reference, i) + unzigzag(readVarInt(in));
+		return xy;
+	}
+
+	private LinearRing toRing(int[] xy, double scale){
+		int n = xy.length / 2;
+		if(n == 0)
+			return factory.createLinearRing(new Coordinate[0]);
+		
+		Coordinate[] coordinates = new Coordinate[n + 1];
+		for(int i=0; i < n; i++)
+			coordinates[i] = new Coordinate(xy[2*i] / scale, xy[2*i + 1] / scale);
+		coordinates[n] = new Coordinate(coordinates[0]);
+		return factory.createLinearRing(coordinates);
+	}
+
+	private static int unzigzag(int value){
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException{
+		int value = 0;
+		for(int shift=0; shift < 35; shift += 7){
+			int b = in.read();
+			if(b < 0)
+				throw new EOFException();
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+
+}
@@ -0,0 +1,232 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Reader for the single file tracking written by {@link IndexedTrackWriter}.
+ * The file is memory mapped and every frame is located through the
+ * frame index, i.e. a single frame can be read without scanning the
+ * others. The cells are matched like in the {@link CsvTrackReader}.
+ *
+ * @author Davide Heller
+ *
+ */
+public class IndexedTrackReader extends CsvTrackReader{
+
+	/**
+	 * Indexed tracking file
+	 */
+	private File tracking_file;
+
+	/**
+	 * Mapped tracking file, null until first read
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * Set up the reader
+	 *
+	 * @param stGraph spatio-temporal graph to apply the tracking to
+	 * @param input_directory location of the tracking file
+	 */
+	public IndexedTrackReader(SpatioTemporalGraph stGraph, String input_directory) {
+		super(stGraph, input_directory);
+		this.tracking_file = new File(input_directory, IndexedTrackWriter.FILE_NAME);
+		this.buffer = null;
+	}
+
+	/**
+	 * Reads the no. of frames stored in a tracking file
+	 *
+	 * @param tracking_file indexed tracking file
+	 * @return no. of frames or -1 if the file is not readable
+	 */
+	public static int readFrameNo(File tracking_file){
+		try {
+			return map(tracking_file).getInt(8);
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	private static ByteBuffer map(File tracking_file) throws IOException{
+		FileInputStream fis = new FileInputStream(tracking_file);
+		try{
+			FileChannel channel = fis.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if(buffer.limit() < IndexedTrackWriter.HEADER_SIZE ||
+					buffer.getInt(0) != IndexedTrackWriter.MAGIC)
+				throw new IOException("Not an indexed tracking file: "+tracking_file);
+
+			int version = buffer.getInt(4);
+			if(version != IndexedTrackWriter.VERSION)
+				throw new IOException("Unsupported tracking file version "+version+": "+tracking_file);
+
+			return buffer;
+		}
+		finally{
+			fis.close();
+		}
+	}
+
+	private ByteBuffer getBuffer() throws IOException{
+		if(buffer == null)
+			buffer = map(tracking_file);
+		return buffer;
+	}
+
+	private int getFrameNo() throws IOException{
+		ByteBuffer b = getBuffer();
+		int frame_no = b.getInt(8);
+		checkBlock(b, IndexedTrackWriter.HEADER_SIZE, frame_no, IndexedTrackWriter.INDEX_ENTRY_SIZE, "frame index");
+		return frame_no;
+	}
+
+	/**
+	 * Checks that a block of entries lies within the file
+	 *
+	 * @param b mapped tracking file
+	 * @param offset start of the block
+	 * @param entry_no no. of entries in the block
+	 * @param entry_size size of an entry in bytes
+	 * @param block block name for the error message
+	 * @throws IOException if the block exceeds the file (e.g. truncated file)
+	 */
+	private void checkBlock(ByteBuffer b, long offset, int entry_no, int entry_size, String block) throws IOException{
+		if(offset < 0 || entry_no < 0 || offset + (long)entry_no * entry_size > b.limit())
+			throw new IOException("Corrupt "+block+" in "+tracking_file);
+	}
+
+	/**
+	 * Offset of the division block, i.e. the end of the last frame
+	 */
+	private int getEventOffset() throws IOException{
+		ByteBuffer b = getBuffer();
+		int frame_no = getFrameNo();
+		if(frame_no == 0)
+			return IndexedTrackWriter.HEADER_SIZE;
+
+		int last_entry = IndexedTrackWriter.HEADER_SIZE + (frame_no - 1) * IndexedTrackWriter.INDEX_ENTRY_SIZE;
+		long position = b.getLong(last_entry);
+		int row_no = b.getInt(last_entry + 8);
+		checkBlock(b, position, row_no, IndexedTrackWriter.POSITION_SIZE, "frame "+(frame_no - 1));
+		return (int)(position + (long)row_no * IndexedTrackWriter.POSITION_SIZE);
+	}
+
+	/**
+	 * Reads the tracking positions of a single frame
+	 *
+	 * @param frame_no frame to read
+	 * @return tracking positions
+	 * @throws IOException if the file is not readable, the frame is missing or truncated
+	 */
+	TrackingColumns readFrame(int frame_no) throws IOException{
+
+		ByteBuffer b = getBuffer();
+		if(frame_no < 0 || frame_no >= getFrameNo())
+			throw new IOException("Missing frame "+frame_no+" in "+tracking_file);
+
+		int entry = IndexedTrackWriter.HEADER_SIZE + frame_no * IndexedTrackWriter.INDEX_ENTRY_SIZE;
+		long offset = b.getLong(entry);
+		int row_no = b.getInt(entry + 8);
+		checkBlock(b, offset, row_no, IndexedTrackWriter.POSITION_SIZE, "frame "+frame_no);
+		int position = (int)offset;
+
+		TrackingColumns columns = new TrackingColumns(row_no);
+		for(int row=0; row < row_no; row++){
+			columns.track_ids[row] = b.getInt(position);
+			columns.x[row] = b.getDouble(position + 4);
+			columns.y[row] = b.getDouble(position + 12);
+			columns.on_border[row] = b.get(position + 20) != 0;
+			position += IndexedTrackWriter.POSITION_SIZE;
+		}
+		columns.size = row_no;
+
+		return columns;
+	}
+
+	@Override
+	public void readTrackingIds(){
+
+		GeometryFactory gf = new GeometryFactory();
+		for(int i=0; i < stGraph.size(); i++){
+			FrameGraph frame = stGraph.getFrame(i);
+
+			TrackingColumns columns;
+			try{
+				columns = readFrame(i);
+			}catch(IOException e){
+				e.printStackTrace();
+				continue;
+			}
+
+			for(int row=0; row < columns.size; row++)
+				applyTrackingPosition(frame, gf,
+						columns.track_ids[row],
+						columns.x[row],
+						columns.y[row],
+						columns.on_border[row]);
+		}
+	}
+
+	@Override
+	public void readDivisions(){
+		if(stGraph.size() == 0)
+			return;
+
+		try{
+			ByteBuffer b = getBuffer();
+			int division_no = b.getInt(12);
+			int position = getEventOffset();
+			checkBlock(b, position, division_no, IndexedTrackWriter.DIVISION_SIZE, "division block");
+
+			FrameGraph frame = stGraph.getFrame(0);
+			for(int i=0; i < division_no; i++){
+				applyDivision(frame,
+						b.getInt(position),
+						b.getInt(position + 4),
+						b.getInt(position + 8),
+						b.getInt(position + 12));
+				position += IndexedTrackWriter.DIVISION_SIZE;
+			}
+		}catch(IOException e){
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void readEliminations(){
+		if(stGraph.size() == 0)
+			return;
+
+		try{
+			ByteBuffer b = getBuffer();
+			int division_no = b.getInt(12);
+			int elimination_no = b.getInt(16);
+			int position = getEventOffset();
+			checkBlock(b, position, division_no, IndexedTrackWriter.DIVISION_SIZE, "division block");
+			position += division_no * IndexedTrackWriter.DIVISION_SIZE;
+			checkBlock(b, position, elimination_no, IndexedTrackWriter.ELIMINATION_SIZE, "elimination block");
+
+			for(int i=0; i < elimination_no; i++){
+				applyElimination(
+						b.getInt(position),
+						b.getInt(position + 4));
+				position += IndexedTrackWriter.ELIMINATION_SIZE;
+			}
+		}catch(IOException e){
+			e.printStackTrace();
+		}
+	}
+
+}
@@ -0,0 +1,194 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.nodes.Division;
+import plugins.davhelle.cellgraph.nodes.Elimination;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+/**
+ * Tracking file generator that stores the same information as the
+ * {@link CsvTrackWriter} (positions, divisions and eliminations) in a
+ * single binary file. A frame index at the beginning of the file
+ * allows to read any frame without scanning the others,
+ * see {@link IndexedTrackReader}.<br><br>
+ *
+ * File layout (big endian):<br>
+ * header: magic, version, no. of frames, no. of divisions, no. of eliminations<br>
+ * index: offset and no. of rows for every frame<br>
+ * frames: track id (int), x (double), y (double), on border (byte)<br>
+ * divisions: mother id, time point, child1 id, child2 id (int)<br>
+ * eliminations: cell id, time point (int)
+ *
+ * @author Davide Heller
+ *
+ */
+public class IndexedTrackWriter {
+
+	public static final String DESCRIPTION =
+			"Exports the tracking of the loaded spatiotemporal graph<br/>" +
+			" as a single indexed file containing the centroid positions<br/>" +
+			" of each cell over time, divisions and eliminations.<br/><br/>" +
+			" Faster to write and load than the CSV export, choose<br/>" +
+			" LOAD_INDEXED_FILE as tracking algorithm in CellGraph";
+
+	/**
+	 * Name of the tracking file in the output directory
+	 */
+	public static final String FILE_NAME = "tracking.cgt";
+
+	static final int MAGIC = 0x43475443;
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 5 * 4;
+	static final int INDEX_ENTRY_SIZE = 8 + 4;
+	static final int POSITION_SIZE = 4 + 8 + 8 + 1;
+	static final int DIVISION_SIZE = 4 * 4;
+	static final int ELIMINATION_SIZE = 2 * 4;
+
+	/**
+	 * Graph to be written out
+	 */
+	private SpatioTemporalGraph stGraph;
+
+	/**
+	 * Output destination
+	 */
+	private File output_file;
+
+	/**
+	 * Set up the writer
+	 *
+	 * @param stGraph stGraph to be written out
+	 * @param output_directory destination location of the tracking file
+	 */
+	public IndexedTrackWriter(SpatioTemporalGraph stGraph, String output_directory) {
+		this.stGraph = stGraph;
+		this.output_file = new File(output_directory, FILE_NAME);
+	}
+
+	/**
+	 * Writes the tracking file
+	 *
+	 * @return true if the file was written
+	 */
+	public boolean write(){
+
+		int frame_no = stGraph.size();
+
+		//count the rows to allocate the buffer at once
+		int[] row_no = new int[frame_no];
+		long size = HEADER_SIZE + (long)INDEX_ENTRY_SIZE * frame_no;
+		for(int i=0; i < frame_no; i++){
+			for(Node cell: stGraph.getFrame(i).vertexSet())
+				if(cell.getTrackID() != -1)
+					row_no[i]++;
+			size += (long)POSITION_SIZE * row_no[i];
+		}
+
+		int division_no = 0;
+		List<Elimination> eliminations = new ArrayList<Elimination>();
+		if(frame_no > 0)
+			for(Node cell: stGraph.getFrame(0).vertexSet()){
+				if(cell.hasObservedDivision())
+					division_no++;
+				collectEliminations(cell, eliminations);
+			}
+		int elimination_no = eliminations.size();
+		size += (long)DIVISION_SIZE * division_no + (long)ELIMINATION_SIZE * elimination_no;
+
+		if(size > Integer.MAX_VALUE){
+			System.out.println("Tracking too large for a single file: "+output_file);
+			return false;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate((int)size);
+
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(frame_no);
+		buffer.putInt(division_no);
+		buffer.putInt(elimination_no);
+
+		long offset = HEADER_SIZE + (long)INDEX_ENTRY_SIZE * frame_no;
+		for(int i=0; i < frame_no; i++){
+			buffer.putLong(offset);
+			buffer.putInt(row_no[i]);
+			offset += (long)POSITION_SIZE * row_no[i];
+		}
+
+		for(int i=0; i < frame_no; i++){
+			FrameGraph frame = stGraph.getFrame(i);
+			for(Node cell: frame.vertexSet())
+				if(cell.getTrackID() != -1){
+					buffer.putInt(cell.getTrackID());
+					buffer.putDouble(cell.getCentroid().getX());
+					buffer.putDouble(cell.getCentroid().getY());
+					buffer.put((byte)(cell.onBoundary() ? 1 : 0));
+				}
+		}
+
+		if(frame_no > 0){
+			for(Node cell: stGraph.getFrame(0).vertexSet())
+				if(cell.hasObservedDivision()){
+					Division division = cell.getDivision();
+					buffer.putInt(division.getMother().getTrackID());
+					buffer.putInt(division.getTimePoint());
+					buffer.putInt(division.getChild1().getTrackID());
+					buffer.putInt(division.getChild2().getTrackID());
+				}
+
+			for(Elimination elimination: eliminations){
+				buffer.putInt(elimination.getCell().getTrackID());
+				buffer.putInt(elimination.getTimePoint());
+			}
+		}
+
+		buffer.flip();
+
+		try {
+			FileOutputStream fos = new FileOutputStream(output_file);
+			try{
+				FileChannel channel = fos.getChannel();
+				while(buffer.hasRemaining())
+					channel.write(buffer);
+			}
+			finally{
+				fos.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Collects the elimination of the cell or, if the cell divides,
+	 * the eliminations of its daughter cells (as in the CSV export)
+	 *
+	 * @param cell first frame cell
+	 * @param eliminations list to fill
+	 */
+	private static void collectEliminations(Node cell, List<Elimination> eliminations){
+		if(cell.hasObservedElimination())
+			eliminations.add(cell.getElimination());
+		else if(cell.hasObservedDivision()){
+			Division division = cell.getDivision();
+			if(division.isMother(cell)){
+				collectEliminations(division.getChild1(), eliminations);
+				collectEliminations(division.getChild2(), eliminations);
+			}
+		}
+	}
+
+}
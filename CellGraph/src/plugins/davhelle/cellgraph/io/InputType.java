@@ -8,7 +8,7 @@ package plugins.davhelle.cellgraph.io;
  */
 public enum InputType {
 	/**
-	 * VTK polydata mesh file
+	 * Legacy VTK polydata mesh file (.vtk)
 	 */
 	VTK_MESH,
 	
@@ -21,4 +21,14 @@ public enum InputType {
 	 * Well-known-text polygons 
 	 */
 	WKT,
+	
+	/**
+	 * Well-known-binary polygons 
+	 */
+	WKB,
+	
+	/**
+	 * Temporal delta compressed polygons 
+	 */
+	DELTA,
 }
@@ -0,0 +1,407 @@
+package plugins.davhelle.cellgraph.io;
+
+import icy.sequence.Sequence;
+import icy.sequence.SequenceEvent;
+import icy.sequence.SequenceEvent.SequenceEventSourceType;
+import icy.sequence.SequenceListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Cache of intensity measurements of edges and cells. Results are
+ * kept in memory with least recently used eviction and, for
+ * sequences loaded from a file, appended to a cache file in the
+ * temporary directory so that repeated analyses of the same dataset
+ * (e.g. reopening an overlay) skip the measurement.<br><br>
+ *
+ * Entries are keyed by frame, object id (edge or cell track id),
+ * measurement parameters and a hash of the object geometry. Any change
+ * of segmentation, tracking or parameters therefore results in a
+ * different key. The cache file name contains the modification time
+ * of the image file.<br><br>
+ *
+ * Caches are kept per sequence instance and released when the sequence
+ * is closed. A change of the pixel data in memory discards the values
+ * and the cache file, the cache then no longer persists.
+ *
+ * @author Davide Heller
+ *
+ */
+public class IntensityCache {
+
+	/**
+	 * Measurement identifier and parameters of a cached value
+	 */
+	public static class Key{
+
+		final String measure;
+		final int frame;
+		final long object_id;
+		final double buffer;
+		final double vertex_buffer;
+		final int channel;
+		final IntensitySummaryType summary_type;
+		final long geometry_hash;
+
+		/**
+		 * @param measure name of the measurement including further parameters (e.g. "edge")
+		 * @param frame frame number
+		 * @param object_id edge or cell track id
+		 * @param buffer envelope buffer width
+		 * @param vertex_buffer junction buffer width, 0 if not used
+		 * @param channel image channel
+		 * @param summary_type summary statistic
+		 * @param geometry_hash hash of the measured geometry, see {@link IntensityCache#geometryHash(Geometry)}
+		 */
+		public Key(String measure, int frame, long object_id,
+				double buffer, double vertex_buffer, int channel,
+				IntensitySummaryType summary_type, long geometry_hash){
+			this.measure = measure;
+			this.frame = frame;
+			this.object_id = object_id;
+			this.buffer = buffer;
+			this.vertex_buffer = vertex_buffer;
+			this.channel = channel;
+			this.summary_type = summary_type;
+			this.geometry_hash = geometry_hash;
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if(!(o instanceof Key))
+				return false;
+			Key other = (Key)o;
+			return frame == other.frame &&
+					object_id == other.object_id &&
+					Double.compare(buffer, other.buffer) == 0 &&
+					Double.compare(vertex_buffer, other.vertex_buffer) == 0 &&
+					channel == other.channel &&
+					summary_type == other.summary_type &&
+					geometry_hash == other.geometry_hash &&
+					measure.equals(other.measure);
+		}
+
+		@Override
+		public int hashCode(){
+			long h = geometry_hash;
+			h = h * 31 + object_id;
+			h = h * 31 + frame;
+			h = h * 31 + Double.doubleToLongBits(buffer);
+			h = h * 31 + Double.doubleToLongBits(vertex_buffer);
+			h = h * 31 + channel;
+			h = h * 31 + summary_type.ordinal();
+			h = h * 31 + measure.hashCode();
+			return (int)(h ^ (h >>> 32));
+		}
+
+		private void write(DataOutputStream out) throws IOException{
+			out.writeUTF(measure);
+			out.writeInt(frame);
+			out.writeLong(object_id);
+			out.writeDouble(buffer);
+			out.writeDouble(vertex_buffer);
+			out.writeInt(channel);
+			out.writeByte(summary_type.ordinal());
+			out.writeLong(geometry_hash);
+		}
+
+		private static Key read(DataInputStream in) throws IOException{
+			String measure = in.readUTF();
+			int frame = in.readInt();
+			long object_id = in.readLong();
+			double buffer = in.readDouble();
+			double vertex_buffer = in.readDouble();
+			int channel = in.readInt();
+			int ordinal = in.readByte();
+			if(ordinal < 0 || ordinal >= IntensitySummaryType.values().length)
+				throw new IOException("Invalid summary type: "+ordinal);
+			IntensitySummaryType summary_type = IntensitySummaryType.values()[ordinal];
+			long geometry_hash = in.readLong();
+			return new Key(measure, frame, object_id, buffer,
+					vertex_buffer, channel, summary_type, geometry_hash);
+		}
+	}
+
+	/**
+	 * Default no. of values kept in memory
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 20;
+
+	private static final int FILE_MAGIC = 0x43474943;
+	private static final int FILE_VERSION = 1;
+
+	/**
+	 * Caches of the open sequences
+	 */
+	private static final Map<Sequence, IntensityCache> sequence_caches =
+			new WeakHashMap<Sequence, IntensityCache>();
+
+	private final LinkedHashMap<Key, Double> values;
+	private final int capacity;
+
+	/**
+	 * Cache file, null for memory only caches or after a data change
+	 */
+	private File file;
+
+	/**
+	 * Values not yet written to the cache file
+	 */
+	private final List<Key> pending;
+	private int file_entries;
+
+	/**
+	 * @param capacity max no. of values in memory
+	 * @param file cache file or null for a memory only cache
+	 */
+	public IntensityCache(final int capacity, File file){
+		this.values = new LinkedHashMap<Key, Double>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest){
+				return size() > capacity;
+			}
+		};
+		this.capacity = capacity;
+		this.file = file;
+		this.pending = new ArrayList<Key>();
+		this.file_entries = 0;
+
+		if(file != null && file.exists())
+			load();
+	}
+
+	/**
+	 * Shared cache of the sequence. Caches of sequences with a
+	 * file are persisted in the temporary directory until the
+	 * pixel data of the sequence changes.
+	 *
+	 * @param sequence image sequence
+	 * @return cache of the sequence
+	 */
+	public static synchronized IntensityCache forSequence(Sequence sequence){
+
+		IntensityCache cache = sequence_caches.get(sequence);
+		if(cache != null)
+			return cache;
+
+		String file_name = sequence.getFilename();
+		File image_file = file_name == null ? null : new File(file_name);
+
+		File cache_file = null;
+		if(image_file != null && image_file.exists()){
+			String cache_name = String.format("%s_%08x_%d.cache",
+					image_file.getName(),
+					image_file.getAbsolutePath().hashCode(),
+					image_file.lastModified());
+
+			File cache_folder = new File(System.getProperty("java.io.tmpdir"), "cellgraph_intensity_cache");
+			if(!cache_folder.exists() && !cache_folder.mkdirs())
+				System.out.println("Could not create cache folder: "+cache_folder.getAbsolutePath());
+
+			if(cache_folder.isDirectory())
+				cache_file = new File(cache_folder, cache_name);
+		}
+
+		final IntensityCache new_cache = new IntensityCache(DEFAULT_CAPACITY, cache_file);
+		sequence.addListener(new SequenceListener() {
+			@Override
+			public void sequenceChanged(SequenceEvent event) {
+				if(event.getSourceType() == SequenceEventSourceType.SEQUENCE_DATA)
+					new_cache.invalidate();
+			}
+
+			@Override
+			public void sequenceClosed(Sequence closed_sequence) {
+				new_cache.flush();
+				synchronized (IntensityCache.class) {
+					sequence_caches.remove(closed_sequence);
+				}
+				closed_sequence.removeListener(this);
+			}
+		});
+		sequence_caches.put(sequence, new_cache);
+
+		return new_cache;
+	}
+
+	/**
+	 * Discards all values and the cache file, e.g. after the pixel
+	 * data changed. The cache is kept in memory only from then on.
+	 */
+	public synchronized void invalidate(){
+		values.clear();
+		pending.clear();
+		file_entries = 0;
+
+		if(file != null){
+			if(file.exists() && !file.delete())
+				System.out.println("Could not delete intensity cache: "+file.getName());
+			file = null;
+		}
+	}
+
+	/**
+	 * Order dependent hash of the geometry coordinates
+	 *
+	 * @param geometry geometry to hash
+	 * @return 64 bit hash
+	 */
+	public static long geometryHash(Geometry geometry){
+		long h = 1125899906842597L;
+		for(Coordinate c: geometry.getCoordinates()){
+			h = 31 * h + Double.doubleToLongBits(c.x);
+			h = 31 * h + Double.doubleToLongBits(c.y);
+		}
+		return h;
+	}
+
+	/**
+	 * @param key measurement key
+	 * @return cached value or null
+	 */
+	public synchronized Double get(Key key){
+		return values.get(key);
+	}
+
+	/**
+	 * @param key measurement key
+	 * @param value measured value
+	 */
+	public synchronized void put(Key key, double value){
+		Double previous = values.put(key, value);
+		if(file != null && (previous == null || previous.doubleValue() != value))
+			pending.add(key);
+	}
+
+	/**
+	 * @return no. of values in memory
+	 */
+	public synchronized int size(){
+		return values.size();
+	}
+
+	/**
+	 * Appends the new values to the cache file. The file is rewritten
+	 * from memory when it holds more than twice the memory capacity.
+	 */
+	public synchronized void flush(){
+
+		if(file == null || pending.isEmpty())
+			return;
+
+		boolean compact = file_entries + pending.size() > 2 * capacity;
+
+		try{
+			if(compact || !file.exists() || file_entries == 0){
+				writeAll();
+			}
+			else{
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(file, true)));
+				try{
+					for(Key key: pending){
+						Double value = values.get(key);
+						if(value != null){
+							key.write(out);
+							out.writeDouble(value);
+							file_entries++;
+						}
+					}
+				}
+				finally{
+					out.close();
+				}
+			}
+		}
+		catch(IOException e){
+			e.printStackTrace();
+		}
+
+		pending.clear();
+	}
+
+	private void writeAll() throws IOException{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file, false)));
+		try{
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FILE_VERSION);
+			for(Map.Entry<Key, Double> entry: values.entrySet()){
+				entry.getKey().write(out);
+				out.writeDouble(entry.getValue());
+			}
+			file_entries = values.size();
+		}
+		finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads the cache file, later entries replace earlier ones.
+	 * The entries before a truncated record are kept, unreadable
+	 * files are ignored. In both cases the file is rewritten at the
+	 * next flush.
+	 */
+	private void load(){
+		DataInputStream in = null;
+		try{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+			if(in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION){
+				System.out.println("Ignoring incompatible intensity cache: "+file.getName());
+				file_entries = 0;
+				return;
+			}
+
+			while(true){
+				//clean end only between two records
+				in.mark(1);
+				if(in.read() < 0)
+					break;
+				in.reset();
+				
+				Key key = Key.read(in);
+				values.put(key, in.readDouble());
+				file_entries++;
+			}
+		}
+		catch(EOFException e){
+			//truncated last record, e.g. interrupted flush
+			System.out.println("Intensity cache truncated: "+file.getName());
+			file_entries = 0;
+		}
+		catch(IOException e){
+			System.out.println("Ignoring incompatible intensity cache: "+file.getName()+" ("+e.getMessage()+")");
+			values.clear();
+			file_entries = 0;
+		}
+		finally{
+			if(in != null){
+				try{
+					in.close();
+				}catch(IOException e){
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+}
@@ -7,6 +7,9 @@ import icy.sequence.Sequence;
 import icy.sequence.SequenceDataIterator;
 import icy.type.collection.array.Array1DUtil;
 import icy.type.point.Point5D;
+
+import java.util.Arrays;
+
 import plugins.kernel.roi.roi2d.ROI2DArea;
 
 /**
@@ -76,6 +79,10 @@ public class IntensityReader {
 	 * Method adds two more parameters with which to prune the
 	 * pixels taken into account for the measurement.
 	 * 
+	 * The pixel values of the ROI are collected once and the top
+	 * fraction is selected in linear time (see {@link #summarizeTopValues}),
+	 * the summary statistic is computed directly on the selected values.
+	 * 
 	 * @param sequence
 	 * @param roi
 	 * @param z
@@ -84,7 +91,7 @@ public class IntensityReader {
 	 * @param summaryType
 	 * @param topPercent Percentage that should be retained for measurement (e.g. 0.2 = 20 top-most percent)
 	 * @param addROItoSequence Flag whether to add or not the pruned ROI to the sequence
-	 * @return
+	 * @return intensity readout, -1.0 if the ROI contains no pixel
 	 */
 	public static double measureRoiIntensity(
 			Sequence sequence,
@@ -95,62 +102,187 @@ public class IntensityReader {
 			IntensitySummaryType summaryType,
 			double topPercent, boolean addROItoSequence){
 		
-		// Initialize an array to contain the top-percentage highest values 
+		// Collect the pixel values of the roi
+		double[] values = new double[Math.max(16, (int)Math.ceil(roi.getNumberOfPoints()))];
+		int value_no = 0;
 		
-		double numPixels = roi.getNumberOfPoints();
-        int top_size = (int) Math.round(numPixels * topPercent);
-        //Safety fall back in case of a small ROI
-        if(top_size < 1)
-        	top_size = 1;
-        double[] topIntensities = new double[top_size];
-
-        // Iterate through the pixels of the rois and only keep the top most
-        SequenceDataIterator it = new 
-        		SequenceDataIterator(sequence, roi, false, z, t, c);
-        
-        while (!it.done())
-        {
-            final double value = it.get();
-
-            if(value > topIntensities[0]){
-	        
-            		//index to substitute
-            		int subIdx=0;
-            	
-            		//find highest compatible value
-            		for(int i=1; i < top_size; i++)
-	            		if(value > topIntensities[i])
-	            			subIdx++;
-	            		else
-	            			break;
-            		
-            		//shift values below (first is always eliminated)
-	            	for(int i=1; i < subIdx; i++)
-	            		topIntensities[i-1] = topIntensities[i];
-	            	
-	            	//insert value into array
-	            	topIntensities[subIdx] = value;
-	            	
-            }
-
-            it.next();
-        }
-
-        double threshold = topIntensities[0];
-        
-		double[] doubleArray = Array1DUtil.arrayToDoubleArray(
-			     sequence.getDataXY(0, 0, 0), sequence.isSignedDataType());
-		boolean[] mask = new boolean[doubleArray.length];
-        
-		for (int i = 0; i < doubleArray.length; i++)
-		     mask[i] = !(doubleArray[i] > threshold);
-		BooleanMask2D mask2d = new BooleanMask2D(sequence.getBounds2D(), mask); 
-		
-		ROI topROI = ROIUtil.subtract(roi, new ROI2DArea(mask2d));
-		if(addROItoSequence)
+		SequenceDataIterator it = new 
+				SequenceDataIterator(sequence, roi, false, z, t, c);
+		
+		while (!it.done())
+		{
+			if(value_no == values.length)
+				values = Arrays.copyOf(values, values.length * 2);
+			
+			values[value_no++] = it.get();
+			it.next();
+		}
+		
+		double readout = summarizeTopValues(values, value_no, topPercent, summaryType);
+		
+		// Visualization only: mask of the retained pixels
+		if(addROItoSequence && value_no > 0){
+			
+			//smallest retained value
+			double threshold = Double.MAX_VALUE;
+			for(int i=0; i < topSize(value_no, topPercent); i++)
+				if(values[i] < threshold)
+					threshold = values[i];
+			
+			double[] doubleArray = Array1DUtil.arrayToDoubleArray(
+					sequence.getDataXY(t, z, c), sequence.isSignedDataType());
+			boolean[] mask = new boolean[doubleArray.length];
+			
+			for (int i = 0; i < doubleArray.length; i++)
+				mask[i] = doubleArray[i] < threshold;
+			BooleanMask2D mask2d = new BooleanMask2D(sequence.getBounds2D(), mask); 
+			
+			ROI topROI = ROIUtil.subtract(roi, new ROI2DArea(mask2d));
 			sequence.addROI(topROI);
+		}
+		
+		return readout;
+	}
+	
+	/**
+	 * @param value_no no. of values available
+	 * @param topPercent fraction to retain
+	 * @return no. of values to retain, at least one
+	 */
+	private static int topSize(int value_no, double topPercent){
+		int top_size = (int) Math.round(value_no * topPercent);
+		//Safety fall back in case of a small ROI
+		if(top_size < 1)
+			top_size = 1;
+		if(top_size > value_no)
+			top_size = value_no;
+		return top_size;
+	}
+	
+	/**
+	 * Summary statistic of the top fraction of values. The top values
+	 * are moved to the beginning of the array by quickselect, i.e. in
+	 * linear expected time and without sorting.
+	 * 
+	 * @param values values to summarize, reordered in place
+	 * @param value_no no. of valid entries in values
+	 * @param topPercent Percentage that should be retained (e.g. 0.2 = 20 top-most percent)
+	 * @param summaryType statistic to compute
+	 * @return summary of the retained values, -1.0 if there are no values
+	 */
+	public static double summarizeTopValues(
+			double[] values,
+			int value_no,
+			double topPercent,
+			IntensitySummaryType summaryType){
 		
-        return measureRoiIntensity(sequence, topROI, z, t, c, summaryType);
+		if(value_no == 0)
+			return -1.0;
+		
+		int top_size = topSize(value_no, topPercent);
+		
+		if(top_size < value_no)
+			selectLargest(values, value_no, top_size);
+		
+		return summarize(values, top_size, summaryType);
+	}
+	
+	/**
+	 * Partially orders the array such that the k largest values
+	 * occupy the first k positions, with the k-th largest at k-1
+	 * 
+	 * @param values values to reorder
+	 * @param value_no no. of valid entries
+	 * @param k no. of largest values to select
+	 */
+	private static void selectLargest(double[] values, int value_no, int k){
+		
+		int left = 0;
+		int right = value_no - 1;
+		int target = k - 1;
+		
+		while(left < right){
+			
+			//median of three as pivot
+			int mid = (left + right) >>> 1;
+			if(values[mid] > values[left])
+				swap(values, left, mid);
+			if(values[right] > values[left])
+				swap(values, left, right);
+			if(values[right] > values[mid])
+				swap(values, mid, right);
+			double pivot = values[mid];
+			
+			//descending partition
+			int i = left;
+			int j = right;
+			while(i <= j){
+				while(values[i] > pivot)
+					i++;
+				while(values[j] < pivot)
+					j--;
+				if(i <= j){
+					swap(values, i, j);
+					i++;
+					j--;
+				}
+			}
+			
+			if(target <= j)
+				right = j;
+			else if(target >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+	
+	private static void swap(double[] values, int i, int j){
+		double tmp = values[i];
+		values[i] = values[j];
+		values[j] = tmp;
+	}
+	
+	/**
+	 * @param values values to summarize
+	 * @param value_no no. of leading entries to consider
+	 * @param summaryType statistic to compute
+	 * @return summary statistic (sample standard deviation)
+	 */
+	private static double summarize(double[] values, int value_no, IntensitySummaryType summaryType){
+		
+		double sum = 0;
+		double min = Double.MAX_VALUE;
+		double max = -Double.MAX_VALUE;
+		for(int i=0; i < value_no; i++){
+			sum += values[i];
+			if(values[i] < min)
+				min = values[i];
+			if(values[i] > max)
+				max = values[i];
+		}
+		
+		switch (summaryType) {
+		case Max:
+			return max;
+		case Mean:
+			return sum / value_no;
+		case Min:
+			return min;
+		case StandardDeviation:
+			if(value_no < 2)
+				return 0.0;
+			double mean = sum / value_no;
+			double squares = 0;
+			for(int i=0; i < value_no; i++)
+				squares += (values[i] - mean) * (values[i] - mean);
+			return Math.sqrt(squares / (value_no - 1));
+		case Sum:
+			return sum;
+		default:
+			System.out.println("Unknown Image Summary Method");
+			return -1.0;
+		}
 	}
 	
 	
@@ -0,0 +1,254 @@
+package plugins.davhelle.cellgraph.io;
+
+import icy.sequence.Sequence;
+import icy.type.collection.array.Array1DUtil;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+/**
+ * Measurement engine that rasterizes many shapes (e.g. the buffered
+ * edges of a frame) into a single integer label image and accumulates
+ * the intensity statistics of every label in one scan of the channel
+ * data. This avoids building and iterating a separate ROI mask for
+ * every shape as done by {@link IntensityReader}.<br><br>
+ *
+ * Pixels are assigned to a shape when their center lies inside it
+ * (Java2D fill rule). Pixels covered by more than one shape, e.g. at
+ * junctions, are kept in an overlap list so that every shape is
+ * measured on all of its pixels.
+ *
+ * @author Davide Heller
+ *
+ */
+public class LabelImageIntensityReader {
+
+	/**
+	 * Label of pixels not covered by any shape
+	 */
+	public static final int BACKGROUND = 0;
+
+	private final int width;
+	private final int height;
+
+	/**
+	 * First label covering each pixel (row major)
+	 */
+	private final int[] labels;
+	private int label_no;
+
+	/**
+	 * Additional (pixel,label) pairs of overlapping shapes
+	 */
+	private int[] overlap_pixels;
+	private int[] overlap_labels;
+	private int overlap_no;
+
+	/**
+	 * Reusable binary canvas for the rasterization
+	 */
+	private BufferedImage scratch;
+
+	/**
+	 * Per label statistics of the last measurement
+	 */
+	private LabelStatistics statistics;
+
+	/**
+	 * @param width image width
+	 * @param height image height
+	 */
+	public LabelImageIntensityReader(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.labels = new int[width * height];
+		this.label_no = 0;
+		this.overlap_pixels = new int[64];
+		this.overlap_labels = new int[64];
+		this.overlap_no = 0;
+		this.scratch = null;
+	}
+
+	/**
+	 * @param sequence image sequence
+	 */
+	public LabelImageIntensityReader(Sequence sequence) {
+		this(sequence.getSizeX(), sequence.getSizeY());
+	}
+
+	/**
+	 * Removes all shapes and measurements, allowing to
+	 * reuse the label image for another frame
+	 */
+	public void clear(){
+		Arrays.fill(labels, BACKGROUND);
+		label_no = 0;
+		overlap_no = 0;
+		statistics = null;
+	}
+
+	/**
+	 * Rasterizes the shape into the label image
+	 *
+	 * @param shape AWT shape in image coordinates
+	 * @return label assigned to the shape (starting from 1)
+	 */
+	public int addShape(Shape shape){
+
+		int label = ++label_no;
+
+		Rectangle bounds = shape.getBounds().intersection(
+				new Rectangle(0, 0, width, height));
+		if(bounds.isEmpty())
+			return label;
+
+		if(scratch == null ||
+				scratch.getWidth() < bounds.width ||
+				scratch.getHeight() < bounds.height)
+			scratch = new BufferedImage(
+					Math.max(bounds.width, scratch == null ? 0 : scratch.getWidth()),
+					Math.max(bounds.height, scratch == null ? 0 : scratch.getHeight()),
+					BufferedImage.TYPE_BYTE_GRAY);
+
+		Graphics2D g = scratch.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+		g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+		g.setColor(Color.BLACK);
+		g.fillRect(0, 0, bounds.width, bounds.height);
+		g.setColor(Color.WHITE);
+		g.translate(-bounds.x, -bounds.y);
+		g.fill(shape);
+		g.dispose();
+
+		byte[] raster = ((DataBufferByte)scratch.getRaster().getDataBuffer()).getData();
+		int scanline = scratch.getWidth();
+
+		for(int y=0; y < bounds.height; y++)
+			for(int x=0; x < bounds.width; x++)
+				if(raster[y * scanline + x] != 0)
+					setLabel((bounds.y + y) * width + bounds.x + x, label);
+
+		return label;
+	}
+
+	private void setLabel(int pixel, int label){
+		if(labels[pixel] == BACKGROUND)
+			labels[pixel] = label;
+		else{
+			if(overlap_no == overlap_pixels.length){
+				overlap_pixels = Arrays.copyOf(overlap_pixels, overlap_no * 2);
+				overlap_labels = Arrays.copyOf(overlap_labels, overlap_no * 2);
+			}
+			overlap_pixels[overlap_no] = pixel;
+			overlap_labels[overlap_no] = label;
+			overlap_no++;
+		}
+	}
+
+	/**
+	 * @return no. of labels assigned so far
+	 */
+	public int getLabelNo(){
+		return label_no;
+	}
+
+	/**
+	 * @param x pixel column
+	 * @param y pixel row
+	 * @return first label covering the pixel or {@link #BACKGROUND}
+	 */
+	public int getLabel(int x, int y){
+		return labels[y * width + x];
+	}
+
+	/**
+	 * @return first label of every pixel (row major), not to be modified
+	 */
+	int[] getLabelImage(){
+		return labels;
+	}
+
+	/**
+	 * @return additional (pixel,label) pairs of overlapping shapes
+	 * encoded as pixel &lt;&lt; 32 | label and sorted by pixel
+	 */
+	long[] getSortedOverlaps(){
+		long[] overlaps = new long[overlap_no];
+		for(int i=0; i < overlap_no; i++)
+			overlaps[i] = ((long)overlap_pixels[i] << 32) | overlap_labels[i];
+		Arrays.sort(overlaps);
+		return overlaps;
+	}
+
+	/**
+	 * Accumulates the statistics of every label in a single scan
+	 *
+	 * @param data channel plane in row major order (width x height)
+	 */
+	public void measure(double[] data){
+
+		assert data.length == labels.length: "Plane size does not match the label image";
+
+		statistics = new LabelStatistics(label_no);
+
+		for(int i=0; i < labels.length; i++)
+			if(labels[i] != BACKGROUND)
+				statistics.accumulate(labels[i], data[i]);
+
+		for(int i=0; i < overlap_no; i++)
+			statistics.accumulate(overlap_labels[i], data[overlap_pixels[i]]);
+	}
+
+	/**
+	 * Reads the channel plane from the sequence and measures it
+	 *
+	 * @param sequence image sequence to read the intensity from
+	 * @param z slice number to be analyzed
+	 * @param t time point to be analyzed
+	 * @param c channel number to be analyzed
+	 */
+	public void measure(Sequence sequence, int z, int t, int c){
+		measure(readPlane(sequence, z, t, c));
+	}
+
+	/**
+	 * @param sequence image sequence to read the intensity from
+	 * @param z slice number
+	 * @param t time point
+	 * @param c channel number
+	 * @return plane values in row major order
+	 */
+	public static double[] readPlane(Sequence sequence, int z, int t, int c){
+		return Array1DUtil.arrayToDoubleArray(
+				sequence.getDataXY(t, z, c), sequence.isSignedDataType());
+	}
+
+	/**
+	 * @param label label returned by {@link #addShape(Shape)}
+	 * @return no. of pixels measured for the label
+	 */
+	public int getPixelNo(int label){
+		return statistics.getCount(label);
+	}
+
+	/**
+	 * Summary statistic of a label after {@link #measure(double[])}
+	 *
+	 * @param label label returned by {@link #addShape(Shape)}
+	 * @param summaryType statistic to return
+	 * @return intensity readout, -1.0 if the label covers no pixel
+	 */
+	public double getIntensity(int label, IntensitySummaryType summaryType){
+
+		assert statistics != null: "Call measure first";
+
+		return statistics.getIntensity(label, summaryType);
+	}
+
+}
@@ -0,0 +1,87 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.util.Arrays;
+
+/**
+ * Running intensity statistics (count, sum, sum of squares,
+ * min and max) for a range of integer labels. Used by the
+ * label image based readers.
+ *
+ * @author Davide Heller
+ *
+ */
+class LabelStatistics {
+
+	private final int[] count;
+	private final double[] sum;
+	private final double[] sum_sq;
+	private final double[] min;
+	private final double[] max;
+
+	/**
+	 * @param label_no highest label, label 0 is unused
+	 */
+	LabelStatistics(int label_no) {
+		this.count = new int[label_no + 1];
+		this.sum = new double[label_no + 1];
+		this.sum_sq = new double[label_no + 1];
+		this.min = new double[label_no + 1];
+		this.max = new double[label_no + 1];
+		Arrays.fill(min, Double.MAX_VALUE);
+		Arrays.fill(max, -Double.MAX_VALUE);
+	}
+
+	/**
+	 * @param label label to update
+	 * @param value pixel value
+	 */
+	void accumulate(int label, double value){
+		count[label]++;
+		sum[label] += value;
+		sum_sq[label] += value * value;
+		if(value < min[label])
+			min[label] = value;
+		if(value > max[label])
+			max[label] = value;
+	}
+
+	/**
+	 * @param label label
+	 * @return no. of accumulated pixels
+	 */
+	int getCount(int label){
+		return count[label];
+	}
+
+	/**
+	 * @param label label
+	 * @param summaryType statistic to return
+	 * @return intensity readout (sample standard deviation), -1.0 if the label has no pixel
+	 */
+	double getIntensity(int label, IntensitySummaryType summaryType){
+
+		int n = count[label];
+		if(n == 0)
+			return -1.0;
+
+		switch (summaryType) {
+		case Max:
+			return max[label];
+		case Mean:
+			return sum[label] / n;
+		case Min:
+			return min[label];
+		case StandardDeviation:
+			if(n < 2)
+				return 0.0;
+			double variance = (sum_sq[label] - sum[label] * sum[label] / n) / (n - 1);
+			return variance > 0 ? Math.sqrt(variance) : 0.0;
+		case Sum:
+			return sum[label];
+		default:
+			System.out.println("Unknown Image Summary Method");
+			return -1.0;
+		}
+	}
+
+}
@@ -0,0 +1,256 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Column store of a tracking position file (tracking_t000.csv) as
+ * written by {@link CsvTrackWriter}. Every row has the form:<br><br>
+ *
+ * track_id,x,y,on_border<br><br>
+ *
+ * The file is memory mapped and the bytes are tokenized directly into
+ * primitive arrays, no String object is created for the common number
+ * formats. Uncommon formats (e.g. exponents) fall back to the
+ * Java parsers.
+ *
+ * @author Davide Heller
+ *
+ */
+class TrackingColumns {
+
+	/**
+	 * Powers of ten that are exactly representable as double
+	 */
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static{
+		POWERS_OF_TEN[0] = 1.0;
+		for(int i=1; i < POWERS_OF_TEN.length; i++)
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10.0;
+	}
+
+	/**
+	 * Largest mantissa that converts exactly to double
+	 */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	int[] track_ids;
+	double[] x;
+	double[] y;
+	boolean[] on_border;
+
+	/**
+	 * No. of rows read
+	 */
+	int size;
+
+	private MappedByteBuffer buffer;
+	private int line_no;
+
+	TrackingColumns(int capacity) {
+		track_ids = new int[capacity];
+		x = new double[capacity];
+		y = new double[capacity];
+		on_border = new boolean[capacity];
+		size = 0;
+	}
+
+	/**
+	 * Reads the tracking position file
+	 *
+	 * @param input_file file to read
+	 * @return columns of the file
+	 * @throws IOException if the file is missing or malformed
+	 */
+	static TrackingColumns parse(File input_file) throws IOException{
+		
+		FileInputStream fis = new FileInputStream(input_file);
+		try{
+			FileChannel channel = fis.getChannel();
+			long length = channel.size();
+			if(length > Integer.MAX_VALUE)
+				throw new IOException("Tracking file too large: "+input_file);
+			
+			//shortest row: "0,0.00,0.00,true\n"
+			TrackingColumns columns = new TrackingColumns(16 + (int)(length / 17));
+			columns.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			columns.readRows(input_file);
+			columns.buffer = null;
+			
+			return columns;
+		}
+		finally{
+			fis.close();
+		}
+	}
+
+	private void readRows(File input_file) throws IOException{
+		line_no = 0;
+		while(buffer.hasRemaining()){
+			line_no++;
+			
+			skipCarriageReturn();
+			if(!buffer.hasRemaining())
+				break;
+			
+			//skip empty lines
+			if(peek() == '\n'){
+				buffer.get();
+				continue;
+			}
+			
+			if(size == track_ids.length)
+				grow();
+			
+			try{
+				track_ids[size] = (int)readLong();
+				expect(',');
+				x[size] = readDouble();
+				expect(',');
+				y[size] = readDouble();
+				expect(',');
+				on_border[size] = readBoolean();
+			}catch(NumberFormatException e){
+				throw new IOException(String.format(
+						"Malformed tracking row %d in %s: %s", line_no, input_file, e.getMessage()));
+			}
+			
+			//ignore additional columns
+			while(buffer.hasRemaining())
+				if(buffer.get() == '\n')
+					break;
+			
+			size++;
+		}
+	}
+
+	private void grow(){
+		int capacity = 2 * track_ids.length;
+		
+		int[] new_ids = new int[capacity];
+		double[] new_x = new double[capacity];
+		double[] new_y = new double[capacity];
+		boolean[] new_border = new boolean[capacity];
+		
+		System.arraycopy(track_ids, 0, new_ids, 0, size);
+		System.arraycopy(x, 0, new_x, 0, size);
+		System.arraycopy(y, 0, new_y, 0, size);
+		System.arraycopy(on_border, 0, new_border, 0, size);
+		
+		track_ids = new_ids;
+		x = new_x;
+		y = new_y;
+		on_border = new_border;
+	}
+
+	private byte peek(){
+		return buffer.get(buffer.position());
+	}
+
+	private void skipCarriageReturn(){
+		while(buffer.hasRemaining() && peek() == '\r')
+			buffer.get();
+	}
+
+	private void expect(char c){
+		if(!buffer.hasRemaining() || buffer.get() != c)
+			throw new NumberFormatException("expected '"+c+"'");
+	}
+
+	private boolean isDelimiter(byte b){
+		return b == ',' || b == '\n' || b == '\r';
+	}
+
+	private long readLong(){
+		boolean negative = false;
+		if(buffer.hasRemaining() && (peek() == '-' || peek() == '+'))
+			negative = buffer.get() == '-';
+		
+		long value = 0;
+		int digits = 0;
+		while(buffer.hasRemaining() && !isDelimiter(peek())){
+			int d = buffer.get() - '0';
+			if(d < 0 || d > 9 || digits == 18)
+				throw new NumberFormatException("invalid integer");
+			value = value * 10 + d;
+			digits++;
+		}
+		
+		if(digits == 0)
+			throw new NumberFormatException("empty integer");
+		
+		return negative ? -value : value;
+	}
+
+	private double readDouble(){
+		int start = buffer.position();
+		
+		boolean negative = false;
+		if(buffer.hasRemaining() && (peek() == '-' || peek() == '+'))
+			negative = buffer.get() == '-';
+		
+		long mantissa = 0;
+		int digits = 0;
+		int fraction_digits = 0;
+		boolean in_fraction = false;
+		boolean exact = true;
+		
+		while(buffer.hasRemaining() && !isDelimiter(peek())){
+			byte b = buffer.get();
+			if(b == '.' && !in_fraction){
+				in_fraction = true;
+				continue;
+			}
+			
+			int d = b - '0';
+			if(d < 0 || d > 9){
+				exact = false;
+				continue;
+			}
+			
+			if(digits == 18){
+				exact = false;
+				continue;
+			}
+			
+			mantissa = mantissa * 10 + d;
+			digits++;
+			if(in_fraction)
+				fraction_digits++;
+		}
+		
+		if(exact && digits > 0 &&
+				mantissa <= MAX_EXACT_MANTISSA &&
+				fraction_digits < POWERS_OF_TEN.length){
+			double value = mantissa / POWERS_OF_TEN[fraction_digits];
+			return negative ? -value : value;
+		}
+		
+		//uncommon format, let the Java parser decide
+		byte[] token = new byte[buffer.position() - start];
+		for(int i=0; i < token.length; i++)
+			token[i] = buffer.get(start + i);
+		
+		return Double.parseDouble(new String(token));
+	}
+
+	private boolean readBoolean(){
+		//same semantics as Boolean.parseBoolean
+		int length = 0;
+		boolean is_true = true;
+		String expected = "true";
+		while(buffer.hasRemaining() && !isDelimiter(peek())){
+			byte b = buffer.get();
+			if(length >= expected.length() ||
+					Character.toLowerCase((char)b) != expected.charAt(length))
+				is_true = false;
+			length++;
+		}
+		
+		return is_true && length == expected.length();
+	}
+
+}
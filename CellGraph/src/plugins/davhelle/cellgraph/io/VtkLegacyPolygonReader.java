@@ -0,0 +1,408 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.operation.polygonize.Polygonizer;
+
+/**
+ * Pure Java reader for legacy VTK polydata files (.vtk), ASCII or binary.
+ * Unlike the {@link VtkPolygonReader} no native VTK library is required,
+ * which allows headless batch use.<br><br>
+ *
+ * Only the POINTS and LINES sections are used. The points are streamed
+ * into a coordinate array and every line cell is converted into
+ * multi-vertex LineStrings, split only at vertices shared with other
+ * lines (by coordinate, not by point id). The linework is then polygonized with JTS as in the
+ * {@link VtkPolygonReader}.<br><br>
+ *
+ * Both the classic cell layout (count followed by the point ids) and the
+ * OFFSETS/CONNECTIVITY layout of file version 5.1 are supported.
+ *
+ * @author Davide Heller
+ *
+ */
+public class VtkLegacyPolygonReader implements PolygonReader{
+
+	private DataInputStream in;
+	private boolean binary;
+	private boolean offset_layout;
+
+	/**
+	 * Reusable buffer for ASCII tokens
+	 */
+	private char[] token;
+	private int token_length;
+
+	/**
+	 * Interleaved x,y,z coordinates of the points
+	 */
+	private double[] points;
+
+	/**
+	 * Cell offsets into the connectivity array, length cell_no+1
+	 */
+	private int[] line_offsets;
+	private int[] line_connectivity;
+
+	private GeometryFactory factory;
+
+	public VtkLegacyPolygonReader() {
+		token = new char[64];
+		factory = new GeometryFactory();
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Override
+	public ArrayList<Polygon> extractPolygons(String file_name) {
+		
+		points = null;
+		line_offsets = null;
+		line_connectivity = null;
+		
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(file_name))));
+			try{
+				if(!readFile()){
+					System.out.println("NO Poly data found in: "+file_name);
+					return null;
+				}
+			}
+			finally{
+				in.close();
+				in = null;
+			}
+			
+			Polygonizer polygonizer = new Polygonizer();
+			Collection line_collection = createLines();
+			polygonizer.add(line_collection);
+			
+			Collection raw_polygons = polygonizer.getPolygons();
+			ArrayList<Polygon> jts_polygons = new ArrayList<Polygon>(raw_polygons.size());
+			for(Object p: raw_polygons)
+				jts_polygons.add((Polygon)p);
+			
+			return jts_polygons;
+		
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("Something went wrong with the VTK reading: "+file_name);
+			return null;
+		}
+	}
+
+	/**
+	 * Reads header, POINTS and LINES
+	 *
+	 * @return false if the file does not contain polydata
+	 */
+	private boolean readFile() throws IOException{
+		
+		String header = readLine();
+		if(header == null || !header.startsWith("# vtk DataFile Version"))
+			throw new IOException("Not a legacy VTK file");
+		
+		String version = header.substring("# vtk DataFile Version".length()).trim();
+		try{
+			offset_layout = Integer.parseInt(version.split("\\.")[0]) >= 5;
+		}catch(NumberFormatException e){
+			throw new IOException("Invalid VTK version: "+version);
+		}
+		
+		//title
+		readLine();
+		
+		String format = readLine();
+		if(format == null)
+			throw new EOFException();
+		binary = format.trim().equalsIgnoreCase("BINARY");
+		
+		boolean is_polydata = false;
+		String line;
+		while((line = readSectionLine()) != null){
+			String[] words = line.trim().split("\\s+");
+			String keyword = words[0].toUpperCase();
+			
+			if(keyword.equals("DATASET")){
+				is_polydata = words.length > 1 && words[1].equalsIgnoreCase("POLYDATA");
+				if(!is_polydata)
+					return false;
+			}
+			else if(keyword.equals("POINTS")){
+				int point_no = Integer.parseInt(words[1]);
+				points = new double[3 * point_no];
+				for(int i=0; i < points.length; i++)
+					points[i] = readValue(words[2]);
+			}
+			else if(keyword.equals("LINES")){
+				readCells(Integer.parseInt(words[1]), Integer.parseInt(words[2]), true);
+			}
+			else if(keyword.equals("VERTICES") ||
+					keyword.equals("POLYGONS") ||
+					keyword.equals("TRIANGLE_STRIPS")){
+				readCells(Integer.parseInt(words[1]), Integer.parseInt(words[2]), false);
+			}
+			else if(keyword.equals("METADATA")){
+				//skip until the empty line that closes the block
+				String metadata_line = readLine();
+				while(metadata_line != null && metadata_line.trim().length() > 0)
+					metadata_line = readLine();
+			}
+			else
+				//POINT_DATA, CELL_DATA, FIELD: nothing left of interest
+				break;
+		}
+		
+		if(!is_polydata)
+			return false;
+		
+		if(points == null)
+			points = new double[0];
+		
+		if(line_offsets == null){
+			line_offsets = new int[]{0};
+			line_connectivity = new int[0];
+		}
+		
+		return true;
+	}
+
+	/**
+	 * Reads a cell section, either in the classic or in the offset layout
+	 *
+	 * @param first first number of the section line
+	 * @param second second number of the section line
+	 * @param keep true to store the cells as lines
+	 */
+	private void readCells(int first, int second, boolean keep) throws IOException{
+		
+		int[] offsets;
+		int[] connectivity;
+		
+		if(offset_layout){
+			//LINES offset_no connectivity_no, followed by OFFSETS and CONNECTIVITY
+			offsets = new int[first];
+			connectivity = new int[second];
+			
+			String[] words = readSectionLine().trim().split("\\s+");
+			if(!words[0].equalsIgnoreCase("OFFSETS"))
+				throw new IOException("Expected OFFSETS instead of: "+words[0]);
+			for(int i=0; i < offsets.length; i++)
+				offsets[i] = (int)readValue(words[1]);
+			
+			words = readSectionLine().trim().split("\\s+");
+			if(!words[0].equalsIgnoreCase("CONNECTIVITY"))
+				throw new IOException("Expected CONNECTIVITY instead of: "+words[0]);
+			for(int i=0; i < connectivity.length; i++)
+				connectivity[i] = (int)readValue(words[1]);
+			
+			if(offsets.length == 0)
+				offsets = new int[]{0};
+			
+			for(int i=0; i < offsets.length; i++)
+				if(offsets[i] < (i == 0 ? 0 : offsets[i - 1]) || offsets[i] > connectivity.length)
+					throw new IOException("Invalid cell offset: "+offsets[i]);
+		}
+		else{
+			//LINES cell_no size, every cell: count id_0 .. id_count-1
+			offsets = new int[first + 1];
+			connectivity = new int[second - first];
+			
+			int position = 0;
+			for(int i=0; i < first; i++){
+				int count = (int)readValue("int");
+				if(count < 0 || position + count > connectivity.length)
+					throw new IOException("Invalid cell size: "+count);
+				for(int j=0; j < count; j++)
+					connectivity[position++] = (int)readValue("int");
+				offsets[i + 1] = position;
+			}
+		}
+		
+		if(keep){
+			line_offsets = offsets;
+			line_connectivity = connectivity;
+		}
+	}
+
+	/**
+	 * Converts the line cells into LineStrings, splitting them at
+	 * vertices that are shared by several lines or are line ends.
+	 * Vertices are compared by coordinate, as points can be stored
+	 * more than once with different ids. This gives the Polygonizer
+	 * the same noding as splitting every line into its single segments.
+	 *
+	 * @return collection of LineStrings
+	 */
+	private ArrayList<LineString> createLines() throws IOException{
+		
+		int point_no = points.length / 3;
+		int cell_no = line_offsets.length - 1;
+		
+		Coordinate[] point_coordinates = new Coordinate[point_no];
+		HashMap<Coordinate, Integer> use_count = new HashMap<Coordinate, Integer>();
+		for(int i=0; i < line_connectivity.length; i++){
+			int id = line_connectivity[i];
+			if(id < 0 || id >= point_no)
+				throw new IOException("Invalid point index: "+id);
+			if(point_coordinates[id] == null)
+				point_coordinates[id] = new Coordinate(
+						points[3*id], points[3*id + 1], points[3*id + 2]);
+			
+			Integer count = use_count.get(point_coordinates[id]);
+			use_count.put(point_coordinates[id], count == null ? 1 : count + 1);
+		}
+		
+		HashSet<Coordinate> nodes = new HashSet<Coordinate>();
+		for(int c=0; c < cell_no; c++){
+			int start = line_offsets[c];
+			int end = line_offsets[c + 1];
+			if(end - start < 2)
+				continue;
+			nodes.add(point_coordinates[line_connectivity[start]]);
+			nodes.add(point_coordinates[line_connectivity[end - 1]]);
+		}
+		for(Map.Entry<Coordinate, Integer> entry: use_count.entrySet())
+			if(entry.getValue() > 1)
+				nodes.add(entry.getKey());
+		
+		ArrayList<LineString> lines = new ArrayList<LineString>();
+		for(int c=0; c < cell_no; c++){
+			int start = line_offsets[c];
+			int end = line_offsets[c + 1];
+			if(end - start < 2)
+				continue;
+			
+			int piece_start = start;
+			for(int j=start + 1; j < end; j++)
+				if(nodes.contains(point_coordinates[line_connectivity[j]]) || j == end - 1){
+					Coordinate[] coordinates = new Coordinate[j - piece_start + 1];
+					for(int k=piece_start; k <= j; k++)
+						coordinates[k - piece_start] = new Coordinate(point_coordinates[line_connectivity[k]]);
+					lines.add(factory.createLineString(coordinates));
+					piece_start = j;
+				}
+		}
+		
+		return lines;
+	}
+
+	/**
+	 * Reads the next non empty line
+	 */
+	private String readSectionLine() throws IOException{
+		String line;
+		while((line = readLine()) != null)
+			if(line.trim().length() > 0)
+				return line;
+		return null;
+	}
+
+	/**
+	 * Reads a line terminated by \n, without the terminator
+	 *
+	 * @return line or null at the end of the file
+	 */
+	private String readLine() throws IOException{
+		StringBuilder sb = new StringBuilder();
+		int b = in.read();
+		if(b < 0)
+			return null;
+		
+		while(b >= 0 && b != '\n'){
+			if(b != '\r')
+				sb.append((char)b);
+			b = in.read();
+		}
+		
+		return sb.toString();
+	}
+
+	/**
+	 * Reads the next value of the given VTK data type
+	 */
+	private double readValue(String data_type) throws IOException{
+		if(binary){
+			String type = data_type.toLowerCase();
+			if(type.equals("float"))
+				return in.readFloat();
+			else if(type.equals("double"))
+				return in.readDouble();
+			else if(type.equals("int") || type.equals("vtktypeint32"))
+				return in.readInt();
+			else if(type.equals("unsigned_int") || type.equals("vtktypeuint32"))
+				return in.readInt() & 0xFFFFFFFFL;
+			else if(type.equals("long") || type.equals("unsigned_long") ||
+					type.equals("vtkidtype") ||
+					type.equals("vtktypeint64") || type.equals("vtktypeuint64"))
+				return in.readLong();
+			else if(type.equals("short"))
+				return in.readShort();
+			else if(type.equals("unsigned_short"))
+				return in.readUnsignedShort();
+			else if(type.equals("char"))
+				return in.readByte();
+			else if(type.equals("unsigned_char") || type.equals("bit"))
+				return in.readUnsignedByte();
+			else
+				throw new IOException("Unsupported VTK data type: "+data_type);
+		}
+		else
+			return readAsciiValue();
+	}
+
+	/**
+	 * Reads the next whitespace separated number
+	 */
+	private double readAsciiValue() throws IOException{
+		
+		int b = in.read();
+		while(b == ' ' || b == '\n' || b == '\r' || b == '\t')
+			b = in.read();
+		
+		if(b < 0)
+			throw new EOFException();
+		
+		token_length = 0;
+		boolean is_integer = true;
+		while(b >= 0 && b != ' ' && b != '\n' && b != '\r' && b != '\t'){
+			if(token_length == token.length){
+				char[] larger = new char[2 * token.length];
+				System.arraycopy(token, 0, larger, 0, token_length);
+				token = larger;
+			}
+			token[token_length++] = (char)b;
+			if((b < '0' || b > '9') && !(b == '-' && token_length == 1))
+				is_integer = false;
+			b = in.read();
+		}
+		
+		if(is_integer && token_length < 19 && !(token_length == 1 && token[0] == '-')){
+			long value = 0;
+			int start = token[0] == '-' ? 1 : 0;
+			for(int i=start; i < token_length; i++)
+				value = value * 10 + (token[i] - '0');
+			return start == 1 ? -value : value;
+		}
+		
+		try{
+			return Double.parseDouble(new String(token, 0, token_length));
+		}catch(NumberFormatException e){
+			throw new IOException("Invalid VTK number: "+new String(token, 0, token_length));
+		}
+	}
+
+}
@@ -3,50 +3,64 @@
  */
 package plugins.davhelle.cellgraph.io;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.nodes.Node;
 
+import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.io.OutputStreamOutStream;
 import com.vividsolutions.jts.io.WKBWriter;
 
 /**
- * Experimental class for Well Known Binary input.
+ * Class to save the polygons contained in the stGraph as Well Known Binary
+ * geometries for faster re-load using the {@link WkbPolygonImporter}.
  * 
- * Similar to WKT but this version saves binary. Possible SpeedGAIN. 
+ * Similar to WKT but the coordinates are saved in binary form and
+ * do not need to be parsed when loading.
  * 
  * @author Davide Heller
  *
  */
 public class WkbPolygonExporter {
 
+	/**
+	 * Description for Exporter Plugin
+	 */
+	public static final String DESCRIPTION =
+			"Export the loaded polygon geometries as Well-Known binary(WKB).<br/>" +
+			" The WKB format is faster to load than WKT as no text<br/>" +
+			" has to be parsed, choose WKB as file type in CellGraph.<br/><br/>" +
+			"To know more about this format visit:<br/>" +
+			"en.wikipedia.org/wiki/Well-known_text";
+
 	/**
 	 * Well Known Binary writer class
 	 */
 	private WKBWriter writer;
 	
-	private WkbPolygonExporter() {
+	public WkbPolygonExporter() {
 		writer = new WKBWriter();
 	}
 
 	/**
 	 * Exports the stGraph contained frames as polygonal WKB files
 	 * 
-	 * @param stGraph
+	 * @param stGraph graph to export
+	 * @param export_folder output folder
 	 */
-	public WkbPolygonExporter(SpatioTemporalGraph stGraph){
+	public WkbPolygonExporter(SpatioTemporalGraph stGraph, String export_folder){
 		this();
 		
-		String temporary_folder = "/Users/davide/tmp/wkt_export/"; 
-		
 		for(int i=0; i < stGraph.size(); i++){
 			FrameGraph frame = stGraph.getFrame(i);
 
-			String output_name = temporary_folder;
+			String output_name = export_folder + File.separator;
 
 			if(frame.hasFileSource()){
 				File source_file = new File(frame.getFileSource());
@@ -61,27 +75,51 @@ public class WkbPolygonExporter {
 		}
 	}
 	
+	/**
+	 * Transforms single JTS geometry to WKB and saves it at the output path
+	 * 
+	 * Used for boundary ring export
+	 * 
+	 * @param geometry single JTS geometry to export
+	 * @param output_name output path
+	 */
+	public void export(Geometry geometry, String output_name){
+
+		try {
+			OutputStream os = new BufferedOutputStream(new FileOutputStream(output_name));
+			try{
+				writer.write(geometry, new OutputStreamOutStream(os));
+			}
+			finally{
+				os.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("Something went wrong while attempting to write: "+output_name);
+		}
+		
+	}
+	
 	/**
 	 * Writes binary WKB files for input frame
 	 * 
 	 * @param frame frame to be written out
 	 * @param frame_file_name output path
 	 */
-	private void exportFrame(FrameGraph frame, String frame_file_name) {
+	public void exportFrame(FrameGraph frame, String frame_file_name) {
 
-		File frame_file = new File(frame_file_name);
-		
 		try {
 
-			frame_file.createNewFile();
-
-			FileOutputStream os = new FileOutputStream(frame_file);
+			OutputStream os = new BufferedOutputStream(new FileOutputStream(frame_file_name));
 			OutputStreamOutStream os_jts = new OutputStreamOutStream(os);
 
-			for(Node cell: frame.vertexSet())
-				writer.write(cell.getGeometry(),os_jts);
-
-			os.close();
+			try{
+				for(Node cell: frame.vertexSet())
+					writer.write(cell.getGeometry(),os_jts);
+			}
+			finally{
+				os.close();
+			}
 		} catch (IOException e) {
 			e.printStackTrace();
 			System.out.println("Something went wrong while attempting to write: "+frame_file_name);
@@ -0,0 +1,120 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.InStream;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+
+/**
+ * This class allows direct import of Well Known Binary (WKB) polygons
+ * to construct a spatioTemporalGraph, see {@link WkbPolygonExporter}.
+ * Compared to the {@link WktPolygonImporter} no text has to be parsed:
+ * the file is mapped through a NIO channel and the geometries are
+ * decoded one after the other from the buffer.
+ *
+ * @author Davide Heller
+ *
+ */
+public class WkbPolygonImporter implements PolygonReader{
+
+	/**
+	 * JTS well known binary reader
+	 */
+	private WKBReader reader;
+
+	public WkbPolygonImporter() {
+		
+		reader = new WKBReader();
+
+	}
+
+	/**
+	 * Adapter to let the JTS reader consume a byte buffer
+	 */
+	private static class ByteBufferInStream implements InStream{
+		
+		private final ByteBuffer buffer;
+		
+		ByteBufferInStream(ByteBuffer buffer){
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public void read(byte[] buf) throws IOException {
+			if(buffer.remaining() < buf.length)
+				throw new IOException("Unexpected end of WKB file");
+			buffer.get(buf);
+		}
+		
+		boolean hasRemaining(){
+			return buffer.hasRemaining();
+		}
+	}
+
+	/**
+	 * Extracts all JTS geometries from the file
+	 *
+	 * Used for border line extraction
+	 * @param file_name path to WKB file
+	 * @return List of the stored geometries, null if the file could not be read
+	 */
+	public ArrayList<Geometry> extractGeometries(String file_name){
+		
+		ArrayList<Geometry> stored_geometries = new ArrayList<Geometry>();
+		
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(new File(file_name));
+			FileChannel channel = fis.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			
+			ByteBufferInStream in = new ByteBufferInStream(buffer);
+			while(in.hasRemaining())
+				stored_geometries.add(reader.read(in));
+		
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} catch (ParseException e) {
+			System.out.println("Something went wrong with the WKB reading: "+file_name);
+			return null;
+		} finally {
+			if(fis != null){
+				try {
+					fis.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		
+		return stored_geometries;
+	}
+
+	@Override
+	public ArrayList<Polygon> extractPolygons(String file_name) {
+		
+		ArrayList<Geometry> geometries = extractGeometries(file_name);
+		if(geometries == null)
+			return new ArrayList<Polygon>();
+		
+		ArrayList<Polygon> stored_polygons = new ArrayList<Polygon>(geometries.size());
+		for(Geometry geometry: geometries){
+			if(geometry instanceof Polygon)
+				stored_polygons.add((Polygon)geometry);
+			else
+				System.out.println("Skipping non polygonal WKB geometry: "+geometry.getGeometryType());
+		}
+		
+		return stored_polygons;
+	}
+
+}
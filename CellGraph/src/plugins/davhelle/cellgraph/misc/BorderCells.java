@@ -6,6 +6,7 @@ import java.util.Iterator;
 
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.io.WkbPolygonImporter;
 import plugins.davhelle.cellgraph.io.WktPolygonImporter;
 import plugins.davhelle.cellgraph.nodes.Node;
 
@@ -139,9 +140,15 @@ public class BorderCells{
 		}
 
 		//Can't remove vertices while iterating so doing it now
-		for(Node n: borderCells)
-			if(!frame_i.removeVertex(n))
-				System.out.println("Elimination went wrong, please check!");
+		frame_i.beginBatch();
+		try{
+			for(Node n: borderCells)
+				if(!frame_i.removeVertex(n))
+					System.out.println("Elimination went wrong, please check!");
+		}
+		finally{
+			frame_i.commitBatch();
+		}
 	}
 	
 	
@@ -222,5 +229,32 @@ public class BorderCells{
 			markBorderCells(frame, boundaries.get(0));
 		}
 	}
+	
+	/**
+	 * Mark the frames in the set stGraph with a collection 
+	 * of WKB border files in the folder supplied.<br><br>
+	 * 
+	 * Name convention: [export_folder]/border_000.wkb<br>
+	 * Frames without a readable border file are marked
+	 * from the union of their cells as in {@link #markOnly()}.
+	 * 
+	 * @param export_folder location of the border files
+	 */
+	public void markBorderCellsWKB(String export_folder){
+		WkbPolygonImporter wkb_importer = new WkbPolygonImporter();
+		for(int i=0; i < stGraph.size(); i++){
+			String expected_wkb_file = String.format("%s/border_%03d.wkb",export_folder,i);
+			ArrayList<Geometry> boundaries = wkb_importer.extractGeometries(expected_wkb_file);
+
+			FrameGraph frame = stGraph.getFrame(i);
+			if(boundaries == null || boundaries.isEmpty()){
+				//missing or unreadable border file
+				System.out.println("No border found in "+expected_wkb_file+", computing it from the cells");
+				this.boundaries[i] = findBorderCells(frame);
+			}
+			else
+				markBorderCells(frame, boundaries.get(0));
+		}
+	}
 
 }
@@ -0,0 +1,86 @@
+package plugins.davhelle.cellgraph.misc;
+
+/**
+ * Encoding used to pair the tracking ids of the two cells
+ * sharing an edge into a single edge code. The scheme is set 
+ * per graph, see {@link plugins.davhelle.cellgraph.graphs.FrameGraph#setEdgeKeyScheme(EdgeKeyScheme)}.
+ * 
+ * @author Davide Heller
+ *
+ */
+public enum EdgeKeyScheme {
+	
+	/**
+	 * Cantor pairing, the historical default. See {@link CantorPairing}
+	 */
+	CANTOR("Cantor pairing"){
+		@Override
+		public long compute(int a, int b) {
+			return CantorPairing.compute(a, b);
+		}
+
+		@Override
+		public int[] reverse(long code) {
+			return CantorPairing.reverse(code);
+		}
+	},
+	
+	/**
+	 * 32+32 bit packing. See {@link PackedPairing}
+	 */
+	PACKED("Packed pairing"){
+		@Override
+		public long compute(int a, int b) {
+			return PackedPairing.compute(a, b);
+		}
+
+		@Override
+		public int[] reverse(long code) {
+			return PackedPairing.reverse(code);
+		}
+	};
+	
+	private String description;
+	
+	private EdgeKeyScheme(String description){
+		this.description = description;
+	}
+	
+	/**
+	 * @return description of the scheme, used to label exported edge codes
+	 */
+	public String getDescription(){
+		return description;
+	}
+	
+	/**
+	 * @param a first id
+	 * @param b second id
+	 * @return edge code of the ordered pair
+	 */
+	public abstract long compute(int a, int b);
+	
+	/**
+	 * @param code edge code
+	 * @return ids that generated the code
+	 */
+	public abstract int[] reverse(long code);
+	
+	/**
+	 * Identifies the scheme used by an exported column header
+	 * such as "Edge id (Packed pairing)". Headers without a known
+	 * scheme were written before packed codes existed and are
+	 * read as Cantor codes.
+	 * 
+	 * @param header column header of the edge codes
+	 * @return scheme of the codes in the column
+	 */
+	public static EdgeKeyScheme fromHeader(String header){
+		for(EdgeKeyScheme scheme: values())
+			if(header.contains(scheme.getDescription()))
+				return scheme;
+		
+		return CANTOR;
+	}
+
+}
@@ -0,0 +1,128 @@
+package plugins.davhelle.cellgraph.misc;
+
+import java.util.Arrays;
+
+/**
+ * Primitive open addressing hash index mapping long keys
+ * (e.g. edge track codes) to int values (e.g. row numbers)
+ * without boxing. Collisions are resolved by linear probing,
+ * the table is doubled when more than half full.<br><br>
+ *
+ * Entries cannot be removed, keys equal to {@link Long#MIN_VALUE}
+ * are reserved.
+ *
+ * @author Davide Heller
+ *
+ */
+public class LongIntIndex {
+
+	/**
+	 * Marker of an empty slot
+	 */
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	/**
+	 * Value returned for absent keys
+	 */
+	public static final int NOT_FOUND = -1;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int mask;
+
+	/**
+	 * @param expected_size expected no. of entries
+	 */
+	public LongIntIndex(int expected_size) {
+		int capacity = 16;
+		while(capacity < expected_size * 2)
+			capacity <<= 1;
+
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity){
+		this.keys = new long[capacity];
+		this.values = new int[capacity];
+		this.mask = capacity - 1;
+		this.size = 0;
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * @param key long key
+	 * @return slot of the key or of the empty slot where it would be inserted
+	 */
+	private int slot(long key){
+		//spread the bits as consecutive codes are common
+		long h = key * 0x9E3779B97F4A7C15L;
+		int i = (int)(h ^ (h >>> 32)) & mask;
+		while(keys[i] != EMPTY && keys[i] != key)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	/**
+	 * @param key long key
+	 * @return value associated to the key or {@link #NOT_FOUND}
+	 */
+	public int get(long key){
+		int i = slot(key);
+		return keys[i] == EMPTY ? NOT_FOUND : values[i];
+	}
+
+	/**
+	 * @param key long key
+	 * @return true if the key is present
+	 */
+	public boolean containsKey(long key){
+		return keys[slot(key)] != EMPTY;
+	}
+
+	/**
+	 * Associates the value to the key, replacing any previous value
+	 *
+	 * @param key long key, not {@link Long#MIN_VALUE}
+	 * @param value int value
+	 */
+	public void put(long key, int value){
+		assert key != EMPTY: "Reserved key";
+
+		int i = slot(key);
+		if(keys[i] == EMPTY){
+			keys[i] = key;
+			size++;
+		}
+		values[i] = value;
+
+		if(size * 2 > keys.length)
+			rehash();
+	}
+
+	/**
+	 * Doubles the table size
+	 */
+	private void rehash(){
+		long[] old_keys = keys;
+		int[] old_values = values;
+
+		allocate(old_keys.length * 2);
+
+		for(int i=0; i < old_keys.length; i++)
+			if(old_keys[i] != EMPTY){
+				int j = slot(old_keys[i]);
+				keys[j] = old_keys[i];
+				values[j] = old_values[i];
+				size++;
+			}
+	}
+
+	/**
+	 * @return no. of entries
+	 */
+	public int size(){
+		return size;
+	}
+
+}
@@ -0,0 +1,41 @@
+package plugins.davhelle.cellgraph.misc;
+
+/**
+ * Uniquely identify a couple of cells marked with integer numbers
+ * by packing the first number in the upper and the second number
+ * in the lower 32 bits of a long.<br><br>
+ * 
+ * Unlike the {@link CantorPairing} the decoding requires only
+ * shifts and is exact for the whole integer range.
+ * 
+ * @author Davide Heller
+ *
+ */
+public class PackedPairing {
+
+	/**
+	 * Mask of the lower 32 bits
+	 */
+	private static final long LOWER_BITS = 0xFFFFFFFFL;
+	
+	/**
+	 * Computes a unique LONG number from to INT numbers by bit packing
+	 * 
+	 * @param a first number (upper bits)
+	 * @param b second number (lower bits)
+	 * @return unique pairing number
+	 */
+	public static long compute(int a, int b) {
+		return ((long)a << 32) | (b & LOWER_BITS);
+	}
+	
+	/**
+	 * @param z packed pairing number
+	 * @return original input pair
+	 */
+	public static int[] reverse(long z){
+		int[] input_pair = {(int)(z >>> 32), (int)z};
+		return input_pair;
+	}
+
+}
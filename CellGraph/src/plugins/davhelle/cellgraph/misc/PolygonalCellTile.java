@@ -2,6 +2,7 @@ package plugins.davhelle.cellgraph.misc;
 
 import java.util.HashMap;
 
+import plugins.davhelle.cellgraph.graphs.FrameAdjacency;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.nodes.Edge;
 import plugins.davhelle.cellgraph.nodes.Node;
@@ -36,9 +37,13 @@ public class PolygonalCellTile {
 		FrameGraph frame = source_node.getBelongingFrame(); 
 		Geometry source_geo = source_node.getGeometry();
 
-		for(Node neighbor: n.getNeighbors()){
+		FrameAdjacency adjacency = frame.getAdjacency();
+		int source_id = adjacency.getId(source_node);
+		
+		for(int k = adjacency.start(source_id); k < adjacency.end(source_id); k++){
 			
-			Edge e = frame.getEdge(source_node, neighbor);
+			Node neighbor = adjacency.getNode(adjacency.target(k));
+			Edge e = adjacency.getEdge(adjacency.edge(k));
 			
 			if(e.hasGeometry()){
 				source_tiles.put(neighbor, e.getGeometry());
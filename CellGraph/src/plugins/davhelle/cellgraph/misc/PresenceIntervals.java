@@ -0,0 +1,214 @@
+package plugins.davhelle.cellgraph.misc;
+
+import java.util.Arrays;
+
+/**
+ * Temporal presence of an object (e.g. edge or cell track) stored as
+ * a sorted list of disjoint, half open frame intervals [start, end).
+ * Frames are relative to the beginning of the observation window,
+ * which spans [0, length).<br><br>
+ *
+ * Compared to a per frame presence array only two integers are
+ * stored for every uninterrupted stretch of presence and the
+ * gap statistics are computed on the intervals.
+ *
+ * @author Davide Heller
+ *
+ */
+public class PresenceIntervals {
+
+	/**
+	 * Interval bounds: start at 2i, exclusive end at 2i+1
+	 */
+	private int[] bounds;
+	private int interval_no;
+	private int length;
+
+	/**
+	 * Empty presence
+	 *
+	 * @param length no. of frames of the observation window
+	 */
+	public PresenceIntervals(int length) {
+		this.bounds = new int[4];
+		this.interval_no = 0;
+		this.length = length;
+	}
+
+	/**
+	 * @param track per frame entries, null where absent
+	 * @return presence of the non null entries
+	 */
+	public static PresenceIntervals fromTrack(Object[] track){
+		PresenceIntervals presence = new PresenceIntervals(track.length);
+		for(int t=0; t < track.length; t++)
+			if(track[t] != null)
+				presence.add(t);
+		return presence;
+	}
+
+	/**
+	 * Marks a frame as present. Adding frames in increasing
+	 * order only extends or appends the last interval.
+	 *
+	 * @param t frame
+	 */
+	public void add(int t){
+
+		assert t >= 0 && t < length: String.format("Frame %d outside of [0,%d)", t, length);
+
+		//common case: in order
+		if(interval_no > 0 && t >= bounds[2*interval_no - 2]){
+			int last_end = bounds[2*interval_no - 1];
+			if(t < last_end)
+				return;
+			if(t == last_end){
+				bounds[2*interval_no - 1]++;
+				return;
+			}
+		}
+
+		int i = findInterval(t);
+		if(i >= 0)
+			return;
+
+		//insertion position
+		int position = -i - 1;
+
+		boolean joins_previous = position > 0 && bounds[2*position - 1] == t;
+		boolean joins_next = position < interval_no && bounds[2*position] == t + 1;
+
+		if(joins_previous && joins_next){
+			bounds[2*position - 1] = bounds[2*position + 1];
+			System.arraycopy(bounds, 2*position + 2, bounds, 2*position, 2*(interval_no - position - 1));
+			interval_no--;
+		}
+		else if(joins_previous)
+			bounds[2*position - 1]++;
+		else if(joins_next)
+			bounds[2*position]--;
+		else{
+			if(2*interval_no + 2 > bounds.length)
+				bounds = Arrays.copyOf(bounds, bounds.length * 2);
+			System.arraycopy(bounds, 2*position, bounds, 2*position + 2, 2*(interval_no - position));
+			bounds[2*position] = t;
+			bounds[2*position + 1] = t + 1;
+			interval_no++;
+		}
+	}
+
+	/**
+	 * Binary search of the interval containing t
+	 *
+	 * @param t frame
+	 * @return interval index or (-(insertion point) - 1)
+	 */
+	private int findInterval(int t){
+		int low = 0;
+		int high = interval_no - 1;
+		while(low <= high){
+			int mid = (low + high) >>> 1;
+			if(bounds[2*mid + 1] <= t)
+				low = mid + 1;
+			else if(bounds[2*mid] > t)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * @param t frame
+	 * @return true if present at frame t
+	 */
+	public boolean isPresent(int t){
+		return findInterval(t) >= 0;
+	}
+
+	/**
+	 * @return no. of uninterrupted stretches of presence
+	 */
+	public int getIntervalNo(){
+		return interval_no;
+	}
+
+	/**
+	 * @param i interval index
+	 * @return first frame of the interval
+	 */
+	public int getStart(int i){
+		return bounds[2*i];
+	}
+
+	/**
+	 * @param i interval index
+	 * @return frame after the last frame of the interval
+	 */
+	public int getEnd(int i){
+		return bounds[2*i + 1];
+	}
+
+	/**
+	 * @return no. of frames of the observation window
+	 */
+	public int getLength(){
+		return length;
+	}
+
+	/**
+	 * @return total no. of frames with presence
+	 */
+	public int getSurvival(){
+		int survival = 0;
+		for(int i=0; i < interval_no; i++)
+			survival += bounds[2*i + 1] - bounds[2*i];
+		return survival;
+	}
+
+	/**
+	 * @return true if present in every frame of the window
+	 */
+	public boolean isComplete(){
+		return interval_no == 1 && bounds[0] == 0 && bounds[1] == length;
+	}
+
+	/**
+	 * @return first absent frame of the window, -1 if always present
+	 */
+	public int getFirstGap(){
+		if(interval_no == 0)
+			return length > 0 ? 0 : -1;
+		if(bounds[0] > 0)
+			return 0;
+		return bounds[1] < length ? bounds[1] : -1;
+	}
+
+	/**
+	 * Longest stretch of absence after the first presence, including
+	 * the absence at the end of the window. The earliest wins ties.
+	 *
+	 * @return {start, length} of the longest gap, {-1, 0} if none
+	 */
+	public int[] getLongestGap(){
+		int[] longest = {-1, 0};
+		for(int i=0; i < interval_no; i++){
+			int gap_start = bounds[2*i + 1];
+			int gap_end = i + 1 < interval_no ? bounds[2*i + 2] : length;
+			if(gap_end - gap_start > longest[1]){
+				longest[0] = gap_start;
+				longest[1] = gap_end - gap_start;
+			}
+		}
+		return longest;
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder builder = new StringBuilder();
+		for(int i=0; i < interval_no; i++)
+			builder.append(String.format("[%d,%d)", bounds[2*i], bounds[2*i + 1]));
+		return builder.toString();
+	}
+
+}
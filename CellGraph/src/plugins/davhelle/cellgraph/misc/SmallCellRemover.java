@@ -60,9 +60,27 @@ public class SmallCellRemover {
 	 */
 	public int removeCellsOnFrame(int time_point, double threshold) {
 		
+		FrameGraph frame = stGraph.getFrame(time_point);
+		
+		//geometries and edges are modified before the removal
+		frame.writeLock().lock();
+		try{
+			return removeCellsOnFrame(frame, threshold);
+		}
+		finally{
+			frame.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * @param frame frame to be processed, write locked
+	 * @param threshold area threshold below which cells are eliminated.
+	 * @return number of removed cells
+	 */
+	private int removeCellsOnFrame(FrameGraph frame, double threshold) {
+		
 		ArrayList<Node> small_cell_list = new ArrayList<Node>();
 		
-		FrameGraph frame = stGraph.getFrame(time_point);
 		for(Node cell:frame.vertexSet())
 			if(cell.getGeometry().getArea() < threshold){
 				small_cell_list.add(cell);
@@ -82,10 +100,14 @@ public class SmallCellRemover {
 					Node max_length_candidate = null;
 					Geometry small_cell_geom = cell.getGeometry();
 					for(Node neighbor: cell.getNeighbors()){
-						Geometry neighbor_intersection = small_cell_geom.intersection(neighbor.getGeometry());
 						
 						//use the getLength method to find the largest intersection
-						double intersection_length = neighbor_intersection.getLength();
+						double intersection_length = 0;
+						Edge e = frame.getEdge(cell, neighbor);
+						if(e.hasGeometry())
+							intersection_length = e.getGeometry().getLength();
+						else
+							intersection_length = small_cell_geom.intersection(neighbor.getGeometry()).getLength();
 						
 						if( intersection_length > max_length){
 							max_length = intersection_length;
@@ -104,13 +126,24 @@ public class SmallCellRemover {
 
 						//max_area_candidate obtains union with to_small_cell as new area
 						max_length_candidate.setGeometry(max_length_candidate.getGeometry().union(small_cell_geom));
+						
+						//shared edges of the enlarged cell have to be recomputed
+						for(Node neighbor: max_length_candidate.getNeighbors())
+							frame.getEdge(max_length_candidate, neighbor).setGeometry(null);
 
 					}
 				}
 			
 			}
 		
-		frame.removeAllVertices(small_cell_list);
+		//neighbor index is rebuilt once after all removals
+		frame.beginBatch();
+		try{
+			frame.removeAllVertices(small_cell_list);
+		}
+		finally{
+			frame.commitBatch();
+		}
 		
 		return small_cell_list.size();
 	}
@@ -30,11 +30,17 @@ public class T1Transition {
 	int[] winnerNodes;
 	
 	/**
-	 * For every time point store the
-	 * presence or absence of the old
-	 * edge
+	 * Frames in which the old edge is present
 	 */
-	Long[] lostEdgeTrack;
+	PresenceIntervals lostEdgePresence;
+	
+	/**
+	 * First frame and edge code of every stretch
+	 * in which the old edge is present with
+	 * the same code
+	 */
+	int[] lostEdgeRunStarts;
+	long[] lostEdgeRunCodes;
 	
 	/**
 	 * Store when the first stable transition
@@ -69,7 +75,8 @@ public class T1Transition {
 	public T1Transition(SpatioTemporalGraph stGraph, int[] pair, Long[] edge_track, int starting_frame) {
 		
 		this.stGraph = stGraph;
-		this.lostEdgeTrack = edge_track;
+		this.lostEdgePresence = PresenceIntervals.fromTrack(edge_track);
+		storeRunCodes(edge_track);
 		this.startingFrame = starting_frame;
 		
 		assert pair.length == 2: "input pair is not of length 2";
@@ -86,63 +93,84 @@ public class T1Transition {
 		
 	}
 
+	/**
+	 * Keep one edge code for every run of equal codes
+	 * instead of the entire track
+	 * 
+	 * @param edge_track edge codes for every frame, null where absent
+	 */
+	private void storeRunCodes(Long[] edge_track){
+		
+		int run_no = 0;
+		for(int t=0; t < edge_track.length; t++)
+			if(isRunStart(edge_track, t))
+				run_no++;
+		
+		lostEdgeRunStarts = new int[run_no];
+		lostEdgeRunCodes = new long[run_no];
+		
+		int run = 0;
+		for(int t=0; t < edge_track.length; t++)
+			if(isRunStart(edge_track, t)){
+				lostEdgeRunStarts[run] = t;
+				lostEdgeRunCodes[run] = edge_track[t];
+				run++;
+			}
+	}
+	
+	private static boolean isRunStart(Long[] edge_track, int t){
+		return edge_track[t] != null && (t == 0 || !edge_track[t].equals(edge_track[t-1]));
+	}
+	
+	/**
+	 * @param frame_no absolute frame number
+	 * @return code of the old edge in the frame or null if absent
+	 */
+	public Long getOldEdgeCode(int frame_no){
+		
+		int t = frame_no - startingFrame;
+		if(t < 0 || t >= lostEdgePresence.getLength() || !lostEdgePresence.isPresent(t))
+			return null;
+		
+		//last run starting at or before t
+		int run = Arrays.binarySearch(lostEdgeRunStarts, t);
+		if(run < 0)
+			run = -run - 2;
+		
+		return lostEdgeRunCodes[run];
+	}
+	
 	/**
 	 * @return the first time point in which the old edge is missing 
 	 */
 	private int findFirstMissingFrameNo(){
 		
-		for(int i=0; i<lostEdgeTrack.length; i++)
-			if(lostEdgeTrack[i] == null)
-				return i + startingFrame;
+		int first_gap = lostEdgePresence.getFirstGap();
+		if(first_gap == -1)
+			return -1;
 		
-		return -1;
+		return first_gap + startingFrame;
 	}
 	
 	/**
-	 * Determine how long the transition was observed
+	 * Determine how long the transition was observed, i.e. the
+	 * longest stretch in which the old edge is missing. Sets the
+	 * detection time point to its beginning.
 	 * 
 	 * @return maximal consecutive transition length
 	 */
 	private int computeTransitionLength(){
 		
-		//compute the transition vector, i.e. length of every transition
-		int[] transition_vector = new int[lostEdgeTrack.length];
-		for(int i=detectionTimePoint - startingFrame; i<lostEdgeTrack.length; i++)
-			if(lostEdgeTrack[i] == null){
-				transition_vector[i] = transition_vector[i-1] + 1;
-				transition_vector[i-1] = 0;
-			}
-			else
-				oldEdgeSurvivalLength++;
-		
-		//Identify the longest consecutive transition
-		int max_length = 0;
-		for(int i=0; i<transition_vector.length; i++) {
-			if(transition_vector[i] > max_length){
-				max_length = transition_vector[i];
-				// i:current transition position; max_length:recorded length at i;
-				// detection point identifies the beginning of the stretch (+1)
-				// startingFrame adjust the time point for a later analysis point chosen by the user
-				detectionTimePoint = i - max_length  + 1 + startingFrame;
-			}
-		}
+		//all frames before the first missing one contain the old edge
+		oldEdgeSurvivalLength = startingFrame + lostEdgePresence.getSurvival();
 		
-//		//Count the number of Transitions (i.e. minimum number of consecutive losses is 3)
-//		Arrays.sort(transition_vector);
-//		int array_end = transition_vector.length - 1;
-//		for(int i=array_end; i>=0; i--){
-//			if(transition_vector[i] < 1){
-//				System.out.printf("Found %d permanent track/s out of %d persistent change/s: %s\n",
-//						array_end - i, 
-//						transition_length,
-//						Arrays.toString(
-//								Arrays.copyOfRange(transition_vector, i+1, array_end+1)));
-//				break;
-//			}
-//		}
+		int[] longest_gap = lostEdgePresence.getLongestGap();
+		
+		// startingFrame adjust the time point for a later analysis point chosen by the user
+		if(longest_gap[1] > 0)
+			detectionTimePoint = longest_gap[0] + startingFrame;
 		
-		//review which transition is given as output
-		return max_length;
+		return longest_gap[1];
 	}
 	
 	
@@ -179,6 +207,18 @@ public class T1Transition {
 		return winnerNodes;
 	}
 	
+	/**
+	 * Sets the winner cells identified externally, 
+	 * e.g. by the {@link T1TransitionDetector}
+	 * 
+	 * @param winner1 tracking id of the first winner cell
+	 * @param winner2 tracking id of the second winner cell
+	 */
+	public void setWinnerNodes(int winner1, int winner2){
+		winnerNodes[0] = winner1;
+		winnerNodes[1] = winner2;
+	}
+	
 	/**
 	 * @return frame in which the longest consecutive detection begins
 	 */
@@ -207,7 +247,8 @@ public class T1Transition {
 		FrameGraph previous_frame = stGraph.getFrame(previous_frame_no);
 		
 		// get the actual tracking code from the array
-		int[] loserNodes = Edge.getCodePair(lostEdgeTrack[previous_frame_no - startingFrame]);
+		int[] loserNodes = Edge.getCodePair(getOldEdgeCode(previous_frame_no),
+				previous_frame.getEdgeKeyScheme());
 		
 		assert previous_frame.hasTrackID(loserNodes[0]): "Looser node not found in previous frame";
 		assert previous_frame.hasTrackID(loserNodes[1]): "Looser node not found in previous frame";
@@ -232,7 +273,8 @@ public class T1Transition {
 		FrameGraph previous_frame = stGraph.getFrame(previous_frame_no);
 		
 		// get the actual tracking code from the array
-		int[] loserNodes = Edge.getCodePair(lostEdgeTrack[previous_frame_no - startingFrame]);
+		int[] loserNodes = Edge.getCodePair(getOldEdgeCode(previous_frame_no),
+				previous_frame.getEdgeKeyScheme());
 		
 		assert previous_frame.hasTrackID(loserNodes[0]): "Looser node not found in previous frame";
 		assert previous_frame.hasTrackID(loserNodes[1]): "Looser node not found in previous frame";
@@ -0,0 +1,485 @@
+package plugins.davhelle.cellgraph.misc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.PlanarTopologyBuilder;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.nodes.Edge;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Polygon;
+
+/**
+ * Parallel T1 transition detection on the result of an
+ * {@link plugins.davhelle.cellgraph.tracking.EdgeTracking}.<br><br>
+ *
+ * The acceptance criteria are the same as in the serial
+ * headless.DetectT1Transition#findTransitions, but:<br>
+ *
+ * <ul>
+ * <li> the edge tracks are evaluated concurrently in chunks
+ * <li> cells are looked up by tracking id with one hash index per frame
+ * <li> the winner cells are read from the junctions at the ends of the
+ *      lost edge, precomputed per frame with a {@link PlanarTopologyBuilder},
+ *      instead of intersecting the lost edge with every neighbor
+ * <li> accepted transitions are passed to an optional {@link T1TransitionListener}
+ *      as soon as their chunk is completed
+ * </ul>
+ *
+ * Frames whose cells are not all polygons fall back to the intersection test.
+ *
+ * @author Davide Heller
+ *
+ */
+public class T1TransitionDetector {
+
+	/**
+	 * No. of edge tracks evaluated by a single task
+	 */
+	private static final int CHUNK_SIZE = 256;
+
+	private SpatioTemporalGraph stGraph;
+	private HashMap<Long, Long[]> tracked_edges;
+	private int minimal_transition_length;
+	private int minimal_old_edge_survival_length;
+	private int starting_frame;
+	private T1TransitionListener listener;
+	private boolean verbose;
+
+	/**
+	 * Track id index for every frame
+	 */
+	private List<Map<Integer, Node>> frame_nodes;
+
+	/**
+	 * Cells meeting at the junctions of every edge for every frame,
+	 * null for frames that require the intersection test
+	 */
+	private List<Map<Edge, List<Node>>> frame_junctions;
+
+	/**
+	 * @param stGraph tracked graph
+	 * @param tracked_edges edge tracking result
+	 * @param minimalTransitionLength minimal time/frameNo the transition should persist
+	 * @param minimalOldEdgeSurvivalLength minimal time/frameNo the old edge should persist
+	 * @param starting_frame frame at which the edge tracking started
+	 */
+	public T1TransitionDetector(SpatioTemporalGraph stGraph,
+			HashMap<Long, Long[]> tracked_edges,
+			int minimalTransitionLength,
+			int minimalOldEdgeSurvivalLength,
+			int starting_frame) {
+
+		this.stGraph = stGraph;
+		this.tracked_edges = tracked_edges;
+		this.minimal_transition_length = minimalTransitionLength;
+		this.minimal_old_edge_survival_length = minimalOldEdgeSurvivalLength;
+		this.starting_frame = starting_frame;
+		this.listener = null;
+		this.verbose = true;
+	}
+
+	/**
+	 * @param listener receiver of the accepted transitions during the detection
+	 */
+	public void setListener(T1TransitionListener listener){
+		this.listener = listener;
+	}
+
+	/**
+	 * @param verbose true to print the acceptance and rejection of every transition
+	 */
+	public void setVerbose(boolean verbose){
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Runs the detection
+	 *
+	 * @param thread_no no. of concurrent tasks
+	 * @return accepted transitions in iteration order of the edge tracks
+	 */
+	public ArrayList<T1Transition> findTransitions(int thread_no){
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, thread_no));
+
+		ArrayList<T1Transition> stable_transitions = new ArrayList<T1Transition>();
+		ArrayList<T1Transition> divisions_with_transitions = new ArrayList<T1Transition>();
+
+		try{
+			indexFrames(executor);
+
+			//split the edge tracks into chunks
+			List<List<Long>> chunks = new ArrayList<List<Long>>();
+			List<Long> chunk = null;
+			for(Long track_code: tracked_edges.keySet()){
+				if(chunk == null || chunk.size() == CHUNK_SIZE){
+					chunk = new ArrayList<Long>(CHUNK_SIZE);
+					chunks.add(chunk);
+				}
+				chunk.add(track_code);
+			}
+
+			CompletionService<ChunkResult> completion = new ExecutorCompletionService<ChunkResult>(executor);
+			for(int i=0; i < chunks.size(); i++){
+				final int chunk_no = i;
+				final List<Long> codes = chunks.get(i);
+				completion.submit(new Callable<ChunkResult>() {
+					@Override
+					public ChunkResult call() {
+						return evaluateChunk(chunk_no, codes);
+					}
+				});
+			}
+
+			//stream the results in order of completion
+			ChunkResult[] results = new ChunkResult[chunks.size()];
+			for(int i=0; i < chunks.size(); i++){
+				ChunkResult result = completion.take().get();
+				results[result.chunk_no] = result;
+
+				if(verbose)
+					System.out.print(result.log);
+
+				if(listener != null)
+					for(T1Transition transition: result.transitions)
+						listener.transitionFound(transition);
+			}
+
+			for(ChunkResult result: results){
+				stable_transitions.addAll(result.transitions);
+				divisions_with_transitions.addAll(result.division_transitions);
+			}
+
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+		} finally {
+			executor.shutdown();
+		}
+
+		if(verbose)
+			for(T1Transition t1: divisions_with_transitions)
+				System.out.println("T1wDivision:\n"+t1.toString());
+
+		return stable_transitions;
+	}
+
+	/**
+	 * Accepted transitions and messages of a chunk of edge tracks
+	 */
+	private static class ChunkResult{
+		final int chunk_no;
+		final List<T1Transition> transitions;
+		final List<T1Transition> division_transitions;
+		final StringBuilder log;
+
+		ChunkResult(int chunk_no){
+			this.chunk_no = chunk_no;
+			this.transitions = new ArrayList<T1Transition>();
+			this.division_transitions = new ArrayList<T1Transition>();
+			this.log = new StringBuilder();
+		}
+	}
+
+	/**
+	 * Builds the track id and junction indices of all frames concurrently
+	 *
+	 * @param executor executor to use
+	 */
+	private void indexFrames(ExecutorService executor) throws InterruptedException, ExecutionException{
+
+		List<Future<Map<Integer, Node>>> node_futures = new ArrayList<Future<Map<Integer, Node>>>();
+		List<Future<Map<Edge, List<Node>>>> junction_futures = new ArrayList<Future<Map<Edge, List<Node>>>>();
+
+		for(int i=0; i < stGraph.size(); i++){
+			final FrameGraph frame = stGraph.getFrame(i);
+
+			node_futures.add(executor.submit(new Callable<Map<Integer, Node>>() {
+				@Override
+				public Map<Integer, Node> call() {
+					return indexTrackIds(frame);
+				}
+			}));
+
+			if(i < starting_frame)
+				junction_futures.add(null);
+			else
+				junction_futures.add(executor.submit(new Callable<Map<Edge, List<Node>>>() {
+					@Override
+					public Map<Edge, List<Node>> call() {
+						return indexJunctions(frame);
+					}
+				}));
+		}
+
+		frame_nodes = new ArrayList<Map<Integer, Node>>(stGraph.size());
+		frame_junctions = new ArrayList<Map<Edge, List<Node>>>(stGraph.size());
+		for(int i=0; i < stGraph.size(); i++){
+			frame_nodes.add(node_futures.get(i).get());
+			frame_junctions.add(junction_futures.get(i) == null ? null : junction_futures.get(i).get());
+		}
+	}
+
+	/**
+	 * @param frame frame to index
+	 * @return map from track id to node (first node for duplicate ids)
+	 */
+	private static Map<Integer, Node> indexTrackIds(FrameGraph frame){
+		Map<Integer, Node> index = new HashMap<Integer, Node>();
+		for(Node n: frame.vertexSet())
+			if(!index.containsKey(n.getTrackID()))
+				index.put(n.getTrackID(), n);
+		return index;
+	}
+
+	/**
+	 * Finds for every edge the other cells meeting at its end junctions
+	 *
+	 * @param frame frame to index
+	 * @return map from edge to junction cells or null if the frame contains non polygonal cells or no shared linework
+	 */
+	private static Map<Edge, List<Node>> indexJunctions(FrameGraph frame){
+
+		Node[] nodes = frame.vertexSet().toArray(new Node[frame.vertexSet().size()]);
+		List<Polygon> polygons = new ArrayList<Polygon>(nodes.length);
+		for(Node n: nodes){
+			if(!(n.getGeometry() instanceof Polygon))
+				return null;
+			polygons.add((Polygon)n.getGeometry());
+		}
+
+		//non noded input, fall back to the intersection test
+		PlanarTopologyBuilder topology = new PlanarTopologyBuilder(polygons);
+		if(topology.getSharedSegmentNo() == 0 && polygons.size() > 1)
+			return null;
+
+		Map<Edge, List<Node>> junction_cells = new HashMap<Edge, List<Node>>();
+
+		for(Coordinate junction: topology.getJunctions()){
+			int[] cells = topology.getJunctionPolygons(junction);
+
+			for(int j=0; j < cells.length; j++)
+				for(int k=j+1; k < cells.length; k++){
+					Edge e = frame.getEdge(nodes[cells[j]], nodes[cells[k]]);
+					if(e == null)
+						continue;
+
+					List<Node> others = junction_cells.get(e);
+					if(others == null){
+						others = new ArrayList<Node>(2);
+						junction_cells.put(e, others);
+					}
+
+					for(int cell: cells)
+						if(cell != cells[j] && cell != cells[k] && !others.contains(nodes[cell]))
+							others.add(nodes[cell]);
+				}
+		}
+
+		return junction_cells;
+	}
+
+	/**
+	 * Evaluates a chunk of edge tracks
+	 *
+	 * @param chunk_no position of the chunk
+	 * @param codes track codes of the chunk
+	 * @return accepted transitions and messages
+	 */
+	private ChunkResult evaluateChunk(int chunk_no, List<Long> codes){
+
+		ChunkResult result = new ChunkResult(chunk_no);
+		Map<Integer, Node> first_frame = frame_nodes.get(0);
+
+		edge_loop:
+		for(long track_code: codes){
+			Long[] edge_track = tracked_edges.get(track_code);
+
+			if(hasStableTrack(edge_track))
+				continue;
+
+			//determine whether a persistent Edge Change occurred
+			int[] pair = Edge.getCodePair(track_code, stGraph.getEdgeKeyScheme());
+			T1Transition transition = new T1Transition(stGraph, pair, edge_track, starting_frame);
+
+			boolean has_minimal_durationNew = transition.length() >= minimal_transition_length;
+			boolean has_minimal_durationOld = transition.getOldEdgeSurvivalLength() >= minimal_old_edge_survival_length;
+
+			if(!has_minimal_durationOld || !has_minimal_durationNew){
+				if(onBoundary(transition))
+					result.log.append(String.format("Rejected Side Loss: %s @ %d occurs on Boundary\n",
+							Arrays.toString(transition.getLoserNodes()),
+							transition.getDetectionTime()));
+				else
+					result.log.append(String.format("Rejected Side Loss: %s @ %d is persistent only for %d frames\n",
+							Arrays.toString(transition.getLoserNodes()),
+							transition.getDetectionTime(),
+							transition.length()));
+				continue;
+			}
+
+			result.log.append(String.format("Accepted Side Loss: %s @ %d is persistent for %d frames\n",
+					Arrays.toString(transition.getLoserNodes()),
+					transition.getDetectionTime(),
+					transition.length()));
+
+			if(!findSideGain(transition)){
+				result.log.append("\n\tREJECTED! BOUNDARY ISSUES\n");
+				continue;
+			}
+
+			result.log.append(String.format("\tProposed Side Gain: %s\n",
+					Arrays.toString(transition.getWinnerNodes())));
+
+			//Verify winner cells
+			boolean has_division = false;
+			for(int track_id: transition.getWinnerNodes()){
+				//are tracked
+				if(track_id == -1)
+					continue edge_loop;
+				//are not mother cells (daughter ids cannot be present in the first frame)
+				Node first = first_frame.get(track_id);
+				if(first != null && first.hasObservedDivision())
+					has_division = true;
+			}
+
+			if(has_division)
+				result.division_transitions.add(transition);
+
+			result.transitions.add(transition);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @param edge_track edge codes for every frame
+	 * @return true if the edge is present in every frame
+	 */
+	private static boolean hasStableTrack(Long[] edge_track){
+		for(Long tracked_in_frame_i: edge_track)
+			if(tracked_in_frame_i == null)
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * @param transition transition to analyze
+	 * @return loser nodes in the frame previous to the detection or null if not found
+	 */
+	private Node[] getPreviousLosers(T1Transition transition){
+
+		int previous_frame_no = transition.getDetectionTime() - 1;
+		Long code = transition.getOldEdgeCode(previous_frame_no);
+		if(code == null)
+			return null;
+
+		int[] loser_ids = Edge.getCodePair(code, stGraph.getEdgeKeyScheme());
+		Map<Integer, Node> previous_nodes = frame_nodes.get(previous_frame_no);
+
+		Node[] losers = {previous_nodes.get(loser_ids[0]), previous_nodes.get(loser_ids[1])};
+		if(losers[0] == null || losers[1] == null)
+			return null;
+
+		return losers;
+	}
+
+	/**
+	 * @param transition transition to analyze
+	 * @return true if a loser cell is on the boundary (or missing) before the detection
+	 */
+	private boolean onBoundary(T1Transition transition){
+		Node[] losers = getPreviousLosers(transition);
+		if(losers == null)
+			return true;
+
+		return losers[0].onBoundary() || losers[1].onBoundary();
+	}
+
+	/**
+	 * Identification of the winner cells, see {@link T1Transition#findSideGain(HashMap)}
+	 *
+	 * @param transition transition to analyze
+	 * @return true if two winner cells were found
+	 */
+	private boolean findSideGain(T1Transition transition){
+
+		Node[] losers = getPreviousLosers(transition);
+		if(losers == null)
+			return false;
+
+		int previous_frame_no = transition.getDetectionTime() - 1;
+		FrameGraph previous_frame = stGraph.getFrame(previous_frame_no);
+		Edge lost_edge = previous_frame.getEdge(losers[0], losers[1]);
+		if(lost_edge == null)
+			return false;
+
+		List<Node> side_gain_nodes;
+		Map<Edge, List<Node>> junctions = frame_junctions.get(previous_frame_no);
+		if(junctions != null){
+			side_gain_nodes = junctions.get(lost_edge);
+			if(side_gain_nodes == null)
+				return false;
+		}
+		else
+			side_gain_nodes = intersectNeighbors(previous_frame, lost_edge, losers[0], losers[1]);
+
+		if(side_gain_nodes.size() < 2){
+			if(side_gain_nodes.size() == 1)
+				System.out.printf("Problems with winner node %d in frame %d, Loosers (%d,%d) ",
+						side_gain_nodes.get(0).getTrackID(),
+						transition.getDetectionTime(),
+						losers[0].getTrackID(),
+						losers[1].getTrackID());
+			return false;
+		}
+
+		transition.setWinnerNodes(
+				side_gain_nodes.get(0).getTrackID(),
+				side_gain_nodes.get(1).getTrackID());
+
+		return true;
+	}
+
+	/**
+	 * Fallback for frames without planar topology: neighbors
+	 * of the first loser intersecting the lost edge
+	 */
+	private List<Node> intersectNeighbors(FrameGraph frame, Edge lost_edge, Node l1, Node l2){
+
+		Geometry lost_edge_geometry = lost_edge.getGeometry();
+		if(lost_edge_geometry == null)
+			lost_edge_geometry = l1.getGeometry().intersection(l2.getGeometry());
+
+		//edgesOf instead of the lazily filled neighbor index, which is not thread safe
+		List<Node> side_gain_nodes = new ArrayList<Node>();
+		for(Edge e: frame.edgesOf(l1)){
+			Node n = frame.getEdgeSource(e);
+			if(n == l1)
+				n = frame.getEdgeTarget(e);
+			
+			if(!n.equals(l2) && lost_edge_geometry.intersects(n.getGeometry()))
+				side_gain_nodes.add(n);
+		}
+
+		return side_gain_nodes;
+	}
+
+}
@@ -0,0 +1,20 @@
+package plugins.davhelle.cellgraph.misc;
+
+/**
+ * Receives the T1 transitions accepted by a {@link T1TransitionDetector}
+ * while the detection is still running.
+ * 
+ * @author Davide Heller
+ *
+ */
+public interface T1TransitionListener {
+
+	/**
+	 * Called once for every accepted transition from the thread
+	 * that started the detection
+	 * 
+	 * @param transition accepted transition with identified winner cells
+	 */
+	public void transitionFound(T1Transition transition);
+	
+}
@@ -7,6 +7,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.nodes.Node;
 
@@ -42,38 +43,56 @@ public class VoronoiGenerator {
 		System.out.println(sequence.getWidth() + "," + sequence.getHeight());
 		
 		//for every frame
-		for(int i=0; i<stGraph.size(); i++){
-			
-			//Set up JTS Voronoi diagram builder
-			VoronoiDiagramBuilder vdb = new VoronoiDiagramBuilder();
-			vdb.setClipEnvelope(new Envelope(0, sequence.getWidth(), 0, sequence.getHeight()));
-			Collection<Coordinate> coords = new ArrayList<Coordinate>();
+		for(int i=0; i<stGraph.size(); i++)
+			computeFrame(stGraph.getFrame(i),
+					sequence.getWidth(), sequence.getHeight(),
+					nodeVoronoiMap, areaDifferenceMap);
+	}
+	
+	/**
+	 * Computes the voronoi tesselation of a single frame
+	 * 
+	 * @param frame frame for which to compute the tesselation
+	 * @param width image width used to clip the diagram
+	 * @param height image height used to clip the diagram
+	 * @param nodeVoronoiMap map to which the voronoi tile of every cell is added
+	 * @param areaDifferenceMap map to which the area difference of every cell is added, can be null
+	 */
+	public static void computeFrame(FrameGraph frame, int width, int height,
+			Map<Node, Geometry> nodeVoronoiMap, Map<Node, Double> areaDifferenceMap){
+		
+		//Set up JTS Voronoi diagram builder
+		VoronoiDiagramBuilder vdb = new VoronoiDiagramBuilder();
+		vdb.setClipEnvelope(new Envelope(0, width, 0, height));
+		Collection<Coordinate> coords = new ArrayList<Coordinate>();
 
-			for(Node cell: stGraph.getFrame(i).vertexSet())
-				coords.add(cell.getCentroid().getCoordinate());
-			
-			//set voronoi diagram sites with cell center coordinates
-			vdb.setSites(coords);
-			
-			Geometry voronoiDiagram = vdb.getDiagram(new GeometryFactory());
-			
-			//find mapping between voronoi_polygons and cell_centers
-			for(int j=0; j<voronoiDiagram.getNumGeometries(); j++){
-					Geometry voroniPolygon = voronoiDiagram.getGeometryN(j);
-					for(Node cell: stGraph.getFrame(i).vertexSet()){
-						if(voroniPolygon.contains(cell.getCentroid())){
-							nodeVoronoiMap.put(cell, voroniPolygon);		
-							
-							//Compute area differnce between polygonal cell and area
-							double cell_area = cell.getGeometry().getArea();
-							double voronoi_area = voroniPolygon.getArea();
-							double area_difference = cell_area - voronoi_area;
-							
-							areaDifferenceMap.put(cell, area_difference);
-						}
+		for(Node cell: frame.vertexSet())
+			coords.add(cell.getCentroid().getCoordinate());
+		
+		//set voronoi diagram sites with cell center coordinates
+		vdb.setSites(coords);
+		
+		Geometry voronoiDiagram = vdb.getDiagram(new GeometryFactory());
+		
+		//find mapping between voronoi_polygons and cell_centers
+		for(int j=0; j<voronoiDiagram.getNumGeometries(); j++){
+				Geometry voroniPolygon = voronoiDiagram.getGeometryN(j);
+				for(Node cell: frame.vertexSet()){
+					if(voroniPolygon.contains(cell.getCentroid())){
+						nodeVoronoiMap.put(cell, voroniPolygon);		
+						
+						if(areaDifferenceMap == null)
+							continue;
+						
+						//Compute area differnce between polygonal cell and area
+						double cell_area = cell.getGeometry().getArea();
+						double voronoi_area = voroniPolygon.getArea();
+						double area_difference = cell_area - voronoi_area;
 						
+						areaDifferenceMap.put(cell, area_difference);
 					}
-			}
+					
+				}
 		}
 	}
 	
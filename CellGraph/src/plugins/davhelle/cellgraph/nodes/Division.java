@@ -1,5 +1,6 @@
 package plugins.davhelle.cellgraph.nodes;
 
+import plugins.davhelle.cellgraph.graphs.FrameAdjacency;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.tracking.TrackingFeedback;
 
@@ -321,10 +322,14 @@ public class Division {
 	public boolean isBrotherPresent(Node child){
 		Node brother = this.getBrother(child.getFirst());
 		
-		if(brother != null)
-			for(Node neighbor: child.getNeighbors())	
-				if(neighbor.getFirst() == brother)
-					return true;
+		if(brother != null){
+			FrameAdjacency adjacency = child.getBelongingFrame().getAdjacency();
+			int child_id = adjacency.getId(child);
+			if(child_id != -1)
+				for(int k = adjacency.start(child_id); k < adjacency.end(child_id); k++)
+					if(adjacency.getNode(adjacency.target(k)).getFirst() == brother)
+						return true;
+		}
 
 		return false;
 	}
@@ -6,6 +6,7 @@ import org.jgrapht.graph.DefaultWeightedEdge;
 
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.misc.CantorPairing;
+import plugins.davhelle.cellgraph.misc.EdgeKeyScheme;
 import plugins.davhelle.cellgraph.overlays.EdgeColorTagOverlay;
 
 import com.vividsolutions.jts.geom.Geometry;
@@ -112,8 +113,8 @@ public class Edge extends DefaultWeightedEdge {
 	}
 	
 	/**
-	 * Tracking code associated to the edge. Based on the cantor
-	 * pairing of the vertex ids. See {@link CantorPairing} for more details.
+	 * Tracking code associated to the edge. Based on the pairing
+	 * of the vertex ids with the {@link EdgeKeyScheme} of the frame.
 	 * 
 	 * @param frame FrameGraph to which the edge belongs
 	 * @return tracking id
@@ -131,7 +132,7 @@ public class Edge extends DefaultWeightedEdge {
 		
 		//this.trackId = computePairCode(a, b);
 		
-		return computePairCode(a, b);
+		return computePairCode(a, b, frame.getEdgeKeyScheme());
 		
 	}
 
@@ -143,10 +144,22 @@ public class Edge extends DefaultWeightedEdge {
 	 * @return cantor pairing of ordered ids
 	 */
 	public static long computePairCode(int a, int b) {
+		return computePairCode(a, b, EdgeKeyScheme.CANTOR);
+	}
+	
+	/**
+	 * Returns the pairing of the ordered ids
+	 * 
+	 * @param a id 1
+	 * @param b id 2
+	 * @param scheme pairing scheme to use
+	 * @return pairing of ordered ids
+	 */
+	public static long computePairCode(int a, int b, EdgeKeyScheme scheme) {
 		if(a<b)
-			return CantorPairing.compute(a, b);
+			return scheme.compute(a, b);
 		else
-			return CantorPairing.compute(b, a);
+			return scheme.compute(b, a);
 	}
 	
 	/**
@@ -156,6 +169,17 @@ public class Edge extends DefaultWeightedEdge {
 	 * @return pair of generating vertex ids
 	 */
 	public static int[] getCodePair(long code){
+		return getCodePair(code, EdgeKeyScheme.CANTOR);
+	}
+	
+	/**
+	 * Return the tracking ids of the vertices associated to the trackin id
+	 * 
+	 * @param code tracking id
+	 * @param scheme pairing scheme that generated the code
+	 * @return pair of generating vertex ids
+	 */
+	public static int[] getCodePair(long code, EdgeKeyScheme scheme){
 		
 		//TODO: proper -1 management
 		
@@ -164,7 +188,7 @@ public class Edge extends DefaultWeightedEdge {
 			return invalid_pair;
 		}
 		else
-			return CantorPairing.reverse(code);
+			return scheme.reverse(code);
 		
 	}
 	
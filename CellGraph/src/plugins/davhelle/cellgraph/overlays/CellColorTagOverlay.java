@@ -140,24 +140,28 @@ public class CellColorTagOverlay extends StGraphOverlay {
 			Coordinate point_coor = new Coordinate(imagePoint.getX(), imagePoint.getY());
 			Point point_geometry = factory.createPoint(point_coor);			
 			
-			FrameGraph frame_i = stGraph.getFrame(time_point);
-			for(Node cell: frame_i.vertexSet())
-			 	if(cell.getGeometry().contains(point_geometry)){
-			 		tags_exist = true;
-			 		
-			 		Color new_tag = tag_color.getValue().getColor();
+			beginModification();
+			try{
+				FrameGraph frame_i = stGraph.getFrame(time_point);
+				for(Node cell: frame_i.vertexSet())
+				 	if(cell.getGeometry().contains(point_geometry)){
+				 		tags_exist = true;
+				 		
+				 		Color new_tag = tag_color.getValue().getColor();
 
-			 		if(cell.hasColorTag()){
-			 			Color current_tag = cell.getColorTag();
-			 			if(current_tag == new_tag)
-			 				propagateTag(cell,null);
-			 			else
-			 				propagateTag(cell,new_tag);
-			 		} else 
-			 			propagateTag(cell,new_tag);
-			 		
-			 		painterChanged();
-			 	}
+				 		if(cell.hasColorTag()){
+				 			Color current_tag = cell.getColorTag();
+				 			if(current_tag == new_tag)
+				 				propagateTag(cell,null);
+				 			else
+				 				propagateTag(cell,new_tag);
+				 		} else 
+				 			propagateTag(cell,new_tag);
+				 	}
+			}
+			finally{
+				endModification(sequence);
+			}
 			
 		}
 
@@ -258,61 +262,66 @@ public class CellColorTagOverlay extends StGraphOverlay {
 			f4 = System.currentTimeMillis() - f4;
 			System.out.printf("Importing all frame sheets:\t%d ms\n",f4);
 			
-			for(int i=0; i<wb.getNumberOfSheets(); i++){
-				Sheet s = sheets[i];
-				
-				FrameGraph frame = stGraph.getFrame(i);
-				
-				final int COLOR_COL = 0;
-				final int X_COL = 2;
-				final int Y_COL = 3;
-				
-				long search_sum = 0;
-				
-				long f2 = System.currentTimeMillis();
-				Cell[] colors = s.getColumn(COLOR_COL);
-				Cell[] x_cells = s.getColumn(X_COL);
-				Cell[] y_cells = s.getColumn(Y_COL);
-				f2 = System.currentTimeMillis() - f2;
-				System.out.printf("Reading sheet %d:\t%d ms\n",i,f2);
-				
-				int row_no=1;
-				for(; row_no < colors.length; row_no++){
-
-					long f3 = System.currentTimeMillis();
+			beginModification();
+			try{
+				for(int i=0; i<wb.getNumberOfSheets(); i++){
+					Sheet s = sheets[i];
 					
-					Cell color_cell  = colors[row_no];
-					Cell x_cell = x_cells[row_no];
-					Cell y_cell = y_cells[row_no];
-
-					CellColor cell_color = getCellColor(color_cell.getContents());
+					FrameGraph frame = stGraph.getFrame(i);
+					
+					final int COLOR_COL = 0;
+					final int X_COL = 2;
+					final int Y_COL = 3;
+					
+					long search_sum = 0;
+					
+					long f2 = System.currentTimeMillis();
+					Cell[] colors = s.getColumn(COLOR_COL);
+					Cell[] x_cells = s.getColumn(X_COL);
+					Cell[] y_cells = s.getColumn(Y_COL);
+					f2 = System.currentTimeMillis() - f2;
+					System.out.printf("Reading sheet %d:\t%d ms\n",i,f2);
+					
+					int row_no=1;
+					for(; row_no < colors.length; row_no++){
 
-					if(cell_color == null)
-						break;
+						long f3 = System.currentTimeMillis();
+						
+						Cell color_cell  = colors[row_no];
+						Cell x_cell = x_cells[row_no];
+						Cell y_cell = y_cells[row_no];
 
-					double x = java.lang.Double.parseDouble(x_cell.getContents());
-					double y = java.lang.Double.parseDouble(y_cell.getContents());
+						CellColor cell_color = getCellColor(color_cell.getContents());
 
-					Point point = gf.createPoint(new Coordinate( x, y ));
-					for(Node cell: frame.vertexSet()){
-						//if(cell.getGeometry().contains(point)){
-						if(point.within(cell.getGeometry())){
-							cell.setColorTag(cell_color.getColor());
-							tags_exist = true;
+						if(cell_color == null)
 							break;
+
+						double x = java.lang.Double.parseDouble(x_cell.getContents());
+						double y = java.lang.Double.parseDouble(y_cell.getContents());
+
+						Point point = gf.createPoint(new Coordinate( x, y ));
+						for(Node cell: frame.vertexSet()){
+							//if(cell.getGeometry().contains(point)){
+							if(point.within(cell.getGeometry())){
+								cell.setColorTag(cell_color.getColor());
+								tags_exist = true;
+								break;
+							}
 						}
+						
+						f3 = System.currentTimeMillis() - f3;
+						search_sum += f3;
 					}
 					
-					f3 = System.currentTimeMillis() - f3;
-					search_sum += f3;
+					//double avg_search_time = (double)search_sum/row_no;
+					System.out.printf("Tagging frame %d:\t%d ms\n\n",i,search_sum);
+					
 				}
 				
-				//double avg_search_time = (double)search_sum/row_no;
-				System.out.printf("Tagging frame %d:\t%d ms\n\n",i,search_sum);
-				
 			}
-			
-			painterChanged();
+			finally{
+				endModification(sequence);
+			}
 			
 		} catch (BiffException e) {
 			e.printStackTrace();
@@ -328,11 +337,15 @@ public class CellColorTagOverlay extends StGraphOverlay {
 	 */
 	private void eraseTags(){
 		
-		for(int i=0; i<stGraph.size(); i++)
-			for(Node node: stGraph.getFrame(i).vertexSet())
-				node.setColorTag(null);
-		
-		painterChanged();
+		beginModification();
+		try{
+			for(int i=0; i<stGraph.size(); i++)
+				for(Node node: stGraph.getFrame(i).vertexSet())
+					node.setColorTag(null);
+		}
+		finally{
+			endModification(sequence);
+		}
 		tags_exist = false;
 	}
 
@@ -344,24 +357,29 @@ public class CellColorTagOverlay extends StGraphOverlay {
 			if(sequence.getROIs().size() == 1 ){
 				ROI roi = sequence.getROIs().get(0);
 				
-				for(Node n: super.stGraph.getFrame(0).vertexSet()){
-					Point p = n.getCentroid();
-					
-			 		Color new_tag = tag_color.getValue().getColor();
-					
-			 		double x = p.getX();
-			 		double y = p.getY(); 
-			 		double z,t,c;
-			 		z = t = c = 0.0;
-			 		
-					if(roi.contains(x,y,z,t,c)){
-						propagateTag(n,new_tag);
-						tags_exist = true;
+				beginModification();
+				try{
+					for(Node n: super.stGraph.getFrame(0).vertexSet()){
+						Point p = n.getCentroid();
+						
+				 		Color new_tag = tag_color.getValue().getColor();
+						
+				 		double x = p.getX();
+				 		double y = p.getY(); 
+				 		double z,t,c;
+				 		z = t = c = 0.0;
+				 		
+						if(roi.contains(x,y,z,t,c)){
+							propagateTag(n,new_tag);
+							tags_exist = true;
+						}
+						
 					}
 					
 				}
-				
-				painterChanged();
+				finally{
+					endModification(sequence);
+				}
 			}
 		}
 		else
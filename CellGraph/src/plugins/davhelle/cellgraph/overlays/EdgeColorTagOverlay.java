@@ -28,8 +28,10 @@ import plugins.adufour.ezplug.EzVarInteger;
 import plugins.adufour.ezplug.EzVarListener;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.io.IntensityCache;
 import plugins.davhelle.cellgraph.io.IntensityReader;
 import plugins.davhelle.cellgraph.io.IntensitySummaryType;
+import plugins.davhelle.cellgraph.io.LabelImageIntensityReader;
 import plugins.davhelle.cellgraph.misc.CellColor;
 import plugins.davhelle.cellgraph.misc.ShapeRoi;
 import plugins.davhelle.cellgraph.nodes.Division;
@@ -120,6 +122,21 @@ public class EdgeColorTagOverlay extends StGraphOverlay implements EzVarListener
 	
 	private EzVarBoolean add_roi;
 	
+	/**
+	 * Measure all tagged edges of a frame through a single label image
+	 */
+	private EzVarBoolean single_pass;
+	
+	/**
+	 * Intensities measured in single pass mode during the export
+	 */
+	private HashMap<Edge,java.lang.Double> single_pass_intensities;
+	
+	/**
+	 * Measurements of previous exports of the sequence
+	 */
+	private IntensityCache cache;
+	
 	
 	/**
 	 * @param stGraph graph to analyze
@@ -127,6 +144,7 @@ public class EdgeColorTagOverlay extends StGraphOverlay implements EzVarListener
 	 * @param varEnvelopeBuffer envelope width EzGUI handle
 	 * @param sequence image from which to retrieve the intensities for export
 	 * @param varEdgeChannel 
+	 * @param varSinglePass single pass measurement EzGUI handle
 	 */
 	public EdgeColorTagOverlay(SpatioTemporalGraph stGraph,
 			EzVarEnum<CellColor> varEdgeColor,
@@ -137,7 +155,8 @@ public class EdgeColorTagOverlay extends StGraphOverlay implements EzVarListener
 			EzVarEnum<IntensitySummaryType> intensitySummaryType, 
 			EzVarInteger varEdgeChannel,
 			EzVarDouble varTopPercent,
-			EzVarBoolean varAddRoi) {
+			EzVarBoolean varAddRoi,
+			EzVarBoolean varSinglePass) {
 		super("Edge Color Tag", stGraph);
 	
 		this.tag_color = varEdgeColor;
@@ -155,6 +174,9 @@ public class EdgeColorTagOverlay extends StGraphOverlay implements EzVarListener
 		
 		this.top_percent = varTopPercent;
 		this.add_roi = varAddRoi;
+		this.single_pass = varSinglePass;
+		this.single_pass_intensities = new HashMap<Edge, java.lang.Double>();
+		this.cache = IntensityCache.forSequence(sequence);
 		
 		this.writer = new ShapeWriter();
 		this.factory = new GeometryFactory();
@@ -218,42 +240,48 @@ public class EdgeColorTagOverlay extends StGraphOverlay implements EzVarListener
 			Coordinate point_coor = new Coordinate(imagePoint.getX(), imagePoint.getY());
 			Point point_geometry = factory.createPoint(point_coor);			
 			
-			FrameGraph frame_i = stGraph.getFrame(time_point);
-			for(Node cell: frame_i.vertexSet()){
-			 	Geometry cellGeometry = cell.getGeometry();
-				
-			 	//if cell contains click search it's edges
-			 	if(cellGeometry.contains(point_geometry)){
-			 		for(Node neighbor: cell.getNeighbors()){
-			 			Edge edge = frame_i.getEdge(cell, neighbor);
-			 			
-			 			//get edge geometry
-			 			if(!edge.hasGeometry())
-			 				edge.computeGeometry(frame_i);
-			 				
-			 			if(!measurement_geometries.containsKey(edge)){
-			 				Geometry measurement_geometry = computeMeasurementGeometry(edge,frame_i);
-			 				measurement_geometries.put(edge, measurement_geometry);
-			 			}
-			 			
-			 			Geometry intersection = measurement_geometries.get(edge);
-			 			Geometry envelope = intersection.buffer(CLICK_BUFFER_WIDTH);
-			 			
-			 			//check if click falls into envelope
-			 			if(envelope.contains(point_geometry)){
-			 				tags_exist = true;
-			 				
-			 				if(edge.hasColorTag()){
-			 					if(edge.getColorTag() == colorTag)
-			 						propagateTag(edge,null);
-			 					else
-			 						propagateTag(edge,colorTag);
-			 				}
-			 				else
-			 					initializeTag(edge,colorTag,frame_i);
-			 			}
-			 		}
-			 	}
+			beginModification();
+			try{
+				FrameGraph frame_i = stGraph.getFrame(time_point);
+				for(Node cell: frame_i.vertexSet()){
+				 	Geometry cellGeometry = cell.getGeometry();
+					
+				 	//if cell contains click search it's edges
+				 	if(cellGeometry.contains(point_geometry)){
+				 		for(Node neighbor: cell.getNeighbors()){
+				 			Edge edge = frame_i.getEdge(cell, neighbor);
+				 			
+				 			//get edge geometry
+				 			if(!edge.hasGeometry())
+				 				edge.computeGeometry(frame_i);
+				 				
+				 			if(!measurement_geometries.containsKey(edge)){
+				 				Geometry measurement_geometry = computeMeasurementGeometry(edge,frame_i);
+				 				measurement_geometries.put(edge, measurement_geometry);
+				 			}
+				 			
+				 			Geometry intersection = measurement_geometries.get(edge);
+				 			Geometry envelope = intersection.buffer(CLICK_BUFFER_WIDTH);
+				 			
+				 			//check if click falls into envelope
+				 			if(envelope.contains(point_geometry)){
+				 				tags_exist = true;
+				 				
+				 				if(edge.hasColorTag()){
+				 					if(edge.getColorTag() == colorTag)
+				 						propagateTag(edge,null);
+				 					else
+				 						propagateTag(edge,colorTag);
+				 				}
+				 				else
+				 					initializeTag(edge,colorTag,frame_i);
+				 			}
+				 		}
+				 	}
+				}
+			}
+			finally{
+				endModification(sequence);
 			}
 		}
 	}
@@ -475,8 +503,8 @@ public class EdgeColorTagOverlay extends StGraphOverlay implements EzVarListener
 		Node child1 = d.getChild1();
 		Node child2 = d.getChild2();
 		
-		long code1 = Edge.computePairCode(child1.getTrackID(), neighbor.getTrackID());
-		long code2 = Edge.computePairCode(child2.getTrackID(), neighbor.getTrackID());
+		long code1 = Edge.computePairCode(child1.getTrackID(), neighbor.getTrackID(), futureFrame.getEdgeKeyScheme());
+		long code2 = Edge.computePairCode(child2.getTrackID(), neighbor.getTrackID(), futureFrame.getEdgeKeyScheme());
 
 		Edge futureEdge = null;
 		if(futureFrame.hasEdgeTrackId(code1) &&
@@ -508,6 +536,7 @@ public class EdgeColorTagOverlay extends StGraphOverlay implements EzVarListener
 			WritableWorkbook wb = XLSUtil.createWorkbook(file_name);
 			
 			writeEdges(wb);
+			cache.flush();
 			
 			XLSUtil.saveAndClose(wb);
 			
@@ -546,6 +575,11 @@ public class EdgeColorTagOverlay extends StGraphOverlay implements EzVarListener
 				top_percent.getValue());
 		WritableSheet intensitySheet = XLSUtil.createNewPage(wb, intensitySheetName);
 		
+		//top percent pruning and ROI display require the individual ROIs
+		single_pass_intensities.clear();
+		if(single_pass.getValue() && top_percent.getValue() >= 1.0 && !add_roi.getValue())
+			measureTaggedEdges();
+		
 		int col_no = 0;
 		for(int i=0; i<stGraph.size(); i++){
 			for(Edge edge: stGraph.getFrame(i).edgeSet()){
@@ -622,6 +656,72 @@ public class EdgeColorTagOverlay extends StGraphOverlay implements EzVarListener
 		}
 	}
 	
+	/**
+	 * Measure the envelopes of all tagged edges frame by frame
+	 * rasterizing them into a label image and reading every
+	 * frame only once. Results are stored in single_pass_intensities.
+	 */
+	private void measureTaggedEdges(){
+		
+		int c=intensity_channel.getValue();
+		
+		for(int i=0; i<stGraph.size(); i++){
+			FrameGraph frame = stGraph.getFrame(i);
+			
+			LabelImageIntensityReader reader = new LabelImageIntensityReader(sequence);
+			HashMap<Edge,Integer> edge_labels = new HashMap<Edge, Integer>();
+			
+			for(Edge edge: frame.edgeSet()){
+				if(edge.hasColorTag() && measurement_geometries.containsKey(edge)){
+					
+					java.lang.Double cached = cache.get(cacheKey(edge));
+					if(cached != null)
+						single_pass_intensities.put(edge, cached);
+					else
+						edge_labels.put(edge, reader.addShape(
+								writer.toShape(measurement_geometries.get(edge))));
+				}
+			}
+			
+			if(edge_labels.isEmpty())
+				continue;
+			
+			reader.measure(sequence, 0, frame.getFrameNo(), c);
+			
+			for(Edge edge: edge_labels.keySet()){
+				double intensity = reader.getIntensity(
+						edge_labels.get(edge), summary_type.getValue());
+				single_pass_intensities.put(edge, intensity);
+				cache.put(cacheKey(edge), intensity);
+			}
+		}
+	}
+	
+	/**
+	 * @param edge tagged edge
+	 * @return cache key of the edge intensity with the current parameters
+	 */
+	private IntensityCache.Key cacheKey(Edge edge){
+		
+		FrameGraph frame = edge.getFrame();
+		boolean single_pass_mode = single_pass.getValue() && top_percent.getValue() >= 1.0;
+		
+		String measure = String.format("tag[mode=%d,top=%.4f,%s]",
+				roi_mode.getValue(),
+				top_percent.getValue(),
+				single_pass_mode ? "single_pass" : "roi");
+		
+		return new IntensityCache.Key(
+				measure,
+				frame.getFrameNo(),
+				edge.getPairCode(frame),
+				envelope_buffer.getValue(),
+				envelope_vertex_buffer.getValue(),
+				intensity_channel.getValue(),
+				summary_type.getValue(),
+				IntensityCache.geometryHash(edge.getGeometry()));
+	}
+	
 	/**
 	 * Compute mean intensity underlying the edge envelope
 	 * 
@@ -630,6 +730,16 @@ public class EdgeColorTagOverlay extends StGraphOverlay implements EzVarListener
 	 */
 	private double computeIntensity(Edge edge){
 		
+		if(single_pass_intensities.containsKey(edge))
+			return single_pass_intensities.get(edge);
+		
+		//displaying the cropped ROIs requires the measurement
+		if(!add_roi.getValue()){
+			java.lang.Double cached = cache.get(cacheKey(edge));
+			if(cached != null)
+				return cached;
+		}
+		
 		Geometry envelope = measurement_geometries.get(edge);
 		
 		ShapeRoi edgeEnvelopeRoi = new ShapeRoi(writer.toShape(envelope));
@@ -664,6 +774,8 @@ public class EdgeColorTagOverlay extends StGraphOverlay implements EzVarListener
 			envelopeMeanIntenisty = -1;
 		}
 		
+		cache.put(cacheKey(edge), envelopeMeanIntenisty);
+		
 		return envelopeMeanIntenisty;
 	}
 	
@@ -702,13 +814,17 @@ public class EdgeColorTagOverlay extends StGraphOverlay implements EzVarListener
 	@Override
 	public void variableChanged(EzVar<Integer> source, Integer newValue) {
 		
-		for(Edge e: measurement_geometries.keySet())
-			for(int i=0; i<stGraph.size(); i++)
-				if(stGraph.getFrame(i).containsEdge(e))
-					measurement_geometries.put(e, 
-							computeMeasurementGeometry(e,stGraph.getFrame(i)));
-		
-		painterChanged();
+		//every edge knows its frame, no need to search all frames
+		beginModification();
+		try{
+			for(Edge e: measurement_geometries.keySet())
+				measurement_geometries.put(e, 
+						computeMeasurementGeometry(e,e.getFrame()));
+		}
+		finally{
+			//only the measurement shapes of this overlay changed
+			endModification(null);
+		}
 		
 	}
 
@@ -10,17 +10,31 @@ import java.awt.Graphics2D;
 import java.awt.Shape;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import jxl.write.WritableSheet;
 import plugins.adufour.ezplug.EzGUI;
 import plugins.adufour.ezplug.EzVarBoolean;
 import plugins.adufour.ezplug.EzVarEnum;
 import plugins.adufour.ezplug.EzVarInteger;
+import plugins.davhelle.cellgraph.graphs.FrameAdjacency;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.io.CellBackgroundReader;
+import plugins.davhelle.cellgraph.io.IntensityCache;
 import plugins.davhelle.cellgraph.io.IntensityReader;
 import plugins.davhelle.cellgraph.io.IntensitySummaryType;
+import plugins.davhelle.cellgraph.io.LabelImageIntensityReader;
 import plugins.davhelle.cellgraph.misc.ShapeRoi;
 import plugins.davhelle.cellgraph.nodes.Edge;
 import plugins.davhelle.cellgraph.nodes.Node;
@@ -33,6 +47,9 @@ import com.vividsolutions.jts.geom.Point;
  * Class to visualize the intensity underlying the edges of the
  * spatial-temporal graph as overlay in icy.
  * 
+ * Frames are measured concurrently and every frame
+ * is displayed as soon as its measurement is complete.
+ * 
  * @author Davide Heller
  *
  */
@@ -55,59 +72,113 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 			
 			"(i) The color gradient is normalized by frame.<br/><br/>" + 
 			
-			"(w) [Measure all frames] can take very long!";
-
-	/**
-	 * JTS to AWT shape writer
-	 */
-	private ShapeWriter writer;
-	/**
-	 * Connected Icy sequence to retrieve the intensity from
-	 */
-	private Sequence sequence;
-	/**
-	 * Connected GUI for Progress and Parameter retrieval
-	 */
-	private EzGUI gui;
+			"(i) [Single pass measurement] rasterizes all edge<br/>" +
+			" envelopes of a frame into one label image and reads<br/>" +
+			" the channel only once.<br/><br/>" +
+			
+			"(w) [Measure all frames] can take very long! Frames<br/>" +
+			" are measured in parallel and displayed once ready.";
+	
 	/**
-	 * Visualization flag for filling or drawing the edge envelope
+	 * Interval between progress bar updates in milliseconds
 	 */
-	private EzVarBoolean fillEdgeCheckbox;
+	private static final long PROGRESS_INTERVAL = 200;
 	
-	//Containers
 	/**
-	 * ROI representation for each edge
+	 * Measurement results of a single frame
 	 */
-	private HashMap<Edge,ROI> buffer_roi;
+	private static class FrameIntensities{
+		
+		/**
+		 * ROI representation for each edge
+		 */
+		final HashMap<Edge,ROI> buffer_roi;
+		/**
+		 * AWT Shape representation for each edge 
+		 */
+		final HashMap<Edge,Shape> buffer_shape;
+		/**
+		 * Relative intensity value for each edge
+		 */
+		final HashMap<Edge,Double> relativeEdgeIntensity;
+		/**
+		 * Normalized intensity value for each edge
+		 */
+		final HashMap<Edge,Double> normalizedEdgeIntensity;
+		/**
+		 * Background intensity of every cell (reverse selection of edges)
+		 */
+		final HashMap<Node,Double> cell_background;
+		/**
+		 * Mean Edge Intensities for every cell 
+		 */
+		final HashMap<Node,Double> cell_edges;
+		/**
+		 * Minimal displayed edge intensity
+		 */
+		double min;
+		/**
+		 * Maximal displayed edge intensity
+		 */
+		double max;
+		
+		FrameIntensities(){
+			this.buffer_shape = new	HashMap<Edge, Shape>();
+			this.buffer_roi = new HashMap<Edge, ROI>();
+			this.normalizedEdgeIntensity = new HashMap<Edge, Double>();
+			this.relativeEdgeIntensity = new HashMap<Edge, Double>();
+			this.cell_background = new HashMap<Node, Double>();
+			this.cell_edges = new HashMap<Node, Double>();
+		}
+	}
+
 	/**
-	 * AWT Shape representation for each edge 
+	 * JTS to AWT shape writer of each measuring thread
 	 */
-	private HashMap<Edge,Shape> buffer_shape;
+	private final ThreadLocal<ShapeWriter> writer = new ThreadLocal<ShapeWriter>(){
+		@Override
+		protected ShapeWriter initialValue(){
+			return new ShapeWriter();
+		}
+	};
 	/**
-	 * Relative intensity value for each edge
+	 * Label image of each measuring thread, reused across frames
 	 */
-	private HashMap<Edge,Double> relativeEdgeIntensity;
+	private final ThreadLocal<LabelImageIntensityReader> label_reader = 
+			new ThreadLocal<LabelImageIntensityReader>(){
+		@Override
+		protected LabelImageIntensityReader initialValue(){
+			return new LabelImageIntensityReader(sequence);
+		}
+	};
 	/**
-	 * Normalized intensity value for each edge
+	 * Cell label image of each measuring thread, reused across frames
 	 */
-	private HashMap<Edge,Double> normalizedEdgeIntensity;
+	private final ThreadLocal<LabelImageIntensityReader> cell_label_reader = 
+			new ThreadLocal<LabelImageIntensityReader>(){
+		@Override
+		protected LabelImageIntensityReader initialValue(){
+			return new LabelImageIntensityReader(sequence);
+		}
+	};
 	/**
-	 * Background intensity of every cell (reverse selection of edges)
+	 * Connected Icy sequence to retrieve the intensity from
 	 */
-	private HashMap<Node,Double> cell_background;
+	private Sequence sequence;
 	/**
-	 * Mean Edge Intensities for every cell 
+	 * Connected GUI for Progress and Parameter retrieval
 	 */
-	private HashMap<Node,Double> cell_edges;
-	
+	private EzGUI gui;
 	/**
-	 * Minimal displayed edge intensity
+	 * Visualization flag for filling or drawing the edge envelope
 	 */
-	private double[] min;
+	private EzVarBoolean fillEdgeCheckbox;
+	
+	//Containers
 	/**
-	 * Maximal displayed edge intensity
+	 * Results of every measured frame, null until the frame is complete
 	 */
-	private double[] max;
+	private AtomicReferenceArray<FrameIntensities> frame_results;
 
 	/**
 	 * Buffer width of the edge envelope with which to retrieve the intensities
@@ -130,12 +201,31 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 	 */
 	private boolean analyzeAllFrames;
 	
+	/**
+	 * Flag whether to measure all edges of a frame in a single
+	 * pass over a label image instead of one ROI per edge
+	 */
+	private boolean single_pass;
+	
 	/**
 	 * Intensity Summary type
 	 */
 	EzVarEnum<IntensitySummaryType> summary_type;
 	
 	/**
+	 * Summary type used by the current measurement
+	 */
+	private IntensitySummaryType measured_type;
+	
+	/**
+	 * Measurements of previous analyses of the sequence
+	 */
+	private IntensityCache cache;
+	
+	/**
+	 * Sets up the overlay, the intensities are computed
+	 * by {@link #measureFrames(int)}.
+	 * 
 	 * @param stGraph graph to display
 	 * @param sequence image from which to measure the intensities
 	 * @param gui connected GUI
@@ -144,6 +234,7 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 	 * @param varBufferWidth edge envelope thickness for intensity retrieval
 	 * @param normalize_intensities flag to normalize or not the intensities
 	 * @param channelNumber image channel to measure
+	 * @param singlePassMeasurement flag to measure the edges through a frame label image
 	 */
 	public EdgeIntensityOverlay(SpatioTemporalGraph stGraph, Sequence sequence,
 			EzGUI gui, EzVarBoolean varFillingCheckbox,
@@ -151,36 +242,27 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 			EzVarEnum<IntensitySummaryType> intensitySummaryType,
 			boolean varMeasureAllFrames,
 			boolean normalize_intensities,
-			int channelNumber) {
+			int channelNumber,
+			boolean singlePassMeasurement) {
 		super("Edge Intensities",stGraph);
 		
 		this.gui = gui;
 		this.fillEdgeCheckbox = varFillingCheckbox;
-		this.writer = new ShapeWriter();
-		this.buffer_shape = new	HashMap<Edge, Shape>();
-		this.buffer_roi = new HashMap<Edge, ROI>();
-		this.normalizedEdgeIntensity = new HashMap<Edge, Double>();
-		this.relativeEdgeIntensity = new HashMap<Edge, Double>();
-		this.cell_background = new HashMap<Node, Double>();
-		this.cell_edges = new HashMap<Node, Double>();
 		this.sequence = sequence;
 		this.bufferWidth = varBufferWidth.getValue();
 		this.zallen_normalization = normalize_intensities;
 		this.channelNumber = channelNumber;
 		this.summary_type = intensitySummaryType;
+		this.measured_type = intensitySummaryType.getValue();
+		this.cache = IntensityCache.forSequence(sequence);
 		this.analyzeAllFrames = varMeasureAllFrames;
+		this.single_pass = singlePassMeasurement;
 		int frame_no = 1;
 		
 		if(analyzeAllFrames)
 			frame_no = stGraph.size();
 		
-		min = new double[frame_no];
-		max = new double[frame_no];
-		
-		for(int i = 0; i < frame_no; i++){
-			FrameGraph frame_i = stGraph.getFrame(i);
-			computeFrameIntensities(frame_i);
-		}
+		this.frame_results = new AtomicReferenceArray<FrameIntensities>(frame_no);
 		
 		super.setGradientScale(-0.4);
 		super.setGradientShift(0.8);
@@ -188,63 +270,177 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 	}
 
 	/**
-	 * Computes the edge intensities for all edges in the graph
+	 * Measures all frames concurrently. Each frame is painted as soon
+	 * as its results are available, the method returns once all frames
+	 * are complete. Call after adding the overlay to the sequence and
+	 * outside of the event dispatch thread.
 	 * 
-	 * @param frame_i frame to measure
+	 * @param thread_no no. of frames to measure concurrently
 	 */
-	private void computeFrameIntensities(FrameGraph frame_i) {
+	public void measureFrames(int thread_no){
+		
+		this.measured_type = summary_type.getValue();
+		
+		int frame_no = frame_results.length();
 		
 		//Initialize Progress bar
 		gui.setProgressBarValue(0.01);
-		int gui_counter = 0;
+		gui.setProgressBarMessage(String.format(
+				"Computing Edge Intensities in %d frame(s)...", frame_no));
+		
+		double total_count = 0;
+		for(int i = 0; i < frame_no; i++){
+			FrameGraph frame_i = stGraph.getFrame(i);
+			total_count += 2 * frame_i.edgeSet().size();
+			if(zallen_normalization)
+				total_count += frame_i.vertexSet().size();
+		}
+		
+		final AtomicInteger progress = new AtomicInteger(0);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(thread_no, frame_no)));
+		CompletionService<FrameGraph> completion = 
+				new ExecutorCompletionService<FrameGraph>(executor);
+		
+		try{
+			for(int i = 0; i < frame_no; i++){
+				final FrameGraph frame_i = stGraph.getFrame(i);
+				completion.submit(new Callable<FrameGraph>() {
+					@Override
+					public FrameGraph call() {
+						frame_i.readLock().lock();
+						try{
+							FrameIntensities frame_data = computeFrameIntensities(frame_i, progress);
+							frame_results.set(frame_i.getFrameNo(), frame_data);
+						}
+						finally{
+							frame_i.readLock().unlock();
+						}
+						return frame_i;
+					}
+				});
+			}
+			
+			//aggregate the progress until all frames are done
+			int completed = 0;
+			while(completed < frame_no){
+				Future<FrameGraph> done = completion.poll(
+						PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+				
+				if(done != null){
+					done.get();
+					completed++;
+					painterChanged();
+				}
+				
+				gui.setProgressBarValue(progress.get()/total_count);
+			}
+			
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+		} finally {
+			executor.shutdown();
+		}
+		
+		cache.flush();
+	}
+	
+	/**
+	 * Computes the edge intensities for all edges of a frame.
+	 * Shared state is only read, the results are confined
+	 * to the returned object.
+	 * 
+	 * @param frame_i frame to measure
+	 * @param progress counter of the processed elements
+	 * @return measurement results of the frame
+	 */
+	private FrameIntensities computeFrameIntensities(FrameGraph frame_i, AtomicInteger progress) {
 		
-		double total_count = 2 * frame_i.edgeSet().size();
-		if(zallen_normalization)
-			total_count += frame_i.vertexSet().size();
+		FrameIntensities frame_data = new FrameIntensities();
 		
 		int frameNo = frame_i.getFrameNo();
-		String frame_str = String.format(" in frame %d...",
-				frameNo);
 		
 		//Compute individual edge intensities
-		gui.setProgressBarMessage("Computing Edge Geometries"+frame_str);
 		for(Edge e: frame_i.edgeSet()){
 			if(!e.hasGeometry())
 				e.computeGeometry(frame_i);
-			gui.setProgressBarValue(gui_counter++/total_count);
+			progress.incrementAndGet();
 		}
 		
-		gui.setProgressBarMessage("Computing Edge Intensities"+frame_str);
-		for(Edge e: frame_i.edgeSet()){
-			computeEdgeIntensity(e,frame_i);
-			gui.setProgressBarValue(gui_counter++/total_count);
+		boolean cached = restoreFrameFromCache(frame_i, frame_data);
+		
+		if(cached){
+			
+			//envelopes are still needed for painting
+			for(Edge e: frame_i.edgeSet()){
+				computeEdgeShape(e, frame_data);
+				progress.incrementAndGet();
+			}
+			if(zallen_normalization)
+				progress.addAndGet(frame_i.vertexSet().size());
+		}
+		else if(single_pass){
+			
+			//rasterize all envelopes and read the channel once
+			LabelImageIntensityReader reader = label_reader.get();
+			reader.clear();
+			
+			HashMap<Edge,Integer> edge_labels = new HashMap<Edge, Integer>();
+			for(Edge e: frame_i.edgeSet()){
+				Shape edge_shape = computeEdgeShape(e, frame_data);
+				edge_labels.put(e, reader.addShape(edge_shape));
+				progress.incrementAndGet();
+			}
+			
+			double[] plane = LabelImageIntensityReader.readPlane(
+					sequence, 0, frameNo, channelNumber);
+			
+			reader.measure(plane);
+			for(Map.Entry<Edge, Integer> entry: edge_labels.entrySet())
+				entry.getKey().setValue(reader.getIntensity(
+						entry.getValue(), measured_type));
+			
+			//cell interiors and edge bands from the same envelopes
+			if(zallen_normalization)
+				computeCellIntensities(frame_i, reader, edge_labels, plane, frame_data, progress);
+		}
+		else{
+			for(Edge e: frame_i.edgeSet()){
+				computeEdgeIntensity(e,frame_i,frame_data);
+				progress.incrementAndGet();
+			}
 		}
 
 		//Edge Normalization and limit identification
 		
-		this.min[frameNo] = Double.MAX_VALUE;
-		this.max[frameNo] = Double.MIN_VALUE;
+		frame_data.min = Double.MAX_VALUE;
+		frame_data.max = Double.MIN_VALUE;
 
 		if(zallen_normalization){
 			
 			//normalization through nearby
 			//cell intensities (see zallen paper)
 			
-			gui.setProgressBarMessage("Computing Cell Intensities"+frame_str);
-			for(Node n: frame_i.vertexSet()){
-				computeCellIntensity(n);
-				gui.setProgressBarValue(gui_counter++/total_count);
+			if(!single_pass && !cached){
+				for(Node n: frame_i.vertexSet()){
+					computeCellIntensity(n,frame_data);
+					progress.incrementAndGet();
+				}
 			}
 
 			for(Edge e: frame_i.edgeSet()){
 
-				double rel_value = computeRelativeEdgeIntensity(e,frame_i);
-				relativeEdgeIntensity.put(e, rel_value);
+				double rel_value = computeRelativeEdgeIntensity(e,frame_i,frame_data);
+				frame_data.relativeEdgeIntensity.put(e, rel_value);
 
-				if(rel_value > max[frameNo])
-					max[frameNo] = rel_value;
-				else if(rel_value < min[frameNo])
-					min[frameNo] = rel_value;
+				if(rel_value > frame_data.max)
+					frame_data.max = rel_value;
+				else if(rel_value < frame_data.min)
+					frame_data.min = rel_value;
 			}
 		}
 		else{
@@ -252,25 +448,123 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 
 				double rel_value = e.getValue();
 				//put same raw values in data fields
-				relativeEdgeIntensity.put(e, rel_value);
+				frame_data.relativeEdgeIntensity.put(e, rel_value);
 
-				if(rel_value > max[frameNo])
-					max[frameNo] = rel_value;
-				else if(rel_value < min[frameNo])
-					min[frameNo] = rel_value;
+				if(rel_value > frame_data.max)
+					frame_data.max = rel_value;
+				else if(rel_value < frame_data.min)
+					frame_data.min = rel_value;
 			}
 		}
 		
 		//Normalize
 		for(Edge e: frame_i.edgeSet()){
 			//update from relative to normalized
-			double rel_value = relativeEdgeIntensity.get(e);
+			double rel_value = frame_data.relativeEdgeIntensity.get(e);
 			double normalized_value = 
-					(rel_value - min[frameNo])/(max[frameNo] - min[frameNo]);
-			normalizedEdgeIntensity.put(e,normalized_value);
+					(rel_value - frame_data.min)/(frame_data.max - frame_data.min);
+			frame_data.normalizedEdgeIntensity.put(e,normalized_value);
 
 		}
+		
+		if(!cached)
+			storeFrameInCache(frame_i, frame_data);
+		
+		return frame_data;
+	}
+	
+	/**
+	 * @param measure measured quantity
+	 * @param frame_i frame of the object
+	 * @param object_id edge or cell track id
+	 * @param geometry geometry of the object
+	 * @return cache key of the measurement with the current parameters
+	 */
+	private IntensityCache.Key cacheKey(String measure, FrameGraph frame_i,
+			long object_id, Geometry geometry){
+		
+		//the two measurement engines rasterize slightly differently
+		String engine = single_pass ? "single_pass" : "roi";
+		
+		return new IntensityCache.Key(
+				String.format("%s[%s]", measure, engine),
+				frame_i.getFrameNo(),
+				object_id,
+				bufferWidth,
+				0,
+				channelNumber,
+				measured_type,
+				IntensityCache.geometryHash(geometry));
+	}
+	
+	/**
+	 * Applies the cached intensities of a frame if all of them
+	 * are available
+	 * 
+	 * @param frame_i frame to restore
+	 * @param frame_data results of the frame
+	 * @return true if the frame was restored
+	 */
+	private boolean restoreFrameFromCache(FrameGraph frame_i, FrameIntensities frame_data){
+		
+		HashMap<Edge,Double> edge_values = new HashMap<Edge, Double>();
+		for(Edge e: frame_i.edgeSet()){
+			Double value = cache.get(cacheKey("edge", frame_i,
+					e.getPairCode(frame_i), e.getGeometry()));
+			if(value == null)
+				return false;
+			edge_values.put(e, value);
+		}
+		
+		HashMap<Node,Double> backgrounds = new HashMap<Node, Double>();
+		HashMap<Node,Double> bands = new HashMap<Node, Double>();
+		if(zallen_normalization){
+			for(Node n: frame_i.vertexSet()){
+				if(n.getNeighbors().isEmpty())
+					continue;
+				
+				Double background = cache.get(cacheKey("cell_background", frame_i,
+						n.getTrackID(), n.getGeometry()));
+				Double band = cache.get(cacheKey("cell_edges", frame_i,
+						n.getTrackID(), n.getGeometry()));
+				if(background == null || band == null)
+					return false;
+				
+				backgrounds.put(n, background);
+				bands.put(n, band);
+			}
+		}
+		
+		for(Map.Entry<Edge, Double> entry: edge_values.entrySet())
+			entry.getKey().setValue(entry.getValue());
+		frame_data.cell_background.putAll(backgrounds);
+		frame_data.cell_edges.putAll(bands);
+		
+		return true;
+	}
+	
+	/**
+	 * Stores the measured intensities of a frame
+	 * 
+	 * @param frame_i measured frame
+	 * @param frame_data results of the frame
+	 */
+	private void storeFrameInCache(FrameGraph frame_i, FrameIntensities frame_data){
+		
+		for(Edge e: frame_i.edgeSet())
+			cache.put(cacheKey("edge", frame_i,
+					e.getPairCode(frame_i), e.getGeometry()), e.getValue());
+		
+		for(Node n: frame_data.cell_background.keySet()){
+			Double band = frame_data.cell_edges.get(n);
+			if(band == null)
+				continue;
 			
+			cache.put(cacheKey("cell_background", frame_i,
+					n.getTrackID(), n.getGeometry()), frame_data.cell_background.get(n));
+			cache.put(cacheKey("cell_edges", frame_i,
+					n.getTrackID(), n.getGeometry()), band);
+		}
 	}
 	
 	/**
@@ -279,18 +573,62 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 	 * 
 	 * @param e edge to measure
 	 * @param frame_i frame to which the edge belongs
+	 * @param frame_data results of the frame
 	 * @return mean intensity value of pixels within the edge envelope
 	 */
-	private double computeEdgeIntensity(Edge e, FrameGraph frame_i){
+	private double computeEdgeIntensity(Edge e, FrameGraph frame_i, FrameIntensities frame_data){
+		
+		Shape egde_shape = computeEdgeShape(e, frame_data);
+		
+		ShapeRoi edge_roi = computeEdgeRoi(e, egde_shape, frame_data);
+		if(edge_roi == null)
+			return -1.0;
+		
+		int z=0;
+		int t=frame_i.getFrameNo();
+		int c=channelNumber;
+		
+		//TODO possibly use getIntensityInfo here
+		
+		double mean_intensity = 
+				IntensityReader.measureRoiIntensity(
+						sequence, edge_roi, z, t, c, measured_type);
+
+		e.setValue(mean_intensity);
+		
+		return mean_intensity;
+	}
+	
+	/**
+	 * Buffer the edge geometry by bufferWidth and store the
+	 * resulting envelope shape
+	 * 
+	 * @param e edge to buffer
+	 * @param frame_data results of the frame
+	 * @return AWT shape of the edge envelope
+	 */
+	private Shape computeEdgeShape(Edge e, FrameIntensities frame_data){
 		
 		Geometry edge_geo = e.getGeometry();
 		
 		Geometry edge_buffer = edge_geo.buffer(bufferWidth);
 		
-		Shape egde_shape = writer.toShape(edge_buffer);
+		Shape egde_shape = writer.get().toShape(edge_buffer);
 		
-		this.buffer_shape.put(e, egde_shape);
+		frame_data.buffer_shape.put(e, egde_shape);
 		
+		return egde_shape;
+	}
+	
+	/**
+	 * Convert the edge envelope into a ROI and store it
+	 * 
+	 * @param e edge to which the envelope belongs
+	 * @param egde_shape envelope shape
+	 * @param frame_data results of the frame
+	 * @return ROI of the envelope or null if the conversion failed
+	 */
+	private ShapeRoi computeEdgeRoi(Edge e, Shape egde_shape, FrameIntensities frame_data){
 		
 		//TODO possibly add a direct ROI field to edge class
 		ShapeRoi edge_roi = null;
@@ -299,24 +637,12 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 		}catch(Exception ex){
 			Point centroid = e.getGeometry().getCentroid();
 			System.out.printf("Problems at %.2f %.2f",centroid.getX(),centroid.getY());
-			return -1.0;
+			return null;
 		}
 		
-		buffer_roi.put(e, edge_roi);
-		
-		int z=0;
-		int t=frame_i.getFrameNo();
-		int c=channelNumber;
+		frame_data.buffer_roi.put(e, edge_roi);
 		
-		//TODO possibly use getIntensityInfo here
-		
-		double mean_intensity = 
-				IntensityReader.measureRoiIntensity(
-						sequence, edge_roi, z, t, c, summary_type.getValue());
-
-		e.setValue(mean_intensity);
-		
-		return mean_intensity;
+		return edge_roi;
 	}
 	
 	/**
@@ -326,27 +652,30 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 	 * Populate cell_background and cell_edges fields
 	 * 
 	 * @param s cell to be computed
+	 * @param frame_data results of the frame
 	 */
-	private void computeCellIntensity(Node s){
+	private void computeCellIntensity(Node s, FrameIntensities frame_data){
 		
 		//who are the flanking cells?
 		FrameGraph frame = s.getBelongingFrame();
 		
-		if(s.getNeighbors().isEmpty())
+		FrameAdjacency adjacency = frame.getAdjacency();
+		int s_id = adjacency.getId(s);
+		if(adjacency.getDegree(s_id) == 0)
 			return;
 		
 		//combine edge rois
 		ArrayList<ROI> rois = new ArrayList<ROI>();
-		for(Node t: frame.getNeighborsOf(s)){
-			Edge e = frame.getEdge(s, t);
-			rois.add(buffer_roi.get(e));
+		for(int k = adjacency.start(s_id); k < adjacency.end(s_id); k++){
+			Edge e = adjacency.getEdge(adjacency.edge(k));
+			rois.add(frame_data.buffer_roi.get(e));
 		}
 		
 		//Define Edge Roi region
 		ROI edge_union = ROIUtil.getUnion(rois);
 		
 		//Define Interior Roi region
-		ShapeRoi s_roi = new ShapeRoi(writer.toShape(s.getGeometry()));
+		ShapeRoi s_roi = new ShapeRoi(writer.get().toShape(s.getGeometry()));
 		s_roi.setC(0);
 		s_roi.setT(0);
 		s_roi.setZ(0);
@@ -357,13 +686,70 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 		int t=frame.getFrameNo();
 		int c=channelNumber;
 		double s_mean = IntensityReader.measureRoiIntensity(
-				sequence, s_minimal, z, t, c, summary_type.getValue());
+				sequence, s_minimal, z, t, c, measured_type);
 		double mean_edge_intensity = IntensityReader.measureRoiIntensity(
-				sequence, edge_union, z, t, c, summary_type.getValue());
+				sequence, edge_union, z, t, c, measured_type);
 
 		//Save results
-		cell_background.put(s,s_mean);
-		cell_edges.put(s, mean_edge_intensity);
+		frame_data.cell_background.put(s,s_mean);
+		frame_data.cell_edges.put(s, mean_edge_intensity);
+	}
+	
+	/**
+	 * Raster version of {@link #computeCellIntensity(Node, FrameIntensities)}
+	 * for all cells of a frame. Cells are labelled once and combined with
+	 * the edge envelope labels, instead of uniting and subtracting ROIs
+	 * for every cell.
+	 * 
+	 * Populate cell_background and cell_edges fields
+	 * 
+	 * @param frame_i frame to measure
+	 * @param edge_reader label image of the edge envelopes
+	 * @param edge_labels label of every edge in edge_reader
+	 * @param plane channel plane of the frame
+	 * @param frame_data results of the frame
+	 * @param progress counter of the processed elements
+	 */
+	private void computeCellIntensities(FrameGraph frame_i,
+			LabelImageIntensityReader edge_reader,
+			HashMap<Edge,Integer> edge_labels,
+			double[] plane,
+			FrameIntensities frame_data,
+			AtomicInteger progress){
+		
+		LabelImageIntensityReader cell_reader = cell_label_reader.get();
+		cell_reader.clear();
+		
+		FrameAdjacency adjacency = frame_i.getAdjacency();
+		HashMap<Node,Integer> cell_labels = new HashMap<Node, Integer>();
+		for(int i = 0; i < adjacency.getNodeNo(); i++){
+			Node n = adjacency.getNode(i);
+			if(adjacency.getDegree(i) > 0)
+				cell_labels.put(n, cell_reader.addShape(
+						writer.get().toShape(n.getGeometry())));
+		}
+		
+		CellBackgroundReader background = new CellBackgroundReader(cell_reader, edge_reader);
+		for(Map.Entry<Edge, Integer> entry: edge_labels.entrySet()){
+			Integer source = cell_labels.get(frame_i.getEdgeSource(entry.getKey()));
+			Integer target = cell_labels.get(frame_i.getEdgeTarget(entry.getKey()));
+			background.setEdgeCells(entry.getValue(),
+					source == null ? 0 : source,
+					target == null ? 0 : target);
+		}
+		
+		background.measure(plane);
+		
+		for(Node n: frame_i.vertexSet()){
+			Integer label = cell_labels.get(n);
+			if(label != null){
+				frame_data.cell_background.put(n, 
+						background.getInteriorIntensity(label, measured_type));
+				frame_data.cell_edges.put(n,
+						background.getBandIntensity(label, measured_type));
+			}
+			progress.incrementAndGet();
+		}
 	}
 	
 	/**
@@ -383,31 +769,42 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 	 * 
 	 * @param e edge to be normalized
 	 * @param frame frame from which to measure intensities for the normalization
+	 * @param frame_data results of the frame
 	 * @return
 	 */
-	private double computeRelativeEdgeIntensity(Edge e, FrameGraph frame){
+	private double computeRelativeEdgeIntensity(Edge e, FrameGraph frame, FrameIntensities frame_data){
 		
-		Node source = frame.getEdgeSource(e);
-		Node target = frame.getEdgeTarget(e);
+		FrameAdjacency adjacency = frame.getAdjacency();
+		int source = adjacency.getId(frame.getEdgeSource(e));
+		int target = adjacency.getId(frame.getEdgeTarget(e));
 		
 		//dubious definition
 		//what about including 1 order of neigborhood?
 		//i.e. 
 		
-		HashSet<Node> firstOrderNeighbors = new HashSet<Node>();
-		firstOrderNeighbors.addAll(source.getNeighbors());
-		firstOrderNeighbors.addAll(target.getNeighbors());
-		
+		//union of the source and target neighbors
 		double sum_cell_background = 0;
 		double sum_cell_edges = 0;
+		int neighbor_no = 0;
+		
+		for(int k = adjacency.start(source); k < adjacency.end(source); k++){
+			Node n = adjacency.getNode(adjacency.target(k));
+			sum_cell_background += frame_data.cell_background.get(n);
+			sum_cell_edges += frame_data.cell_edges.get(n);
+			neighbor_no++;
+		}
 		
-		for(Node n: firstOrderNeighbors){
-			sum_cell_background += cell_background.get(n);
-			sum_cell_edges += cell_edges.get(n);
+		for(int k = adjacency.start(target); k < adjacency.end(target); k++){
+			if(adjacency.areNeighbors(source, adjacency.target(k)))
+				continue;
+			Node n = adjacency.getNode(adjacency.target(k));
+			sum_cell_background += frame_data.cell_background.get(n);
+			sum_cell_edges += frame_data.cell_edges.get(n);
+			neighbor_no++;
 		}
 		
-		double mean_cell_background = sum_cell_background/firstOrderNeighbors.size();
-		double mean_cell_edges = sum_cell_edges/firstOrderNeighbors.size();
+		double mean_cell_background = sum_cell_background/neighbor_no;
+		double mean_cell_edges = sum_cell_edges/neighbor_no;
 		
 		double rel_edge_value = e.getValue() - mean_cell_background;
 		double rel_neighborEdge_value = mean_cell_edges	 - mean_cell_background;
@@ -417,27 +814,37 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 		return normalized_value;
 	}
 
+	/**
+	 * @param frameNo frame number
+	 * @return results of the frame or null if not (yet) measured
+	 */
+	private FrameIntensities getFrameResults(int frameNo){
+		if(frameNo >= frame_results.length())
+			return null;
+		return frame_results.get(frameNo);
+	}
+
 	@Override
     public void paintFrame(Graphics2D g, FrameGraph frame_i){
 		
-		int frameNo = frame_i.getFrameNo();
+		FrameIntensities frame_data = getFrameResults(frame_i.getFrameNo());
 		
-		if(frameNo > 0 && !analyzeAllFrames)
+		if(frame_data == null)
 			return;
 		
-		super.setGradientMaximum(max[frameNo]);
-		super.setGradientMinimum(min[frameNo]);
+		super.setGradientMaximum(frame_data.max);
+		super.setGradientMinimum(frame_data.min);
 		
 		g.setColor(Color.blue);
 		
 		//paint all the edges of the graph
 		for(Edge edge: frame_i.edgeSet()){
 
-			assert(buffer_shape.containsKey(edge));
+			assert(frame_data.buffer_shape.containsKey(edge));
 
-			Shape egde_shape = buffer_shape.get(edge);
+			Shape egde_shape = frame_data.buffer_shape.get(edge);
 			
-			double intensity_measure = relativeEdgeIntensity.get(edge);
+			double intensity_measure = frame_data.relativeEdgeIntensity.get(edge);
 			
 			if(intensity_measure < 0.0)
 				continue;
@@ -457,18 +864,21 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 	@Override
 	void writeFrameSheet(WritableSheet sheet, FrameGraph frame) {
 		
-		if(frame.getFrameNo() != 0 && !analyzeAllFrames)
+		FrameIntensities frame_data = getFrameResults(frame.getFrameNo());
+		
+		if(frame_data == null)
 			return;
 		
 		int c = 0;
 		int r = 0;
 		
-		XLSUtil.setCellString(sheet, c++, r, "Edge id");
+		XLSUtil.setCellString(sheet, c++, r, String.format("Edge id (%s)",
+				frame.getEdgeKeyScheme().getDescription()));
 		XLSUtil.setCellString(sheet, c++, r, "Edge x");
 		XLSUtil.setCellString(sheet, c++, r, "Edge y");
 		XLSUtil.setCellString(sheet, c++, r, "Cell 1");
 		XLSUtil.setCellString(sheet, c++, r, "Cell 2");
-		XLSUtil.setCellString(sheet, c++, r, String.format("%s Edge Intensity",summary_type.getValue().getDescription()));
+		XLSUtil.setCellString(sheet, c++, r, String.format("%s Edge Intensity",measured_type.getDescription()));
 		XLSUtil.setCellString(sheet, c++, r, "Relative Edge intensity");
 		XLSUtil.setCellString(sheet, c++, r, "Normalized Edge intensity");
 
@@ -484,8 +894,8 @@ public class EdgeIntensityOverlay extends StGraphOverlay{
 			int target = frame.getEdgeTarget(e).getTrackID();
 			int source = frame.getEdgeSource(e).getTrackID();
 			
-			double relative_value = relativeEdgeIntensity.get(e);
-			double normalized_value = normalizedEdgeIntensity.get(e);
+			double relative_value = frame_data.relativeEdgeIntensity.get(e);
+			double normalized_value = frame_data.normalizedEdgeIntensity.get(e);
 
 			XLSUtil.setCellNumber(sheet, c++, r, edge_id);
 			XLSUtil.setCellNumber(sheet, c++, r, centroid.getX());
@@ -27,6 +27,7 @@ import plugins.adufour.ezplug.EzVarEnum;
 import plugins.adufour.ezplug.EzVarListener;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.io.IntensityCache;
 import plugins.davhelle.cellgraph.io.IntensityReader;
 import plugins.davhelle.cellgraph.io.IntensitySummaryType;
 import plugins.davhelle.cellgraph.misc.EllipseFitGenerator;
@@ -109,6 +110,11 @@ public class EdgeOrientationOverlay extends StGraphOverlay implements EzVarListe
 
 	private Map<Node, EllipseFitter> cell_ellipses;
 	
+	/**
+	 * Measurements of previous analyses of the sequence
+	 */
+	private IntensityCache cache;
+	
 	/**
 	 * @param stGraph graph to be analyzed
 	 * @param sequence sequence connected to the overlay
@@ -125,6 +131,7 @@ public class EdgeOrientationOverlay extends StGraphOverlay implements EzVarListe
 		this.bufferWidth = buffer;
 		this.channelNumber = 0;
 		this.summary_type = varIntensityMeasure_EO;
+		this.cache = IntensityCache.forSequence(sequence);
 				
 		PolygonalCellTileGenerator.createPolygonalTiles(stGraph,plugin);
 		EllipseFitGenerator efg = new EllipseFitGenerator(stGraph,
@@ -265,6 +272,20 @@ public class EdgeOrientationOverlay extends StGraphOverlay implements EzVarListe
 	 */
 	private double computeEdgeIntensity(Edge e, FrameGraph frame_i){
 		
+		IntensityCache.Key key = new IntensityCache.Key(
+				"orientation_edge[nan_excluded]",
+				frame_i.getFrameNo(),
+				e.getPairCode(frame_i),
+				bufferWidth.getValue(),
+				0,
+				channelNumber,
+				summary_type.getValue(),
+				IntensityCache.geometryHash(e.getGeometry()));
+		
+		Double cached = cache.get(key);
+		if(cached != null)
+			return cached;
+		
 		ROI edge_wo_nan = edgeROIs.get(e);
 		
 		if(edge_wo_nan == null){
@@ -282,6 +303,8 @@ public class EdgeOrientationOverlay extends StGraphOverlay implements EzVarListe
 		double mean_intensity = 
 				IntensityReader.measureRoiIntensity(
 						sequence, edge_wo_nan, z, t, c, summary_type.getValue());
+		
+		cache.put(key, mean_intensity);
 
 		return mean_intensity;
 		
@@ -444,6 +467,8 @@ public class EdgeOrientationOverlay extends StGraphOverlay implements EzVarListe
 				
 			}
 		}
+		
+		cache.flush();
 	}
 
 	@Override
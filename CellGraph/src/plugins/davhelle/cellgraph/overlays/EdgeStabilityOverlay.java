@@ -9,6 +9,7 @@ import java.util.HashSet;
 import jxl.write.WritableSheet;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.misc.PresenceIntervals;
 import plugins.davhelle.cellgraph.nodes.Division;
 import plugins.davhelle.cellgraph.nodes.Edge;
 import plugins.davhelle.cellgraph.nodes.Node;
@@ -58,13 +59,13 @@ public class EdgeStabilityOverlay extends StGraphOverlay {
 		this.novel_set = new HashSet<Long>();
 		this.writer = new ShapeWriter();
 		
-		HashMap<Long, Integer> edge_stability = computeEdgeStability(stGraph);
+		HashMap<Long, PresenceIntervals> edge_stability = computeEdgeStability(stGraph);
 		
 		int edge_survival_count = 0;
 		for(long track_code:edge_stability.keySet()){
-			int pair_survival_time = edge_stability.get(track_code);
+			PresenceIntervals edge_presence = edge_stability.get(track_code);
 
-			if(pair_survival_time == stGraph.size()){
+			if(edge_presence.isComplete()){
 				edge_survival_count++;
 				stable_set.add(track_code);
 			}
@@ -96,11 +97,11 @@ public class EdgeStabilityOverlay extends StGraphOverlay {
 	 * computes how stable every edge is
 	 * 
 	 * @param stGraph graph to be analyzed
-	 * @return A persistence value (number of frames) for each edge
+	 * @return The frames in which each edge of the first frame is present
 	 */
-	private HashMap<Long, Integer> computeEdgeStability(
+	private HashMap<Long, PresenceIntervals> computeEdgeStability(
 			SpatioTemporalGraph stGraph) {
-		HashMap<Long,Integer> tracked_edges = new HashMap<Long,Integer>();
+		HashMap<Long,PresenceIntervals> tracked_edges = new HashMap<Long,PresenceIntervals>();
 		HashSet<Long> eliminated_edges = new HashSet<Long>();
 		
 		for(int i=0; i<stGraph.size(); i++){
@@ -116,10 +117,10 @@ public class EdgeStabilityOverlay extends StGraphOverlay {
 					long edge_track_code = e.getPairCode(frame_i);
 				
 					if(i==0)
-						tracked_edges.put(edge_track_code,0);
+						tracked_edges.put(edge_track_code,new PresenceIntervals(stGraph.size()));
 					
 					if(tracked_edges.containsKey(edge_track_code)){
-						updateTrackEntry(tracked_edges, edge_track_code);
+						updateTrackEntry(tracked_edges, edge_track_code, i);
 						no_of_tracked_edges++;
 					}
 					else if(!eliminated_edges.contains(edge_track_code)){
@@ -157,7 +158,7 @@ public class EdgeStabilityOverlay extends StGraphOverlay {
 											e, target_node, source_node);
 								
 								if(tracked_edges.containsKey(division_code)){
-									updateTrackEntry(tracked_edges,division_code);
+									updateTrackEntry(tracked_edges,division_code,i);
 //									System.out.println("Successfully updated edge "+
 //											Arrays.toString(Edge.getCodePair(division_code)));
 								}
@@ -211,7 +212,8 @@ public class EdgeStabilityOverlay extends StGraphOverlay {
 		//TODO check whether input node is actually dividing
 		Division division = dividing_node.getDivision();
 		Node mother = division.getMother();
-		long division_code = Edge.computePairCode(mother.getTrackID(), other_node.getTrackID());
+		long division_code = Edge.computePairCode(mother.getTrackID(), other_node.getTrackID(),
+				stGraph.getEdgeKeyScheme());
 		
 		e.setDivision(true);
 		e.setTrackId(division_code);
@@ -219,15 +221,15 @@ public class EdgeStabilityOverlay extends StGraphOverlay {
 	}
 
 	/**
-	 * Updates the count of frames for an edge in the map
+	 * Marks the presence of an edge in a frame
 	 * 
-	 * @param tracked_edges map of counts for each edge
+	 * @param tracked_edges map of presence intervals for each edge
 	 * @param edge_track_code tracking code of the edge to be updated
+	 * @param frame_no frame in which the edge is present
 	 */
-	private void updateTrackEntry(HashMap<Long, Integer> tracked_edges,
-			long edge_track_code) {
-		int old = tracked_edges.get(edge_track_code);
-		tracked_edges.put(edge_track_code, old + 1);
+	private void updateTrackEntry(HashMap<Long, PresenceIntervals> tracked_edges,
+			long edge_track_code, int frame_no) {
+		tracked_edges.get(edge_track_code).add(frame_no);
 	}
 
 	@Override
@@ -0,0 +1,319 @@
+package plugins.davhelle.cellgraph.overlays;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+
+/**
+ * Lazily computed per-frame results of a {@link StGraphOverlay}.<br><br>
+ *
+ * Instead of analyzing every frame in the overlay constructor, the
+ * result of a frame is computed on a background thread the first time
+ * it is requested by {@link #get(int)}. The requested (viewed) frame is
+ * computed first, followed by its neighboring time points. The overlay
+ * is repainted as soon as the viewed frame becomes available. Only the
+ * most recently used frames are kept in memory. All frames are discarded
+ * when the overlay content changes, see {@link StGraphOverlay#painterChanged()}.<br><br>
+ *
+ * Implementations of {@link #computeFrame(FrameGraph)} run outside of
+ * the event dispatch thread and must not share non thread-safe
+ * objects (e.g. ShapeWriter) with the painting code.
+ *
+ * @author Davide Heller
+ *
+ * @param <T> result type of a single frame
+ */
+public abstract class FrameResultCache<T> {
+
+	/**
+	 * Default no. of time points prefetched before and after the viewed frame
+	 */
+	public static final int DEFAULT_PREFETCH_RADIUS = 2;
+
+	/**
+	 * Default no. of frames kept in memory
+	 */
+	public static final int DEFAULT_CAPACITY = 16;
+
+	/**
+	 * Seconds after which the idle background thread terminates
+	 */
+	private static final long IDLE_TIMEOUT = 5;
+
+	/**
+	 * Overlay to repaint and whose graph is analyzed
+	 */
+	private final StGraphOverlay overlay;
+
+	private final int prefetch_radius;
+
+	/**
+	 * Computed frames in access order
+	 */
+	private final LinkedHashMap<Integer, T> results;
+
+	/**
+	 * Frames waiting to be computed
+	 */
+	private final TreeSet<Integer> pending;
+
+	private final ThreadPoolExecutor executor;
+
+	private int viewed_frame;
+	private int computing_frame;
+	private boolean worker_running;
+
+	/**
+	 * Incremented by {@link #clear()} to discard results still being computed
+	 */
+	private int generation;
+	private int computing_generation;
+
+	/**
+	 * Cache with default capacity and prefetch radius
+	 *
+	 * @param overlay overlay displaying the results
+	 */
+	public FrameResultCache(StGraphOverlay overlay) {
+		this(overlay, DEFAULT_CAPACITY, DEFAULT_PREFETCH_RADIUS);
+	}
+
+	/**
+	 * @param overlay overlay displaying the results
+	 * @param capacity max no. of frames kept in memory, at least the prefetched frames
+	 * @param prefetch_radius no. of time points computed before and after the viewed frame
+	 */
+	public FrameResultCache(StGraphOverlay overlay, int capacity, int prefetch_radius) {
+		this.overlay = overlay;
+		this.prefetch_radius = Math.max(0, prefetch_radius);
+
+		final int max_frames = Math.max(capacity, 2 * this.prefetch_radius + 1);
+		this.results = new LinkedHashMap<Integer, T>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest){
+				return size() > max_frames;
+			}
+		};
+
+		this.pending = new TreeSet<Integer>();
+		this.viewed_frame = -1;
+		this.computing_frame = -1;
+		this.worker_running = false;
+		this.generation = 0;
+
+		final String thread_name = overlay.getName() + " prefetch";
+		this.executor = new ThreadPoolExecutor(1, 1,
+				IDLE_TIMEOUT, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, thread_name);
+						t.setDaemon(true);
+						t.setPriority(Thread.MIN_PRIORITY);
+						return t;
+					}
+				});
+		this.executor.allowCoreThreadTimeOut(true);
+
+		overlay.addResultCache(this);
+	}
+
+	/**
+	 * Computes the result of a single frame
+	 *
+	 * @param frame frame to analyze
+	 * @return result of the frame
+	 */
+	protected abstract T computeFrame(FrameGraph frame);
+
+	/**
+	 * Returns the result of the viewed frame if already computed.
+	 * Otherwise the computation of the frame and of its neighbors is
+	 * scheduled and the overlay repainted once the frame is available.
+	 *
+	 * @param frame_no viewed time point
+	 * @return result of the frame or null if not yet available
+	 */
+	public synchronized T get(int frame_no){
+
+		T result = results.get(frame_no);
+
+		//rasterization of a neighboring frame, keep the viewed frame
+		if(overlay.isRasterizing()){
+			if(result == null){
+				overlay.resultMissing();
+				schedule(frame_no, overlay.stGraph.size());
+				startWorker();
+			}
+			return result;
+		}
+
+		if(result == null || frame_no != viewed_frame){
+			viewed_frame = frame_no;
+
+			//forget frames scheduled for a previous position
+			Iterator<Integer> it = pending.iterator();
+			while(it.hasNext())
+				if(Math.abs(it.next() - frame_no) > prefetch_radius)
+					it.remove();
+
+			int frame_count = overlay.stGraph.size();
+			for(int d = 0; d <= prefetch_radius; d++){
+				schedule(frame_no + d, frame_count);
+				schedule(frame_no - d, frame_count);
+			}
+
+			startWorker();
+		}
+
+		return result;
+	}
+
+	private void startWorker(){
+		if(!worker_running && !pending.isEmpty()){
+			worker_running = true;
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					computePending();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Returns the result of the frame, computing it in the calling
+	 * thread if needed (e.g. for the excel export of all frames).
+	 *
+	 * @param frame_no time point
+	 * @return result of the frame
+	 */
+	public T getNow(int frame_no){
+
+		synchronized (this) {
+			T result = results.get(frame_no);
+			if(result != null)
+				return result;
+		}
+
+		int started_generation;
+		synchronized (this) {
+			started_generation = generation;
+		}
+
+		T result = computeLocked(overlay.stGraph.getFrame(frame_no));
+
+		synchronized (this) {
+			if(started_generation == generation && !results.containsKey(frame_no))
+				results.put(frame_no, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Discards all computed frames, e.g. after a parameter change.
+	 * Visible frames are recomputed at the next request.
+	 */
+	public synchronized void clear(){
+		results.clear();
+		pending.clear();
+		viewed_frame = -1;
+		//the frame being computed is discarded, allow scheduling it again
+		computing_frame = -1;
+		generation++;
+	}
+
+	/**
+	 * @param frame_no time point
+	 * @return true if the result of the frame is available
+	 */
+	public synchronized boolean isComputed(int frame_no){
+		return results.containsKey(frame_no);
+	}
+
+	/**
+	 * Computes the frame while holding its read lock
+	 * 
+	 * @param frame frame to analyze
+	 * @return result of the frame
+	 */
+	private T computeLocked(FrameGraph frame){
+		frame.readLock().lock();
+		try{
+			return computeFrame(frame);
+		}
+		finally{
+			frame.readLock().unlock();
+		}
+	}
+
+	private void schedule(int frame_no, int frame_count){
+		if(frame_no >= 0 && frame_no < frame_count &&
+				frame_no != computing_frame &&
+				!results.containsKey(frame_no))
+			pending.add(frame_no);
+	}
+
+	/**
+	 * @return pending frame closest to the viewed frame or null if none is left
+	 */
+	private synchronized Integer nextFrame(){
+
+		if(pending.isEmpty()){
+			worker_running = false;
+			computing_frame = -1;
+			return null;
+		}
+
+		Integer next = pending.first();
+		for(Integer frame_no: pending)
+			if(Math.abs(frame_no - viewed_frame) < Math.abs(next - viewed_frame))
+				next = frame_no;
+
+		pending.remove(next);
+		computing_frame = next;
+		computing_generation = generation;
+		return next;
+	}
+
+	/**
+	 * Background loop computing the scheduled frames
+	 */
+	private void computePending(){
+
+		Integer frame_no;
+		while((frame_no = nextFrame()) != null){
+
+			T result = null;
+			try{
+				result = computeLocked(overlay.stGraph.getFrame(frame_no));
+			}
+			catch(RuntimeException e){
+				e.printStackTrace();
+			}
+
+			boolean repaint = false;
+			synchronized (this) {
+				computing_frame = -1;
+				if(result != null && computing_generation == generation){
+					results.put(frame_no, result);
+					repaint = frame_no == viewed_frame;
+				}
+			}
+
+			if(repaint)
+				overlay.requestRepaint();
+		}
+	}
+
+}
@@ -83,7 +83,8 @@ public class GraphOverlay extends StGraphOverlay{
 		
 		XLSUtil.setCellString(sheet, 0, 0, "Target id");
 		XLSUtil.setCellString(sheet, 1, 0, "Source id");
-		XLSUtil.setCellString(sheet, 2, 0, "Edge id (Cantor pairing)");
+		XLSUtil.setCellString(sheet, 2, 0, String.format("Edge id (%s)",
+				frame.getEdgeKeyScheme().getDescription()));
 
 		int row_no = 1;
 
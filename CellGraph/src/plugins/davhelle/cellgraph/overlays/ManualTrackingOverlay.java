@@ -87,6 +87,27 @@ public class ManualTrackingOverlay extends StGraphOverlay {
 	
 	@Override
 	public void keyPressed(KeyEvent e, Point5D.Double imagePoint, IcyCanvas canvas)
+	{
+		if(currentlyTrackedCell == null)
+			return;
+		
+		//only propagation, elimination and redo modify the tracking
+		int key = e.getKeyCode();
+		if(key != KeyEvent.VK_P && key != KeyEvent.VK_E && key != KeyEvent.VK_R){
+			applyKey(e, canvas);
+			return;
+		}
+		
+		beginModification();
+		try{
+			applyKey(e, canvas);
+		}
+		finally{
+			endModification(canvas.getSequence());
+		}
+	}
+	
+	private void applyKey(KeyEvent e, IcyCanvas canvas)
 	{
 		if(currentlyTrackedCell != null){
 			if (e.getKeyCode() == KeyEvent.VK_SPACE){
@@ -146,11 +167,22 @@ public class ManualTrackingOverlay extends StGraphOverlay {
 	
 	@Override
 	public void mouseClick(MouseEvent e, Point2D imagePoint, IcyCanvas canvas){
-		int time_point = canvas.getPositionT();
 		
 		if(insertionLock)
 			return;
 		
+		beginModification();
+		try{
+			applyClick(imagePoint, canvas);
+		}
+		finally{
+			endModification(canvas.getSequence());
+		}
+	}
+	
+	private void applyClick(Point2D imagePoint, IcyCanvas canvas){
+		int time_point = canvas.getPositionT();
+		
 		if(time_point < stGraph.size()){
 			
 			//create point Geometry
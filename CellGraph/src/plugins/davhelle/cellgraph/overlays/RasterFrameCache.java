@@ -0,0 +1,309 @@
+package plugins.davhelle.cellgraph.overlays;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rasterized frames of a {@link StGraphOverlay} for fast time-lapse
+ * playback.<br><br>
+ *
+ * Every (frame, zoom level) pair is painted once into an image on a
+ * background thread, starting with the viewed frame followed by its
+ * neighboring time points. Until the image of a frame is available the
+ * overlay is painted from the vector geometry. Zoom levels are spaced by
+ * half an octave; the images are kept within a memory budget and
+ * discarded whenever the overlay content changes. Frames painted before
+ * their {@link FrameResultCache} results are available are not kept.
+ *
+ * @author Davide Heller
+ *
+ */
+class RasterFrameCache {
+
+	/**
+	 * Memory budget for the cached images in bytes
+	 */
+	static final long MEMORY_BUDGET = 256L << 20;
+
+	/**
+	 * Largest image rasterized, larger views are painted as vectors
+	 */
+	static final double MAX_IMAGE_PIXELS = 1 << 24;
+
+	/**
+	 * No. of time points rasterized before and after the viewed frame
+	 */
+	static final int PREFETCH_RADIUS = 2;
+
+	/**
+	 * Seconds after which the idle background thread terminates
+	 */
+	private static final long IDLE_TIMEOUT = 5;
+
+	private final StGraphOverlay overlay;
+
+	/**
+	 * Images by frame and zoom level in access order
+	 */
+	private final LinkedHashMap<Long, BufferedImage> images;
+	private long used_bytes;
+
+	/**
+	 * Frames waiting to be rasterized at the viewed zoom level
+	 */
+	private final TreeSet<Integer> pending;
+
+	private final ThreadPoolExecutor executor;
+
+	private int viewed_frame;
+	private int viewed_level;
+	private int width;
+	private int height;
+	private boolean worker_running;
+	private long rendering_key;
+
+	/**
+	 * Incremented by {@link #invalidate()} to discard images being rendered
+	 */
+	private int generation;
+
+	/**
+	 * @param overlay overlay to rasterize
+	 */
+	RasterFrameCache(StGraphOverlay overlay) {
+		this.overlay = overlay;
+		this.images = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true);
+		this.used_bytes = 0;
+		this.pending = new TreeSet<Integer>();
+		this.viewed_frame = -1;
+		this.viewed_level = Integer.MIN_VALUE;
+		this.worker_running = false;
+		this.rendering_key = -1;
+		this.generation = 0;
+
+		final String thread_name = overlay.getName() + " rasterizer";
+		this.executor = new ThreadPoolExecutor(1, 1,
+				IDLE_TIMEOUT, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, thread_name);
+						t.setDaemon(true);
+						t.setPriority(Thread.MIN_PRIORITY);
+						return t;
+					}
+				});
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @param scale canvas zoom factor
+	 * @return zoom level in half octaves
+	 */
+	static int zoomLevel(double scale){
+		return (int)Math.round(2 * Math.log(scale) / Math.log(2));
+	}
+
+	/**
+	 * @param level zoom level
+	 * @return rasterization scale of the zoom level
+	 */
+	static double levelScale(int level){
+		return Math.pow(2, level / 2.0);
+	}
+
+	private static long key(int frame_no, int level){
+		return ((long)frame_no << 32) | (level & 0xffffffffL);
+	}
+
+	/**
+	 * Draws the cached image of the frame and schedules the rasterization
+	 * of the frame and its neighbors if missing.
+	 *
+	 * @param g graphics handle in image coordinates
+	 * @param frame_no viewed time point
+	 * @param image_width width of the sequence
+	 * @param image_height height of the sequence
+	 * @param scale canvas zoom factor
+	 * @return true if the frame was drawn, false if it needs to be painted as vector
+	 */
+	boolean draw(Graphics2D g, int frame_no, int image_width, int image_height, double scale){
+
+		if(scale <= 0)
+			return false;
+
+		int level = zoomLevel(scale);
+		double level_scale = levelScale(level);
+		if((double)image_width * image_height * level_scale * level_scale > MAX_IMAGE_PIXELS)
+			return false;
+
+		BufferedImage image;
+		synchronized (this) {
+			if(image_width != width || image_height != height){
+				invalidate();
+				width = image_width;
+				height = image_height;
+			}
+
+			image = images.get(key(frame_no, level));
+
+			if(image == null || frame_no != viewed_frame || level != viewed_level)
+				schedule(frame_no, level);
+		}
+
+		if(image == null)
+			return false;
+
+		g.drawImage(image, AffineTransform.getScaleInstance(
+				1.0 / level_scale, 1.0 / level_scale), null);
+		return true;
+	}
+
+	/**
+	 * Discards all images, e.g. after a change of the overlay content
+	 */
+	synchronized void invalidate(){
+		images.clear();
+		used_bytes = 0;
+		pending.clear();
+		viewed_frame = -1;
+		rendering_key = -1;
+		generation++;
+	}
+
+	private void schedule(int frame_no, int level){
+
+		if(level != viewed_level)
+			pending.clear();
+
+		viewed_frame = frame_no;
+		viewed_level = level;
+
+		//forget frames scheduled for a previous position
+		Iterator<Integer> it = pending.iterator();
+		while(it.hasNext())
+			if(Math.abs(it.next() - frame_no) > PREFETCH_RADIUS)
+				it.remove();
+
+		int frame_count = overlay.stGraph.size();
+		for(int d = -PREFETCH_RADIUS; d <= PREFETCH_RADIUS; d++){
+			int t = frame_no + d;
+			if(t >= 0 && t < frame_count &&
+					key(t, level) != rendering_key &&
+					!images.containsKey(key(t, level)))
+				pending.add(t);
+		}
+
+		if(!worker_running && !pending.isEmpty()){
+			worker_running = true;
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					rasterizePending();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Background loop rasterizing the scheduled frames
+	 */
+	private void rasterizePending(){
+
+		while(true){
+
+			int frame_no, level, started_generation, image_width, image_height;
+			synchronized (this) {
+				if(pending.isEmpty()){
+					worker_running = false;
+					return;
+				}
+
+				Integer next = pending.first();
+				for(Integer t: pending)
+					if(Math.abs(t - viewed_frame) < Math.abs(next - viewed_frame))
+						next = t;
+				pending.remove(next);
+
+				frame_no = next;
+				level = viewed_level;
+				started_generation = generation;
+				image_width = width;
+				image_height = height;
+				rendering_key = key(frame_no, level);
+			}
+
+			BufferedImage image = null;
+			try{
+				image = rasterize(frame_no, level, image_width, image_height);
+			}
+			catch(RuntimeException e){
+				e.printStackTrace();
+			}
+
+			boolean repaint = false;
+			synchronized (this) {
+				rendering_key = -1;
+				if(image != null && started_generation == generation){
+					store(key(frame_no, level), image);
+					repaint = frame_no == viewed_frame && level == viewed_level;
+				}
+			}
+
+			if(repaint)
+				overlay.requestRepaint();
+		}
+	}
+
+	private BufferedImage rasterize(int frame_no, int level, int image_width, int image_height){
+
+		double level_scale = levelScale(level);
+		BufferedImage image = new BufferedImage(
+				Math.max(1, (int)Math.ceil(image_width * level_scale)),
+				Math.max(1, (int)Math.ceil(image_height * level_scale)),
+				BufferedImage.TYPE_INT_ARGB);
+
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.scale(level_scale, level_scale);
+		boolean painted = overlay.renderFrame(g, overlay.stGraph.getFrame(frame_no), true);
+		g.dispose();
+
+		//frame being modified or lazy results pending, rasterized again at the next paint
+		return painted ? image : null;
+	}
+
+	private void store(long key, BufferedImage image){
+
+		BufferedImage previous = images.put(key, image);
+		if(previous != null)
+			used_bytes -= imageBytes(previous);
+		used_bytes += imageBytes(image);
+
+		//evict least recently drawn images, keeping the new one
+		Iterator<Map.Entry<Long, BufferedImage>> it = images.entrySet().iterator();
+		while(used_bytes > MEMORY_BUDGET && images.size() > 1 && it.hasNext()){
+			Map.Entry<Long, BufferedImage> eldest = it.next();
+			if(eldest.getKey() == key)
+				continue;
+			used_bytes -= imageBytes(eldest.getValue());
+			it.remove();
+		}
+	}
+
+	private static long imageBytes(BufferedImage image){
+		return 4L * image.getWidth() * image.getHeight();
+	}
+
+}
@@ -22,10 +22,13 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.geom.Line2D;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 import jxl.write.WritableSheet;
 import jxl.write.WritableWorkbook;
@@ -35,10 +38,15 @@ import plugins.adufour.vars.lang.Var;
 import plugins.adufour.vars.lang.VarBoolean;
 import plugins.adufour.vars.lang.VarDouble;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.GraphLocks;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 
 /**
- * Base class for all overlays that interpret the spatio-temporal graph
+ * Base class for all overlays that interpret the spatio-temporal graph<br><br>
+ * 
+ * Expensive per-frame analyses should be computed lazily with a
+ * {@link FrameResultCache} from within {@link #paintFrame(Graphics2D, FrameGraph)}
+ * instead of analyzing all frames in the constructor.
  * 
  * @author Davide Heller
  *
@@ -79,7 +87,7 @@ public abstract class StGraphOverlay extends Overlay implements ActionListener{
 			
 			super.setValue(newValue);
 			
-			painterChanged();
+			gradientChanged();
 			
 		}
 	};
@@ -96,7 +104,7 @@ public abstract class StGraphOverlay extends Overlay implements ActionListener{
 			
 			super.setValue(newValue);
 			
-			painterChanged();
+			gradientChanged();
 			
 		}
 	};
@@ -112,7 +120,7 @@ public abstract class StGraphOverlay extends Overlay implements ActionListener{
 			
 			super.setValue(newValue);
 			
-			painterChanged();
+			gradientChanged();
 			
 		}
 	};
@@ -128,6 +136,23 @@ public abstract class StGraphOverlay extends Overlay implements ActionListener{
 			
 			super.setValue(newValue);
 			
+			gradientChanged();
+			
+		}
+	};
+
+	/**
+	 * Boolean value to define whether to paint the frames from rasterized images
+	 * for a smoother time-lapse playback
+	 */
+	private final VarBoolean rasterCache = new VarBoolean("Raster cache", false)
+	{
+		public void setValue(Boolean newValue)
+		{
+			if (getValue().equals(newValue)) return;
+			
+			super.setValue(newValue);
+			
 			painterChanged();
 			
 		}
@@ -135,6 +160,37 @@ public abstract class StGraphOverlay extends Overlay implements ActionListener{
 
 	private boolean showGradientControls;
 	
+	/**
+	 * Rasterized frames, used when the raster cache is enabled
+	 */
+	private RasterFrameCache raster_frames;
+	
+	/**
+	 * Lazily computed results of the overlay, discarded with the rasterized frames
+	 */
+	private final List<FrameResultCache<?>> result_caches = new ArrayList<FrameResultCache<?>>();
+	
+	/**
+	 * Lock serializing the calls to {@link #paintFrame(Graphics2D, FrameGraph)}
+	 * from the viewer and the rasterization thread
+	 */
+	private final Object paint_lock = new Object();
+	
+	/**
+	 * Set while the background rasterization paints a frame, guarded by the paint_lock
+	 */
+	private boolean rasterizing;
+	
+	/**
+	 * Set if a lazily computed result was missing while rasterizing, guarded by the paint_lock
+	 */
+	private boolean result_missing;
+	
+	/**
+	 * Delay in ms before painting again a frame that was being modified
+	 */
+	private static final int BUSY_FRAME_RETRY = 250;
+	
 	
 	
 	/**
@@ -148,6 +204,7 @@ public abstract class StGraphOverlay extends Overlay implements ActionListener{
 		super(name);
 		this.stGraph = stGraph;	
 		this.showGradientControls = false;
+		this.raster_frames = new RasterFrameCache(this);
 	}
 	
 	/**
@@ -167,8 +224,19 @@ public abstract class StGraphOverlay extends Overlay implements ActionListener{
 		int time_point = Icy.getMainInterface().getFirstViewer(sequence).getPositionT();
 
 		if(time_point < stGraph.size()){
-			FrameGraph frame_i = stGraph.getFrame(time_point);
-			paintFrame(g, frame_i);
+			
+			boolean cached = false;
+			if(rasterCache.getValue() && canvas instanceof IcyCanvas2D)
+				cached = raster_frames.draw(g, time_point,
+						sequence.getWidth(), sequence.getHeight(),
+						((IcyCanvas2D) canvas).getScaleX());
+			
+			//vector painting while the raster cache warms up
+			if(!cached){
+				FrameGraph frame_i = stGraph.getFrame(time_point);
+				if(!renderFrame(g, frame_i))
+					retryLater();
+			}
 		}
 		
 		if(showLegend.getValue())
@@ -176,6 +244,149 @@ public abstract class StGraphOverlay extends Overlay implements ActionListener{
 		
     }
 	
+	/**
+	 * Paints the frame, serialized with the background rasterization.
+	 * Frames being modified by another thread (e.g. tracking) are skipped.
+	 * 
+	 * @param g graphics handle
+	 * @param frame_i frameGraph to visualize
+	 * @return false if the frame was skipped
+	 */
+	boolean renderFrame(Graphics2D g, FrameGraph frame_i){
+		return renderFrame(g, frame_i, false);
+	}
+	
+	/**
+	 * Paints the frame, serialized with the background rasterization.
+	 * Frames being modified by another thread (e.g. tracking) are skipped.
+	 * 
+	 * @param g graphics handle
+	 * @param frame_i frameGraph to visualize
+	 * @param rasterize true if painted by the rasterization, which requires
+	 * all lazily computed results of the frame
+	 * @return false if the frame was skipped or rasterized without all its results
+	 */
+	boolean renderFrame(Graphics2D g, FrameGraph frame_i, boolean rasterize){
+		
+		if(!frame_i.readLock().tryLock())
+			return false;
+		
+		try{
+			synchronized (paint_lock) {
+				rasterizing = rasterize;
+				result_missing = false;
+				try{
+					paintFrame(g, frame_i);
+				}
+				finally{
+					rasterizing = false;
+				}
+				return !result_missing;
+			}
+		}
+		finally{
+			frame_i.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * @return true if called while the background rasterization paints a frame
+	 */
+	boolean isRasterizing(){
+		return Thread.holdsLock(paint_lock) && rasterizing;
+	}
+	
+	/**
+	 * Marks the frame being rasterized as incomplete, it is not cached
+	 */
+	void resultMissing(){
+		result_missing = true;
+	}
+	
+	/**
+	 * Repaints the overlay after a short delay
+	 */
+	private void retryLater(){
+		Timer timer = new Timer(BUSY_FRAME_RETRY, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				requestRepaint();
+			}
+		});
+		timer.setRepeats(false);
+		timer.start();
+	}
+	
+	/**
+	 * Discards the rasterized frames and the lazily computed 
+	 * results before notifying the change
+	 */
+	@Override
+	public void painterChanged(){
+		if(raster_frames != null)
+			raster_frames.invalidate();
+		if(result_caches != null)
+			synchronized (result_caches) {
+				for(FrameResultCache<?> cache: result_caches)
+					cache.clear();
+			}
+		super.painterChanged();
+	}
+	
+	/**
+	 * Write locks all frames before a modification of the graph on the
+	 * event dispatch thread (e.g. manual tracking or tagging), as the
+	 * lazy computation and rasterization threads read the frames
+	 * concurrently. Must be followed by {@link #endModification(Sequence)},
+	 * e.g. in a finally block.
+	 */
+	protected void beginModification(){
+		GraphLocks.lockFrames(stGraph);
+	}
+	
+	/**
+	 * Releases the frames locked by {@link #beginModification()} and
+	 * discards the cached frames of every overlay displaying the graph
+	 * 
+	 * @param sequence sequence displaying the overlays, null for this overlay only
+	 */
+	protected void endModification(Sequence sequence){
+		GraphLocks.unlockFrames(stGraph);
+		painterChanged();
+		
+		if(sequence != null)
+			for(Overlay overlay: sequence.getOverlays())
+				if(overlay != this && overlay instanceof StGraphOverlay &&
+						((StGraphOverlay)overlay).stGraph == stGraph)
+					overlay.painterChanged();
+	}
+	
+	/**
+	 * @param cache lazily computed results to discard when the overlay content changes
+	 */
+	void addResultCache(FrameResultCache<?> cache){
+		synchronized (result_caches) {
+			result_caches.add(cache);
+		}
+	}
+	
+	/**
+	 * Gradient changes made while painting (e.g. limits adapted to the
+	 * painted frame) only concern that frame and keep the cached frames
+	 */
+	private void gradientChanged(){
+		if(!Thread.holdsLock(paint_lock))
+			painterChanged();
+	}
+	
+	/**
+	 * Repaints the overlay without discarding the rasterized frames,
+	 * e.g. once the viewed frame has been rasterized
+	 */
+	void requestRepaint(){
+		super.painterChanged();
+	}
+	
 	/**
 	 * Paints a legend on the viewer
 	 * 
@@ -269,6 +480,9 @@ public abstract class StGraphOverlay extends Overlay implements ActionListener{
 		
 		//Legend output
 		addOptionPanelVariable(optionPanel,showLegend);
+		
+		//Rasterized playback
+		addOptionPanelVariable(optionPanel,rasterCache);
         
 		if(showGradientControls){
 			//Gradient min
@@ -332,6 +546,20 @@ public abstract class StGraphOverlay extends Overlay implements ActionListener{
 		return showLegend.getValue();
 	}
 	
+	/**
+	 * @param state set true to paint the frames from cached raster images
+	 */
+	public void setRasterCacheEnabled(boolean state){
+		rasterCache.setValue(state);
+	}
+	
+	/**
+	 * @return true if the frames are painted from cached raster images
+	 */
+	public boolean isRasterCacheEnabled(){
+		return rasterCache.getValue();
+	}
+	
 	/**
 	 * @param max maximum value for color gradient
 	 */
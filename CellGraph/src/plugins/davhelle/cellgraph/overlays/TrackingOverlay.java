@@ -14,6 +14,7 @@ import java.util.Map;
 import java.util.Random;
 
 import jxl.write.WritableSheet;
+import plugins.davhelle.cellgraph.graphs.FrameAdjacency;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.nodes.Division;
@@ -52,9 +53,13 @@ public class TrackingOverlay extends StGraphOverlay{
 			"<li> [gray] brother cell was eliminated</ul>";
 	
 	/**
-	 * A Random bright color for each cell
+	 * Inner ring of every tracked cell, computed lazily for the viewed frames
+	 */
+	private FrameResultCache<Map<Node,Shape>> inner_circles;
+	
+	/**
+	 * Writer for the inner rings of cells tracked after their frame was computed
 	 */
-	private HashMap<Node,Shape> inner_circle;
 	private ShapeWriter writer;
 	
 	/**
@@ -94,8 +99,13 @@ public class TrackingOverlay extends StGraphOverlay{
 		//Color for each cell line
 		this.stGraph = stGraph;
 		this.highlightMistakes = highlightMistakes.booleanValue();
-		this.inner_circle = new HashMap<Node,Shape>();
 		this.writer = new ShapeWriter();
+		this.inner_circles = new FrameResultCache<Map<Node,Shape>>(this) {
+			@Override
+			protected Map<Node, Shape> computeFrame(FrameGraph frame) {
+				return computeInnerCircles(frame);
+			}
+		};
 		
 		//Assign color to cell line starting from first cell
 		Iterator<Node> cell_it = stGraph.getFrame(0).iterator();
@@ -116,22 +126,36 @@ public class TrackingOverlay extends StGraphOverlay{
 		
 		checkDivisions();
 		
-		//Precompute shapes
-		for(int i=0; i < stGraph.size(); i++)
-			for(Node cell: stGraph.getFrame(i).vertexSet())
-				if(cell.getTrackID() != -1)
-					computeInnerCircle(cell);
-		
 	}
 
 	/**
-	 * @param cell
+	 * Computes the inner ring shape of all tracked cells in the frame
+	 * 
+	 * @param frame frame to analyze
+	 * @return inner ring shape of every tracked cell
 	 */
-	private void computeInnerCircle(Node cell) {
+	private Map<Node,Shape> computeInnerCircles(FrameGraph frame) {
+		
+		//own writer as the method runs in the background
+		ShapeWriter background_writer = new ShapeWriter();
+		Map<Node,Shape> frame_circles = new HashMap<Node,Shape>();
+		
+		for(Node cell: frame.vertexSet())
+			if(cell.getTrackID() != -1)
+				frame_circles.put(cell, computeInnerCircle(cell, background_writer));
+		
+		return frame_circles;
+	}
+	
+	/**
+	 * @param cell cell to compute the inner ring for
+	 * @param writer shape writer of the calling thread
+	 * @return inner ring shape of the cell
+	 */
+	private Shape computeInnerCircle(Node cell, ShapeWriter writer){
 		Geometry geo = cell.getGeometry();
 		Geometry inner_geo = geo.difference(geo.buffer(-3.0));
-		inner_circle.put(cell, writer.toShape(inner_geo));
-		//TODO return geometry
+		return writer.toShape(inner_geo);
 	}
 	
 	/**
@@ -186,6 +210,11 @@ public class TrackingOverlay extends StGraphOverlay{
 	@Override
 	public void paintFrame(Graphics2D g, FrameGraph frame)
 	{
+		
+		//null until the background computation of the frame is done
+		Map<Node,Shape> frame_circles = null;
+		if(highlightMistakes)
+			frame_circles = inner_circles.get(frame.getFrameNo());
 
 		double percentage_tracked = 0;
 		for(Node cell: frame.vertexSet()){
@@ -197,11 +226,14 @@ public class TrackingOverlay extends StGraphOverlay{
 					g.setColor(cell.getTrackingColor());
 
 					if(highlightMistakes){
-						if(!inner_circle.containsKey(cell))
-							computeInnerCircle(cell);
-
-						Shape inner = inner_circle.get(cell);
-						g.fill(inner);
+						if(frame_circles == null)
+							g.draw(cell.toShape());
+						else{
+							//cell tracked after the frame was computed
+							if(!frame_circles.containsKey(cell))
+								frame_circles.put(cell, computeInnerCircle(cell, writer));
+							g.fill(frame_circles.get(cell));
+						}
 					}
 					else
 						g.fill(cell.toShape());
@@ -247,9 +279,12 @@ public class TrackingOverlay extends StGraphOverlay{
 				if(!cell.onBoundary()){
 					g.setColor(Color.green);
 
+					FrameAdjacency adjacency = frame.getAdjacency();
+					int cell_id = adjacency.getId(cell);
+					
 					boolean all_assigned = true;
-					for(Node neighbor: cell.getNeighbors())
-						if(neighbor.getTrackID() == -1)
+					for(int k = adjacency.start(cell_id); k < adjacency.end(cell_id); k++)
+						if(adjacency.getNode(adjacency.target(k)).getTrackID() == -1)
 							all_assigned = false;
 
 					if(all_assigned)
@@ -1,6 +1,5 @@
 package plugins.davhelle.cellgraph.overlays;
 
-import headless.DetectT1Transition;
 import icy.gui.dialog.SaveDialog;
 
 import java.awt.Color;
@@ -19,9 +18,9 @@ import plugins.davhelle.cellgraph.CellOverlay;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.io.CsvWriter;
-import plugins.davhelle.cellgraph.misc.PolygonalCellTile;
-import plugins.davhelle.cellgraph.misc.PolygonalCellTileGenerator;
 import plugins.davhelle.cellgraph.misc.T1Transition;
+import plugins.davhelle.cellgraph.misc.T1TransitionDetector;
+import plugins.davhelle.cellgraph.misc.T1TransitionListener;
 import plugins.davhelle.cellgraph.nodes.Edge;
 import plugins.davhelle.cellgraph.nodes.Node;
 import plugins.davhelle.cellgraph.tracking.EdgeTracking;
@@ -64,7 +63,7 @@ public class TransitionOverlay extends StGraphOverlay{
 	 * @param stGraph graph to analyze
 	 * @param plugin connected plugin to display progress of computation
 	 */
-	public TransitionOverlay(SpatioTemporalGraph stGraph, CellOverlay plugin) {
+	public TransitionOverlay(SpatioTemporalGraph stGraph, final CellOverlay plugin) {
 		
 		super(String.format("Transition Painter (min=%d, start=%d)",
 				plugin.varMinimalTransitionLength.getValue(),
@@ -73,22 +72,44 @@ public class TransitionOverlay extends StGraphOverlay{
 		
 		this.paint_legacy = plugin.varLegacyPainting;
 		
-		//TODO move createPolygonalTiles to PolygonalCellTile class
-		HashMap<Node, PolygonalCellTile> cell_tiles = PolygonalCellTileGenerator.createPolygonalTiles(stGraph,plugin);
+		//edge geometries are required for painting, the weight
+		//is exported as junction length
+		for(int i=0; i < stGraph.size(); i++){
+			FrameGraph frame_i = stGraph.getFrame(i);
+			for(Edge e: frame_i.edgeSet())
+				if(!e.hasGeometry()){
+					e.computeGeometry(frame_i);
+					if(e.hasGeometry())
+						frame_i.setEdgeWeight(e, e.getGeometry().getLength());
+				}
+		}
+		
 		EdgeTracking edgeTracking = new EdgeTracking(stGraph, plugin.varT1StartingFrame.getValue());
 		tracked_edges = edgeTracking.trackEdges(plugin);
 		
 		varT1StartingFrame = plugin.varT1StartingFrame.getValue();
 		
 		plugin.getUI().setProgressBarMessage("Analyzing Transitions..");
-		this.transitions = DetectT1Transition.findTransitions(
+		T1TransitionDetector detector = new T1TransitionDetector(
 				stGraph,
-				cell_tiles,
 				tracked_edges,
 				plugin.varMinimalTransitionLength.getValue(),
 				plugin.varMinimalOldSurvival.getValue(),
 				varT1StartingFrame);
 		
+		detector.setListener(new T1TransitionListener() {
+			int found_no = 0;
+			
+			@Override
+			public void transitionFound(T1Transition transition) {
+				found_no++;
+				plugin.getUI().setProgressBarMessage(
+						String.format("Analyzing Transitions.. %d found", found_no));
+			}
+		});
+		
+		this.transitions = detector.findTransitions(Runtime.getRuntime().availableProcessors());
+		
 		System.out.println("Transitions found: "+transitions.size());
 	
 	}
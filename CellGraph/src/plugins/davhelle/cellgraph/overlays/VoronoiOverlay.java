@@ -1,9 +1,11 @@
 package plugins.davhelle.cellgraph.overlays;
 
+import icy.sequence.Sequence;
 import icy.util.XLSUtil;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.util.HashMap;
 import java.util.Map;
 
 import jxl.write.WritableSheet;
@@ -19,7 +21,8 @@ import com.vividsolutions.jts.geom.Geometry;
  * Overlay representing the voronoi tesselation using the centroids
  * of all inner cells.<br><br>
  * 
- * The required voronoi map can be generated with the {@link VoronoiGenerator}
+ * The tesselation is computed lazily with the {@link VoronoiGenerator}
+ * for the viewed frame and its neighbors.
  * 
  * @author Davide Heller
  *
@@ -33,9 +36,9 @@ public class VoronoiOverlay extends StGraphOverlay {
 			"Overlay displays the voronoi diagram <br/>" +
 			"computed from the cell centroids";
 	/**
-	 * The voronoi tile geometry for every cell
+	 * The voronoi tile geometry for every cell of the computed frames
 	 */
-	private Map<Node, Geometry> nodeVoronoiMap;
+	private FrameResultCache<Map<Node, Geometry>> nodeVoronoiMaps;
 	
 	/**
 	 * JTS geometry to AWT shape converter
@@ -46,18 +49,32 @@ public class VoronoiOverlay extends StGraphOverlay {
 	 * Initializes the voronoi tesselation overlay
 	 * 
 	 * @param stGraph the graph to stanalyze
-	 * @param nodeVoronoiMap the voronoi map associated to the stgraph
+	 * @param sequence the image connected to the stgraph, used to clip the diagram
 	 */
-	public VoronoiOverlay(SpatioTemporalGraph stGraph, Map<Node,Geometry> nodeVoronoiMap) {
+	public VoronoiOverlay(SpatioTemporalGraph stGraph, Sequence sequence) {
 		super("Voronoi Diagram",stGraph);
-		this.nodeVoronoiMap = nodeVoronoiMap;
 		this.writer = new ShapeWriter();
+		
+		final int width = sequence.getWidth();
+		final int height = sequence.getHeight();
+		this.nodeVoronoiMaps = new FrameResultCache<Map<Node,Geometry>>(this) {
+			@Override
+			protected Map<Node, Geometry> computeFrame(FrameGraph frame) {
+				Map<Node, Geometry> nodeVoronoiMap = new HashMap<Node, Geometry>();
+				VoronoiGenerator.computeFrame(frame, width, height, nodeVoronoiMap, null);
+				return nodeVoronoiMap;
+			}
+		};
 
 	}
 	
 	@Override
     public void paintFrame(Graphics2D g, FrameGraph frame_i)
     {
+		Map<Node, Geometry> nodeVoronoiMap = nodeVoronoiMaps.get(frame_i.getFrameNo());
+		if(nodeVoronoiMap == null)
+			return;
+		
 		g.setColor(Color.green);
 
 		for(Node cell: frame_i.vertexSet())
@@ -82,6 +99,8 @@ public class VoronoiOverlay extends StGraphOverlay {
 		//WKTWriter writer = new WKTWriter(2);
 		//XLSUtil.setCellString(sheet, 7, 0, "WKT Voronoi Polygon");
 
+		Map<Node, Geometry> nodeVoronoiMap = nodeVoronoiMaps.getNow(frame.getFrameNo());
+		
 		int row_no = 1;
 
 		for(Node n: frame.vertexSet()){
@@ -0,0 +1,160 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
+
+/**
+ * Precomputed geometrical overlaps between the cells of a frame
+ * and the cells of the following [linkrange] frames.<br><br>
+ *
+ * The overlaps do not depend on the tracking parameters, thus the
+ * index can be computed once and shared (read only) by several
+ * {@link GraphTracking} runs, e.g. in a {@link TrackingParameterSweep}.
+ * Nodes are addressed by their position in the vertex set of the frame,
+ * so the index is valid for every copy of the graph which preserves the
+ * vertex order (see {@link FrameGraph#copySpatialGraph()}).
+ *
+ * @author Davide Heller
+ *
+ */
+public class CandidateOverlapIndex {
+
+	/**
+	 * Maximum number of frames the overlaps are computed for
+	 */
+	private final int linkrange;
+
+	/**
+	 * Number of nodes in each frame
+	 */
+	private final int[] frame_sizes;
+
+	/**
+	 * Overlapping node positions: [frame][lag - 1][node position]
+	 */
+	private final int[][][][] overlaps;
+
+	/**
+	 * Computes the overlaps of all frames
+	 *
+	 * @param stGraph graph to be indexed
+	 * @param linkrange maximum no. of frames to look ahead
+	 * @param min_overlap_area minimal intersection area for a node to be a candidate
+	 */
+	public CandidateOverlapIndex(SpatioTemporalGraph stGraph, int linkrange, double min_overlap_area){
+
+		this.linkrange = linkrange;
+		this.frame_sizes = new int[stGraph.size()];
+		this.overlaps = new int[stGraph.size()][linkrange][][];
+
+		PreparedGeometryFactory cached_factory = new PreparedGeometryFactory();
+
+		//spatial index and vertex positions of every frame
+		STRtree[] trees = new STRtree[stGraph.size()];
+		ArrayList<HashMap<Node, Integer>> positions = new ArrayList<HashMap<Node,Integer>>();
+
+		for(int t=0; t < stGraph.size(); t++){
+			FrameGraph frame = stGraph.getFrame(t);
+			frame_sizes[t] = frame.size();
+
+			trees[t] = new STRtree();
+			HashMap<Node, Integer> frame_positions = new HashMap<Node, Integer>();
+
+			int position = 0;
+			for(Node n: frame.vertexSet()){
+				trees[t].insert(n.getGeometry().getEnvelopeInternal(), n);
+				frame_positions.put(n, position++);
+			}
+
+			positions.add(frame_positions);
+		}
+
+		for(int t=0; t < stGraph.size(); t++){
+			for(int lag=1; lag <= linkrange; lag++){
+
+				overlaps[t][lag - 1] = new int[frame_sizes[t]][];
+
+				if(t + lag >= stGraph.size()){
+					for(int k=0; k < frame_sizes[t]; k++)
+						overlaps[t][lag - 1][k] = new int[0];
+					continue;
+				}
+
+				HashMap<Node, Integer> next_positions = positions.get(t + lag);
+
+				int k = 0;
+				for(Node current: stGraph.getFrame(t).vertexSet()){
+					Geometry current_geometry = current.getGeometry();
+					PreparedGeometry cached_current = cached_factory.create(current_geometry);
+
+					@SuppressWarnings("unchecked")
+					List<Node> query = trees[t + lag].query(current_geometry.getEnvelopeInternal());
+
+					int[] found = new int[query.size()];
+					int found_no = 0;
+
+					for(Node next: query){
+						Geometry next_geometry = next.getGeometry();
+						if(cached_current.intersects(next_geometry))
+							if(next_geometry.intersection(current_geometry).getArea() > min_overlap_area)
+								found[found_no++] = next_positions.get(next);
+					}
+
+					//keep the vertex order of the next frame
+					int[] sorted = new int[found_no];
+					System.arraycopy(found, 0, sorted, 0, found_no);
+					Arrays.sort(sorted);
+
+					overlaps[t][lag - 1][k++] = sorted;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return maximum no. of frames the overlaps have been computed for
+	 */
+	public int getLinkrange(){
+		return linkrange;
+	}
+
+	/**
+	 * @param frame_no frame of the node
+	 * @param lag no. of frames to look ahead (1 to linkrange)
+	 * @param node_position position of the node in the vertex set
+	 * @return positions of the overlapping nodes in frame [frame_no + lag]
+	 */
+	public int[] getOverlaps(int frame_no, int lag, int node_position){
+		return overlaps[frame_no][lag - 1][node_position];
+	}
+
+	/**
+	 * Checks if the index can be applied to the graph, i.e. the
+	 * graph has the same no. of frames and nodes per frame
+	 *
+	 * @param stGraph graph to be checked
+	 * @return true if the index is compatible
+	 */
+	public boolean isCompatible(SpatioTemporalGraph stGraph){
+		if(stGraph.size() != frame_sizes.length)
+			return false;
+
+		for(int t=0; t < frame_sizes.length; t++)
+			if(stGraph.getFrame(t).size() != frame_sizes[t])
+				return false;
+
+		return true;
+	}
+
+}
@@ -0,0 +1,173 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.Arrays;
+
+/**
+ * Static 2D kd-tree over point coordinates (e.g. cell centroids)
+ * supporting radius and nearest neighbour queries.<br><br>
+ *
+ * The tree is stored implicitly in a permutation of the point
+ * indices: the median of every sub-range is the splitting node,
+ * alternating between x (even depth) and y (odd depth).
+ *
+ * @author Davide Heller
+ *
+ */
+public class CentroidKdTree {
+
+	private final double[] x;
+	private final double[] y;
+
+	/**
+	 * Point indices in tree order
+	 */
+	private final int[] tree;
+
+	/**
+	 * Builds the tree, the coordinate arrays are not copied
+	 *
+	 * @param x x coordinates
+	 * @param y y coordinates
+	 */
+	public CentroidKdTree(double[] x, double[] y) {
+
+		assert x.length == y.length: "Coordinate arrays differ in length";
+
+		this.x = x;
+		this.y = y;
+		this.tree = new int[x.length];
+		for(int i=0; i < tree.length; i++)
+			tree[i] = i;
+
+		build(0, tree.length, 0);
+	}
+
+	/**
+	 * @return no. of points in the tree
+	 */
+	public int size(){
+		return tree.length;
+	}
+
+	/**
+	 * Places the median of the range [from, to) in the middle
+	 * and recursively builds the two halves
+	 */
+	private void build(int from, int to, int depth){
+		if(to - from < 2)
+			return;
+
+		int median = (from + to) >>> 1;
+		select(from, to - 1, median, depth % 2 == 0);
+
+		build(from, median, depth + 1);
+		build(median + 1, to, depth + 1);
+	}
+
+	/**
+	 * Quickselect: partially orders tree[left..right] such that the
+	 * k-th element is in its sorted position
+	 */
+	private void select(int left, int right, int k, boolean split_x){
+		while(right > left){
+			double pivot = coordinate(tree[(left + right) >>> 1], split_x);
+			int i = left;
+			int j = right;
+			while(i <= j){
+				while(coordinate(tree[i], split_x) < pivot)
+					i++;
+				while(coordinate(tree[j], split_x) > pivot)
+					j--;
+				if(i <= j){
+					int tmp = tree[i];
+					tree[i] = tree[j];
+					tree[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if(k <= j)
+				right = j;
+			else if(k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+	private double coordinate(int point, boolean split_x){
+		return split_x ? x[point] : y[point];
+	}
+
+	/**
+	 * Finds the nearest points to a query position
+	 *
+	 * @param qx query x
+	 * @param qy query y
+	 * @param k maximal no. of points to return
+	 * @param max_distance maximal distance of a returned point
+	 * @return point indices ordered by increasing distance
+	 */
+	public int[] nearest(double qx, double qy, int k, double max_distance){
+
+		int[] best = new int[k];
+		double[] best_dist = new double[k];
+		Arrays.fill(best_dist, max_distance * max_distance);
+
+		int found = search(0, tree.length, 0, qx, qy, k, best, best_dist, 0);
+
+		return Arrays.copyOf(best, found);
+	}
+
+	/**
+	 * Recursive branch and bound search keeping the k best
+	 * points in ascending order of squared distance
+	 *
+	 * @return no. of points currently in best
+	 */
+	private int search(int from, int to, int depth, double qx, double qy,
+			int k, int[] best, double[] best_dist, int found){
+
+		if(from >= to)
+			return found;
+
+		int median = (from + to) >>> 1;
+		int point = tree[median];
+
+		double dx = x[point] - qx;
+		double dy = y[point] - qy;
+		double dist = dx * dx + dy * dy;
+
+		if(dist <= best_dist[k - 1]){
+			//insertion into the sorted best list
+			int pos = Math.min(found, k - 1);
+			while(pos > 0 && best_dist[pos - 1] > dist){
+				best[pos] = best[pos - 1];
+				best_dist[pos] = best_dist[pos - 1];
+				pos--;
+			}
+			best[pos] = point;
+			best_dist[pos] = dist;
+			if(found < k)
+				found++;
+		}
+
+		boolean split_x = depth % 2 == 0;
+		double delta = split_x ? qx - x[point] : qy - y[point];
+
+		//visit the side of the query first
+		if(delta < 0){
+			found = search(from, median, depth + 1, qx, qy, k, best, best_dist, found);
+			if(delta * delta <= best_dist[k - 1])
+				found = search(median + 1, to, depth + 1, qx, qy, k, best, best_dist, found);
+		}
+		else{
+			found = search(median + 1, to, depth + 1, qx, qy, k, best, best_dist, found);
+			if(delta * delta <= best_dist[k - 1])
+				found = search(from, median, depth + 1, qx, qy, k, best, best_dist, found);
+		}
+
+		return found;
+	}
+
+}
@@ -0,0 +1,60 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+
+/**
+ * Fast first-pass tracking for very large frames. Candidates are proposed
+ * by a nearest neighbor search on the cell centroids ({@link CentroidKdTree})
+ * and gated by their area ratio, so that no geometry intersection is 
+ * computed during propagation and evaluation. Linking, rescue and the
+ * division/elimination review are the ones of {@link GraphTracking}
+ * with the stable marriage matching.<br><br>
+ * 
+ * Optionally ambiguous nodes, i.e. whose two best candidates score 
+ * similarly, are re-evaluated with the overlap based criteria.
+ * 
+ * @author Davide Heller
+ *
+ */
+public class CentroidTracking extends StableMarriageTracking {
+
+	/**
+	 * Initializes the centroid tracking with default gating:
+	 * area ratio above 0.5, search radius of 2 cell radii and 
+	 * at most 4 neighbors per frame
+	 * 
+	 * @param spatioTemporalGraph Spatio-temporal graph to be tracked/linked
+	 * @param linkrange the maximum no. of frames the node information is projected ahead
+	 * @param lambda1 weight for the centroid candidate to candidate distance
+	 * @param lambda2 weight for the area ratio
+	 */
+	public CentroidTracking(SpatioTemporalGraph spatioTemporalGraph, int linkrange, double lambda1, double lambda2) {
+		this(spatioTemporalGraph, linkrange, lambda1, lambda2, 0.5, 2.0, 4);
+	}
+	
+	/**
+	 * @param spatioTemporalGraph Spatio-temporal graph to be tracked/linked
+	 * @param linkrange the maximum no. of frames the node information is projected ahead
+	 * @param lambda1 weight for the centroid candidate to candidate distance
+	 * @param lambda2 weight for the area ratio
+	 * @param min_area_ratio minimal area ratio (smaller/larger) of a candidate
+	 * @param search_factor search radius as multiple of the equivalent cell radius
+	 * @param max_neighbors max. no. of nearest neighbors proposed per frame
+	 */
+	public CentroidTracking(SpatioTemporalGraph spatioTemporalGraph, int linkrange, double lambda1, double lambda2,
+			double min_area_ratio, double search_factor, int max_neighbors) {
+		super(spatioTemporalGraph, linkrange, lambda1, lambda2);
+		useCentroidCriteria(min_area_ratio, search_factor, max_neighbors);
+	}
+	
+	/**
+	 * Re-evaluate nodes with the overlap criteria if their two best 
+	 * candidates score within the given ratio
+	 * 
+	 * @param ambiguity_ratio e.g. 1.2 for 20%, 0 to disable
+	 */
+	public void setOverlapRefinement(double ambiguity_ratio){
+		setAmbiguityRatio(ambiguity_ratio);
+	}
+
+}
@@ -12,7 +12,8 @@ public enum DistanceCriteria{
 	//TODO Add weighted distance? decreasing in time, e.g. 1*(t-1) + 0.8*(t-2)....
 	//AREA_DIFF_WITH_MIN_DISTANCE, 
 	//WEIGHTED_MIN_DISTANCE, 
-	OVERLAP_WITH_MIN_DISTANCE
+	OVERLAP_WITH_MIN_DISTANCE,
+	CENTROID_WITH_AREA_RATIO
 }
 
 //Previous implementations of distance criteria
@@ -1,12 +1,14 @@
 package plugins.davhelle.cellgraph.tracking;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 
 import plugins.davhelle.cellgraph.CellOverlay;
 import plugins.davhelle.cellgraph.graphs.FrameGraph;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.misc.EdgeKeyScheme;
+import plugins.davhelle.cellgraph.misc.LongIntIndex;
 import plugins.davhelle.cellgraph.nodes.Edge;
 import plugins.davhelle.cellgraph.nodes.Node;
 
@@ -19,6 +21,12 @@ import plugins.davhelle.cellgraph.nodes.Node;
  * edge is identified by a time independent id computed
  * from the two tracking ids of the edge's cells.<br><br>
  * 
+ * Internally every edge of the starting frame is a row of primitive
+ * frame columns holding the edge code observed at each frame (or
+ * {@link #NO_EDGE}), rows are found through a {@link LongIntIndex}.
+ * The boxed map returned by {@link #trackEdges()} is only built once
+ * the tracking is completed.<br><br>
+ * 
  * <b>Warning: Currently only mend for T1 transition detection!</b>
  * 
  * @author Davide Heller
@@ -26,10 +34,51 @@ import plugins.davhelle.cellgraph.nodes.Node;
  */
 public class EdgeTracking {
 	
-	HashMap<Long, Long[]> tracked_edges;
+	/**
+	 * Column value of a frame in which the edge is absent
+	 */
+	public static final long NO_EDGE = -1;
+	
 	SpatioTemporalGraph stGraph;
 	int starting_frame_no;
 	
+	/**
+	 * Row of every tracked edge code (as found in the starting frame)
+	 */
+	private LongIntIndex edge_rows;
+	
+	/**
+	 * Edge code of every row in the starting frame
+	 */
+	private long[] row_codes;
+	
+	/**
+	 * Edge codes observed for every row: [frame - starting_frame_no][row]
+	 */
+	private long[][] frame_columns;
+	
+	/**
+	 * No. of valid frames of every row, reduced when a cell leaves the field of view
+	 */
+	private int[] row_lengths;
+	
+	/**
+	 * Rows whose edge has been lost because of a missing cell
+	 */
+	private boolean[] row_removed;
+	
+	/**
+	 * Most recently observed code of every row and its decoded cell pair
+	 */
+	private long[] last_codes;
+	private int[] last_source_ids;
+	private int[] last_target_ids;
+	
+	/**
+	 * Boxed view of the tracking result
+	 */
+	private HashMap<Long, Long[]> tracked_edges;
+	
 	/**
 	 * Initialize the EdgeTracking with two parameters
 	 * 
@@ -37,9 +86,9 @@ public class EdgeTracking {
 	 * @param startingFrameNo the frame at which to start the tracking
 	 */
 	public EdgeTracking(SpatioTemporalGraph stGraph, int startingFrameNo){
-		tracked_edges = new HashMap<Long,Long[]>();
 		this.stGraph = stGraph;
 		this.starting_frame_no = startingFrameNo;
+		this.tracked_edges = null;
 	}
 	
 	/**
@@ -52,10 +101,10 @@ public class EdgeTracking {
 	public HashMap<Long, Long[]> trackEdges(){
 		
 		initializeTrackedEdges();
-		for(int i=1; i<stGraph.size(); i++)
+		for(int i=starting_frame_no+1; i<stGraph.size(); i++)
 			analyzeFrame(i);
 		
-		return tracked_edges;
+		return getTrackedEdges();
 	}
 	
 	/**
@@ -76,21 +125,123 @@ public class EdgeTracking {
 			analyzeFrame(i);
 			plugin.getUI().setProgressBarValue((double)i/stGraph.size());
 		}
+		return getTrackedEdges();
+	}
+	
+	/**
+	 * Boxed view of the tracking result, built on first access. Lost edges
+	 * are not included, absent frames are null.
+	 * 
+	 * @return map from the edge code in the starting frame to the codes observed at each frame
+	 */
+	public HashMap<Long, Long[]> getTrackedEdges(){
+		if(tracked_edges == null){
+			tracked_edges = new HashMap<Long, Long[]>();
+			for(int row=0; row < row_codes.length; row++){
+				if(row_removed[row])
+					continue;
+				
+				Long[] codes = new Long[row_lengths[row]];
+				for(int t=0; t < codes.length; t++)
+					if(frame_columns[t][row] != NO_EDGE)
+						codes[t] = frame_columns[t][row];
+				
+				tracked_edges.put(row_codes[row], codes);
+			}
+		}
 		return tracked_edges;
 	}
+	
+	/**
+	 * @param track_code edge code in the starting frame
+	 * @return true if the edge is tracked and has not been lost
+	 */
+	public boolean isTracked(long track_code){
+		int row = edge_rows.get(track_code);
+		return row != LongIntIndex.NOT_FOUND && !row_removed[row];
+	}
+	
+	/**
+	 * @param track_code edge code in the starting frame
+	 * @return no. of frames (from the starting frame) with a valid observation
+	 */
+	public int getTrackLength(long track_code){
+		return row_lengths[edge_rows.get(track_code)];
+	}
+	
+	/**
+	 * @param track_code edge code in the starting frame
+	 * @param frame_offset frame no. relative to the starting frame
+	 * @return edge code observed at the frame or {@link #NO_EDGE}
+	 */
+	public long getEdgeCode(long track_code, int frame_offset){
+		int row = edge_rows.get(track_code);
+		if(frame_offset >= row_lengths[row])
+			return NO_EDGE;
+		return frame_columns[frame_offset][row];
+	}
 
 	/**
-	 * Initializes the boolean arrays for each edge in the first frame
+	 * Initializes the code columns for each edge in the first frame
 	 * 
 	 */
 	private void initializeTrackedEdges() {
 		FrameGraph first_frame = stGraph.getFrame(starting_frame_no);
+		
+		int max_rows = first_frame.edgeSet().size();
+		edge_rows = new LongIntIndex(max_rows);
+		long[] codes = new long[max_rows];
+		
+		int row_no = 0;
 		for(Edge e: first_frame.edgeSet())
 			if(e.canBeTracked(first_frame)){
 				long track_code = e.getPairCode(first_frame);
-				tracked_edges.put(track_code, new Long[stGraph.size() - starting_frame_no]);
-				tracked_edges.get(track_code)[0] = track_code;
+				if(edge_rows.containsKey(track_code))
+					continue;
+				
+				edge_rows.put(track_code, row_no);
+				codes[row_no++] = track_code;
 			}
+		
+		row_codes = Arrays.copyOf(codes, row_no);
+		
+		int frame_no = stGraph.size() - starting_frame_no;
+		frame_columns = new long[frame_no][row_no];
+		for(long[] column: frame_columns)
+			Arrays.fill(column, NO_EDGE);
+		
+		row_lengths = new int[row_no];
+		Arrays.fill(row_lengths, frame_no);
+		row_removed = new boolean[row_no];
+		
+		last_codes = new long[row_no];
+		last_source_ids = new int[row_no];
+		last_target_ids = new int[row_no];
+		Arrays.fill(last_codes, NO_EDGE);
+		
+		for(int row=0; row < row_no; row++)
+			setEdgeCode(row, 0, row_codes[row]);
+		
+		tracked_edges = null;
+	}
+	
+	/**
+	 * Records the edge code of a row at a frame and caches
+	 * the decoded cell pair if the code changed
+	 * 
+	 * @param row edge row
+	 * @param frame_offset frame no. relative to the starting frame
+	 * @param edge_code observed edge code
+	 */
+	private void setEdgeCode(int row, int frame_offset, long edge_code){
+		frame_columns[frame_offset][row] = edge_code;
+		
+		if(last_codes[row] != edge_code){
+			int[] pair = Edge.getCodePair(edge_code, stGraph.getEdgeKeyScheme());
+			last_codes[row] = edge_code;
+			last_source_ids[row] = pair[0];
+			last_target_ids[row] = pair[1];
+		}
 	}
 	
 	/**
@@ -115,19 +266,19 @@ public class EdgeTracking {
 	 */
 	private void trackEdgesInFrame(FrameGraph frame_i) {
 		
+		int correctedFrameNo = frame_i.getFrameNo() - starting_frame_no;
+		
 		for(Edge e: frame_i.edgeSet()){
 			if(e.canBeTracked(frame_i)){
 				long edge_track_code = e.getPairCode(frame_i);
 				
-				if(tracked_edges.containsKey(edge_track_code)){
-					
-					Long[] oldArray = tracked_edges.get(edge_track_code);
+				int row = edge_rows.get(edge_track_code);
+				if(row != LongIntIndex.NOT_FOUND){
 					
-					int correctedFrameNo = frame_i.getFrameNo() - starting_frame_no;
-					if(oldArray.length < correctedFrameNo )
+					if(row_removed[row] || row_lengths[row] <= correctedFrameNo )
 						continue;
 					else
-						tracked_edges.get(edge_track_code)[correctedFrameNo] = edge_track_code;
+						setEdgeCode(row, correctedFrameNo, edge_track_code);
 			
 				}else {
 					
@@ -135,34 +286,38 @@ public class EdgeTracking {
 					Node target = frame_i.getEdgeTarget(e);
 					Node source = frame_i.getEdgeSource(e);
 					
-					Long old_track_code = null;
+					long old_track_code = NO_EDGE;
 					
 					int source_id = source.getTrackID();
 					int target_id = target.getTrackID();
 					
+					EdgeKeyScheme scheme = frame_i.getEdgeKeyScheme();
+					
 					//1. Both cells divide
 					if(target.hasObservedDivision() && source.hasObservedDivision())
 						old_track_code = Edge.computePairCode(
 								target.getDivision().getMother().getTrackID(), 
-								source.getDivision().getMother().getTrackID());
+								source.getDivision().getMother().getTrackID(),
+								scheme);
 					else if(target.hasObservedDivision()) {
 						old_track_code = Edge.computePairCode(
 								target.getDivision().getMother().getTrackID(), 
-								source_id);
+								source_id,
+								scheme);
 					} else if(source.hasObservedDivision()) // only source divides
 						old_track_code = Edge.computePairCode(
 								target_id, 
-								source.getDivision().getMother().getTrackID());
+								source.getDivision().getMother().getTrackID(),
+								scheme);
 					
-					if(old_track_code != null){
-						if (tracked_edges.containsKey(old_track_code)){
-							Long[] oldArray = tracked_edges.get(old_track_code);
+					if(old_track_code != NO_EDGE){
+						int old_row = edge_rows.get(old_track_code);
+						if (old_row != LongIntIndex.NOT_FOUND){
 							
-							int correctedFrameNo = frame_i.getFrameNo() - starting_frame_no;
-							if(oldArray.length < correctedFrameNo )
+							if(row_removed[old_row] || row_lengths[old_row] <= correctedFrameNo )
 								continue;
 							else
-								tracked_edges.get(old_track_code)[correctedFrameNo] = edge_track_code;
+								setEdgeCode(old_row, correctedFrameNo, edge_track_code);
 			
 						}
 					}
@@ -187,71 +342,68 @@ public class EdgeTracking {
 			FrameGraph frame_pre) {
 		
 		//introduce the difference between lost edge because of tracking and because of T1
-		ArrayList<Long> to_eliminate = new ArrayList<Long>();
-		ArrayList<Long> to_resize = new ArrayList<Long>();
-		
 		int i_adjusted = frame_i.getFrameNo() - starting_frame_no;
 		int preNo_adjusted = frame_pre.getFrameNo() - starting_frame_no;
 		
-		for(long track_code:tracked_edges.keySet()){
-			
-			int a = Edge.getCodePair(track_code)[0];
-			int b = Edge.getCodePair(track_code)[1];
+		//track id lookups of the two frames
+		Map<Integer, Node> nodes_i = indexTrackIds(frame_i);
+		Map<Integer, Node> nodes_pre = indexTrackIds(frame_pre);
+		Map<Integer, Node> nodes_0 = null;
+		
+		for(int row=0; row < row_codes.length; row++){
 			
-			// skip edge arrays that have been resized
-			Long[] oldArray = tracked_edges.get(track_code);
-			if(oldArray.length < i_adjusted )
+			// skip edges that have been lost or resized
+			if(row_removed[row] || row_lengths[row] <= i_adjusted)
 				continue;
 			
-			Long edge_code_i = oldArray[i_adjusted];  
-			if(edge_code_i == null){
-				//find the last time frame at which the edge was seen
-				for(int i=1; i <= i_adjusted; i++){
-					edge_code_i = oldArray[i_adjusted - i];
-					if(edge_code_i != null)
-						break;
-				}
-					
-				if(edge_code_i == null){		
-					System.out.printf("Null code for %d [%d,%d] @ %d\n",
-							track_code, a, b, i_adjusted - 1);
-				}
+			//last time frame at which the edge was seen
+			if(last_codes[row] == NO_EDGE){
+				int[] pair = Edge.getCodePair(row_codes[row], stGraph.getEdgeKeyScheme());
+				System.out.printf("Null code for %d [%d,%d] @ %d\n",
+						row_codes[row], pair[0], pair[1], i_adjusted - 1);
+				continue;
 			}
 			
-			for(int track_id: Edge.getCodePair(edge_code_i)) //Edge tuple (v1,v2)
-				if(!frame_i.hasTrackID(track_id)){ // vertex is missing
+			int[] pair = {last_source_ids[row], last_target_ids[row]};
+			for(int track_id: pair) //Edge tuple (v1,v2)
+				if(!nodes_i.containsKey(track_id)){ // vertex is missing
 					
 					// check previous frames whether cell is on the boundary
-					assert frame_pre.hasTrackID(track_id): String.format(
+					assert nodes_pre.containsKey(track_id): String.format(
 							"Missing cell %d at frame %d",track_id, preNo_adjusted + starting_frame_no);
-					Node pre = frame_pre.getNode(track_id);
+					Node pre = nodes_pre.get(track_id);
 					
 					if(pre == null){
 						//try to rescue
-						FrameGraph frame0 = stGraph.getFrame(starting_frame_no);
-						pre = frame0.getNode(track_id);
+						if(nodes_0 == null)
+							nodes_0 = indexTrackIds(stGraph.getFrame(starting_frame_no));
+						pre = nodes_0.get(track_id);
 					}
 					
 					if(pre.hasObservedElimination())
-						to_resize.add(track_code);
+						row_lengths[row] = preNo_adjusted;
 					else if(pre.hasObservedDivision())
-						to_resize.add(track_code);
+						row_lengths[row] = preNo_adjusted;
 					else if(pre.onBoundary())
-						to_resize.add(track_code); 
+						// re-scale in case the cell just went out from the boundary
+						row_lengths[row] = preNo_adjusted; 
 					else 
-						to_eliminate.add(track_code);
+						row_removed[row] = true;
 					
 					break;
 				}
 		}
-		
-		// re-scale boolean array in case the cell just went out from the boundary
-		for(long track_code:to_resize){
-			Long[] oldArray = tracked_edges.get(track_code);
-			tracked_edges.put(track_code, Arrays.copyOfRange(oldArray, 0, preNo_adjusted));
-		}
-		
-		for(long track_code:to_eliminate)
-			tracked_edges.remove(track_code);
+	}
+	
+	/**
+	 * @param frame frame to index
+	 * @return map from track id to node (first node for duplicate ids)
+	 */
+	private Map<Integer, Node> indexTrackIds(FrameGraph frame){
+		Map<Integer, Node> index = new HashMap<Integer, Node>();
+		for(Node n: frame.vertexSet())
+			if(!index.containsKey(n.getTrackID()))
+				index.put(n.getTrackID(), n);
+		return index;
 	}
 }
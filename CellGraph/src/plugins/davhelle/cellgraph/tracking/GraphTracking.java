@@ -4,11 +4,13 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 
+import plugins.davhelle.cellgraph.graphs.FrameAdjacency;
 import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
 import plugins.davhelle.cellgraph.nodes.ComparableNode;
 import plugins.davhelle.cellgraph.nodes.Division;
@@ -19,6 +21,8 @@ import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.prep.PreparedGeometry;
 import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.geom.util.AffineTransformation;
+import com.vividsolutions.jts.index.strtree.STRtree;
 import com.vividsolutions.jts.operation.distance.DistanceOp;
 
 /**
@@ -34,7 +38,7 @@ import com.vividsolutions.jts.operation.distance.DistanceOp;
 		
 		//link time points and propagate their information
 		for(int time_point = 0; time_point < stGraph.size(); time_point++){
-			System.out.println("\n*** Linking frame "+time_point+" ***\n");
+			log(TrackingLogLevel.FRAMES, "\n*** Linking frame %d ***\n\n", time_point);
 			
 			if(time_point > 0){
 				
@@ -65,6 +69,10 @@ import com.vividsolutions.jts.operation.distance.DistanceOp;
  * }
  * </pre>
  * 
+ * Stage timers and counters are reported to the {@link TrackingMetrics}
+ * set with {@link #setMetrics(TrackingMetrics)}, the console output is
+ * controlled by {@link #setLogLevel(TrackingLogLevel)}.
+ * 
  * @author Davide Heller
  *
  */
@@ -78,7 +86,7 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 	/**
 	 * Distance criteria with which to choose the best candidate
 	 */
-	private final DistanceCriteria distance_criteria;
+	private DistanceCriteria distance_criteria;
 	
 	/**
 	 * Flag whether to detect divisions
@@ -133,6 +141,71 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 	 * on the same geometry.
 	 */
 	private PreparedGeometryFactory cached_factory;
+	
+	/**
+	 * Minimal intersection area [px] for a node to become a parent candidate
+	 */
+	public static final double MIN_CANDIDATE_OVERLAP = 10;
+	
+	/**
+	 * Optional precomputed overlaps replacing the intersection
+	 * tests of the propagation step
+	 */
+	private CandidateOverlapIndex candidate_index;
+	
+	/**
+	 * Vertices of every frame in vertex set order, used with the candidate_index
+	 */
+	private Node[][] frame_nodes;
+	
+	/**
+	 * Flag whether to shift the candidate search window by the
+	 * motion estimated from the previous links
+	 */
+	private boolean DO_DRIFT_COMPENSATION;
+	
+	/**
+	 * Bin size [px] of the displacement field used for the drift compensation
+	 */
+	private double drift_bin_size;
+	
+	/**
+	 * Spatial index of every frame, built when first needed by the drift compensation
+	 */
+	private STRtree[] frame_trees;
+	
+	/**
+	 * Displacement [px/frame] applied to every node during the drift 
+	 * compensated propagation, used to score its candidates at the same
+	 * shifted position
+	 */
+	private Map<Node, double[]> node_drift;
+	
+	/**
+	 * Centroid criteria: minimal area ratio (smaller/larger) of a candidate
+	 */
+	private double min_area_ratio;
+	
+	/**
+	 * Centroid criteria: search radius as multiple of the equivalent cell radius 
+	 */
+	private double search_factor;
+	
+	/**
+	 * Centroid criteria: max. no. of nearest neighbors proposed as candidates
+	 */
+	private int max_neighbors;
+	
+	/**
+	 * Centroid criteria: second best/best score ratio below which the 
+	 * evaluation of a node is repeated with the overlap criteria, 0 to disable
+	 */
+	private double ambiguity_ratio;
+	
+	/**
+	 * Centroid kd-tree and vertices of every frame, built when first needed
+	 */
+	private CentroidKdTree[] frame_kd_trees;
 
 	
 	/**
@@ -162,6 +235,85 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 		this.coverage_factor = 0.5;
 		
 		cached_factory = new PreparedGeometryFactory();
+		candidate_index = null;
+		frame_nodes = null;
+		
+		DO_DRIFT_COMPENSATION = false;
+		drift_bin_size = 0;
+		frame_trees = null;
+		node_drift = null;
+		
+		min_area_ratio = 0.5;
+		search_factor = 2.0;
+		max_neighbors = 4;
+		ambiguity_ratio = 0;
+		frame_kd_trees = null;
+	}
+	
+	/**
+	 * Switch to the {@link DistanceCriteria#CENTROID_WITH_AREA_RATIO} criteria:
+	 * candidates are proposed by a nearest neighbor search on the cell centroids
+	 * and scored without computing any geometry intersection.
+	 * 
+	 * @param min_area_ratio minimal area ratio (smaller/larger) of a candidate
+	 * @param search_factor search radius as multiple of the equivalent cell radius
+	 * @param max_neighbors max. no. of nearest neighbors proposed as candidates
+	 */
+	protected void useCentroidCriteria(double min_area_ratio, double search_factor, int max_neighbors){
+		this.distance_criteria = DistanceCriteria.CENTROID_WITH_AREA_RATIO;
+		this.min_area_ratio = min_area_ratio;
+		this.search_factor = search_factor;
+		this.max_neighbors = max_neighbors;
+		this.frame_kd_trees = new CentroidKdTree[stGraph.size()];
+		this.frame_nodes = new Node[stGraph.size()][];
+	}
+	
+	/**
+	 * Centroid criteria only: repeat the evaluation of a node with the 
+	 * overlap criteria if its two best candidates score within the ratio
+	 * 
+	 * @param ambiguity_ratio e.g. 1.2 for 20%, 0 to disable
+	 */
+	protected void setAmbiguityRatio(double ambiguity_ratio){
+		this.ambiguity_ratio = ambiguity_ratio;
+	}
+	
+	/**
+	 * Shift the candidate search window of every linked node by the 
+	 * local displacement estimated from the links of its frame
+	 * (see {@link MotionEstimate}). Reduces the lost nodes and the
+	 * rescue work in case of fast global tissue movement. Takes 
+	 * precedence over a candidate index as the shifted overlaps 
+	 * cannot be precomputed.
+	 * 
+	 * @param bin_size edge length [px] of the displacement field bins, e.g. 100
+	 */
+	public void setDriftCompensation(double bin_size){
+		this.DO_DRIFT_COMPENSATION = true;
+		this.drift_bin_size = bin_size;
+		this.node_drift = new HashMap<Node, double[]>();
+		this.frame_trees = new STRtree[stGraph.size()];
+	}
+	
+	/**
+	 * Use precomputed overlaps instead of intersecting the cell geometries
+	 * during the propagation. The index must have been built on this graph
+	 * or on a copy preserving the vertex order and cover the linkrange.
+	 * 
+	 * @param candidate_index precomputed candidate overlaps
+	 * @throws IllegalArgumentException if the index does not fit the graph or linkrange
+	 */
+	public void setCandidateIndex(CandidateOverlapIndex candidate_index){
+		
+		if(!candidate_index.isCompatible(stGraph))
+			throw new IllegalArgumentException("Candidate index does not match the graph");
+		if(candidate_index.getLinkrange() < linkrange)
+			throw new IllegalArgumentException("Candidate index does not cover the linkrange");
+		
+		this.candidate_index = candidate_index;
+		this.frame_nodes = new Node[stGraph.size()][];
+		for(int i=0; i < stGraph.size(); i++)
+			frame_nodes[i] = stGraph.getFrame(i).vertexSet().toArray(new Node[0]);
 	}
 	
 	@Override
@@ -169,7 +321,7 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 		
 		//link time points and propagate their information
 		for(int time_point = 0; time_point < stGraph.size(); time_point++){
-			System.out.println("\n*** Linking frame "+time_point+" ***\n");
+			log(TrackingLogLevel.FRAMES, "\n*** Linking frame %d ***\n\n", time_point);
 			
 			if(time_point > 0){
 				
@@ -178,20 +330,28 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 				Map<Node, List<ComparableNode>> brides = new HashMap<Node, List<ComparableNode>>();;
 
 				//Evaluate the candidates according to a distance criteria
+				long timer = metrics.startTimer();
 				evaluateCandidates(grooms, brides, time_point);
+				metrics.stopTimer(TrackingStage.EVALUATION, time_point, timer);
 				
 				//Link the candidates according to a matching algorithm
+				timer = metrics.startTimer();
 				Map<String, Stack<Node>> unmarried = linkCandidates(grooms,brides);
+				metrics.stopTimer(TrackingStage.MATCHING, time_point, timer);
 				
 				//Analyze unmarried/unlinked nodes
 				analyze_unmarried(unmarried, time_point);
 			}
 			
 			//add candidates to the successive frames
+			long timer = metrics.startTimer();
 			propagateTimePoint(time_point);	
+			metrics.stopTimer(TrackingStage.PROPAGATION, time_point, timer);
 		}
 		
+		long timer = metrics.startTimer();
 		reviewDivisionsAndEliminations();
+		metrics.stopTimer(TrackingStage.REVIEW, stGraph.size() - 1, timer);
 		
 		reportTrackingResults();
 		
@@ -217,7 +377,9 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 					if(!cell.hasNext() && !cell.onBoundary())
 					{						
 						Elimination cell_elimination = new Elimination(cell);
-						System.out.println(cell_elimination.toString());
+						metrics.add(TrackingCounter.ELIMINATIONS, time_point, 1);
+						if(logs(TrackingLogLevel.EVENTS))
+							System.out.println(cell_elimination.toString());
 					}			
 				}
 			}
@@ -252,8 +414,36 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 	 */
 	private void propagateTimePoint(int time_point) {
 		
+		if(DO_DRIFT_COMPENSATION && time_point > 0){
+			MotionEstimate motion = MotionEstimate.fromLinkedNodes(
+					stGraph.getFrame(time_point), drift_bin_size);
+			
+			if(motion.getSampleNo() > 0){
+				log(TrackingLogLevel.FRAMES, "Estimated drift: [%.1f,%.1f] px/frame\n",
+						motion.getGlobalDx(), motion.getGlobalDy());
+				if(distance_criteria == DistanceCriteria.CENTROID_WITH_AREA_RATIO)
+					propagateCentroidTimePoint(time_point, motion);
+				else
+					propagateShiftedTimePoint(time_point, motion);
+				return;
+			}
+		}
+		
+		if(distance_criteria == DistanceCriteria.CENTROID_WITH_AREA_RATIO){
+			propagateCentroidTimePoint(time_point, null);
+			return;
+		}
+		
+		if(candidate_index != null){
+			propagateIndexedTimePoint(time_point);
+			return;
+		}
+		
 		//TODO Update with STR-tree for spatial indexing
 		
+		long intersection_tests = 0;
+		long propagated_candidates = 0;
+		
 		for(Node current: stGraph.getFrame(time_point).vertexSet())
 		{	
 			PreparedGeometry cached_current = cached_factory.create(current.getGeometry());
@@ -265,12 +455,14 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 					for(Node next: stGraph.getFrame(time_point + i).vertexSet()) {
 						Geometry next_geometry = next.getGeometry();
 						
+						intersection_tests++;
 						if(cached_current.intersects(next_geometry))
 						{
 							
 							Geometry intersection = next_geometry.intersection(current.getGeometry());
-							if(intersection.getArea() > 10){
+							if(intersection.getArea() > MIN_CANDIDATE_OVERLAP){
 								next.addParentCandidate(current);
+								propagated_candidates++;
 
 								if( VERBOSE && current.getTrackID() == follow_ID)
 									System.out.printf("%d propagated to [%.0f,%.0f] @ frame %d",
@@ -283,21 +475,205 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 					}								
 			}
 			
-			//also check in case of a division that the brother cell is present
-			if(current.hasObservedDivision())
-				if(!current.getDivision().isBrotherPresent(current)) //TODO review isBrotherPresent Method input (list would be more logic)
-					if(current.getDivision().wasBrotherEliminated(current))
-						current.setErrorTag(TrackingFeedback.BROTHER_CELL_ELIMINATED.numeric_code);
-					else
-						current.setErrorTag(TrackingFeedback.BROTHER_CELL_NOT_FOUND.numeric_code);
+			checkBrotherPresence(current);
+		}
+		
+		metrics.add(TrackingCounter.INTERSECTION_TESTS, time_point, intersection_tests);
+		metrics.add(TrackingCounter.PROPAGATED_CANDIDATES, time_point, propagated_candidates);
+	}
+	
+	/**
+	 * PROPAGATION with precomputed overlaps, see {@link #setCandidateIndex(CandidateOverlapIndex)}
+	 * 
+	 * @param time_point
+	 */
+	private void propagateIndexedTimePoint(int time_point) {
+		
+		long propagated_candidates = 0;
+		Node[] current_nodes = frame_nodes[time_point];
+		
+		for(int k=0; k < current_nodes.length; k++)
+		{
+			Node current = current_nodes[k];
+			
+			//only propagate what has been successfully in current frame.
+			if(current.getTrackID() != -1)
+				for(int i=1; i <= linkrange && time_point + i < stGraph.size(); i++)
+					for(int next_position: candidate_index.getOverlaps(time_point, i, k)){
+						frame_nodes[time_point + i][next_position].addParentCandidate(current);
+						propagated_candidates++;
+					}
+			
+			checkBrotherPresence(current);
+		}
+		
+		metrics.add(TrackingCounter.PROPAGATED_CANDIDATES, time_point, propagated_candidates);
+	}
+	
+	/**
+	 * PROPAGATION with drift compensation, see {@link #setDriftCompensation(double)}.
+	 * The geometry of each node is translated by the estimated displacement
+	 * before intersecting it with the nodes of the next frames.
+	 * 
+	 * @param time_point
+	 * @param motion motion estimate of the time point
+	 */
+	private void propagateShiftedTimePoint(int time_point, MotionEstimate motion) {
+		
+		long intersection_tests = 0;
+		long propagated_candidates = 0;
+		
+		for(Node current: stGraph.getFrame(time_point).vertexSet())
+		{
+			//only propagate what has been successfully in current frame.
+			if(current.getTrackID() != -1)
+			{
+				Point centroid = current.getCentroid();
+				double dx = motion.getDx(centroid.getX(), centroid.getY());
+				double dy = motion.getDy(centroid.getX(), centroid.getY());
+				node_drift.put(current, new double[]{dx, dy});
+				
+				for(int i=1; i <= linkrange && time_point + i < stGraph.size(); i++){
+					
+					Geometry shifted = AffineTransformation.translationInstance(
+							i * dx, i * dy).transform(current.getGeometry());
+					PreparedGeometry cached_shifted = cached_factory.create(shifted);
+					
+					@SuppressWarnings("unchecked")
+					List<Node> query = getFrameTree(time_point + i).query(shifted.getEnvelopeInternal());
+					
+					for(Node next: query){
+						Geometry next_geometry = next.getGeometry();
+						
+						intersection_tests++;
+						if(cached_shifted.intersects(next_geometry))
+							if(next_geometry.intersection(shifted).getArea() > MIN_CANDIDATE_OVERLAP){
+								next.addParentCandidate(current);
+								propagated_candidates++;
+							}
+					}
+				}
+			}
+			
+			checkBrotherPresence(current);
+		}
+		
+		metrics.add(TrackingCounter.INTERSECTION_TESTS, time_point, intersection_tests);
+		metrics.add(TrackingCounter.PROPAGATED_CANDIDATES, time_point, propagated_candidates);
+	}
+	
+	/**
+	 * PROPAGATION with the centroid criteria, see {@link #useCentroidCriteria(double, double, int)}.
+	 * The nearest centroids of the next frames within the search radius are
+	 * proposed if their area is comparable to the one of the node.
+	 * 
+	 * @param time_point
+	 * @param motion optional motion estimate to shift the search position, can be null
+	 */
+	private void propagateCentroidTimePoint(int time_point, MotionEstimate motion) {
+		
+		long propagated_candidates = 0;
+		
+		for(Node current: stGraph.getFrame(time_point).vertexSet())
+		{
+			//only propagate what has been successfully in current frame.
+			if(current.getTrackID() != -1)
+			{
+				Point centroid = current.getCentroid();
+				double area = current.getGeometry().getArea();
+				double radius = search_factor * Math.sqrt(area / Math.PI);
+				
+				double dx = 0;
+				double dy = 0;
+				if(motion != null){
+					dx = motion.getDx(centroid.getX(), centroid.getY());
+					dy = motion.getDy(centroid.getX(), centroid.getY());
+					node_drift.put(current, new double[]{dx, dy});
+				}
+				
+				for(int i=1; i <= linkrange && time_point + i < stGraph.size(); i++){
+					
+					int next_frame_no = time_point + i;
+					int[] nearest = getFrameKdTree(next_frame_no).nearest(
+							centroid.getX() + i * dx, 
+							centroid.getY() + i * dy, 
+							max_neighbors, radius);
+					
+					for(int k: nearest){
+						Node next = frame_nodes[next_frame_no][k];
+						double next_area = next.getGeometry().getArea();
+						double area_ratio = Math.min(area, next_area) / Math.max(area, next_area);
+						
+						if(area_ratio >= min_area_ratio){
+							next.addParentCandidate(current);
+							propagated_candidates++;
+						}
+					}
+				}
+			}
+			
+			checkBrotherPresence(current);
 		}
 		
+		metrics.add(TrackingCounter.PROPAGATED_CANDIDATES, time_point, propagated_candidates);
+	}
+	
+	/**
+	 * @param frame_no frame to be indexed
+	 * @return centroid kd-tree of the frame, indices refer to frame_nodes[frame_no]
+	 */
+	private CentroidKdTree getFrameKdTree(int frame_no){
+		if(frame_kd_trees[frame_no] == null){
+			Node[] nodes = stGraph.getFrame(frame_no).vertexSet().toArray(new Node[0]);
+			double[] x = new double[nodes.length];
+			double[] y = new double[nodes.length];
+			for(int i=0; i < nodes.length; i++){
+				Point centroid = nodes[i].getCentroid();
+				x[i] = centroid.getX();
+				y[i] = centroid.getY();
+			}
+			frame_nodes[frame_no] = nodes;
+			frame_kd_trees[frame_no] = new CentroidKdTree(x, y);
+		}
+		return frame_kd_trees[frame_no];
+	}
+	
+	/**
+	 * @param frame_no frame to be indexed
+	 * @return spatial index of the node geometries of the frame
+	 */
+	private STRtree getFrameTree(int frame_no){
+		if(frame_trees[frame_no] == null){
+			STRtree tree = new STRtree();
+			for(Node n: stGraph.getFrame(frame_no).vertexSet())
+				tree.insert(n.getGeometry().getEnvelopeInternal(), n);
+			tree.build();
+			frame_trees[frame_no] = tree;
+		}
+		return frame_trees[frame_no];
+	}
+	
+	/**
+	 * In case of a division check that the brother cell is present
+	 * 
+	 * @param current node to check
+	 */
+	private void checkBrotherPresence(Node current) {
+		if(current.hasObservedDivision())
+			if(!current.getDivision().isBrotherPresent(current)) //TODO review isBrotherPresent Method input (list would be more logic)
+				if(current.getDivision().wasBrotherEliminated(current))
+					current.setErrorTag(TrackingFeedback.BROTHER_CELL_ELIMINATED.numeric_code);
+				else
+					current.setErrorTag(TrackingFeedback.BROTHER_CELL_NOT_FOUND.numeric_code);
 	}
 
 	/**
 	 * Verbose output for tracking results
 	 */
 	private void reportTrackingResults() {
+		if(!logs(TrackingLogLevel.SUMMARY))
+			return;
+		
 		System.out.println(
 				"\nTracking completed for "+stGraph.size()+" frames:"+
 						"\n\t "+stGraph.getFrame(0).size()+" cells in first frame");
@@ -306,6 +682,9 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 			System.out.println("\t "+countDivisions()+" divisions recognized");
 			System.out.println("\t "+countEliminations()+" eliminiations recognized");
 		}
+		
+		if(metrics.isEnabled())
+			System.out.print(metrics.toString());
 	}
 
 	/**
@@ -359,6 +738,12 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 	 */
 	private void groom_rescue(Stack<Node> unmarried_brides, Stack<Node> unmarried_grooms, int time_point){
 
+		int swap_candidates = 0;
+		int rescue_candidates = 0;
+		int swaps = 0;
+		int rescues = 0;
+		int lost = 0;
+		
 		groomLoop:
 			while(!unmarried_grooms.empty()){
 
@@ -373,10 +758,16 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 				if(VERBOSE)
 					System.out.printf("**Rescue attempt for: %d\n",last_correspondence.getTrackID());
 				
+				//frozen adjacency, tracking does not change the topology
+				FrameAdjacency lost_adjacency = last_correspondence.getBelongingFrame().getAdjacency();
+				int lost_id = lost_adjacency.getId(last_correspondence);
+				
 				ArrayList<Node> ancestor_neighbors = new ArrayList<Node>();
-				for(Node n: last_correspondence.getNeighbors())
+				for(int k = lost_adjacency.start(lost_id); k < lost_adjacency.end(lost_id); k++){
+					Node n = lost_adjacency.getNode(lost_adjacency.target(k));
 					if(n.getFirst() != null)
 						ancestor_neighbors.add(n.getFirst());
+				}
 					
 				//Assumption 1: several alternative scenarios might be available.
 				//>Rank every scenario according to multiple criteria (see below)
@@ -388,8 +779,10 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 				int bestRescVal = 0;
 				
 				//Check neighbors for untracked cells at time_point
-				for(Node neighbor: last_correspondence.getNeighbors())
+				for(int n_k = lost_adjacency.start(lost_id); n_k < lost_adjacency.end(lost_id); n_k++)
 				{
+					Node neighbor = lost_adjacency.getNode(lost_adjacency.target(n_k));
+					
 					//obtain neighbor's last known correspondence
 					Node futureN = getMostRecentCorrespondence(time_point + 1, neighbor);
 
@@ -399,8 +792,12 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 
 					ComparableNode best_untracked = new ComparableNode(null, Double.MAX_VALUE);
 					
-					for(Node futureNN: futureN.getNeighbors())
+					FrameAdjacency future_adjacency = futureN.getBelongingFrame().getAdjacency();
+					int future_id = future_adjacency.getId(futureN);
+					
+					for(int f_k = future_adjacency.start(future_id); f_k < future_adjacency.end(future_id); f_k++)
 					{
+						Node futureNN = future_adjacency.getNode(future_adjacency.target(f_k));
 
 						//if neighbor is untracked analyze it for SWAP or RESCUE
 						if(unmarried_brides.contains(futureNN)){	
@@ -440,7 +837,9 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 
 							if(swap_condition_1 && swap_condition_2){
 								
-								System.out.println("SWAP candidate: "+neighbor.getTrackID()+"<>"+last_correspondence.getTrackID());
+								swap_candidates++;
+								if(logs(TrackingLogLevel.CANDIDATES))
+									System.out.println("SWAP candidate: "+neighbor.getTrackID()+"<>"+last_correspondence.getTrackID());
 
 								//check if current swap better than previous
 								//check fit neighbor <> untracked
@@ -488,7 +887,9 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 									}
 								}
 								
-								System.out.println("RESC candidate:"+last_correspondence.getTrackID()+">"+neighbor.getTrackID()+"("+shared_neighbors+")");
+								rescue_candidates++;
+								if(logs(TrackingLogLevel.CANDIDATES))
+									System.out.println("RESC candidate:"+last_correspondence.getTrackID()+">"+neighbor.getTrackID()+"("+shared_neighbors+")");
 
 								//safety check: at least 4 neighbors should be shared
 								if(shared_neighbors > 3 && bestRescVal < shared_neighbors){
@@ -525,11 +926,12 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 //									old_neighbor_set.size());
 							
 							if(old_neighbor_set.size() == 0){
-								System.out.printf("\t>REVERTING SWAP: [%d,%d] (untracked:%.0f,%.0f):\n",
-										last_correspondence.getTrackID(),
-										neighbor.getTrackID(),
-										best_untracked.getNode().getCentroid().getX(),
-										best_untracked.getNode().getCentroid().getY());
+								if(logs(TrackingLogLevel.CANDIDATES))
+									System.out.printf("\t>REVERTING SWAP: [%d,%d] (untracked:%.0f,%.0f):\n",
+											last_correspondence.getTrackID(),
+											neighbor.getTrackID(),
+											best_untracked.getNode().getCentroid().getX(),
+											best_untracked.getNode().getCentroid().getY());
 								//assign SWAP max priority
 								bestSWAP = new ComparableNode(neighbor, Double.MAX_VALUE);
 								swapNeighbor = futureN;
@@ -553,8 +955,10 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 
 					unmarried_brides.remove(swapUntracked);
 
-					System.out.println("  Reverted likely SWAP between "+
-							last_correspondence.getTrackID()+" and "+neighbor.getTrackID());
+					swaps++;
+					if(logs(TrackingLogLevel.EVENTS))
+						System.out.println("  Reverted likely SWAP between "+
+								last_correspondence.getTrackID()+" and "+neighbor.getTrackID());
 
 					continue groomLoop;
 
@@ -567,8 +971,10 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 					updateCorrespondence(rescued, last_correspondence);
 					unmarried_brides.remove(rescued);
 
-					System.out.println("   Rescued "+
-							last_correspondence.getTrackID());
+					rescues++;
+					if(logs(TrackingLogLevel.EVENTS))
+						System.out.println("   Rescued "+
+								last_correspondence.getTrackID());
 
 					continue;
 				}
@@ -576,7 +982,14 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 
 				//End point, cell could not be rescued and is tagged as lost
 				last_correspondence.setErrorTag(TrackingFeedback.LOST_IN_NEXT_FRAME.numeric_code);
+				lost++;
 			}
+		
+		metrics.add(TrackingCounter.SWAP_CANDIDATES, time_point, swap_candidates);
+		metrics.add(TrackingCounter.RESCUE_CANDIDATES, time_point, rescue_candidates);
+		metrics.add(TrackingCounter.SWAPS, time_point, swaps);
+		metrics.add(TrackingCounter.RESCUES, time_point, rescues);
+		metrics.add(TrackingCounter.LOST, time_point, lost);
 
 	}
 	
@@ -657,8 +1070,9 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 			Node mother = brother2.getPrevious();
 			
 			if (mother.getFirst().onBoundary() && brother1.onBoundary() && brother2.onBoundary()){
-				System.out.printf("Frame %d: Suppressed division detection on boundary @ [%.0f,%.0f]\n",
-						time_point,untracked.getCentroid().getX(),untracked.getCentroid().getY());
+				if(logs(TrackingLogLevel.EVENTS))
+					System.out.printf("Frame %d: Suppressed division detection on boundary @ [%.0f,%.0f]\n",
+							time_point,untracked.getCentroid().getX(),untracked.getCentroid().getY());
 				continue;
 			}
 			
@@ -717,7 +1131,9 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 			stGraph.getNewTrackingId();
 			stGraph.getNewTrackingId();
 			
-			System.out.println(division.toString());
+			metrics.add(TrackingCounter.DIVISIONS, time_point, 1);
+			if(logs(TrackingLogLevel.EVENTS))
+				System.out.println(division.toString());
 		
 		}
 		
@@ -738,16 +1154,25 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 		Stack<Node> unmarried_brides = unmarried.get("brides");
 		Stack<Node> unmarried_grooms = unmarried.get("grooms");
 		
-		System.out.println(" uB:"+ unmarried_brides.size());
-		System.out.println(" uG:"+ unmarried_grooms.size());
+		metrics.add(TrackingCounter.UNMARRIED_BRIDES, time_point, unmarried_brides.size());
+		metrics.add(TrackingCounter.UNMARRIED_GROOMS, time_point, unmarried_grooms.size());
+		
+		log(TrackingLogLevel.FRAMES, " uB:%d\n uG:%d\n",
+				unmarried_brides.size(), unmarried_grooms.size());
 		
 		//Rescue of lost grooms due to excessive movement or swaps
-		if(DO_SWAP_RESC_CHECK)
+		if(DO_SWAP_RESC_CHECK){
+			long timer = metrics.startTimer();
 			groom_rescue(unmarried_brides, unmarried_grooms, time_point);
+			metrics.stopTimer(TrackingStage.RESCUE, time_point, timer);
+		}
 	
 		//Check for divisions
-		if(DO_DIVISION_CHECK)
+		if(DO_DIVISION_CHECK){
+			long timer = metrics.startTimer();
 			division_recognition(unmarried_brides, unmarried_grooms, time_point);
+			metrics.stopTimer(TrackingStage.DIVISION_RECOGNITION, time_point, timer);
+		}
 		
 	}
 
@@ -770,6 +1195,13 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 	private void evaluateCandidates(Map<Node, List<ComparableNode>> first_map,
 			Map<Node, List<ComparableNode>> current_map, int time_point) {
 		
+		if(distance_criteria == DistanceCriteria.CENTROID_WITH_AREA_RATIO){
+			evaluateCentroidCandidates(first_map, current_map, time_point);
+			return;
+		}
+		
+		long evaluated_candidates = 0;
+		
 		//visit all nodes of the current frame
 		for(Node current: stGraph.getFrame(time_point).vertexSet()){
 			
@@ -780,6 +1212,7 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 			//based on individual nodes linking to the same first() node.
 			
 			List<Node> candidates = current.getParentCandidates();
+			metrics.sample(TrackingCounter.PARENT_CANDIDATES, time_point, candidates.size());
 			
 			//if no candidates are given add it as "lost bride"
 			//could be set more stringent with frame_0_union.buffer(-10.0)
@@ -836,102 +1269,18 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 									current_cell_center.getX(),
 									current_cell_center.getY());
 						
-						double candidate_dist = DistanceOp.distance(
-								voted_centroid,
-								current_cell_center);
-						
-						//compute difference in area
-						double area_candidate = voted.getGeometry().getArea();
-						double area_current = current.getGeometry().getArea();
-						
-						//compute the intersection between the two cell geometries
-						Geometry intersection = current.getGeometry().intersection(voted.getGeometry());
-						double normalized_overlap = intersection.getArea() / (area_candidate + area_current);
-						double reciprocal_overlap = 1 / normalized_overlap;
-						
-						//time influence (maximally reduce candidate score by 20%)
-						double time_multiplier = 0.5;
-						
-						//time distance (recent candidates should count more)
-						int candidate_frame_no = voted.getBelongingFrame().getFrameNo();
-						double time_difference = time_point - candidate_frame_no;
-						double time_weight = 1 - (time_multiplier/time_difference);
-						
-						double weighted_candidateDistance = 
-								lambda1 * candidate_dist +
-								lambda2 * reciprocal_overlap;
-						
-						double time_weighted_candidateDistance = weighted_candidateDistance * time_weight;
-
-						if(VERBOSE && voted.getTrackID() == follow_ID)
-							System.out.printf("\t%.2f\t%.2f\t[dist:\t%.2f\tarea:\t%.2f\n",
-									time_weighted_candidateDistance,
-									weighted_candidateDistance,
-									candidate_dist,
-									reciprocal_overlap);
-						
-						
-						weighted_candidateDistance = time_weighted_candidateDistance;
-//							System.out.println(
-//								voted.getTrackID()+
-//								" to: ["+Math.round(current_cell_center.getX())+
-//								","+Math.round(current_cell_center.getY())+"]:\n"+
-//								" dist:"+Math.round(candidate_dist) +
-//								" area:"+Math.round(1/normalized_overlap)+
-//								" (= "+ weighted_candidateDistance + ")");
-
-						
-						double min = weighted_candidateDistance;
-//						int candidate_no = 1;
-//						double candidate_avg = weighted_candidateDistance;
+						double min = computeOverlapDistance(current, voted, time_point);
+						evaluated_candidates++;
 
 						while(candidate_it.hasNext()){
 							
 							voted = candidate_it.next();
 							if( voted.getFirst() == first){
 								candidate_it.remove();
-								voted_centroid = voted.getCentroid();
-								
-								candidate_dist = DistanceOp.distance(
-										voted_centroid,
-										current_cell_center);
-								
-								//compute difference in area
-								area_candidate = voted.getGeometry().getArea();
-								area_current = current.getGeometry().getArea();
-								
-								//compute the intersection between the two cell geometries
-								intersection = current.getGeometry().intersection(voted.getGeometry());
-								normalized_overlap = intersection.getArea() / (area_candidate + area_current);
-								reciprocal_overlap = 1 / normalized_overlap;
-								
-								//time distance (recent candidates should count more)
-								candidate_frame_no = voted.getBelongingFrame().getFrameNo();
-								time_difference = time_point - candidate_frame_no;
-								time_weight = 1 - (time_multiplier/time_difference);
-								
-								weighted_candidateDistance = 
-										lambda1 * candidate_dist +
-										lambda2 * reciprocal_overlap;
-								
-								time_weighted_candidateDistance = weighted_candidateDistance * time_weight;
-								
-								if(VERBOSE && voted.getTrackID() == follow_ID)
-									System.out.printf("\t%.2f\t%.2f\t[dist:\t%.2f\tarea:\t%.2f\n",
-											time_weighted_candidateDistance,
-											weighted_candidateDistance,
-											candidate_dist,
-											reciprocal_overlap);
-								
-								weighted_candidateDistance = time_weighted_candidateDistance;
-			
-//									System.out.println(" dist:"+Math.round(candidate_dist) +
-//										" area:"+Math.round(1/normalized_overlap) + 
-//										" (= "+ weighted_candidateDistance + ")");
 								
-								
-//								candidate_no++;
-//								candidate_avg += weighted_candidateDistance;
+								double weighted_candidateDistance = 
+										computeOverlapDistance(current, voted, time_point);
+								evaluated_candidates++;
 										
 								if(min > weighted_candidateDistance)
 									min = weighted_candidateDistance;
@@ -965,6 +1314,229 @@ public abstract class GraphTracking extends TrackingAlgorithm {
 				
 				}
 			}
-		}	
+		}
+		
+		metrics.add(TrackingCounter.EVALUATED_CANDIDATES, time_point, evaluated_candidates);
+	}
+	
+	/**
+	 * Score of the {@link DistanceCriteria#OVERLAP_WITH_MIN_DISTANCE} criteria:
+	 * weighted centroid distance and reciprocal normalized overlap,
+	 * reduced for recent candidates.
+	 * 
+	 * @param current node of the current frame
+	 * @param voted candidate node of a previous frame
+	 * @param time_point time point of the current frame
+	 * @return time weighted candidate distance (smaller is better)
+	 */
+	private double computeOverlapDistance(Node current, Node voted, int time_point){
+		
+		//compare at the position the candidate was propagated to
+		Geometry voted_geometry = voted.getGeometry();
+		Point voted_centroid = voted.getCentroid();
+		AffineTransformation drift_shift = getDriftShift(voted, time_point);
+		if(drift_shift != null){
+			voted_geometry = drift_shift.transform(voted_geometry);
+			voted_centroid = (Point)drift_shift.transform(voted_centroid);
+		}
+		
+		double candidate_dist = DistanceOp.distance(
+				voted_centroid,
+				current.getCentroid());
+		
+		//compute difference in area
+		double area_candidate = voted_geometry.getArea();
+		double area_current = current.getGeometry().getArea();
+		
+		//compute the intersection between the two cell geometries
+		Geometry intersection = current.getGeometry().intersection(voted_geometry);
+		double normalized_overlap = intersection.getArea() / (area_candidate + area_current);
+		double reciprocal_overlap = 1 / normalized_overlap;
+		
+		double weighted_candidateDistance = 
+				lambda1 * candidate_dist +
+				lambda2 * reciprocal_overlap;
+		
+		double time_weighted_candidateDistance = 
+				weighted_candidateDistance * computeTimeWeight(voted, time_point);
+
+		if(VERBOSE && voted.getTrackID() == follow_ID)
+			System.out.printf("\t%.2f\t%.2f\t[dist:\t%.2f\tarea:\t%.2f\n",
+					time_weighted_candidateDistance,
+					weighted_candidateDistance,
+					candidate_dist,
+					reciprocal_overlap);
+		
+		return time_weighted_candidateDistance;
+	}
+	
+	/**
+	 * Score of the {@link DistanceCriteria#CENTROID_WITH_AREA_RATIO} criteria.
+	 * The overlap term is replaced by its best case, i.e. the smaller cell
+	 * being entirely contained in the larger one, which keeps the score
+	 * comparable to {@link #computeOverlapDistance(Node, Node, int)}.
+	 * 
+	 * @param current node of the current frame
+	 * @param voted candidate node of a previous frame
+	 * @param time_point time point of the current frame
+	 * @return time weighted candidate distance (smaller is better)
+	 */
+	private double computeCentroidDistance(Node current, Node voted, int time_point){
+		
+		Point voted_centroid = voted.getCentroid();
+		AffineTransformation drift_shift = getDriftShift(voted, time_point);
+		if(drift_shift != null)
+			voted_centroid = (Point)drift_shift.transform(voted_centroid);
+		
+		double candidate_dist = DistanceOp.distance(
+				voted_centroid,
+				current.getCentroid());
+		
+		double area_candidate = voted.getGeometry().getArea();
+		double area_current = current.getGeometry().getArea();
+		double reciprocal_overlap = 
+				(area_candidate + area_current) / Math.min(area_candidate, area_current);
+		
+		double weighted_candidateDistance = 
+				lambda1 * candidate_dist +
+				lambda2 * reciprocal_overlap;
+		
+		return weighted_candidateDistance * computeTimeWeight(voted, time_point);
+	}
+	
+	/**
+	 * Translation applied to the candidate during the drift compensated
+	 * propagation, i.e. its displacement times the frame distance
+	 * 
+	 * @param voted candidate node
+	 * @param time_point time point of the current frame
+	 * @return translation or null if the candidate was not shifted
+	 */
+	private AffineTransformation getDriftShift(Node voted, int time_point){
+		if(node_drift == null)
+			return null;
+		
+		double[] drift = node_drift.get(voted);
+		if(drift == null)
+			return null;
+		
+		int lag = time_point - voted.getBelongingFrame().getFrameNo();
+		return AffineTransformation.translationInstance(lag * drift[0], lag * drift[1]);
+	}
+	
+	/**
+	 * Time influence: candidates from recent frames count more 
+	 * (the score of the previous frame is maximally reduced by 50%)
+	 * 
+	 * @param voted candidate node
+	 * @param time_point time point of the current frame
+	 * @return multiplier of the candidate score
+	 */
+	private double computeTimeWeight(Node voted, int time_point){
+		double time_multiplier = 0.5;
+		int candidate_frame_no = voted.getBelongingFrame().getFrameNo();
+		double time_difference = time_point - candidate_frame_no;
+		return 1 - (time_multiplier/time_difference);
+	}
+	
+	/**
+	 * Evaluation with the {@link DistanceCriteria#CENTROID_WITH_AREA_RATIO}
+	 * criteria. Candidates sharing the same first node are grouped by
+	 * their minimal score as in {@link #evaluateCandidates(Map, Map, int)}.
+	 * If an ambiguity ratio is set, nodes whose two best groups score 
+	 * within the ratio are re-evaluated with the overlap criteria.
+	 * 
+	 * @param first_map correspondence from first to current frame
+	 * @param current_map correspondence from current to first frame
+	 * @param time_point time point of the current frame being considered
+	 */
+	private void evaluateCentroidCandidates(Map<Node, List<ComparableNode>> first_map,
+			Map<Node, List<ComparableNode>> current_map, int time_point) {
+		
+		long evaluated_candidates = 0;
+		
+		for(Node current: stGraph.getFrame(time_point).vertexSet()){
+			
+			List<Node> candidates = current.getParentCandidates();
+			metrics.sample(TrackingCounter.PARENT_CANDIDATES, time_point, candidates.size());
+			
+			//if no candidates are given add it as "lost bride"
+			if(candidates.size() == 0){
+				if(frame_0_union.contains(current.getCentroid()) && !current.onBoundary())
+					current_map.put(current, new ArrayList<ComparableNode>());
+				continue;
+			}
+			
+			//best candidate and score of every first node group
+			Map<Node, Node> group_best = new LinkedHashMap<Node, Node>();
+			Map<Node, Double> group_value = new HashMap<Node, Double>();
+			
+			for(Node voted: candidates){
+				
+				//avoid that the candidate approach is biased by the mother cell
+				if(voted.hasObservedDivision()){
+					Division division = voted.getDivision();
+					if(time_point > division.getTimePoint() && division.isMother(voted))
+						continue;
+				}
+				
+				Node first = voted.getFirst();
+				if(first == null){
+					if(frame_0_union.contains(voted.getCentroid()) && !voted.onBoundary())
+						current_map.put(current, new ArrayList<ComparableNode>());
+					continue;
+				}
+				
+				double value = computeCentroidDistance(current, voted, time_point);
+				evaluated_candidates++;
+				
+				if(!group_value.containsKey(first) || group_value.get(first) > value){
+					group_best.put(first, voted);
+					group_value.put(first, value);
+				}
+			}
+			candidates.clear();
+			
+			if(ambiguity_ratio > 0 && isAmbiguous(group_value))
+				for(Node first: group_best.keySet()){
+					group_value.put(first, computeOverlapDistance(current, group_best.get(first), time_point));
+					evaluated_candidates++;
+				}
+			
+			for(Node first: group_best.keySet()){
+				double value = group_value.get(first);
+				
+				if(!first_map.containsKey(first))
+					first_map.put(first, new ArrayList<ComparableNode>());
+				first_map.get(first).add(new ComparableNode(current, value));
+				
+				if(!current_map.containsKey(current))
+					current_map.put(current, new ArrayList<ComparableNode>());
+				current_map.get(current).add(new ComparableNode(first, value));
+			}
+		}
+		
+		metrics.add(TrackingCounter.EVALUATED_CANDIDATES, time_point, evaluated_candidates);
+	}
+	
+	/**
+	 * @param group_value scores of the candidate groups of a node
+	 * @return true if the two best scores are within the ambiguity ratio
+	 */
+	private boolean isAmbiguous(Map<Node, Double> group_value){
+		if(group_value.size() < 2)
+			return false;
+		
+		double best = Double.MAX_VALUE;
+		double second = Double.MAX_VALUE;
+		for(double value: group_value.values())
+			if(value < best){
+				second = best;
+				best = value;
+			}
+			else if(value < second)
+				second = value;
+		
+		return second < best * ambiguity_ratio;
 	}
 }
@@ -42,8 +42,19 @@ public class HungarianTracking extends GraphTracking{
 	 * @param linkrange the maximum no. of frames the node information is projected ahead
 	 */
 	public HungarianTracking(SpatioTemporalGraph spatioTemporalGraph, int linkrange, double lambda1, double lambda2) {
+		this(spatioTemporalGraph, linkrange, lambda1, lambda2, 30.0);
+	}
+	
+	/**
+	 * Initializes Neighbor tracking with a custom cost for leaving a node unlinked
+	 * 
+	 * @param spatioTemporalGraph Spatio-temporal graph to be tracked/linked
+	 * @param linkrange the maximum no. of frames the node information is projected ahead
+	 * @param dummy_weight cost of linking a node to a dummy node, i.e. of not linking it
+	 */
+	public HungarianTracking(SpatioTemporalGraph spatioTemporalGraph, int linkrange, double lambda1, double lambda2, double dummy_weight) {
 		super(spatioTemporalGraph, linkrange, lambda1, lambda2);
-		this.dummy_weight = 30.0;
+		this.dummy_weight = dummy_weight;
 	}
 	
 	/**
@@ -0,0 +1,262 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.Arrays;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Coarse displacement field of a frame estimated from the centroid
+ * displacement of the nodes linked to a previous frame.<br><br>
+ *
+ * The field is a regular grid of square bins: every bin holds the
+ * mean displacement per frame of the nodes whose centroid falls inside.
+ * Bins with less than {@link #MIN_BIN_SAMPLES} samples fall back to the
+ * global (median) displacement of the frame, which is robust against
+ * single wrong links.<br><br>
+ *
+ * Used by {@link GraphTracking} to shift the candidate search window
+ * in case of global tissue movement.
+ *
+ * @author Davide Heller
+ *
+ */
+public class MotionEstimate {
+
+	/**
+	 * Minimal no. of samples for a bin to use its local mean
+	 */
+	public static final int MIN_BIN_SAMPLES = 3;
+
+	/**
+	 * Edge length of the square grid bins [px]
+	 */
+	private final double bin_size;
+
+	private double[] sample_x;
+	private double[] sample_y;
+	private double[] sample_dx;
+	private double[] sample_dy;
+	private int sample_no;
+
+	private double global_dx;
+	private double global_dy;
+
+	private double min_x;
+	private double min_y;
+	private int columns;
+	private int rows;
+	private double[][] bin_dx;
+	private double[][] bin_dy;
+
+	/**
+	 * Empty estimate, add samples and call {@link #compute()}
+	 *
+	 * @param bin_size edge length of the square grid bins [px]
+	 */
+	public MotionEstimate(double bin_size) {
+		this.bin_size = bin_size;
+		this.sample_x = new double[16];
+		this.sample_y = new double[16];
+		this.sample_dx = new double[16];
+		this.sample_dy = new double[16];
+		this.sample_no = 0;
+		this.bin_dx = null;
+		this.bin_dy = null;
+	}
+
+	/**
+	 * Estimates the motion of a frame from the centroid displacement
+	 * of every node linked to a previous frame. Displacements over
+	 * several frames are divided by the frame distance.
+	 *
+	 * @param frame tracked frame
+	 * @param bin_size edge length of the square grid bins [px]
+	 * @return computed estimate
+	 */
+	public static MotionEstimate fromLinkedNodes(FrameGraph frame, double bin_size){
+		MotionEstimate estimate = new MotionEstimate(bin_size);
+
+		for(Node n: frame.vertexSet()){
+			Node previous = n.getPrevious();
+			if(previous == null || n.getTrackID() == -1)
+				continue;
+
+			int frame_distance = n.getFrameNo() - previous.getFrameNo();
+			if(frame_distance < 1)
+				continue;
+
+			Point current = n.getCentroid();
+			Point before = previous.getCentroid();
+			estimate.addSample(current.getX(), current.getY(),
+					(current.getX() - before.getX()) / frame_distance,
+					(current.getY() - before.getY()) / frame_distance);
+		}
+
+		estimate.compute();
+		return estimate;
+	}
+
+	/**
+	 * Adds the displacement observed at a position
+	 *
+	 * @param x x position
+	 * @param y y position
+	 * @param dx displacement per frame in x
+	 * @param dy displacement per frame in y
+	 */
+	public void addSample(double x, double y, double dx, double dy){
+		if(sample_no == sample_x.length){
+			int new_length = sample_no * 2;
+			sample_x = Arrays.copyOf(sample_x, new_length);
+			sample_y = Arrays.copyOf(sample_y, new_length);
+			sample_dx = Arrays.copyOf(sample_dx, new_length);
+			sample_dy = Arrays.copyOf(sample_dy, new_length);
+		}
+
+		sample_x[sample_no] = x;
+		sample_y[sample_no] = y;
+		sample_dx[sample_no] = dx;
+		sample_dy[sample_no] = dy;
+		sample_no++;
+	}
+
+	/**
+	 * Computes the global displacement and the bin means
+	 */
+	public void compute(){
+		if(sample_no == 0){
+			global_dx = 0;
+			global_dy = 0;
+			columns = rows = 0;
+			bin_dx = bin_dy = new double[0][0];
+			return;
+		}
+
+		global_dx = median(sample_dx, sample_no);
+		global_dy = median(sample_dy, sample_no);
+
+		min_x = sample_x[0];
+		min_y = sample_y[0];
+		double max_x = min_x;
+		double max_y = min_y;
+		for(int i=1; i < sample_no; i++){
+			min_x = Math.min(min_x, sample_x[i]);
+			min_y = Math.min(min_y, sample_y[i]);
+			max_x = Math.max(max_x, sample_x[i]);
+			max_y = Math.max(max_y, sample_y[i]);
+		}
+
+		columns = (int)((max_x - min_x) / bin_size) + 1;
+		rows = (int)((max_y - min_y) / bin_size) + 1;
+
+		bin_dx = new double[columns][rows];
+		bin_dy = new double[columns][rows];
+		int[][] bin_count = new int[columns][rows];
+
+		for(int i=0; i < sample_no; i++){
+			int c = (int)((sample_x[i] - min_x) / bin_size);
+			int r = (int)((sample_y[i] - min_y) / bin_size);
+			bin_dx[c][r] += sample_dx[i];
+			bin_dy[c][r] += sample_dy[i];
+			bin_count[c][r]++;
+		}
+
+		for(int c=0; c < columns; c++)
+			for(int r=0; r < rows; r++)
+				if(bin_count[c][r] >= MIN_BIN_SAMPLES){
+					bin_dx[c][r] /= bin_count[c][r];
+					bin_dy[c][r] /= bin_count[c][r];
+				}
+				else{
+					bin_dx[c][r] = global_dx;
+					bin_dy[c][r] = global_dy;
+				}
+	}
+
+	/**
+	 * @param values sample values
+	 * @param length no. of valid values
+	 * @return median of the first [length] values
+	 */
+	private static double median(double[] values, int length){
+		double[] sorted = Arrays.copyOf(values, length);
+		Arrays.sort(sorted);
+		if(length % 2 == 1)
+			return sorted[length / 2];
+		else
+			return (sorted[length / 2 - 1] + sorted[length / 2]) / 2;
+	}
+
+	/**
+	 * @return no. of displacement samples
+	 */
+	public int getSampleNo(){
+		return sample_no;
+	}
+
+	/**
+	 * @return median displacement per frame in x
+	 */
+	public double getGlobalDx(){
+		return global_dx;
+	}
+
+	/**
+	 * @return median displacement per frame in y
+	 */
+	public double getGlobalDy(){
+		return global_dy;
+	}
+
+	/**
+	 * @param x x position
+	 * @param y y position
+	 * @return estimated displacement per frame in x at the position
+	 */
+	public double getDx(double x, double y){
+		int c = getColumn(x);
+		int r = getRow(y);
+		if(c < 0 || r < 0)
+			return global_dx;
+		return bin_dx[c][r];
+	}
+
+	/**
+	 * @param x x position
+	 * @param y y position
+	 * @return estimated displacement per frame in y at the position
+	 */
+	public double getDy(double x, double y){
+		int c = getColumn(x);
+		int r = getRow(y);
+		if(c < 0 || r < 0)
+			return global_dy;
+		return bin_dy[c][r];
+	}
+
+	/**
+	 * @param x x position
+	 * @return grid column of the position, -1 if outside
+	 */
+	private int getColumn(double x){
+		if(columns == 0 || x < min_x)
+			return -1;
+		int c = (int)((x - min_x) / bin_size);
+		return c < columns ? c : -1;
+	}
+
+	/**
+	 * @param y y position
+	 * @return grid row of the position, -1 if outside
+	 */
+	private int getRow(double y){
+		if(rows == 0 || y < min_y)
+			return -1;
+		int r = (int)((y - min_y) / bin_size);
+		return r < rows ? r : -1;
+	}
+
+}
@@ -0,0 +1,30 @@
+package plugins.davhelle.cellgraph.tracking;
+
+/**
+ * Default {@link TrackingMetrics} which discards all values.
+ *
+ * @author Davide Heller
+ *
+ */
+public class NoTrackingMetrics implements TrackingMetrics {
+
+	@Override
+	public boolean isEnabled() {
+		return false;
+	}
+
+	@Override
+	public long startTimer() {
+		return 0;
+	}
+
+	@Override
+	public void stopTimer(TrackingStage stage, int time_point, long start_time) {}
+
+	@Override
+	public void add(TrackingCounter counter, int time_point, long amount) {}
+
+	@Override
+	public void sample(TrackingCounter counter, int time_point, int value) {}
+
+}
@@ -0,0 +1,444 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.nodes.Division;
+import plugins.davhelle.cellgraph.nodes.Elimination;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * Spatially tiled tracking for very large fields of view.<br><br>
+ *
+ * The field of view is partitioned into a regular grid of square tiles.
+ * Every tile is extended by a margin and all cells whose centroid falls
+ * inside the extended tile are copied into an independent graph, which
+ * is tracked in parallel by the {@link GraphTracking} algorithm given by
+ * the {@link TrackingParameters}. Cells outside of the tile core are
+ * marked as boundary in the copies.<br><br>
+ *
+ * The tile results are stitched frame by frame: a cell takes the
+ * tracking of the tile whose core contains its centroid. Local track
+ * ids are translated to global ones drawn from the graph's id counter
+ * and shared by all tiles containing the cell, such that a track
+ * crossing a seam keeps its id. If several cells claim the same track
+ * in a frame the one closest to the previous position of the track wins,
+ * the others remain unlinked. Cells are always processed in vertex order
+ * which makes the result independent of the thread scheduling.
+ *
+ * @author Davide Heller
+ *
+ */
+public class TileTracking extends TrackingAlgorithm {
+
+	/**
+	 * Tracking applied to every tile
+	 */
+	private TrackingParameters parameters;
+
+	/**
+	 * Edge length of the tile cores [px]
+	 */
+	private double tile_size;
+
+	/**
+	 * Extension of the tile cores on every side [px]
+	 */
+	private double margin;
+
+	/**
+	 * No. of tiles tracked concurrently
+	 */
+	private int thread_no;
+
+	/**
+	 * Drift compensation of the tile trackers, 0 to disable
+	 */
+	private double drift_bin_size;
+
+	/**
+	 * Overlap refinement of the centroid tile trackers, 0 to disable
+	 */
+	private double ambiguity_ratio;
+
+	/**
+	 * Region covered by the tiles
+	 */
+	private Envelope field;
+	private int columns;
+	private int rows;
+
+	/**
+	 * Tracked copy of every tile
+	 */
+	private SpatioTemporalGraph[] tile_graphs;
+
+	/**
+	 * Original to copied node for every tile
+	 */
+	private List<Map<Node, Node>> tile_copies;
+
+	/**
+	 * Copied to original node for every tile
+	 */
+	private List<Map<Node, Node>> tile_originals;
+
+	/**
+	 * Local to global track id for every tile
+	 */
+	private List<Map<Integer, Integer>> tile_ids;
+
+	/**
+	 * @param stGraph graph to be tracked
+	 * @param parameters tracking applied to every tile
+	 * @param tile_size edge length of the tile cores [px]
+	 * @param margin extension of the tile cores on every side [px], should exceed the cell displacement within the linkrange
+	 * @param thread_no no. of tiles tracked concurrently
+	 */
+	public TileTracking(SpatioTemporalGraph stGraph, TrackingParameters parameters,
+			double tile_size, double margin, int thread_no) {
+		super(stGraph, true);
+		this.parameters = parameters;
+		this.tile_size = tile_size;
+		this.margin = margin;
+		this.thread_no = Math.max(1, thread_no);
+		this.drift_bin_size = 0;
+		this.ambiguity_ratio = 0;
+	}
+
+	/**
+	 * Applies the drift compensation to every tile,
+	 * see {@link GraphTracking#setDriftCompensation(double)}
+	 *
+	 * @param bin_size edge length [px] of the displacement field bins, e.g. 100
+	 */
+	public void setDriftCompensation(double bin_size){
+		this.drift_bin_size = bin_size;
+	}
+
+	/**
+	 * Applies the overlap refinement to every tile tracked with the centroid
+	 * criteria, see {@link CentroidTracking#setOverlapRefinement(double)}
+	 *
+	 * @param ambiguity_ratio e.g. 1.2 for 20%, 0 to disable
+	 */
+	public void setOverlapRefinement(double ambiguity_ratio){
+		this.ambiguity_ratio = ambiguity_ratio;
+	}
+
+	@Override
+	public void track(){
+
+		createTiles();
+
+		log(TrackingLogLevel.SUMMARY, "Tracking %d tiles (%dx%d)..\n", tile_graphs.length, columns, rows);
+
+		long timer = metrics.startTimer();
+		trackTiles();
+		metrics.stopTimer(TrackingStage.MATCHING, 0, timer);
+
+		timer = metrics.startTimer();
+		stitchTracks();
+		stitchEvents();
+		metrics.stopTimer(TrackingStage.REVIEW, 0, timer);
+
+		stGraph.setTracking(true);
+
+		if(logs(TrackingLogLevel.SUMMARY)){
+			int division_no = 0;
+			int elimination_no = 0;
+			for(int i=0; i < stGraph.size(); i++){
+				division_no += stGraph.getFrame(i).getDivisionNo();
+				elimination_no += stGraph.getFrame(i).getEliminationNo();
+			}
+
+			System.out.println(
+					"\nTile tracking completed for "+stGraph.size()+" frames:"+
+					"\n\t "+stGraph.getFrame(0).size()+" cells in first frame"+
+					"\n\t "+division_no+" divisions recognized"+
+					"\n\t "+elimination_no+" eliminiations recognized");
+		}
+	}
+
+	/**
+	 * Partitions the field of view and copies the cells of every tile
+	 */
+	private void createTiles(){
+
+		field = new Envelope();
+		for(int t=0; t < stGraph.size(); t++)
+			for(Node n: stGraph.getFrame(t).vertexSet())
+				field.expandToInclude(n.getGeometry().getEnvelopeInternal());
+
+		columns = Math.max(1, (int)Math.ceil(field.getWidth() / tile_size));
+		rows = Math.max(1, (int)Math.ceil(field.getHeight() / tile_size));
+
+		int tile_no = columns * rows;
+		tile_graphs = new SpatioTemporalGraph[tile_no];
+		tile_copies = new ArrayList<Map<Node,Node>>(tile_no);
+		tile_originals = new ArrayList<Map<Node,Node>>(tile_no);
+		tile_ids = new ArrayList<Map<Integer,Integer>>(tile_no);
+
+		for(int tile=0; tile < tile_no; tile++){
+
+			Envelope core = getCore(tile);
+			Envelope extended = new Envelope(core);
+			extended.expandBy(margin);
+
+			TissueEvolution tile_graph = new TissueEvolution(stGraph.size());
+			tile_graph.setEdgeKeyScheme(stGraph.getEdgeKeyScheme());
+			Map<Node, Node> copies = new HashMap<Node, Node>();
+
+			for(int t=0; t < stGraph.size(); t++){
+
+				List<Node> selection = new ArrayList<Node>();
+				for(Node n: stGraph.getFrame(t).vertexSet())
+					if(extended.contains(n.getCentroid().getCoordinate()))
+						selection.add(n);
+
+				FrameGraph tile_frame = stGraph.getFrame(t).copySpatialGraph(selection, copies);
+				tile_graph.setFrame(tile_frame, t);
+
+				//cells outside of the core behave as if on the image border
+				for(Node n: selection)
+					if(!core.contains(n.getCentroid().getCoordinate()))
+						copies.get(n).setBoundary(true);
+			}
+
+			Map<Node, Node> originals = new HashMap<Node, Node>();
+			for(Map.Entry<Node, Node> entry: copies.entrySet())
+				originals.put(entry.getValue(), entry.getKey());
+
+			tile_graphs[tile] = tile_graph;
+			tile_copies.add(copies);
+			tile_originals.add(originals);
+			tile_ids.add(new HashMap<Integer, Integer>());
+		}
+	}
+
+	/**
+	 * @param tile tile index (row major)
+	 * @return core region of the tile
+	 */
+	private Envelope getCore(int tile){
+		double min_x = field.getMinX() + (tile % columns) * tile_size;
+		double min_y = field.getMinY() + (tile / columns) * tile_size;
+		return new Envelope(min_x, min_x + tile_size, min_y, min_y + tile_size);
+	}
+
+	/**
+	 * @param n cell of the original graph
+	 * @return index of the tile whose core contains the cell centroid
+	 */
+	private int getOwnerTile(Node n){
+		Point centroid = n.getCentroid();
+		int column = (int)((centroid.getX() - field.getMinX()) / tile_size);
+		int row = (int)((centroid.getY() - field.getMinY()) / tile_size);
+		column = Math.min(Math.max(column, 0), columns - 1);
+		row = Math.min(Math.max(row, 0), rows - 1);
+		return row * columns + column;
+	}
+
+	/**
+	 * Tracks all tiles concurrently
+	 */
+	private void trackTiles(){
+
+		ExecutorService executor = Executors.newFixedThreadPool(thread_no);
+
+		try{
+			List<Future<Object>> futures = new ArrayList<Future<Object>>();
+			for(final SpatioTemporalGraph tile_graph: tile_graphs)
+				futures.add(executor.submit(new Callable<Object>() {
+					@Override
+					public Object call() {
+						if(tile_graph.getFrame(0).size() == 0)
+							return null;
+
+						GraphTracking tracker = parameters.createTracker(tile_graph);
+						tracker.setLogLevel(TrackingLogLevel.SILENT);
+						if(drift_bin_size > 0)
+							tracker.setDriftCompensation(drift_bin_size);
+						if(ambiguity_ratio > 0 && tracker instanceof CentroidTracking)
+							((CentroidTracking)tracker).setOverlapRefinement(ambiguity_ratio);
+						tracker.track();
+						return null;
+					}
+				}));
+
+			for(Future<Object> future: futures)
+				future.get();
+
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Transfers the tile track ids to the original graph, frame by frame
+	 */
+	private void stitchTracks(){
+
+		//most recent cell of every global track
+		Map<Integer, Node> track_heads = new HashMap<Integer, Node>();
+
+		//first frame ids have been assigned by the initialization
+		for(Node n: stGraph.getFrame(0).vertexSet()){
+			registerTrackId(n, n.getTrackID());
+			track_heads.put(n.getTrackID(), n);
+		}
+
+		for(int t=1; t < stGraph.size(); t++){
+
+			//claimed global track ids with their current cell
+			Map<Integer, Node> claims = new HashMap<Integer, Node>();
+			long conflicts = 0;
+
+			for(Node n: stGraph.getFrame(t).vertexSet()){
+
+				int owner = getOwnerTile(n);
+				Node copy = tile_copies.get(owner).get(n);
+				int local_id = copy.getTrackID();
+
+				if(local_id == -1)
+					continue;
+
+				Integer global_id = tile_ids.get(owner).get(local_id);
+				if(global_id == null){
+					global_id = stGraph.getNewTrackingId();
+					tile_ids.get(owner).put(local_id, global_id);
+				}
+
+				Node competitor = claims.get(global_id);
+				if(competitor != null){
+					conflicts++;
+					Node head = track_heads.get(global_id);
+					if(head == null || distance(head, competitor) <= distance(head, n))
+						continue;
+				}
+
+				claims.put(global_id, n);
+			}
+
+			//link claims in vertex order
+			for(Node n: stGraph.getFrame(t).vertexSet()){
+				int owner = getOwnerTile(n);
+				Node copy = tile_copies.get(owner).get(n);
+				n.setErrorTag(copy.getErrorTag());
+				
+				int local_id = copy.getTrackID();
+				if(local_id == -1)
+					continue;
+
+				int global_id = tile_ids.get(owner).get(local_id);
+				if(claims.get(global_id) != n)
+					continue;
+
+				Node head = track_heads.get(global_id);
+				if(head != null)
+					updateCorrespondence(n, head);
+				else{
+					n.setTrackID(global_id);
+					n.setFirst(n);
+				}
+
+				registerTrackId(n, global_id);
+				track_heads.put(global_id, n);
+			}
+
+			if(conflicts > 0)
+				log(TrackingLogLevel.FRAMES, "Frame %d: %d seam conflicts resolved\n", t, conflicts);
+		}
+	}
+
+	/**
+	 * Maps the local track id of every tile copy of the cell
+	 * to the global id, unless the local id is already mapped
+	 *
+	 * @param n cell of the original graph
+	 * @param global_id global track id of the cell
+	 */
+	private void registerTrackId(Node n, int global_id){
+		for(int tile=0; tile < tile_graphs.length; tile++){
+			Node copy = tile_copies.get(tile).get(n);
+			if(copy == null || copy.getTrackID() == -1)
+				continue;
+
+			Map<Integer, Integer> ids = tile_ids.get(tile);
+			if(!ids.containsKey(copy.getTrackID()))
+				ids.put(copy.getTrackID(), global_id);
+		}
+	}
+
+	/**
+	 * @return centroid distance between two cells
+	 */
+	private double distance(Node a, Node b){
+		return a.getCentroid().distance(b.getCentroid());
+	}
+
+	/**
+	 * Transfers the divisions and eliminations detected by the
+	 * tile owning the event (the first child or eliminated cell)
+	 */
+	private void stitchEvents(){
+
+		for(int tile=0; tile < tile_graphs.length; tile++){
+			SpatioTemporalGraph tile_graph = tile_graphs[tile];
+			Map<Node, Node> originals = tile_originals.get(tile);
+
+			for(int t=0; t < tile_graph.size(); t++){
+
+				Iterator<Division> divisions = tile_graph.getFrame(t).divisionIterator();
+				while(divisions.hasNext()){
+					Division d = divisions.next();
+
+					Node child1 = originals.get(d.getChild1());
+					Node child2 = originals.get(d.getChild2());
+					Node mother = originals.get(d.getMother());
+
+					if(getOwnerTile(child1) != tile)
+						continue;
+
+					//skip divisions whose cells lost their tracking while stitching
+					if(child1.getTrackID() == -1 || child2.getTrackID() == -1 || mother.getTrackID() == -1)
+						continue;
+
+					if(child1.hasObservedDivision() || child2.hasObservedDivision())
+						continue;
+
+					new Division(mother, child1, child2);
+				}
+
+				Iterator<Elimination> eliminations = tile_graph.getFrame(t).eliminationIterator();
+				while(eliminations.hasNext()){
+					Node eliminated = originals.get(eliminations.next().getCell());
+
+					if(getOwnerTile(eliminated) != tile || eliminated.getTrackID() == -1)
+						continue;
+
+					new Elimination(eliminated);
+				}
+			}
+		}
+	}
+
+}
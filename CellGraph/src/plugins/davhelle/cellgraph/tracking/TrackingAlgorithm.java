@@ -20,6 +20,16 @@ public abstract class TrackingAlgorithm {
 	protected SpatioTemporalGraph stGraph;
 	protected Geometry frame_0_union;
 	
+	/**
+	 * Collector of timers and counters, by default discards everything
+	 */
+	protected TrackingMetrics metrics;
+	
+	/**
+	 * Amount of console output produced while tracking
+	 */
+	protected TrackingLogLevel log_level;
+	
 	/**
 	 * Constructor methods should always initialize the spatio temporal graph
 	 * field.
@@ -28,6 +38,8 @@ public abstract class TrackingAlgorithm {
 	 */
 	public TrackingAlgorithm(SpatioTemporalGraph spatioTemporalGraph,boolean do_id_initialization) {
 		this.stGraph = spatioTemporalGraph;
+		this.metrics = new NoTrackingMetrics();
+		this.log_level = TrackingLogLevel.FRAMES;
 		if(do_id_initialization)
 			initializeFirstFrame();	
 	}
@@ -41,6 +53,52 @@ public abstract class TrackingAlgorithm {
 	 */
 	public void track(){}
 	
+	/**
+	 * Sets the collector for timers and counters of the
+	 * tracking run, e.g. a {@link TrackingMetricsRecorder}
+	 * 
+	 * @param metrics metrics collector
+	 */
+	public void setMetrics(TrackingMetrics metrics){
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return the metrics collector of the tracking run
+	 */
+	public TrackingMetrics getMetrics(){
+		return metrics;
+	}
+	
+	/**
+	 * @param log_level amount of console output to produce
+	 */
+	public void setLogLevel(TrackingLogLevel log_level){
+		this.log_level = log_level;
+	}
+	
+	/**
+	 * @param level level of a message
+	 * @return true if messages of the level are printed
+	 */
+	protected boolean logs(TrackingLogLevel level){
+		return log_level.includes(level);
+	}
+	
+	/**
+	 * Prints a formatted message if the log level includes it.
+	 * Within loops guard the call with {@link #logs(TrackingLogLevel)}
+	 * to avoid creating the arguments.
+	 * 
+	 * @param level level of the message
+	 * @param format printf format string
+	 * @param args printf arguments
+	 */
+	protected void log(TrackingLogLevel level, String format, Object... args){
+		if(log_level.includes(level))
+			System.out.printf(format, args);
+	}
+	
 	/**
 	 * Initialize all nodes of the first frame with successive tracking
 	 * IDs and assign a recursive first assignment. And build the geometrical
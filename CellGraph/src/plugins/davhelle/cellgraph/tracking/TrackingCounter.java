@@ -0,0 +1,42 @@
+package plugins.davhelle.cellgraph.tracking;
+
+/**
+ * Enumeration of the quantities counted during a tracking run.
+ * Every counter is accumulated per frame by {@link TrackingMetrics}.
+ *
+ * @author Davide Heller
+ *
+ */
+public enum TrackingCounter {
+	/**
+	 * Polygon intersection tests executed while propagating candidates
+	 */
+	INTERSECTION_TESTS,
+	/**
+	 * Parent candidates added to nodes of future frames
+	 */
+	PROPAGATED_CANDIDATES,
+	/**
+	 * Parent candidates found in a node at evaluation time (sampled per node)
+	 */
+	PARENT_CANDIDATES,
+	/**
+	 * Geometrical intersections computed during candidate evaluation
+	 */
+	EVALUATED_CANDIDATES,
+	/**
+	 * Nodes of the current frame without linking partner after matching
+	 */
+	UNMARRIED_BRIDES,
+	/**
+	 * Nodes of previous frames without linking partner after matching
+	 */
+	UNMARRIED_GROOMS,
+	SWAP_CANDIDATES,
+	RESCUE_CANDIDATES,
+	SWAPS,
+	RESCUES,
+	LOST,
+	DIVISIONS,
+	ELIMINATIONS
+}
@@ -7,5 +7,5 @@ package plugins.davhelle.cellgraph.tracking;
  *
  */
 public enum TrackingEnum{
-   STABLE_MARRIAGE, HUNGARIAN, LOAD_CSV_FILE
+   STABLE_MARRIAGE, HUNGARIAN, CENTROID_KD_TREE, LOAD_CSV_FILE, LOAD_INDEXED_FILE, PARAMETER_SWEEP
 }
\ No newline at end of file
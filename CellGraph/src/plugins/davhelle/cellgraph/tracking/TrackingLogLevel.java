@@ -0,0 +1,40 @@
+package plugins.davhelle.cellgraph.tracking;
+
+/**
+ * Enumeration of the console output levels used by the
+ * tracking algorithms. Every level includes the output
+ * of the levels preceding it.
+ *
+ * @author Davide Heller
+ *
+ */
+public enum TrackingLogLevel {
+	/**
+	 * No console output
+	 */
+	SILENT,
+	/**
+	 * Final tracking report only
+	 */
+	SUMMARY,
+	/**
+	 * Divisions, eliminations, swaps and rescues
+	 */
+	EVENTS,
+	/**
+	 * Frame progress and number of unlinked nodes
+	 */
+	FRAMES,
+	/**
+	 * Every swap and rescue candidate (slow on large movies)
+	 */
+	CANDIDATES;
+
+	/**
+	 * @param level level of the message to be printed
+	 * @return true if messages of the given level are printed at this level
+	 */
+	public boolean includes(TrackingLogLevel level){
+		return level.ordinal() <= this.ordinal();
+	}
+}
@@ -0,0 +1,55 @@
+package plugins.davhelle.cellgraph.tracking;
+
+/**
+ * Interface for collecting performance information of a
+ * {@link TrackingAlgorithm} run: stage timers, per frame counters
+ * and per node histograms.<br>
+ *
+ * The default implementation {@link NoTrackingMetrics} discards
+ * everything, {@link TrackingMetricsRecorder} keeps the values and
+ * can write them out once the tracking is completed.
+ *
+ * @author Davide Heller
+ *
+ */
+public interface TrackingMetrics {
+
+	/**
+	 * @return true if the recorded values are kept
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * @return a start time to be handed to {@link #stopTimer(TrackingStage, int, long)}
+	 */
+	public long startTimer();
+
+	/**
+	 * Attributes the time elapsed since start_time to a stage
+	 *
+	 * @param stage tracking stage being timed
+	 * @param time_point frame being processed
+	 * @param start_time value returned by {@link #startTimer()}
+	 */
+	public void stopTimer(TrackingStage stage, int time_point, long start_time);
+
+	/**
+	 * Adds an amount to the counter of a frame
+	 *
+	 * @param counter quantity being counted
+	 * @param time_point frame being processed
+	 * @param amount amount to add
+	 */
+	public void add(TrackingCounter counter, int time_point, long amount);
+
+	/**
+	 * Adds a single value to the counter of a frame and
+	 * to the value histogram of the counter
+	 *
+	 * @param counter quantity being sampled
+	 * @param time_point frame being processed
+	 * @param value sampled value, e.g. the candidates of one node
+	 */
+	public void sample(TrackingCounter counter, int time_point, int value);
+
+}
@@ -0,0 +1,240 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import plugins.davhelle.cellgraph.io.CsvWriter;
+
+/**
+ * {@link TrackingMetrics} implementation keeping all values in memory.
+ * Timers and counters are stored per frame, sampled values are
+ * additionally collected in power-of-two histograms (bin i holds
+ * the values in [2^(i-1), 2^i), bin 0 holds zero).<br>
+ *
+ * Once the tracking is completed the values can be written out
+ * as CSV (one line per frame) or JSON file.
+ *
+ * @author Davide Heller
+ *
+ */
+public class TrackingMetricsRecorder implements TrackingMetrics {
+
+	/**
+	 * Number of histogram bins, enough for any int value
+	 */
+	private static final int HISTOGRAM_BINS = 33;
+
+	/**
+	 * Elapsed nano seconds for each frame and stage
+	 */
+	private ArrayList<long[]> stage_times;
+
+	/**
+	 * Counter values for each frame
+	 */
+	private ArrayList<long[]> counters;
+
+	/**
+	 * Value histogram for each counter
+	 */
+	private long[][] histograms;
+
+	/**
+	 * Initializes an empty recorder
+	 */
+	public TrackingMetricsRecorder() {
+		this.stage_times = new ArrayList<long[]>();
+		this.counters = new ArrayList<long[]>();
+		this.histograms = new long[TrackingCounter.values().length][HISTOGRAM_BINS];
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public long startTimer() {
+		return System.nanoTime();
+	}
+
+	@Override
+	public void stopTimer(TrackingStage stage, int time_point, long start_time) {
+		ensureFrame(time_point);
+		stage_times.get(time_point)[stage.ordinal()] += System.nanoTime() - start_time;
+	}
+
+	@Override
+	public void add(TrackingCounter counter, int time_point, long amount) {
+		ensureFrame(time_point);
+		counters.get(time_point)[counter.ordinal()] += amount;
+	}
+
+	@Override
+	public void sample(TrackingCounter counter, int time_point, int value) {
+		add(counter, time_point, value);
+
+		int bin = 0;
+		if(value > 0)
+			bin = 32 - Integer.numberOfLeadingZeros(value);
+
+		histograms[counter.ordinal()][bin]++;
+	}
+
+	/**
+	 * Grows the frame containers up to the time point
+	 *
+	 * @param time_point frame which has to be accessible
+	 */
+	private void ensureFrame(int time_point){
+		while(stage_times.size() <= time_point){
+			stage_times.add(new long[TrackingStage.values().length]);
+			counters.add(new long[TrackingCounter.values().length]);
+		}
+	}
+
+	/**
+	 * @return number of frames with recorded values
+	 */
+	public int getFrameNo(){
+		return stage_times.size();
+	}
+
+	/**
+	 * @param counter counter to be summed
+	 * @return sum of the counter over all frames
+	 */
+	public long getTotal(TrackingCounter counter){
+		long total = 0;
+		for(long[] frame_counters: counters)
+			total += frame_counters[counter.ordinal()];
+		return total;
+	}
+
+	/**
+	 * @param counter counter to be retrieved
+	 * @param time_point frame of interest
+	 * @return counter value in the frame, 0 if not recorded
+	 */
+	public long getCount(TrackingCounter counter, int time_point){
+		if(time_point >= counters.size())
+			return 0;
+		return counters.get(time_point)[counter.ordinal()];
+	}
+
+	/**
+	 * @param stage stage to be summed
+	 * @return time spent in the stage over all frames [ms]
+	 */
+	public double getTotalMillis(TrackingStage stage){
+		long total = 0;
+		for(long[] frame_times: stage_times)
+			total += frame_times[stage.ordinal()];
+		return total / 1e6;
+	}
+
+	/**
+	 * @param counter sampled counter
+	 * @return histogram of the sampled values (power-of-two bins)
+	 */
+	public long[] getHistogram(TrackingCounter counter){
+		return histograms[counter.ordinal()].clone();
+	}
+
+	/**
+	 * Writes one line per frame with the stage times [ms]
+	 * and the counter values
+	 *
+	 * @param output_file destination csv file
+	 */
+	public void writeCsv(File output_file){
+		StringBuilder builder = new StringBuilder();
+
+		builder.append("frame");
+		for(TrackingStage stage: TrackingStage.values())
+			builder.append(',').append(stage.name().toLowerCase()).append("_ms");
+		for(TrackingCounter counter: TrackingCounter.values())
+			builder.append(',').append(counter.name().toLowerCase());
+		builder.append('\n');
+
+		for(int i=0; i < getFrameNo(); i++){
+			builder.append(i);
+			for(long time: stage_times.get(i))
+				builder.append(',').append(String.format(Locale.US, "%.3f", time / 1e6));
+			for(long count: counters.get(i))
+				builder.append(',').append(count);
+			builder.append('\n');
+		}
+
+		CsvWriter.writeOutBuilder(builder, output_file);
+	}
+
+	/**
+	 * Writes the totals, the per frame values and the
+	 * histograms as JSON object
+	 *
+	 * @param output_file destination json file
+	 */
+	public void writeJson(File output_file){
+		StringBuilder builder = new StringBuilder();
+
+		builder.append("{\n  \"frames\": ").append(getFrameNo()).append(",\n");
+
+		builder.append("  \"stage_ms\": {");
+		TrackingStage[] stages = TrackingStage.values();
+		for(int s=0; s < stages.length; s++){
+			if(s > 0)
+				builder.append(',');
+			builder.append("\n    \"").append(stages[s].name().toLowerCase()).append("\": [");
+			for(int i=0; i < getFrameNo(); i++){
+				if(i > 0)
+					builder.append(',');
+				builder.append(String.format(Locale.US, "%.3f", stage_times.get(i)[s] / 1e6));
+			}
+			builder.append(']');
+		}
+		builder.append("\n  },\n");
+
+		builder.append("  \"counters\": {");
+		TrackingCounter[] all_counters = TrackingCounter.values();
+		for(int c=0; c < all_counters.length; c++){
+			if(c > 0)
+				builder.append(',');
+			builder.append("\n    \"").append(all_counters[c].name().toLowerCase()).append("\": {");
+			builder.append("\"total\": ").append(getTotal(all_counters[c]));
+			builder.append(", \"per_frame\": [");
+			for(int i=0; i < getFrameNo(); i++){
+				if(i > 0)
+					builder.append(',');
+				builder.append(counters.get(i)[c]);
+			}
+			builder.append("], \"histogram\": [");
+			int last_bin = HISTOGRAM_BINS - 1;
+			while(last_bin > 0 && histograms[c][last_bin] == 0)
+				last_bin--;
+			for(int b=0; b <= last_bin; b++){
+				if(b > 0)
+					builder.append(',');
+				builder.append(histograms[c][b]);
+			}
+			builder.append("]}");
+		}
+		builder.append("\n  }\n}\n");
+
+		CsvWriter.writeOutBuilder(builder, output_file);
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder builder = new StringBuilder();
+		for(TrackingStage stage: TrackingStage.values())
+			builder.append(String.format(Locale.US, "\t %s: %.1f ms\n",
+					stage.name().toLowerCase(), getTotalMillis(stage)));
+		for(TrackingCounter counter: TrackingCounter.values())
+			builder.append(String.format("\t %s: %d\n",
+					counter.name().toLowerCase(), getTotal(counter)));
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,208 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.io.CsvWriter;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+/**
+ * Evaluates several tracking parameter sets on the same input.<br><br>
+ *
+ * The input graph is loaded (and border/small cells processed) only once.
+ * The geometrical candidate overlaps, which do not depend on the parameters,
+ * are computed once in a {@link CandidateOverlapIndex} and shared by
+ * all runs. Every parameter set is then tracked concurrently on an
+ * independent copy of the spatial graph, leaving the input untouched.
+ *
+ * @author Davide Heller
+ *
+ */
+public class TrackingParameterSweep {
+
+	/**
+	 * Untracked input graph
+	 */
+	private SpatioTemporalGraph stGraph;
+
+	/**
+	 * Parameter sets to be evaluated
+	 */
+	private List<TrackingParameters> parameters;
+
+	/**
+	 * Overlaps shared by all runs
+	 */
+	private CandidateOverlapIndex candidate_index;
+
+	/**
+	 * @param stGraph untracked input graph, will not be modified
+	 * @param parameters parameter sets to be evaluated
+	 * @throws IllegalArgumentException if the graph is tracked or no parameters are given
+	 */
+	public TrackingParameterSweep(SpatioTemporalGraph stGraph, List<TrackingParameters> parameters) {
+
+		if(stGraph.hasTracking())
+			throw new IllegalArgumentException("Parameter sweep requires an untracked graph");
+		if(parameters.isEmpty())
+			throw new IllegalArgumentException("Parameter sweep requires at least one parameter set");
+
+		this.stGraph = stGraph;
+		this.parameters = parameters;
+		this.candidate_index = null;
+	}
+
+	/**
+	 * Builds all combinations of the given parameter values
+	 *
+	 * @param algorithm tracking algorithm
+	 * @param linkranges linkrange values
+	 * @param lambda1s min. distance weights
+	 * @param lambda2s overlap ratio weights
+	 * @param dummy_weights costs of not linking a node
+	 * @return full parameter grid
+	 */
+	public static List<TrackingParameters> grid(TrackingEnum algorithm, int[] linkranges,
+			double[] lambda1s, double[] lambda2s, double[] dummy_weights){
+
+		List<TrackingParameters> grid = new ArrayList<TrackingParameters>();
+		for(int linkrange: linkranges)
+			for(double lambda1: lambda1s)
+				for(double lambda2: lambda2s)
+					for(double dummy_weight: dummy_weights)
+						grid.add(new TrackingParameters(algorithm, linkrange, lambda1, lambda2, dummy_weight));
+
+		return grid;
+	}
+
+	/**
+	 * Parses a comma separated list of values, e.g. "0.5, 1, 2"
+	 *
+	 * @param text list of values
+	 * @return parsed values
+	 * @throws NumberFormatException if an entry is not a number
+	 */
+	public static double[] parseValues(String text) throws NumberFormatException{
+		String[] entries = text.trim().split("\\s*,\\s*");
+		double[] values = new double[entries.length];
+		for(int i=0; i < entries.length; i++)
+			values[i] = Double.parseDouble(entries[i]);
+		return values;
+	}
+
+	/**
+	 * Runs all parameter sets
+	 *
+	 * @param thread_no no. of parameter sets evaluated concurrently
+	 * @return one result per parameter set, in input order
+	 */
+	public List<TrackingSweepResult> run(int thread_no){
+
+		int max_linkrange = 1;
+		for(TrackingParameters p: parameters)
+			max_linkrange = Math.max(max_linkrange, p.getLinkrange());
+
+		candidate_index = new CandidateOverlapIndex(stGraph, max_linkrange, GraphTracking.MIN_CANDIDATE_OVERLAP);
+
+		List<TrackingSweepResult> results = new ArrayList<TrackingSweepResult>();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, thread_no));
+
+		try{
+			List<Future<TrackingSweepResult>> futures = new ArrayList<Future<TrackingSweepResult>>();
+			for(final TrackingParameters p: parameters)
+				futures.add(executor.submit(new Callable<TrackingSweepResult>() {
+					@Override
+					public TrackingSweepResult call() {
+						return evaluate(p);
+					}
+				}));
+
+			for(Future<TrackingSweepResult> future: futures)
+				results.add(future.get());
+
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+		} finally {
+			executor.shutdown();
+		}
+
+		return results;
+	}
+
+	/**
+	 * Tracks a copy of the input graph with the given parameters
+	 *
+	 * @param p parameter set
+	 * @return division, elimination and runtime statistics
+	 */
+	private TrackingSweepResult evaluate(TrackingParameters p) {
+
+		SpatioTemporalGraph copy = copySpatialGraph();
+
+		long start = System.currentTimeMillis();
+
+		GraphTracking tracker = p.createTracker(copy);
+		tracker.setLogLevel(TrackingLogLevel.SILENT);
+		tracker.setCandidateIndex(candidate_index);
+		tracker.track();
+
+		long runtime = System.currentTimeMillis() - start;
+
+		int division_no = 0;
+		int elimination_no = 0;
+		for(int i=0; i < copy.size(); i++){
+			division_no += copy.getFrame(i).getDivisionNo();
+			elimination_no += copy.getFrame(i).getEliminationNo();
+		}
+
+		int lost_no = 0;
+		for(Node n: copy.getFrame(copy.size() - 1).vertexSet())
+			if(n.getTrackID() == -1)
+				lost_no++;
+
+		return new TrackingSweepResult(p, division_no, elimination_no, lost_no, runtime);
+	}
+
+	/**
+	 * @return untracked copy of the input graph
+	 */
+	private SpatioTemporalGraph copySpatialGraph() {
+		TissueEvolution copy = new TissueEvolution(stGraph.size());
+		copy.setEdgeKeyScheme(stGraph.getEdgeKeyScheme());
+		for(int i=0; i < stGraph.size(); i++)
+			copy.setFrame(stGraph.getFrame(i).copySpatialGraph(), i);
+		return copy;
+	}
+
+	/**
+	 * Writes one line per parameter set
+	 *
+	 * @param results sweep results
+	 * @param output_file destination csv file
+	 */
+	public static void writeCsv(List<TrackingSweepResult> results, File output_file){
+		StringBuilder builder = new StringBuilder();
+		builder.append("algorithm,linkrange,lambda1,lambda2,dummy_weight,divisions,eliminations,lost,runtime_ms\n");
+
+		for(TrackingSweepResult r: results){
+			TrackingParameters p = r.getParameters();
+			builder.append(String.format(Locale.US, "%s,%d,%.3f,%.3f,%.3f,%d,%d,%d,%d\n",
+					p.getAlgorithm(), p.getLinkrange(), p.getLambda1(), p.getLambda2(), p.getDummyWeight(),
+					r.getDivisionNo(), r.getEliminationNo(), r.getLostNo(), r.getRuntime()));
+		}
+
+		CsvWriter.writeOutBuilder(builder, output_file);
+	}
+
+}
@@ -0,0 +1,119 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.Locale;
+
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+
+/**
+ * Parameter set of a {@link GraphTracking} run, used to
+ * instantiate the tracker of a {@link TrackingParameterSweep}.
+ * 
+ * @author Davide Heller
+ *
+ */
+public class TrackingParameters {
+	
+	/**
+	 * Tracking algorithm (STABLE_MARRIAGE, HUNGARIAN or CENTROID_KD_TREE)
+	 */
+	private final TrackingEnum algorithm;
+	
+	/**
+	 * Maximum no. of frames the node information is projected ahead
+	 */
+	private final int linkrange;
+	
+	/**
+	 * Weight of the minimal distance criterion
+	 */
+	private final double lambda1;
+	
+	/**
+	 * Weight of the overlap ratio criterion
+	 */
+	private final double lambda2;
+	
+	/**
+	 * Cost of leaving a node unlinked (HUNGARIAN only)
+	 */
+	private final double dummy_weight;
+	
+	/**
+	 * @param algorithm tracking algorithm (STABLE_MARRIAGE, HUNGARIAN or CENTROID_KD_TREE)
+	 * @param linkrange maximum no. of frames the node information is projected ahead
+	 * @param lambda1 weight of the minimal distance criterion
+	 * @param lambda2 weight of the overlap ratio criterion
+	 * @param dummy_weight cost of leaving a node unlinked (HUNGARIAN only)
+	 * @throws IllegalArgumentException if the algorithm is not graph based or a value is out of range
+	 */
+	public TrackingParameters(TrackingEnum algorithm, int linkrange,
+			double lambda1, double lambda2, double dummy_weight) {
+		
+		if(algorithm == TrackingEnum.LOAD_CSV_FILE || algorithm == TrackingEnum.LOAD_INDEXED_FILE ||
+				algorithm == TrackingEnum.PARAMETER_SWEEP)
+			throw new IllegalArgumentException("Only graph based tracking can be parametrized: "+algorithm);
+		
+		if(linkrange < 1)
+			throw new IllegalArgumentException("Linkrange must be at least 1: "+linkrange);
+		
+		checkWeight("lambda1", lambda1);
+		checkWeight("lambda2", lambda2);
+		checkWeight("dummy weight", dummy_weight);
+		
+		this.algorithm = algorithm;
+		this.linkrange = linkrange;
+		this.lambda1 = lambda1;
+		this.lambda2 = lambda2;
+		this.dummy_weight = dummy_weight;
+	}
+	
+	private static void checkWeight(String name, double value){
+		if(Double.isNaN(value) || Double.isInfinite(value) || value < 0)
+			throw new IllegalArgumentException(String.format(
+					"The %s must be a non negative number: %s", name, value));
+	}
+	
+	/**
+	 * Instantiates the tracker for the parameter set
+	 * 
+	 * @param stGraph graph to be tracked
+	 * @return tracker ready to be run
+	 */
+	public GraphTracking createTracker(SpatioTemporalGraph stGraph){
+		switch(algorithm){
+		case STABLE_MARRIAGE:
+			return new StableMarriageTracking(stGraph, linkrange, lambda1, lambda2);
+		case CENTROID_KD_TREE:
+			return new CentroidTracking(stGraph, linkrange, lambda1, lambda2);
+		default:
+			return new HungarianTracking(stGraph, linkrange, lambda1, lambda2, dummy_weight);
+		}
+	}
+
+	public TrackingEnum getAlgorithm() {
+		return algorithm;
+	}
+
+	public int getLinkrange() {
+		return linkrange;
+	}
+
+	public double getLambda1() {
+		return lambda1;
+	}
+
+	public double getLambda2() {
+		return lambda2;
+	}
+
+	public double getDummyWeight() {
+		return dummy_weight;
+	}
+	
+	@Override
+	public String toString(){
+		return String.format(Locale.US, "%s linkrange=%d lambda1=%.2f lambda2=%.2f dummy_weight=%.2f",
+				algorithm, linkrange, lambda1, lambda2, dummy_weight);
+	}
+
+}
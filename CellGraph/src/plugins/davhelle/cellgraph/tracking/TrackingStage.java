@@ -0,0 +1,18 @@
+package plugins.davhelle.cellgraph.tracking;
+
+/**
+ * Enumeration of the timed stages of a tracking run.
+ * Used by {@link TrackingMetrics} to attribute the
+ * elapsed time of every frame to the respective step.
+ *
+ * @author Davide Heller
+ *
+ */
+public enum TrackingStage {
+	PROPAGATION,
+	EVALUATION,
+	MATCHING,
+	RESCUE,
+	DIVISION_RECOGNITION,
+	REVIEW
+}
@@ -0,0 +1,64 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.Locale;
+
+/**
+ * Outcome of a single {@link TrackingParameterSweep} run
+ * 
+ * @author Davide Heller
+ *
+ */
+public class TrackingSweepResult {
+	
+	private final TrackingParameters parameters;
+	private final int division_no;
+	private final int elimination_no;
+	private final int lost_no;
+	private final long runtime;
+	
+	/**
+	 * @param parameters evaluated parameter set
+	 * @param division_no no. of divisions recognized
+	 * @param elimination_no no. of eliminations recognized
+	 * @param lost_no no. of cells left without track id in the last frame
+	 * @param runtime tracking time [ms]
+	 */
+	public TrackingSweepResult(TrackingParameters parameters, int division_no,
+			int elimination_no, int lost_no, long runtime) {
+		this.parameters = parameters;
+		this.division_no = division_no;
+		this.elimination_no = elimination_no;
+		this.lost_no = lost_no;
+		this.runtime = runtime;
+	}
+
+	public TrackingParameters getParameters() {
+		return parameters;
+	}
+
+	public int getDivisionNo() {
+		return division_no;
+	}
+
+	public int getEliminationNo() {
+		return elimination_no;
+	}
+	
+	public int getLostNo() {
+		return lost_no;
+	}
+
+	/**
+	 * @return tracking time [ms]
+	 */
+	public long getRuntime() {
+		return runtime;
+	}
+	
+	@Override
+	public String toString(){
+		return String.format(Locale.US, "%s: %d divisions, %d eliminations, %d lost, %d ms",
+				parameters, division_no, elimination_no, lost_no, runtime);
+	}
+
+}
@@ -0,0 +1,111 @@
+package plugins.davhelle.cellgraph.graphs;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.nodes.Cell;
+import plugins.davhelle.cellgraph.nodes.Edge;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class FrameGraphTest {
+
+  private Polygon square(GeometryFactory factory, double x){
+	  return factory.createPolygon(new Coordinate[]{
+			  new Coordinate(x, 0), new Coordinate(x + 1, 0),
+			  new Coordinate(x + 1, 1), new Coordinate(x, 1),
+			  new Coordinate(x, 0)});
+  }
+
+  /**
+   * Row of three cells: left - middle - right
+   */
+  private Cell[] populateRow(FrameGraph frame){
+	  GeometryFactory factory = new GeometryFactory();
+	  Cell[] cells = new Cell[3];
+	  for(int i=0; i < cells.length; i++){
+		  cells[i] = new Cell(square(factory, i), frame);
+		  frame.addVertex(cells[i]);
+	  }
+
+	  for(int i=0; i < cells.length - 1; i++){
+		  Edge e = frame.addEdge(cells[i], cells[i + 1]);
+		  e.setFrame(frame);
+	  }
+
+	  return cells;
+  }
+
+  @Test
+  public void batchInsertion() {
+
+	  FrameGraph frame = new FrameGraph(0);
+
+	  frame.beginBatch();
+	  Cell[] cells = populateRow(frame);
+
+	  Assert.assertTrue(frame.isInBatch());
+	  Assert.assertEquals(frame.getNeighborsOf(cells[1]).size(), 2, "Neighbors must be readable during a batch");
+
+	  frame.commitBatch();
+
+	  Assert.assertFalse(frame.isInBatch());
+	  Assert.assertEquals(frame.getNeighborsOf(cells[1]).size(), 2);
+	  Assert.assertEquals(frame.getNeighborsOf(cells[0]).size(), 1);
+  }
+
+  @Test
+  public void batchRemoval() {
+
+	  FrameGraph frame = new FrameGraph(0);
+	  Cell[] cells = populateRow(frame);
+
+	  //fill the incremental index before the batch
+	  Assert.assertEquals(frame.getNeighborsOf(cells[0]).size(), 1);
+
+	  frame.beginBatch();
+	  frame.beginBatch();
+	  frame.removeVertex(cells[1]);
+	  frame.commitBatch();
+
+	  Assert.assertTrue(frame.isInBatch(), "Nested batch must stay open");
+
+	  frame.commitBatch();
+
+	  Assert.assertEquals(frame.getNeighborsOf(cells[0]).size(), 0, "Neighbor index not rebuilt");
+	  Assert.assertEquals(frame.getNeighborsOf(cells[2]).size(), 0);
+
+	  //incremental updates resume after the batch
+	  frame.addEdge(cells[0], cells[2]).setFrame(frame);
+	  Assert.assertEquals(frame.getNeighborsOf(cells[0]).size(), 1);
+  }
+
+  @Test
+  public void adjacencySnapshot() {
+
+	  FrameGraph frame = new FrameGraph(0);
+	  Cell[] cells = populateRow(frame);
+
+	  FrameAdjacency adjacency = frame.getAdjacency();
+	  Assert.assertEquals(adjacency.getNodeNo(), 3);
+	  Assert.assertEquals(adjacency.getEdgeNo(), 2);
+	  Assert.assertSame(frame.getAdjacency(), adjacency, "Snapshot must be reused");
+
+	  int middle = adjacency.getId(cells[1]);
+	  Assert.assertEquals(adjacency.getDegree(middle), 2);
+	  for(int k = adjacency.start(middle); k < adjacency.end(middle); k++){
+		  Edge e = adjacency.getEdge(adjacency.edge(k));
+		  Assert.assertTrue(frame.getEdgeSource(e) == cells[1] || frame.getEdgeTarget(e) == cells[1]);
+		  Assert.assertTrue(adjacency.getNode(adjacency.target(k)) != cells[1]);
+	  }
+	  Assert.assertFalse(adjacency.areNeighbors(adjacency.getId(cells[0]), adjacency.getId(cells[2])));
+
+	  //modification replaces the snapshot
+	  frame.addEdge(cells[0], cells[2]).setFrame(frame);
+	  FrameAdjacency updated = frame.getAdjacency();
+	  Assert.assertNotSame(updated, adjacency);
+	  Assert.assertTrue(updated.areNeighbors(updated.getId(cells[0]), updated.getId(cells[2])));
+  }
+}
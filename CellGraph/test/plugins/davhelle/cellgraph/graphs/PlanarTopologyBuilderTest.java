@@ -0,0 +1,67 @@
+package plugins.davhelle.cellgraph.graphs;
+
+import java.util.ArrayList;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class PlanarTopologyBuilderTest {
+	
+  private Polygon polygon(GeometryFactory factory, double... xy){
+	  Coordinate[] ring = new Coordinate[xy.length / 2 + 1];
+	  for(int i=0; i < xy.length / 2; i++)
+		  ring[i] = new Coordinate(xy[2*i], xy[2*i + 1]);
+	  ring[ring.length - 1] = ring[0];
+	  return factory.createPolygon(factory.createLinearRing(ring), null);
+  }
+	
+  @Test
+  public void sharedLinework() {
+	  
+	  //two squares on top of a rectangle:  0 1
+	  //                                    2 2
+	  GeometryFactory factory = new GeometryFactory();
+	  ArrayList<Polygon> polygons = new ArrayList<Polygon>();
+	  polygons.add(polygon(factory, 0,10, 10,10, 10,15, 10,20, 0,20));
+	  polygons.add(polygon(factory, 10,10, 20,10, 20,20, 10,20, 10,15));
+	  polygons.add(polygon(factory, 0,0, 20,0, 20,10, 10,10, 0,10));
+	  polygons.add(polygon(factory, 30,30, 40,30, 40,40, 30,40));
+	  
+	  PlanarTopologyBuilder topology = new PlanarTopologyBuilder(polygons);
+	  
+	  Assert.assertEquals(topology.getAdjacentPairs().size(), 3);
+	  Assert.assertFalse(topology.areAdjacent(0, 3), "Isolated polygon has no neighbors");
+	  
+	  //vertical edge made of two segments
+	  Assert.assertEquals(topology.getSharedLength(0, 1), 10.0, 1e-9);
+	  Assert.assertEquals(topology.getSharedEdge(1, 0).getLength(), 10.0, 1e-9);
+	  Assert.assertEquals(topology.getSharedEdge(0, 1).getNumGeometries(), 1, "Segments should be merged");
+	  
+	  Assert.assertEquals(topology.getSharedLength(0, 2), 10.0, 1e-9);
+	  Assert.assertEquals(topology.getSharedLength(1, 2), 10.0, 1e-9);
+	  
+	  Assert.assertEquals(topology.getJunctions().size(), 1, "Only one vertex is shared by three cells");
+	  Assert.assertEquals(topology.getJunctionPolygons(new Coordinate(10, 10)).length, 3);
+  }
+  
+  @Test
+  public void pointContact() {
+	  
+	  //diagonal squares touching in (10,10)
+	  GeometryFactory factory = new GeometryFactory();
+	  ArrayList<Polygon> polygons = new ArrayList<Polygon>();
+	  polygons.add(polygon(factory, 0,0, 10,0, 10,10, 0,10));
+	  polygons.add(polygon(factory, 10,10, 20,10, 20,20, 10,20));
+	  
+	  PlanarTopologyBuilder topology = new PlanarTopologyBuilder(polygons);
+	  
+	  Assert.assertTrue(topology.areAdjacent(0, 1), "Touching polygons intersect");
+	  Assert.assertEquals(topology.getSharedLength(0, 1), 0.0);
+	  Assert.assertEquals(topology.getSharedEdge(0, 1).getGeometryType(), "Point");
+	  Assert.assertEquals(topology.getSharedSegmentNo(), 0);
+  }
+}
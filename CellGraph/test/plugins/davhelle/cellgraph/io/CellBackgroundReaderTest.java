@@ -0,0 +1,43 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.awt.geom.Rectangle2D;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CellBackgroundReaderTest {
+  @Test
+  public void interiorAndBand() {
+	  
+	  //two cells split at x=5
+	  LabelImageIntensityReader cells = new LabelImageIntensityReader(10, 10);
+	  int left = cells.addShape(new Rectangle2D.Double(0, 0, 5, 10));
+	  int right = cells.addShape(new Rectangle2D.Double(5, 0, 5, 10));
+	  
+	  //shared edge (columns 4,5) and a border edge of the left cell (rows 0,1)
+	  LabelImageIntensityReader edges = new LabelImageIntensityReader(10, 10);
+	  int shared = edges.addShape(new Rectangle2D.Double(4, 0, 2, 10));
+	  int border = edges.addShape(new Rectangle2D.Double(0, 0, 5, 2));
+	  
+	  CellBackgroundReader reader = new CellBackgroundReader(cells, edges);
+	  reader.setEdgeCells(shared, left, right);
+	  reader.setEdgeCells(border, left, 0);
+	  
+	  double[] plane = new double[100];
+	  for(int i=0; i < plane.length; i++)
+		  plane[i] = i % 10 < 5 ? 1 : 3;
+	  reader.measure(plane);
+	  
+	  //overlapping envelopes count once for the band
+	  Assert.assertEquals(reader.getBandPixelNo(left), 28);
+	  Assert.assertEquals(reader.getInteriorPixelNo(left), 32);
+	  Assert.assertEquals(reader.getBandPixelNo(right), 20);
+	  Assert.assertEquals(reader.getInteriorPixelNo(right), 40);
+	  
+	  Assert.assertEquals(reader.getInteriorIntensity(left, IntensitySummaryType.Mean), 1.0, 1e-9);
+	  Assert.assertEquals(reader.getInteriorIntensity(right, IntensitySummaryType.Mean), 3.0, 1e-9);
+	  Assert.assertEquals(reader.getBandIntensity(right, IntensitySummaryType.Mean), 2.0, 1e-9);
+	  //columns 4 (1) and 5 (3) plus the remaining 8 border pixels (1)
+	  Assert.assertEquals(reader.getBandIntensity(left, IntensitySummaryType.Sum), 48.0, 1e-9);
+  }
+}
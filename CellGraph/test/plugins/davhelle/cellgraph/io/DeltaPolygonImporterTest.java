@@ -0,0 +1,309 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.nodes.Cell;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class DeltaPolygonImporterTest {
+
+	private static final int GRID_SIZE = 20;
+	private static final int FRAME_NO = 5;
+
+	/**
+	 * Grid of tracked 10x10 squares drifting by (1,y_drift) pixels per frame.
+	 * Track ids start from 1 and the cells of the first column are border cells.
+	 * From the second frame on an untracked 5x5 cell is added at (-20,-20).
+	 * 
+	 * @param columns no. of columns
+	 * @param rows no. of rows
+	 * @param frame_no no. of frames
+	 * @param y_drift vertical displacement per frame
+	 * @return tracked test graph
+	 */
+	public static SpatioTemporalGraph createDriftingGrid(int columns, int rows, int frame_no, double y_drift){
+		GeometryFactory factory = new GeometryFactory();
+		SpatioTemporalGraph stGraph = new TissueEvolution();
+		
+		for(int t=0; t < frame_no; t++){
+			FrameGraph frame = new FrameGraph(t);
+			for(int x=0; x < columns; x++)
+				for(int y=0; y < rows; y++){
+					Cell cell = new Cell(square(factory, x * 10 + t, y * 10 + y_drift * t, 10), frame);
+					cell.setTrackID(x * rows + y + 1);
+					cell.setBoundary(x == 0);
+					frame.addVertex(cell);
+				}
+			
+			if(t > 0)
+				frame.addVertex(new Cell(square(factory, -20, -20, 5), frame));
+			
+			stGraph.setFrame(frame, t);
+		}
+		
+		return stGraph;
+	}
+	
+	private static Polygon square(GeometryFactory factory, double x, double y, double size){
+		return factory.createPolygon(new Coordinate[]{
+				new Coordinate(x, y), new Coordinate(x + size, y),
+				new Coordinate(x + size, y + size), new Coordinate(x, y + size),
+				new Coordinate(x, y)});
+	}
+	
+	/**
+	 * @param prefix folder name prefix
+	 * @return new empty folder in the temporary directory
+	 */
+	public static File createExportFolder(String prefix) throws IOException{
+		File folder = File.createTempFile(prefix, "");
+		Assert.assertTrue(folder.delete() && folder.mkdir());
+		folder.deleteOnExit();
+		return folder;
+	}
+	
+	private SpatioTemporalGraph createTestGraph(){
+		return createDriftingGrid(GRID_SIZE, GRID_SIZE, FRAME_NO, 0.5);
+	}
+	
+	private File createExportFolder() throws IOException{
+		return createExportFolder("delta_export");
+	}
+	
+	/**
+	 * Tracked irregular pentagons with a hole and fractional coordinates.
+	 * The shell of every frame starts at a different vertex, so that the
+	 * delta encoded shells are rotated to match the previous frame.
+	 * 
+	 * @param cell_no no. of tracked cells
+	 * @param frame_no no. of frames
+	 * @return tracked test graph
+	 */
+	private SpatioTemporalGraph createIrregularGraph(int cell_no, int frame_no){
+		GeometryFactory factory = new GeometryFactory();
+		SpatioTemporalGraph stGraph = new TissueEvolution();
+		
+		for(int t=0; t < frame_no; t++){
+			FrameGraph frame = new FrameGraph(t);
+			for(int k=0; k < cell_no; k++){
+				Cell cell = new Cell(pentagon(factory, 20 * k + 0.371 * t, 0.2137 * t, t + k), frame);
+				cell.setTrackID(k + 1);
+				frame.addVertex(cell);
+			}
+			
+			if(t % 2 == 1)
+				frame.addVertex(new Cell(pentagon(factory, -30.005, -30.005, t), frame));
+			
+			stGraph.setFrame(frame, t);
+		}
+		
+		return stGraph;
+	}
+	
+	private static Polygon pentagon(GeometryFactory factory, double x, double y, int first_vertex){
+		double[][] shell = {{0, 0}, {10.123, 0.456}, {12.789, 7.001}, {4.555, 11.3333}, {-1.017, 5.505}};
+		
+		Coordinate[] coordinates = new Coordinate[shell.length + 1];
+		for(int i=0; i < shell.length; i++){
+			double[] vertex = shell[(i + first_vertex) % shell.length];
+			coordinates[i] = new Coordinate(x + vertex[0], y + vertex[1]);
+		}
+		coordinates[shell.length] = new Coordinate(coordinates[0]);
+		
+		LinearRing hole = factory.createLinearRing(new Coordinate[]{
+				new Coordinate(x + 3.3333, y + 3.3333), new Coordinate(x + 6.6666, y + 3.3333),
+				new Coordinate(x + 5.0001, y + 6.6666), new Coordinate(x + 3.3333, y + 3.3333)});
+		
+		return factory.createPolygon(factory.createLinearRing(coordinates), new LinearRing[]{hole});
+	}
+	
+	private static boolean isRounded(Coordinate decoded, Coordinate source, double scale){
+		return decoded.x == Math.round(source.x * scale) / scale &&
+				decoded.y == Math.round(source.y * scale) / scale;
+	}
+	
+	/**
+	 * Asserts that the decoded ring equals the source ring rounded to 1/scale
+	 * up to the rotation applied to delta encoded shells
+	 * 
+	 * @return true if the decoded ring starts at a different vertex
+	 */
+	private static boolean assertRoundedRing(LineString decoded, LineString source, double scale){
+		Coordinate[] decoded_coordinates = decoded.getCoordinates();
+		Coordinate[] source_coordinates = source.getCoordinates();
+		Assert.assertEquals(decoded_coordinates.length, source_coordinates.length);
+		
+		int n = source_coordinates.length - 1;
+		int offset = -1;
+		for(int i=0; i < n && offset == -1; i++)
+			if(isRounded(decoded_coordinates[0], source_coordinates[i], scale))
+				offset = i;
+		Assert.assertTrue(offset >= 0, "First decoded vertex not found in source ring");
+		
+		for(int i=0; i <= n; i++)
+			Assert.assertTrue(isRounded(decoded_coordinates[i], source_coordinates[(i + offset) % n], scale),
+					String.format("Vertex %d: %s vs %s", i, decoded_coordinates[i], source_coordinates[(i + offset) % n]));
+		
+		return offset != 0;
+	}
+	
+	private double totalArea(ArrayList<Polygon> polygons){
+		double area = 0;
+		for(Polygon p: polygons)
+			area += p.getArea();
+		return area;
+	}
+
+	@Test
+	public void testSequentialReload() throws IOException {
+		
+		SpatioTemporalGraph stGraph = createTestGraph();
+		File folder = createExportFolder();
+		new DeltaPolygonExporter().exportGraph(stGraph, folder.getAbsolutePath());
+		
+		DeltaPolygonImporter importer = new DeltaPolygonImporter();
+		for(int t=0; t < FRAME_NO; t++){
+			File frame_file = new File(folder, String.format("skeleton_%03d%s", t, DeltaPolygonExporter.EXTENSION));
+			frame_file.deleteOnExit();
+			
+			ArrayList<Polygon> polygons = importer.extractPolygons(frame_file.getAbsolutePath());
+			Assert.assertNotNull(polygons);
+			Assert.assertEquals(polygons.size(), stGraph.getFrame(t).size());
+			Assert.assertEquals(totalArea(polygons), GRID_SIZE * GRID_SIZE * 100 + (t > 0 ? 25 : 0), 1e-6);
+		}
+	}
+	
+	@Test
+	public void testDecodedCoordinates() throws IOException {
+		
+		SpatioTemporalGraph stGraph = createIrregularGraph(4, FRAME_NO);
+		File folder = createExportFolder();
+		new DeltaPolygonExporter().exportGraph(stGraph, folder.getAbsolutePath());
+		
+		DeltaPolygonImporter importer = new DeltaPolygonImporter();
+		int rotated_shells = 0;
+		for(int t=0; t < FRAME_NO; t++){
+			File frame_file = new File(folder, String.format("skeleton_%03d%s", t, DeltaPolygonExporter.EXTENSION));
+			frame_file.deleteOnExit();
+			
+			//polygons are decoded in the order of the exported vertex set
+			ArrayList<Polygon> polygons = importer.extractPolygons(frame_file.getAbsolutePath());
+			ArrayList<Polygon> sources = new ArrayList<Polygon>();
+			for(Node cell: stGraph.getFrame(t).vertexSet())
+				sources.add((Polygon)cell.getGeometry());
+			
+			Assert.assertEquals(polygons.size(), sources.size());
+			for(int i=0; i < sources.size(); i++){
+				Polygon decoded = polygons.get(i);
+				Polygon source = sources.get(i);
+				
+				if(assertRoundedRing(decoded.getExteriorRing(), source.getExteriorRing(), DeltaPolygonExporter.DEFAULT_SCALE))
+					rotated_shells++;
+				
+				Assert.assertEquals(decoded.getNumInteriorRing(), source.getNumInteriorRing());
+				for(int h=0; h < source.getNumInteriorRing(); h++)
+					Assert.assertFalse(assertRoundedRing(decoded.getInteriorRingN(h), source.getInteriorRingN(h), DeltaPolygonExporter.DEFAULT_SCALE));
+			}
+		}
+		
+		Assert.assertTrue(rotated_shells > 0, "No rotated delta shell was decoded");
+	}
+	
+	@Test
+	public void testRandomAccessReload() throws IOException {
+		
+		SpatioTemporalGraph stGraph = createTestGraph();
+		File folder = createExportFolder();
+		new DeltaPolygonExporter().exportGraph(stGraph, folder.getAbsolutePath());
+		
+		int t = FRAME_NO - 1;
+		File frame_file = new File(folder, String.format("skeleton_%03d%s", t, DeltaPolygonExporter.EXTENSION));
+		ArrayList<Polygon> polygons = new DeltaPolygonImporter().extractPolygons(frame_file.getAbsolutePath());
+		
+		Assert.assertNotNull(polygons);
+		Assert.assertEquals(polygons.size(), stGraph.getFrame(t).size());
+		
+		Polygon first = polygons.get(0);
+		Assert.assertTrue(first.getEnvelopeInternal().getMinX() == t || first.getEnvelopeInternal().getMinX() == -20);
+		
+		for(int i=0; i < FRAME_NO; i++)
+			new File(folder, String.format("skeleton_%03d%s", i, DeltaPolygonExporter.EXTENSION)).deleteOnExit();
+	}
+	
+	@Test
+	public void testSizeVsWKB() throws IOException {
+		
+		SpatioTemporalGraph stGraph = createTestGraph();
+		File folder = createExportFolder();
+		new DeltaPolygonExporter().exportGraph(stGraph, folder.getAbsolutePath());
+		
+		WkbPolygonExporter wkb_exporter = new WkbPolygonExporter();
+		long delta_size = 0;
+		long wkb_size = 0;
+		for(int t=0; t < FRAME_NO; t++){
+			File delta_file = new File(folder, String.format("skeleton_%03d%s", t, DeltaPolygonExporter.EXTENSION));
+			File wkb_file = new File(folder, String.format("skeleton_%03d.wkb", t));
+			wkb_exporter.exportFrame(stGraph.getFrame(t), wkb_file.getAbsolutePath());
+			
+			delta_file.deleteOnExit();
+			wkb_file.deleteOnExit();
+			delta_size += delta_file.length();
+			wkb_size += wkb_file.length();
+		}
+		
+		System.out.printf("WKB: %d bytes\nDelta: %d bytes\n", wkb_size, delta_size);
+		Assert.assertTrue(delta_size < wkb_size, "Delta files are larger than WKB");
+	}
+	
+	@Test
+	public void testMissingReference() throws IOException {
+		
+		SpatioTemporalGraph stGraph = createTestGraph();
+		File folder = createExportFolder();
+		new DeltaPolygonExporter().exportGraph(stGraph, folder.getAbsolutePath());
+		
+		File key_frame = new File(folder, String.format("skeleton_%03d%s", 0, DeltaPolygonExporter.EXTENSION));
+		Assert.assertTrue(key_frame.delete());
+		
+		File frame_file = new File(folder, String.format("skeleton_%03d%s", 1, DeltaPolygonExporter.EXTENSION));
+		ArrayList<Polygon> polygons = new DeltaPolygonImporter().extractPolygons(frame_file.getAbsolutePath());
+		Assert.assertNotNull(polygons);
+		Assert.assertTrue(polygons.isEmpty());
+		
+		for(int i=1; i < FRAME_NO; i++)
+			new File(folder, String.format("skeleton_%03d%s", i, DeltaPolygonExporter.EXTENSION)).deleteOnExit();
+	}
+	
+	@Test
+	public void testReusedExporter() throws IOException {
+		
+		SpatioTemporalGraph stGraph = createTestGraph();
+		DeltaPolygonExporter exporter = new DeltaPolygonExporter();
+		exporter.exportGraph(stGraph, createExportFolder().getAbsolutePath());
+		
+		//the key frame of a second export must not refer to the first one
+		File folder = createExportFolder();
+		exporter.exportGraph(stGraph, folder.getAbsolutePath());
+		
+		File frame_file = new File(folder, String.format("skeleton_%03d%s", 0, DeltaPolygonExporter.EXTENSION));
+		ArrayList<Polygon> polygons = new DeltaPolygonImporter().extractPolygons(frame_file.getAbsolutePath());
+		
+		Assert.assertNotNull(polygons);
+		Assert.assertEquals(totalArea(polygons), GRID_SIZE * GRID_SIZE * 100, 1e-6);
+	}
+
+}
@@ -0,0 +1,193 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.nodes.Cell;
+import plugins.davhelle.cellgraph.nodes.Division;
+import plugins.davhelle.cellgraph.nodes.Elimination;
+import plugins.davhelle.cellgraph.nodes.Node;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+public class IndexedTrackReaderTest {
+
+	private static final int FRAME_NO = 3;
+	private static final int CELL_NO = 4;
+
+	/**
+	 * Row of tracked squares in every frame, from the second
+	 * frame on with an additional untracked cell
+	 */
+	private SpatioTemporalGraph createTestGraph(){
+		return DeltaPolygonImporterTest.createDriftingGrid(CELL_NO, 1, FRAME_NO, 0);
+	}
+	
+	private File createExportFolder() throws IOException{
+		return DeltaPolygonImporterTest.createExportFolder("indexed_tracking");
+	}
+	
+	/**
+	 * Cell 1 dividing into the cells 3 and 4 in frame 2, cell 2 present
+	 * until frame 1 and cell 3 until frame 2
+	 */
+	private SpatioTemporalGraph createEventGraph(){
+		GeometryFactory factory = new GeometryFactory();
+		SpatioTemporalGraph stGraph = new TissueEvolution();
+		
+		for(int t=0; t < 4; t++){
+			FrameGraph frame = new FrameGraph(t);
+			if(t < 2){
+				addCell(frame, factory, 0, 10, 1);
+				addCell(frame, factory, 20, 10, 2);
+			}
+			else{
+				if(t == 2)
+					addCell(frame, factory, 0, 5, 3);
+				addCell(frame, factory, 5, 5, 4);
+			}
+			stGraph.setFrame(frame, t);
+		}
+		
+		return stGraph;
+	}
+	
+	private void addCell(FrameGraph frame, GeometryFactory factory, double x, double width, int track_id){
+		Cell cell = new Cell(factory.createPolygon(new Coordinate[]{
+				new Coordinate(x, 0), new Coordinate(x + width, 0),
+				new Coordinate(x + width, 10), new Coordinate(x, 10),
+				new Coordinate(x, 0)}), frame);
+		cell.setTrackID(track_id);
+		frame.addVertex(cell);
+	}
+	
+	private Node getCell(SpatioTemporalGraph stGraph, int frame_no, int track_id){
+		for(Node cell: stGraph.getFrame(frame_no).vertexSet())
+			if(cell.getTrackID() == track_id)
+				return cell;
+		return null;
+	}
+
+	@Test
+	public void testSingleFrameRead() throws IOException {
+		
+		SpatioTemporalGraph stGraph = createTestGraph();
+		File folder = createExportFolder();
+		new IndexedTrackWriter(stGraph, folder.getAbsolutePath()).write();
+		
+		File tracking_file = new File(folder, IndexedTrackWriter.FILE_NAME);
+		Assert.assertEquals(IndexedTrackReader.readFrameNo(tracking_file), FRAME_NO);
+		
+		IndexedTrackReader reader = new IndexedTrackReader(stGraph, folder.getAbsolutePath());
+		TrackingColumns last_frame = reader.readFrame(FRAME_NO - 1);
+		
+		Assert.assertEquals(last_frame.size, CELL_NO, "Untracked cells must not be written");
+		for(int row=0; row < last_frame.size; row++){
+			int i = last_frame.track_ids[row] - 1;
+			Assert.assertEquals(last_frame.x[row], i * 10 + (FRAME_NO - 1) + 5.0, 1e-9);
+			Assert.assertEquals(last_frame.y[row], 5.0, 1e-9);
+			Assert.assertEquals(last_frame.on_border[row], i == 0);
+		}
+	}
+	
+	@Test
+	public void testTrackingRoundTrip() throws IOException {
+		
+		SpatioTemporalGraph stGraph = createTestGraph();
+		File folder = createExportFolder();
+		new IndexedTrackWriter(stGraph, folder.getAbsolutePath()).write();
+		
+		//forget the tracking
+		for(int t=0; t < FRAME_NO; t++)
+			for(Node cell: stGraph.getFrame(t).vertexSet()){
+				cell.setTrackID(-1);
+				cell.setBoundary(false);
+			}
+		
+		new IndexedTrackReader(stGraph, folder.getAbsolutePath()).track();
+		
+		for(int t=0; t < FRAME_NO; t++)
+			for(Node cell: stGraph.getFrame(t).vertexSet()){
+				if(cell.getGeometry().getEnvelopeInternal().getMinX() == -20)
+					Assert.assertEquals(cell.getTrackID(), -1);
+				else{
+					int i = (int)((cell.getGeometry().getEnvelopeInternal().getMinX() - t) / 10);
+					Assert.assertEquals(cell.getTrackID(), i + 1);
+					Assert.assertEquals(cell.onBoundary(), i == 0);
+				}
+			}
+	}
+	
+	@Test
+	public void testEventRoundTrip() throws IOException {
+		
+		//link the tracks with a first round trip, then add the events
+		SpatioTemporalGraph stGraph = createEventGraph();
+		File folder = createExportFolder();
+		new IndexedTrackWriter(stGraph, folder.getAbsolutePath()).write();
+		new IndexedTrackReader(stGraph, folder.getAbsolutePath()).track();
+		
+		new Division(getCell(stGraph, 1, 1), getCell(stGraph, 2, 3), getCell(stGraph, 2, 4));
+		new Elimination(getCell(stGraph, 1, 2));
+		new Elimination(getCell(stGraph, 2, 3));
+		
+		File event_folder = createExportFolder();
+		Assert.assertTrue(new IndexedTrackWriter(stGraph, event_folder.getAbsolutePath()).write());
+		
+		SpatioTemporalGraph reloaded = createEventGraph();
+		new IndexedTrackReader(reloaded, event_folder.getAbsolutePath()).track();
+		
+		Node mother = getCell(reloaded, 0, 1);
+		Assert.assertTrue(mother.hasObservedDivision());
+		Assert.assertEquals(mother.getDivision().getTimePoint(), 2);
+		Assert.assertEquals(mother.getDivision().getChild1().getTrackID(), 3);
+		Assert.assertEquals(mother.getDivision().getChild2().getTrackID(), 4);
+		
+		Node eliminated = getCell(reloaded, 0, 2);
+		Assert.assertTrue(eliminated.hasObservedElimination());
+		Assert.assertEquals(eliminated.getElimination().getTimePoint(), 1);
+		
+		//elimination of a daughter cell, not linked to the first frame
+		Node daughter = getCell(reloaded, 2, 3);
+		Assert.assertTrue(daughter.hasObservedElimination(), "Daughter elimination not stored");
+		Assert.assertEquals(daughter.getElimination().getTimePoint(), 2);
+		Assert.assertFalse(getCell(reloaded, 2, 4).hasObservedElimination());
+	}
+	
+	@Test
+	public void testTruncatedFile() throws IOException {
+		
+		SpatioTemporalGraph stGraph = createTestGraph();
+		File folder = createExportFolder();
+		Assert.assertTrue(new IndexedTrackWriter(stGraph, folder.getAbsolutePath()).write());
+		
+		//cut the last position of the last frame
+		File tracking_file = new File(folder, IndexedTrackWriter.FILE_NAME);
+		RandomAccessFile raf = new RandomAccessFile(tracking_file, "rw");
+		raf.setLength(raf.length() - 1);
+		raf.close();
+		
+		IndexedTrackReader reader = new IndexedTrackReader(stGraph, folder.getAbsolutePath());
+		Assert.assertEquals(reader.readFrame(0).size, CELL_NO);
+		try{
+			reader.readFrame(FRAME_NO - 1);
+			Assert.fail("Truncated frame must not be read");
+		}catch(IOException e){
+			//expected
+		}
+	}
+	
+	@Test
+	public void testMissingFile(){
+		Assert.assertEquals(IndexedTrackReader.readFrameNo(new File("does_not_exist.cgt")), -1);
+	}
+
+}
@@ -0,0 +1,135 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class IntensityCacheTest {
+  
+  private IntensityCache.Key key(int frame, long id, double buffer){
+	  return new IntensityCache.Key("edge", frame, id, buffer, 0, 0,
+			  IntensitySummaryType.Mean, 42L);
+  }
+  
+  @Test
+  public void leastRecentlyUsedEviction() {
+	  
+	  IntensityCache cache = new IntensityCache(2, null);
+	  cache.put(key(0, 1, 3), 1.0);
+	  cache.put(key(0, 2, 3), 2.0);
+	  
+	  //access makes the first entry the most recent
+	  Assert.assertEquals(cache.get(key(0, 1, 3)).doubleValue(), 1.0, 1e-9);
+	  cache.put(key(0, 3, 3), 3.0);
+	  
+	  Assert.assertEquals(cache.size(), 2);
+	  Assert.assertNull(cache.get(key(0, 2, 3)));
+	  Assert.assertEquals(cache.get(key(0, 1, 3)).doubleValue(), 1.0, 1e-9);
+	  
+	  //different parameters are different entries
+	  Assert.assertNull(cache.get(key(0, 1, 2)));
+  }
+  
+  @Test
+  public void persistence() throws IOException {
+	  
+	  File file = File.createTempFile("intensity", ".cache");
+	  file.delete();
+	  file.deleteOnExit();
+	  
+	  IntensityCache cache = new IntensityCache(100, file);
+	  cache.put(key(0, 1, 3), 1.5);
+	  cache.flush();
+	  cache.put(key(1, 1, 3), 2.5);
+	  cache.flush();
+	  
+	  IntensityCache reloaded = new IntensityCache(100, file);
+	  Assert.assertEquals(reloaded.size(), 2);
+	  Assert.assertEquals(reloaded.get(key(0, 1, 3)).doubleValue(), 1.5, 1e-9);
+	  Assert.assertEquals(reloaded.get(key(1, 1, 3)).doubleValue(), 2.5, 1e-9);
+  }
+  
+  @Test
+  public void truncatedRecord() throws IOException {
+	  
+	  File file = File.createTempFile("intensity", ".cache");
+	  file.delete();
+	  file.deleteOnExit();
+	  
+	  IntensityCache cache = new IntensityCache(100, file);
+	  cache.put(key(0, 1, 3), 1.5);
+	  cache.flush();
+	  
+	  //interrupted append
+	  DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true));
+	  out.writeUTF("edge");
+	  out.writeInt(1);
+	  out.close();
+	  
+	  IntensityCache truncated = new IntensityCache(100, file);
+	  Assert.assertEquals(truncated.size(), 1);
+	  truncated.put(key(1, 1, 3), 2.5);
+	  truncated.flush();
+	  
+	  //the new value must not follow the broken record
+	  IntensityCache reloaded = new IntensityCache(100, file);
+	  Assert.assertEquals(reloaded.size(), 2);
+	  Assert.assertEquals(reloaded.get(key(1, 1, 3)).doubleValue(), 2.5, 1e-9);
+  }
+  
+  @Test
+  public void invalidSummaryType() throws IOException {
+	  
+	  File file = File.createTempFile("intensity", ".cache");
+	  file.delete();
+	  file.deleteOnExit();
+	  
+	  IntensityCache cache = new IntensityCache(100, file);
+	  cache.put(key(0, 1, 3), 1.5);
+	  cache.flush();
+	  
+	  //record with an unknown summary type ordinal
+	  DataOutputStream out = new DataOutputStream(new FileOutputStream(file, true));
+	  out.writeUTF("edge");
+	  out.writeInt(1);
+	  out.writeLong(1);
+	  out.writeDouble(3);
+	  out.writeDouble(0);
+	  out.writeInt(0);
+	  out.writeByte(100);
+	  out.writeLong(42L);
+	  out.writeDouble(2.5);
+	  out.close();
+	  
+	  IntensityCache reloaded = new IntensityCache(100, file);
+	  Assert.assertEquals(reloaded.size(), 0);
+  }
+  
+  @Test
+  public void invalidate() throws IOException {
+	  
+	  File file = File.createTempFile("intensity", ".cache");
+	  file.delete();
+	  file.deleteOnExit();
+	  
+	  IntensityCache cache = new IntensityCache(100, file);
+	  cache.put(key(0, 1, 3), 1.5);
+	  cache.flush();
+	  Assert.assertTrue(file.exists());
+	  
+	  //changed pixel data
+	  cache.invalidate();
+	  Assert.assertEquals(cache.size(), 0);
+	  Assert.assertFalse(file.exists());
+	  
+	  //values measured afterwards are not persisted
+	  cache.put(key(0, 1, 3), 2.5);
+	  cache.flush();
+	  Assert.assertFalse(file.exists());
+	  Assert.assertEquals(cache.get(key(0, 1, 3)).doubleValue(), 2.5, 1e-9);
+  }
+}
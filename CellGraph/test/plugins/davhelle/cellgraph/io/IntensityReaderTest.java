@@ -0,0 +1,56 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class IntensityReaderTest {
+  @Test
+  public void topValues() {
+	  
+	  double[] values = {5, 1, 9, 3, 7, 2, 8, 4, 6, 0};
+	  
+	  //top 30% = {7, 8, 9}
+	  Assert.assertEquals(IntensityReader.summarizeTopValues(
+			  values.clone(), values.length, 0.3, IntensitySummaryType.Mean), 8.0, 1e-9);
+	  Assert.assertEquals(IntensityReader.summarizeTopValues(
+			  values.clone(), values.length, 0.3, IntensitySummaryType.Min), 7.0, 1e-9);
+	  Assert.assertEquals(IntensityReader.summarizeTopValues(
+			  values.clone(), values.length, 0.3, IntensitySummaryType.Sum), 24.0, 1e-9);
+	  Assert.assertEquals(IntensityReader.summarizeTopValues(
+			  values.clone(), values.length, 0.3, IntensitySummaryType.StandardDeviation), 1.0, 1e-9);
+	  
+	  //at least one value is retained
+	  Assert.assertEquals(IntensityReader.summarizeTopValues(
+			  values.clone(), values.length, 0.01, IntensitySummaryType.Max), 9.0, 1e-9);
+	  
+	  Assert.assertEquals(IntensityReader.summarizeTopValues(
+			  values.clone(), 0, 0.5, IntensitySummaryType.Mean), -1.0);
+  }
+  
+  @Test
+  public void topValuesMatchSorting() {
+	  
+	  Random random = new Random(42);
+	  for(int run=0; run < 1000; run++){
+		  int n = 1 + random.nextInt(200);
+		  double[] values = new double[n];
+		  for(int i=0; i < n; i++)
+			  values[i] = random.nextInt(20);
+		  
+		  double topPercent = random.nextDouble();
+		  int k = Math.min(n, Math.max(1, (int)Math.round(n * topPercent)));
+		  
+		  double[] sorted = values.clone();
+		  Arrays.sort(sorted);
+		  double expected = 0;
+		  for(int i=n-k; i < n; i++)
+			  expected += sorted[i];
+		  
+		  Assert.assertEquals(IntensityReader.summarizeTopValues(
+				  values, n, topPercent, IntensitySummaryType.Sum), expected, 1e-9);
+	  }
+  }
+}
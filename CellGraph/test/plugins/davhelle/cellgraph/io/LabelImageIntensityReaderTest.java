@@ -0,0 +1,61 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.awt.geom.Rectangle2D;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LabelImageIntensityReaderTest {
+
+  /**
+   * 10x10 plane whose pixel value is its row major index
+   */
+  private double[] rampPlane(){
+	  double[] data = new double[100];
+	  for(int i=0; i < data.length; i++)
+		  data[i] = i;
+	  return data;
+  }
+
+  @Test
+  public void overlappingShapes() {
+
+	  LabelImageIntensityReader reader = new LabelImageIntensityReader(10, 10);
+	  int first = reader.addShape(new Rectangle2D.Double(0, 0, 4, 4));
+	  int second = reader.addShape(new Rectangle2D.Double(2, 2, 4, 4));
+	  reader.measure(rampPlane());
+
+	  Assert.assertEquals(reader.getLabelNo(), 2);
+	  Assert.assertEquals(reader.getLabel(3, 3), first, "First shape keeps the label image entry");
+	  Assert.assertEquals(reader.getPixelNo(first), 16);
+	  Assert.assertEquals(reader.getPixelNo(second), 16, "Overlapping pixels must be measured for both shapes");
+
+	  Assert.assertEquals(reader.getIntensity(first, IntensitySummaryType.Mean), 16.5, 1e-9);
+	  Assert.assertEquals(reader.getIntensity(first, IntensitySummaryType.Sum), 264.0, 1e-9);
+	  Assert.assertEquals(reader.getIntensity(second, IntensitySummaryType.Min), 22.0, 1e-9);
+	  Assert.assertEquals(reader.getIntensity(second, IntensitySummaryType.Max), 55.0, 1e-9);
+  }
+
+  @Test
+  public void standardDeviation() {
+
+	  LabelImageIntensityReader reader = new LabelImageIntensityReader(10, 10);
+	  int row = reader.addShape(new Rectangle2D.Double(0, 0, 10, 1));
+	  reader.measure(rampPlane());
+
+	  //sample standard deviation of 0..9
+	  Assert.assertEquals(reader.getIntensity(row, IntensitySummaryType.StandardDeviation),
+			  Math.sqrt(82.5 / 9), 1e-9);
+  }
+
+  @Test
+  public void shapeOutsideImage() {
+
+	  LabelImageIntensityReader reader = new LabelImageIntensityReader(10, 10);
+	  int outside = reader.addShape(new Rectangle2D.Double(20, 20, 4, 4));
+	  reader.measure(rampPlane());
+
+	  Assert.assertEquals(reader.getPixelNo(outside), 0);
+	  Assert.assertEquals(reader.getIntensity(outside, IntensitySummaryType.Mean), -1.0);
+  }
+}
@@ -0,0 +1,86 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TrackingColumnsTest {
+
+	private File writeTempFile(String content) throws IOException{
+		File tmp = File.createTempFile("tracking_t000", ".csv");
+		tmp.deleteOnExit();
+		FileOutputStream fos = new FileOutputStream(tmp);
+		fos.write(content.getBytes("UTF-8"));
+		fos.close();
+		return tmp;
+	}
+
+	@Test
+	public void testWriterFormat() throws IOException {
+		
+		Random random = new Random(42);
+		int row_no = 1000;
+		
+		int[] ids = new int[row_no];
+		String[] xs = new String[row_no];
+		String[] ys = new String[row_no];
+		boolean[] borders = new boolean[row_no];
+		
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i < row_no; i++){
+			ids[i] = random.nextInt(100000);
+			xs[i] = String.format(Locale.US, "%.2f", random.nextDouble() * 2000);
+			ys[i] = String.format(Locale.US, "%.2f", random.nextDouble() * 2000);
+			borders[i] = random.nextBoolean();
+			sb.append(String.format("%d,%s,%s,%b\n", ids[i], xs[i], ys[i], borders[i]));
+		}
+		
+		TrackingColumns columns = TrackingColumns.parse(writeTempFile(sb.toString()));
+		
+		Assert.assertEquals(columns.size, row_no);
+		for(int i=0; i < row_no; i++){
+			Assert.assertEquals(columns.track_ids[i], ids[i]);
+			Assert.assertEquals(columns.x[i], Double.parseDouble(xs[i]));
+			Assert.assertEquals(columns.y[i], Double.parseDouble(ys[i]));
+			Assert.assertEquals(columns.on_border[i], borders[i]);
+		}
+	}
+	
+	@Test
+	public void testUncommonRows() throws IOException {
+		
+		String content = 
+				"1,-3.5,1e2,TRUE\r\n" +
+				"\n" +
+				"-2,7,0.000000000000000000001,false,extra\r\n" +
+				"3,12.25,4.5,true";
+		
+		TrackingColumns columns = TrackingColumns.parse(writeTempFile(content));
+		
+		Assert.assertEquals(columns.size, 3);
+		Assert.assertEquals(columns.track_ids[0], 1);
+		Assert.assertEquals(columns.x[0], -3.5);
+		Assert.assertEquals(columns.y[0], 100.0);
+		Assert.assertTrue(columns.on_border[0]);
+		
+		Assert.assertEquals(columns.track_ids[1], -2);
+		Assert.assertEquals(columns.x[1], 7.0);
+		Assert.assertEquals(columns.y[1], 1e-21);
+		Assert.assertFalse(columns.on_border[1]);
+		
+		Assert.assertEquals(columns.track_ids[2], 3);
+		Assert.assertEquals(columns.y[2], 4.5);
+		Assert.assertTrue(columns.on_border[2]);
+	}
+	
+	@Test(expectedExceptions = IOException.class)
+	public void testMalformedRow() throws IOException {
+		TrackingColumns.parse(writeTempFile("1,2.0;3.0,true\n"));
+	}
+
+}
@@ -0,0 +1,118 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.vividsolutions.jts.geom.Polygon;
+
+public class VtkLegacyPolygonReaderTest {
+
+	/**
+	 * Two unit squares sharing the edge (1,0)-(1,1): the outline
+	 * is stored as one closed line, the shared edge as second line
+	 */
+	private static final double[] POINTS = {0,0,0, 1,0,0, 2,0,0, 2,1,0, 1,1,0, 0,1,0};
+	private static final int[] OUTLINE = {1,2,3,4,5,0,1};
+	private static final int[] SHARED_EDGE = {1,4};
+
+	private File createTempFile() throws IOException{
+		File tmp = File.createTempFile("mesh", ".vtk");
+		tmp.deleteOnExit();
+		return tmp;
+	}
+
+	private void assertTwoSquares(ArrayList<Polygon> polygons){
+		Assert.assertNotNull(polygons);
+		Assert.assertEquals(polygons.size(), 2);
+		for(Polygon polygon: polygons)
+			Assert.assertEquals(polygon.getArea(), 1.0, 1e-9);
+	}
+
+	@Test
+	public void testAsciiPolydata() throws IOException {
+		
+		File vtk_file = createTempFile();
+		PrintWriter writer = new PrintWriter(vtk_file);
+		writer.print("# vtk DataFile Version 3.0\nmesh\nASCII\nDATASET POLYDATA\n");
+		writer.printf("POINTS %d float\n", POINTS.length / 3);
+		for(double coordinate: POINTS)
+			writer.print(coordinate + " ");
+		writer.printf("\nLINES 2 %d\n", OUTLINE.length + SHARED_EDGE.length + 2);
+		writer.print(OUTLINE.length);
+		for(int id: OUTLINE)
+			writer.print(" " + id);
+		writer.print("\n" + SHARED_EDGE.length);
+		for(int id: SHARED_EDGE)
+			writer.print(" " + id);
+		writer.print("\n\nPOINT_DATA 6\n");
+		writer.close();
+		
+		assertTwoSquares(new VtkLegacyPolygonReader().extractPolygons(vtk_file.getAbsolutePath()));
+	}
+	
+	@Test
+	public void testBinaryOffsetPolydata() throws IOException {
+		
+		File vtk_file = createTempFile();
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(vtk_file));
+		out.writeBytes("# vtk DataFile Version 5.1\nmesh\nBINARY\nDATASET POLYDATA\n");
+		out.writeBytes(String.format("POINTS %d double\n", POINTS.length / 3));
+		for(double coordinate: POINTS)
+			out.writeDouble(coordinate);
+		
+		out.writeBytes(String.format("\nLINES 3 %d\nOFFSETS vtktypeint64\n", OUTLINE.length + SHARED_EDGE.length));
+		out.writeLong(0);
+		out.writeLong(OUTLINE.length);
+		out.writeLong(OUTLINE.length + SHARED_EDGE.length);
+		
+		out.writeBytes("\nCONNECTIVITY vtktypeint64\n");
+		for(int id: OUTLINE)
+			out.writeLong(id);
+		for(int id: SHARED_EDGE)
+			out.writeLong(id);
+		out.writeBytes("\n");
+		out.close();
+		
+		assertTwoSquares(new VtkLegacyPolygonReader().extractPolygons(vtk_file.getAbsolutePath()));
+	}
+	
+	@Test
+	public void testDuplicatedPoints() throws IOException {
+		
+		//shared edge stored with copies of the points 1 and 4
+		File vtk_file = createTempFile();
+		PrintWriter writer = new PrintWriter(vtk_file);
+		writer.print("# vtk DataFile Version 3.0\nmesh\nASCII\nDATASET POLYDATA\n");
+		writer.printf("POINTS %d float\n", POINTS.length / 3 + 2);
+		for(double coordinate: POINTS)
+			writer.print(coordinate + " ");
+		writer.print("1 0 0 1 1 0");
+		writer.printf("\nLINES 2 %d\n", OUTLINE.length + 2 + 2);
+		writer.print(OUTLINE.length);
+		for(int id: OUTLINE)
+			writer.print(" " + id);
+		writer.print("\n2 6 7\n");
+		writer.close();
+		
+		assertTwoSquares(new VtkLegacyPolygonReader().extractPolygons(vtk_file.getAbsolutePath()));
+	}
+	
+	@Test
+	public void testNoPolydata() throws IOException {
+		
+		File vtk_file = createTempFile();
+		PrintWriter writer = new PrintWriter(vtk_file);
+		writer.print("# vtk DataFile Version 3.0\ngrid\nASCII\nDATASET UNSTRUCTURED_GRID\n");
+		writer.close();
+		
+		Assert.assertNull(new VtkLegacyPolygonReader().extractPolygons(vtk_file.getAbsolutePath()));
+	}
+
+}
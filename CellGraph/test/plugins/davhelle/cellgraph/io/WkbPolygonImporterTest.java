@@ -0,0 +1,104 @@
+package plugins.davhelle.cellgraph.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.nodes.Cell;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class WkbPolygonImporterTest {
+
+	/**
+	 * Frame with a grid of hexagonal cells
+	 */
+	private FrameGraph createTestFrame(int grid_size){
+		GeometryFactory factory = new GeometryFactory();
+		FrameGraph frame = new FrameGraph(0);
+		
+		for(int x=0; x < grid_size; x++)
+			for(int y=0; y < grid_size; y++){
+				Coordinate[] ring = new Coordinate[7];
+				for(int k=0; k < 6; k++){
+					double angle = k * Math.PI / 3;
+					ring[k] = new Coordinate(
+							x * 2.0 + Math.cos(angle) + 0.123,
+							y * 2.0 + Math.sin(angle) + 0.456);
+				}
+				ring[6] = new Coordinate(ring[0]);
+				
+				Polygon polygon = factory.createPolygon(ring);
+				frame.addVertex(new Cell(polygon, frame));
+			}
+		
+		return frame;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		
+		FrameGraph frame = createTestFrame(10);
+		File wkb_file = File.createTempFile("skeleton_000", ".wkb");
+		wkb_file.deleteOnExit();
+		
+		new WkbPolygonExporter().exportFrame(frame, wkb_file.getAbsolutePath());
+		
+		ArrayList<Polygon> polygons = new WkbPolygonImporter().extractPolygons(wkb_file.getAbsolutePath());
+		
+		Assert.assertNotNull(polygons);
+		Assert.assertEquals(polygons.size(), frame.size());
+		for(Polygon polygon: polygons)
+			Assert.assertEquals(polygon.getNumPoints(), 7);
+	}
+	
+	@Test
+	public void testMissingFile(){
+		ArrayList<Polygon> polygons = new WkbPolygonImporter().extractPolygons("does_not_exist.wkb");
+		Assert.assertNotNull(polygons);
+		Assert.assertTrue(polygons.isEmpty());
+	}
+	
+	@Test
+	public void testWKTvsWKB() throws IOException {
+		
+		FrameGraph frame = createTestFrame(100);
+		
+		File wkt_file = File.createTempFile("skeleton_000", ".wkt");
+		File wkb_file = File.createTempFile("skeleton_000", ".wkb");
+		wkt_file.deleteOnExit();
+		wkb_file.deleteOnExit();
+		
+		new WktPolygonExporter().exportFrame(frame, wkt_file.getAbsolutePath());
+		new WkbPolygonExporter().exportFrame(frame, wkb_file.getAbsolutePath());
+		
+		WktPolygonImporter wkt_importer = new WktPolygonImporter();
+		WkbPolygonImporter wkb_importer = new WkbPolygonImporter();
+		
+		//warm up
+		wkt_importer.extractPolygons(wkt_file.getAbsolutePath());
+		wkb_importer.extractPolygons(wkb_file.getAbsolutePath());
+		
+		int repetitions = 10;
+		
+		long startTime = System.currentTimeMillis();
+		for(int i=0; i < repetitions; i++)
+			Assert.assertEquals(wkt_importer.extractPolygons(wkt_file.getAbsolutePath()).size(), frame.size());
+		long wkt_time = System.currentTimeMillis() - startTime;
+		
+		long startTime2 = System.currentTimeMillis();
+		for(int i=0; i < repetitions; i++)
+			Assert.assertEquals(wkb_importer.extractPolygons(wkb_file.getAbsolutePath()).size(), frame.size());
+		long wkb_time = System.currentTimeMillis() - startTime2;
+		
+		System.out.printf("WKT: %d ms (%d bytes)\nWKB: %d ms (%d bytes)\n",
+				wkt_time,wkt_file.length(),wkb_time,wkb_file.length());
+	}
+
+}
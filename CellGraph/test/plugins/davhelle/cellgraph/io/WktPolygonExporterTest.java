@@ -3,6 +3,7 @@ package plugins.davhelle.cellgraph.io;
 import headless.StGraphUtils;
 
 import java.io.File;
+import java.io.IOException;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -62,7 +63,7 @@ public class WktPolygonExporterTest {
   }
   
   @Test
-  public void testWTKvsWBK(){
+  public void testWTKvsWBK() throws IOException{
 	  SpatioTemporalGraph stGraph = WktPolygonExporterTest.loadTestGraph(10);
 	  
 	  //Check file correctness
@@ -72,25 +73,34 @@ public class WktPolygonExporterTest {
 			Assert.assertEquals(frame.getFileSource(), expected_source_file);
 	  }
 	  
+	  File export_folder = File.createTempFile("wkt_export", "");
+	  export_folder.delete();
+	  Assert.assertTrue(export_folder.mkdir(),"Export folder could not be created");
+	  
 	  //Write out all frames at once
 	  long startTime = System.currentTimeMillis();
-	  new WktPolygonExporter(stGraph);
+	  WktPolygonExporter wkt_exporter = new WktPolygonExporter();
+	  for(int i=0; i < stGraph.size(); i++){
+		  FrameGraph frame = stGraph.getFrame(i);
+		  String wkt_file = new File(export_folder, new File(frame.getFileSource()).getName() + ".wkt").getPath();
+		  wkt_exporter.exportFrame(frame, wkt_file);
+	  }
 	  long wktTime = System.currentTimeMillis() - startTime;
-	  new WkbPolygonExporter(stGraph);
+	  new WkbPolygonExporter(stGraph,export_folder.getPath());
 	  long wkbTime = System.currentTimeMillis() - startTime - wktTime;
 	  
 	  System.out.printf("WKT: %d\nWKB: %d\n",wktTime,wkbTime);
 	  
 	  //Check file correctness
 	  for(int i=0; i < stGraph.size(); i++){
-		  String expected_wkt_file = String.format("/Users/davide/tmp/wkt_export/skeletons_crop_t28-68_t%04d.tif.wkt",i);
-		  Assert.assertTrue(new File(expected_wkt_file).exists());
+		  String expected_wkt_file = String.format("skeletons_crop_t28-68_t%04d.tif.wkt",i);
+		  Assert.assertTrue(new File(export_folder, expected_wkt_file).exists());
 	  }
 	  
 	  //Check file correctness
 	  for(int i=0; i < stGraph.size(); i++){
-		  String expected_wkt_file = String.format("/Users/davide/tmp/wkt_export/skeletons_crop_t28-68_t%04d.tif.wkb",i);
-		  Assert.assertTrue(new File(expected_wkt_file).exists());
+		  String expected_wkb_file = String.format("skeletons_crop_t28-68_t%04d.tif.wkb",i);
+		  Assert.assertTrue(new File(export_folder, expected_wkb_file).exists());
 	  }
   }
   
@@ -0,0 +1,32 @@
+package plugins.davhelle.cellgraph.misc;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.nodes.Edge;
+
+public class EdgeKeySchemeTest {
+  @Test
+  public void roundTrip() {
+	  
+	  int[][] pairs = {{0,1},{3,17},{1000,99999},{65536,Integer.MAX_VALUE}};
+	  
+	  for(int[] pair: pairs){
+		  long code = Edge.computePairCode(pair[1], pair[0], EdgeKeyScheme.PACKED);
+		  Assert.assertEquals(Edge.getCodePair(code, EdgeKeyScheme.PACKED), pair, "Wrong packed pair");
+	  }
+	  
+	  //cantor codes stay unchanged for the default methods
+	  long cantor_code = Edge.computePairCode(17, 3);
+	  Assert.assertEquals(cantor_code, CantorPairing.compute(3, 17));
+	  Assert.assertEquals(Edge.getCodePair(cantor_code, EdgeKeyScheme.CANTOR), new int[]{3,17});
+  }
+  
+  @Test
+  public void headerDetection() {
+	  
+	  Assert.assertEquals(EdgeKeyScheme.fromHeader("Edge id (Packed pairing)"), EdgeKeyScheme.PACKED);
+	  Assert.assertEquals(EdgeKeyScheme.fromHeader("Edge id (Cantor pairing)"), EdgeKeyScheme.CANTOR);
+	  Assert.assertEquals(EdgeKeyScheme.fromHeader("Edge id"), EdgeKeyScheme.CANTOR, "Old exports use cantor codes");
+  }
+}
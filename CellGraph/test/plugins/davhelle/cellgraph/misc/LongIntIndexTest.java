@@ -0,0 +1,45 @@
+package plugins.davhelle.cellgraph.misc;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LongIntIndexTest {
+  @Test
+  public void putAndGet() {
+	  
+	  LongIntIndex index = new LongIntIndex(2);
+	  
+	  Assert.assertEquals(index.get(7), LongIntIndex.NOT_FOUND);
+	  
+	  index.put(7, 1);
+	  index.put(-3, 2);
+	  index.put(7, 3);
+	  
+	  Assert.assertEquals(index.size(), 2, "Replacing a value should not add an entry");
+	  Assert.assertEquals(index.get(7), 3);
+	  Assert.assertEquals(index.get(-3), 2);
+	  Assert.assertFalse(index.containsKey(8));
+  }
+  
+  @Test
+  public void matchesHashMap() {
+	  
+	  //grow well beyond the initial capacity
+	  Random random = new Random(42);
+	  LongIntIndex index = new LongIntIndex(4);
+	  HashMap<Long, Integer> reference = new HashMap<Long, Integer>();
+	  
+	  for(int i=0; i < 10000; i++){
+		  long key = random.nextInt(5000) * 65536L;
+		  index.put(key, i);
+		  reference.put(key, i);
+	  }
+	  
+	  Assert.assertEquals(index.size(), reference.size());
+	  for(Long key: reference.keySet())
+		  Assert.assertEquals(index.get(key), reference.get(key).intValue(), "Wrong value for " + key);
+  }
+}
@@ -0,0 +1,49 @@
+package plugins.davhelle.cellgraph.misc;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PresenceIntervalsTest {
+  @Test
+  public void fromTrack() {
+	  
+	  Long[] track = {1L, 1L, null, null, 1L, null, null, null, 1L, 1L};
+	  PresenceIntervals presence = PresenceIntervals.fromTrack(track);
+	  
+	  Assert.assertEquals(presence.getIntervalNo(), 3);
+	  Assert.assertEquals(presence.getSurvival(), 5);
+	  Assert.assertEquals(presence.getFirstGap(), 2);
+	  Assert.assertEquals(presence.getLongestGap(), new int[]{5, 3});
+	  Assert.assertTrue(presence.isPresent(4));
+	  Assert.assertFalse(presence.isPresent(3));
+	  Assert.assertFalse(presence.isComplete());
+  }
+  
+  @Test
+  public void outOfOrderInsertion() {
+	  
+	  PresenceIntervals presence = new PresenceIntervals(6);
+	  presence.add(4);
+	  presence.add(0);
+	  presence.add(2);
+	  presence.add(1);
+	  presence.add(3);
+	  presence.add(5);
+	  presence.add(2);
+	  
+	  Assert.assertEquals(presence.getIntervalNo(), 1, "Adjacent frames should be merged");
+	  Assert.assertTrue(presence.isComplete());
+	  Assert.assertEquals(presence.getFirstGap(), -1);
+	  Assert.assertEquals(presence.getLongestGap(), new int[]{-1, 0});
+  }
+  
+  @Test
+  public void trailingGap() {
+	  
+	  PresenceIntervals presence = new PresenceIntervals(10);
+	  for(int t=0; t < 4; t++)
+		  presence.add(t);
+	  
+	  Assert.assertEquals(presence.getLongestGap(), new int[]{4, 6}, "The end of the window counts as gap");
+  }
+}
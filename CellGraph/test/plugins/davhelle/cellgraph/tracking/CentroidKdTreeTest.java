@@ -0,0 +1,67 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CentroidKdTreeTest {
+  @Test
+  public void nearestOnGrid() {
+	  
+	  //10x10 grid with 10px spacing
+	  double[] x = new double[100];
+	  double[] y = new double[100];
+	  for(int i=0; i < 100; i++){
+		  x[i] = (i % 10) * 10;
+		  y[i] = (i / 10) * 10;
+	  }
+	  
+	  CentroidKdTree tree = new CentroidKdTree(x, y);
+	  
+	  int[] nearest = tree.nearest(21, 19, 1, 5);
+	  Assert.assertEquals(nearest.length, 1);
+	  Assert.assertEquals(nearest[0], 22, "Wrong nearest point");
+	  
+	  //4 direct neighbors within 10px plus the center
+	  nearest = tree.nearest(50, 50, 10, 10);
+	  Assert.assertEquals(nearest.length, 5, "Wrong no. of points in radius");
+	  Assert.assertEquals(nearest[0], 55, "Closest point should come first");
+	  
+	  Assert.assertEquals(tree.nearest(500, 500, 3, 10).length, 0, "No point expected");
+  }
+  
+  @Test
+  public void matchesBruteForce() {
+	  
+	  Random random = new Random(42);
+	  int n = 500;
+	  double[] x = new double[n];
+	  double[] y = new double[n];
+	  for(int i=0; i < n; i++){
+		  x[i] = random.nextDouble() * 1000;
+		  y[i] = random.nextDouble() * 1000;
+	  }
+	  
+	  CentroidKdTree tree = new CentroidKdTree(x, y);
+	  
+	  for(int q=0; q < 100; q++){
+		  double qx = random.nextDouble() * 1000;
+		  double qy = random.nextDouble() * 1000;
+		  
+		  int closest = 0;
+		  for(int i=1; i < n; i++)
+			  if(distance(x[i], y[i], qx, qy) < distance(x[closest], y[closest], qx, qy))
+				  closest = i;
+		  
+		  int[] nearest = tree.nearest(qx, qy, 3, 1000);
+		  Assert.assertEquals(nearest[0], closest, "Nearest neighbor differs from brute force");
+		  Assert.assertTrue(distance(x[nearest[1]], y[nearest[1]], qx, qy) >= 
+				  distance(x[nearest[0]], y[nearest[0]], qx, qy), "Neighbors not ordered");
+	  }
+  }
+  
+  private double distance(double ax, double ay, double bx, double by){
+	  return Math.hypot(ax - bx, ay - by);
+  }
+}
@@ -0,0 +1,62 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import plugins.davhelle.cellgraph.graphs.FrameGraph;
+import plugins.davhelle.cellgraph.graphs.SpatioTemporalGraph;
+import plugins.davhelle.cellgraph.graphs.TissueEvolution;
+import plugins.davhelle.cellgraph.nodes.Cell;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+
+public class DriftCompensationTest {
+
+	private static final int FRAME_NO = 5;
+	private static final int GRID_SIZE = 5;
+	private static final double CELL_SIZE = 10;
+
+	/**
+	 * Displacement per frame, large enough that the uncompensated
+	 * overlaps of two frames ago favor the neighboring cell
+	 */
+	private static final double DRIFT = 4;
+
+	private Polygon square(GeometryFactory factory, double x, double y){
+		return factory.createPolygon(new Coordinate[]{
+				new Coordinate(x, y), new Coordinate(x + CELL_SIZE, y),
+				new Coordinate(x + CELL_SIZE, y + CELL_SIZE), new Coordinate(x, y + CELL_SIZE),
+				new Coordinate(x, y)});
+	}
+
+	@Test
+	public void testUniformTranslation() {
+
+		GeometryFactory factory = new GeometryFactory();
+		SpatioTemporalGraph stGraph = new TissueEvolution();
+		Cell[][][] cells = new Cell[FRAME_NO][GRID_SIZE][GRID_SIZE];
+
+		//every frame is the previous one translated along x
+		for(int t=0; t < FRAME_NO; t++){
+			FrameGraph frame = new FrameGraph(t);
+			for(int x=0; x < GRID_SIZE; x++)
+				for(int y=0; y < GRID_SIZE; y++){
+					cells[t][x][y] = new Cell(square(factory, x * CELL_SIZE + t * DRIFT, y * CELL_SIZE), frame);
+					frame.addVertex(cells[t][x][y]);
+				}
+			stGraph.setFrame(frame, t);
+		}
+
+		GraphTracking tracker = new StableMarriageTracking(stGraph, 2, 1, 1);
+		tracker.setDriftCompensation(100);
+		tracker.track();
+
+		for(int t=1; t < FRAME_NO; t++)
+			for(int x=0; x < GRID_SIZE; x++)
+				for(int y=0; y < GRID_SIZE; y++)
+					Assert.assertEquals(cells[t][x][y].getTrackID(), cells[0][x][y].getTrackID(),
+							String.format("Wrong link of cell [%d,%d] in frame %d", x, y, t));
+	}
+}
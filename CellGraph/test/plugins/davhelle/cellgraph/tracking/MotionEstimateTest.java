@@ -0,0 +1,55 @@
+package plugins.davhelle.cellgraph.tracking;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MotionEstimateTest {
+  @Test
+  public void globalDrift() {
+	  
+	  MotionEstimate motion = new MotionEstimate(100);
+	  for(int i=0; i < 10; i++)
+		  motion.addSample(i * 10, i * 10, 5, -2);
+	  
+	  //single wrong link should not affect the median
+	  motion.addSample(50, 50, 100, 100);
+	  motion.compute();
+	  
+	  Assert.assertEquals(motion.getGlobalDx(), 5.0, 1e-9, "Wrong global x drift");
+	  Assert.assertEquals(motion.getGlobalDy(), -2.0, 1e-9, "Wrong global y drift");
+	  
+	  //positions outside of the sampled area use the global drift
+	  Assert.assertEquals(motion.getDx(1000, 1000), 5.0, 1e-9);
+  }
+  
+  @Test
+  public void localDrift() {
+	  
+	  MotionEstimate motion = new MotionEstimate(50);
+	  
+	  //left half moves right, right half stays
+	  for(int i=0; i < 5; i++){
+		  motion.addSample(10 + i, 10, 4, 0);
+		  motion.addSample(110 + i, 10, 0, 0);
+		  motion.addSample(120 + i, 10, 0, 0);
+	  }
+	  motion.compute();
+	  
+	  Assert.assertEquals(motion.getDx(12, 10), 4.0, 1e-9, "Wrong local drift");
+	  Assert.assertEquals(motion.getDx(115, 10), 0.0, 1e-9, "Wrong local drift");
+	  
+	  //empty bin in between falls back to the global median
+	  Assert.assertEquals(motion.getDx(70, 10), motion.getGlobalDx(), 1e-9);
+  }
+  
+  @Test
+  public void noSamples() {
+	  
+	  MotionEstimate motion = new MotionEstimate(100);
+	  motion.compute();
+	  
+	  Assert.assertEquals(motion.getSampleNo(), 0);
+	  Assert.assertEquals(motion.getDx(0, 0), 0.0);
+	  Assert.assertEquals(motion.getDy(0, 0), 0.0);
+  }
+}